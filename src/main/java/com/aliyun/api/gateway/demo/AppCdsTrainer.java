@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.net.ssl.SSLEngine;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.transport.SSLContextFactory;
+import com.aliyun.api.gateway.demo.transport.TlsConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 生成AppCDS归档的训练程序，由pom.xml中的appcds profile在打包后运行<br>
+ * 在本机回环地址上启动桩服务，用{@link Client}依次发送GET、POST表单及POST字符串请求（桩服务返回GZIP压缩的响应），
+ * 并初始化TLS，使签名、传输层、响应解压及JSSE相关的类都被写入归档。不访问外部网络。
+ * <p>
+ * 运行时classpath须以归档时的classpath开头：{@code java -XX:SharedArchiveFile=target/java.demo-1.1-SNAPSHOT.jsa
+ * -cp target/java.demo-1.1-SNAPSHOT.jar:$(cat target/appcds.classpath):<应用classpath> <主类>}，
+ * 短任务还可加{@code -XX:TieredStopAtLevel=1}。
+ */
+public class AppCdsTrainer {
+    private static final byte[] RESPONSE = "{\"result\":\"ok\"}".getBytes(Constants.ENCODING);
+
+    public static void main(String[] args) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try (InputStream in = exchange.getRequestBody()) {
+                    while (in.read() >= 0) {
+                        //丢弃请求Body
+                    }
+                }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody())) {
+                    out.write(RESPONSE);
+                }
+            }
+        });
+        server.start();
+        try (Client client = new Client("app_key", "app_secret", false)) {
+            String base = "http://" + server.getAddress().getAddress().getHostAddress() + ':'
+                    + server.getAddress().getPort();
+            Map<String, String> form = new HashMap<String, String>();
+            form.put("FormParamKey", "FormParamValue");
+            consume(client.execute(Request.newBuilder(Method.GET, new URL(base + "/demo/get?qk1=qv1")).build()));
+            consume(client.execute(Request.newBuilder(Method.POST_FORM, new URL(base + "/demo/post/form"))
+                    .setFormBody(form).build()));
+            consume(client.execute(Request.newBuilder(Method.POST_STRING, new URL(base + "/demo/post/string"))
+                    .setStringBody("demo string body content").build()));
+            //https请求需要真实的服务端证书，此处只初始化SSLContext并开始一次客户端握手
+            SSLEngine engine = SSLContextFactory.getShared(false, new TlsConfig()).createSSLEngine();
+            engine.setUseClientMode(true);
+            engine.beginHandshake();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void consume(HttpResponse response) throws IOException {
+        EntityUtils.consume(response.getEntity());
+    }
+}
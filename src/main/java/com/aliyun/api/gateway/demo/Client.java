@@ -19,49 +19,65 @@
 package com.aliyun.api.gateway.demo;
 
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
 import java.net.URL;
-import java.nio.charset.Charset;
-import java.security.KeyManagementException;
-import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
-import java.security.cert.X509Certificate;
+import java.net.UnknownHostException;
+import java.security.Provider;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
-import javax.net.ssl.SSLContext;
-
-import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.NameValuePair;
+import org.apache.http.HttpStatus;
 import org.apache.http.client.ClientProtocolException;
-import org.apache.http.client.config.RequestConfig;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
-import org.apache.http.client.methods.RequestBuilder;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
-import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
-import org.apache.http.entity.ByteArrayEntity;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.message.BasicNameValuePair;
-import org.apache.http.ssl.SSLContextBuilder;
-import org.apache.http.ssl.SSLContexts;
-import org.apache.http.ssl.TrustStrategy;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.aliyun.api.gateway.demo.constant.Constants;
 import com.aliyun.api.gateway.demo.constant.ContentType;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
 import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.endpoint.Endpoint;
+import com.aliyun.api.gateway.demo.endpoint.EndpointGroup;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.enums.SignatureMethod;
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+import com.aliyun.api.gateway.demo.ratelimit.RateLimitedException;
+import com.aliyun.api.gateway.demo.ratelimit.RateLimiter;
+import com.aliyun.api.gateway.demo.replay.TrafficRecorder;
+import com.aliyun.api.gateway.demo.schedule.FairScheduler;
+import com.aliyun.api.gateway.demo.trace.Tracer;
+import com.aliyun.api.gateway.demo.trace.Tracers;
+import com.aliyun.api.gateway.demo.transport.ByteArrayBody;
+import com.aliyun.api.gateway.demo.transport.ByteBufferBody;
+import com.aliyun.api.gateway.demo.transport.CompressionStats;
+import com.aliyun.api.gateway.demo.transport.Deadline;
+import com.aliyun.api.gateway.demo.transport.FileBody;
+import com.aliyun.api.gateway.demo.transport.InputStreamBody;
+import com.aliyun.api.gateway.demo.transport.RequestBody;
+import com.aliyun.api.gateway.demo.transport.RequestTimeoutException;
+import com.aliyun.api.gateway.demo.transport.ResponseBodyStore;
+import com.aliyun.api.gateway.demo.transport.ResponseDecoder;
+import com.aliyun.api.gateway.demo.transport.Transport;
+import com.aliyun.api.gateway.demo.transport.TransportRequest;
+import com.aliyun.api.gateway.demo.transport.Transports;
+import com.aliyun.api.gateway.demo.util.FormEncoder;
+import com.aliyun.api.gateway.demo.util.FormEncoder.FormBody;
+import com.aliyun.api.gateway.demo.util.GzipUtil;
+import com.aliyun.api.gateway.demo.util.GzipUtil.CompressedBody;
+import com.aliyun.api.gateway.demo.util.HmacSigner;
+import com.aliyun.api.gateway.demo.util.MessageDigestUtil;
 import com.aliyun.api.gateway.demo.util.SignUtil;
+import com.aliyun.api.gateway.demo.util.Utf8Encoder;
+import com.aliyun.api.gateway.demo.util.Utf8Encoder.EncodedBody;
 
 /**
  * Client
@@ -69,19 +85,53 @@ import com.aliyun.api.gateway.demo.util.SignUtil;
  * @author qiming.wqm 2016/06/24
  */
 public class Client implements AutoCloseable {
+    /** 字符串Body未指定Content-Type时使用的类型，与StringEntity的默认值一致 */
+    private static final String DEFAULT_STRING_CONTENT_TYPE = "text/plain; charset=UTF-8";
 
     /** APP Key */
     private String appKey;
     /** APP密钥 */
     private String appSecret;
-    /** HttpClient实例， */
-    private CloseableHttpClient httpClient = null;
+    /** 传输层实例，使用默认传输层时首次发送请求或预热时才创建 */
+    private volatile Transport transport;
+    /** 是否已关闭 */
+    private boolean closed;
     /** 是否是测试环境，true为测试环境，false为生产环境 */
     private boolean testEnv;
+    /** 是否默认GZIP压缩字符串及字节数组类型的Body，可被{@link Request#getCompressBody()}覆盖 */
+    private boolean compressionEnabled = false;
+    /** Body压缩阈值，单位字节，小于该长度的Body不压缩 */
+    private int compressionThreshold = Constants.DEFAULT_COMPRESSION_THRESHOLD;
+    /** 是否默认接受压缩的响应，可被{@link Request#getDecompressResponse()}覆盖 */
+    private boolean responseDecompressionEnabled = true;
+    /** 响应解压统计 */
+    private final CompressionStats responseCompressionStats = new CompressionStats();
+    /** 响应Body存储，为null时由调用方直接从连接读取响应 */
+    private ResponseBodyStore responseBodyStore;
+    /** 逻辑host:port到地址分组的映射 */
+    private final Map<String, EndpointGroup> endpointGroups = new ConcurrentHashMap<String, EndpointGroup>();
+    /** 客户端限流器，为null时不限流 */
+    private RateLimiter rateLimiter;
+    /** 令牌不足时是否等待，false时直接拒绝 */
+    private boolean rateLimitBlocking = true;
+    /** 流量录制器，为null时不录制 */
+    private TrafficRecorder recorder;
+    /** 公平调度器，为null时不排队 */
+    private FairScheduler scheduler;
+    /** 与网关的时钟偏差，为null时不校正时间戳 */
+    private ClockSkew clockSkew;
+    /** 签名算法 */
+    private SignatureMethod signatureMethod = SignatureMethod.HMAC_SHA256;
+    /** 计算签名的JCA Provider，为null时使用默认Provider */
+    private Provider signatureProvider;
+    /** 按当前签名算法及Provider构造的签名器，首次签名时创建 */
+    private volatile HmacSigner signer;
     private static final Logger log = LoggerFactory.getLogger(Client.class);
+    private static final Tracer tracer = Tracers.get();
 
     /**
-     * 构造器<br>
+     * 构造器，使用基于Apache HttpClient的传输层<br>
+     * 传输层（连接池、HttpClient）在首次发送请求或预热时才创建，TLS在首次访问https时才初始化，构造Client本身几乎没有开销。<br>
      * 当Client需要访问https的URL时，需要设置keystore文件及其storePassword。keystore文件的生成方法可以参考 《
      * <a href="http://docs.oracle.com/javase/6/docs/technotes/tools/windows/keytool.html">keytool使用文档</a>》
      * 
@@ -93,43 +143,220 @@ public class Client implements AutoCloseable {
      *            是否是测试环境，true为测试环境，false为生产环境
      */
     public Client(String appKey, String appSecret, boolean testEnv) {
-        HttpClientBuilder builder = HttpClients.custom();
-        try {
-            SSLContext sslContext = null;
-            if (testEnv) {
-                sslContext = new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
-                    @Override
-                    public boolean isTrusted(X509Certificate[] chain, String authType) throws CertificateException {
-                        //一概返回true仅在测试环境中，如果生产环境中永远返回true存在安全风险
-                        return true;
-                    }
-                }).build();
-            } else {
-                //若出现错误，请用keytool生成keystore并在本段逻辑中指定该keystore
-                KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
-                ks.load(null, null);
-                sslContext = SSLContexts.custom().loadTrustMaterial(ks, new TrustSelfSignedStrategy()).build();
-            }
-            SSLConnectionSocketFactory sslsf = new SSLConnectionSocketFactory(sslContext, new String[] { "TLSv1" },
-                    null, SSLConnectionSocketFactory.getDefaultHostnameVerifier());
-            builder.setSSLSocketFactory(sslsf);
-        } catch (KeyStoreException | KeyManagementException | NoSuchAlgorithmException | CertificateException
-                | IOException e) {
-            log.error(e.getMessage(), e);
-        }
-        httpClient = builder.setUserAgent(Constants.USER_AGENT).build();
+        this(appKey, appSecret, testEnv, null);
+    }
+
+    /**
+     * 构造器
+     * 
+     * @param appKey
+     *            APP Key，可从API网关中创建的APP信息中获得
+     * @param appSecret
+     *            APP密钥，可从API网关中创建的APP信息中获得
+     * @param testEnv
+     *            是否是测试环境，true为测试环境，false为生产环境
+     * @param transport
+     *            传输层，如{@link Transports#apache(boolean)}、{@link Transports#http2(boolean)}，由Client负责关闭；
+     *            为null时使用{@link Transports#apache(boolean)}，并延迟到首次使用时创建
+     */
+    public Client(String appKey, String appSecret, boolean testEnv, Transport transport) {
         this.appKey = appKey;
         this.appSecret = appSecret;
         this.testEnv = testEnv;
+        this.transport = transport;
+    }
+
+    /**
+     * 设置是否默认GZIP压缩请求Body<br>
+     * 压缩仅对字符串及字节数组类型的Body生效，压缩后会设置Content-Encoding，并按压缩后的字节重新计算Content-MD5。
+     * 调用方需确认所调用的API后端能够处理gzip编码的请求Body。
+     *
+     * @param compressionEnabled
+     *            是否默认压缩
+     * @param compressionThreshold
+     *            压缩阈值，单位字节，小于该长度的Body不压缩
+     */
+    public void setCompression(boolean compressionEnabled, int compressionThreshold) {
+        this.compressionEnabled = compressionEnabled;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    /**
+     * 设置是否默认接受压缩的响应<br>
+     * 开启时请求带上Accept-Encoding: gzip, deflate，压缩的响应在读取Body时流式解压，
+     * 解压后的响应不再包含Content-Encoding、Content-Length及Content-MD5。默认开启。
+     *
+     * @param responseDecompressionEnabled
+     *            是否默认接受压缩的响应
+     */
+    public void setResponseDecompression(boolean responseDecompressionEnabled) {
+        this.responseDecompressionEnabled = responseDecompressionEnabled;
+    }
+
+    /**
+     * @return 响应解压前后的字节数统计
+     */
+    public CompressionStats getResponseCompressionStats() {
+        return responseCompressionStats;
+    }
+
+    /**
+     * 设置响应Body存储<br>
+     * 设置后{@link #execute(Request)}返回前即读完响应Body（已解压），小的Body保留在池化内存中，大的Body溢出到临时文件，
+     * 所有未释放响应占用的内存不超过存储的上限，响应的Entity为
+     * {@link com.aliyun.api.gateway.demo.transport.ResponseBodyStore.StoredBody}。调用方仍须读取或消费响应Body以释放。
+     * 可被{@link Request#getStoreResponse()}覆盖。同一存储可在多个Client间共享。
+     *
+     * @param responseBodyStore
+     *            响应Body存储，为null时不启用
+     */
+    public void setResponseBodyStore(ResponseBodyStore responseBodyStore) {
+        this.responseBodyStore = responseBodyStore;
+    }
+
+    /**
+     * 设置客户端限流器，按本Client的APP Key及请求Path取令牌，取令牌在签名之前，被拒绝的请求不产生签名及网络开销<br>
+     * 网关返回流控错误时限流器自动降速。同一限流器可在多个Client间共享。
+     *
+     * @param rateLimiter
+     *            限流器，为null时不限流
+     * @param blocking
+     *            令牌不足时是否等待：true时等待（设置了截止时间的请求最多等到截止时间），
+     *            false时立即抛出{@link RateLimitedException}
+     */
+    public void setRateLimiter(RateLimiter rateLimiter, boolean blocking) {
+        this.rateLimiter = rateLimiter;
+        this.rateLimitBlocking = blocking;
+    }
+
+    /**
+     * 设置流量录制器，录制每个已发送请求及其响应元数据，用于离线回放（见{@link com.aliyun.api.gateway.demo.replay.TrafficReplayer}）<br>
+     * 录制器由调用方关闭。
+     *
+     * @param recorder
+     *            录制器，为null时停止录制
+     */
+    public void setRecorder(TrafficRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * 设置公平调度器，请求在限流之后、签名之前按{@link Request#getPriority()}及{@link Request#getTenant()}排队，
+     * 响应Body读完或关闭后归还许可，响应Body已读入{@link #setResponseBodyStore(ResponseBodyStore)}时立即归还。
+     * 同一调度器可在多个Client间共享。
+     *
+     * @param scheduler
+     *            调度器，为null时不排队
+     */
+    public void setScheduler(FairScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * 开启时钟偏差校正，{@link SystemHeader#X_CA_TIMESTAMP}按估计的网关时间填写，避免本地时钟漂移导致请求被网关判为过期<br>
+     * 默认不校正；访问同一网关的多个Client可共享一个实例。
+     *
+     * @param clockSkew
+     *            时钟偏差估计，为null时使用本地时间
+     */
+    public void setClockSkew(ClockSkew clockSkew) {
+        this.clockSkew = clockSkew;
+    }
+
+    /**
+     * @return 时钟偏差估计，未开启校正时返回null
+     */
+    public ClockSkew getClockSkew() {
+        return clockSkew;
+    }
+
+    /**
+     * 设置签名算法，默认为{@link SignatureMethod#HMAC_SHA256}<br>
+     * 请求中会带上{@link SystemHeader#X_CA_SIGNATURE_METHOD}，网关按该算法校验签名。
+     *
+     * @param signatureMethod
+     *            签名算法
+     */
+    public void setSignatureMethod(SignatureMethod signatureMethod) {
+        this.signatureMethod = signatureMethod;
+        this.signer = null;
+    }
+
+    /**
+     * 设置计算签名使用的JCA Provider，可在启动时传入{@link HmacSigner#fastestProvider(SignatureMethod)}的测速结果
+     *
+     * @param signatureProvider
+     *            JCA Provider，为null时使用JCA默认优先级最高的Provider
+     */
+    public void setSignatureProvider(Provider signatureProvider) {
+        this.signatureProvider = signatureProvider;
+        this.signer = null;
     }
 
-    /** 关闭HttpClient */
+    /**
+     * @return 按当前签名算法及Provider构造的签名器
+     */
+    private HmacSigner signer() {
+        HmacSigner current = signer;
+        if (current == null) {
+            current = new HmacSigner(signatureMethod, appSecret, signatureProvider);
+            signer = current;
+        }
+        return current;
+    }
+
+    /**
+     * 为逻辑API host注册一组实际地址，发往该host:port的请求将在这些地址间做负载均衡<br>
+     * 分组由Client负责启动与关闭
+     *
+     * @param group
+     *            地址分组
+     * @throws UnknownHostException
+     *             首次解析不到任何地址
+     */
+    public void addEndpointGroup(EndpointGroup group) throws UnknownHostException {
+        group.start();
+        EndpointGroup previous = endpointGroups.put(endpointKey(group.getHost(), group.getPort()), group);
+        if (previous != null && previous != group) {
+            previous.close();
+        }
+    }
+
+    private static String endpointKey(String host, int port) {
+        return host.toLowerCase() + ':' + port;
+    }
+
+    /**
+     * @return 传输层，尚未创建时按构造器参数创建默认传输层
+     */
+    private Transport transport() {
+        Transport current = transport;
+        if (current == null) {
+            synchronized (this) {
+                if (closed) {
+                    throw new IllegalStateException("Client is closed");
+                }
+                current = transport;
+                if (current == null) {
+                    current = Transports.apache(testEnv);
+                    transport = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /** 关闭传输层及地址分组 */
     @Override
-    public void close() {
-        if (httpClient != null) {
+    public synchronized void close() {
+        closed = true;
+        for (EndpointGroup group : endpointGroups.values()) {
+            group.close();
+        }
+        if (transport != null) {
             try {
-                httpClient.close();
-                httpClient = null;
+                transport.close();
+                transport = null;
             } catch (Exception ex) {
                 //leave empty
             }
@@ -144,6 +371,10 @@ public class Client implements AutoCloseable {
      * @return HttpResponse HTTP响应
      * @throws IOException
      *             HTTP访问异常时，含网络等异常，抛出异常
+     * @throws RateLimitedException
+     *             被客户端限流拒绝
+     * @throws com.aliyun.api.gateway.demo.schedule.QueueFullException
+     *             调度器中该优先级的队列已满
      * @throws ClientProtocolException
      *             如果不支持的协议，则抛出异常
      */
@@ -151,53 +382,352 @@ public class Client implements AutoCloseable {
         if (request == null) {
             return null;
         }
-        RequestBuilder requestBuilder = request.getMethod().requestbuilder().setUri(request.getUrl().toString());
-        requestBuilder.setConfig(RequestConfig.custom().setConnectTimeout(getTimeout(request.getTimeout())).build());
-        requestBuilder.addHeader(SystemHeader.X_CA_TIMESTAMP, String.valueOf(System.currentTimeMillis()));
-        requestBuilder.addHeader(SystemHeader.X_CA_NONCE, UUID.randomUUID().toString());
-        requestBuilder.addHeader(SystemHeader.X_CA_KEY, appKey);
-        if (testEnv) {
-            requestBuilder.addHeader(SystemHeader.X_CA_STAGE, "test");
+        TrafficRecorder recorder = this.recorder;
+        long startMillis = recorder == null ? 0 : System.currentTimeMillis();
+        long startNanos = recorder == null ? 0 : System.nanoTime();
+        Deadline deadline = request.getDeadline() > 0 ? Deadline.after(request.getDeadline()) : null;
+        acquirePermit(request.getUrl().getPath(), deadline);
+        FairScheduler scheduler = this.scheduler;
+        if (scheduler == null) {
+            return exchange(request, deadline, recorder, startMillis, startNanos);
         }
-        requestBuilder.build().getAllHeaders();
-        initialBasicHeader(requestBuilder, request.getHeaders(), request.getUrl(), request.getFormBody(),
-                request.getSignHeaderPrefixes());
-        HttpEntity entity = getEntity(request);
-        if (entity != null) {
-            requestBuilder.setEntity(entity);
+        //排队在签名之前，获得许可后才生成时间戳与Nonce
+        FairScheduler.Permit permit = scheduler.acquire(request.getPriority(), request.getTenant(), deadline);
+        HttpResponse response = null;
+        try {
+            response = exchange(request, deadline, recorder, startMillis, startNanos);
+            return response;
+        } finally {
+            permit.releaseOnConsumed(response);
         }
-        return httpClient.execute(requestBuilder.build());
     }
 
     /**
-     * 构建FormEntity
-     * 
-     * @param formParam
-     * @return
+     * 签名并发送请求，记录埋点与录制
      */
-    private UrlEncodedFormEntity buildFormEntity(Map<String, String> formParam, final Charset charset) {
-        if (formParam != null) {
-            List<NameValuePair> nameValuePairList = new ArrayList<NameValuePair>();
-            for (Entry<String, String> entry : formParam.entrySet()) {
-                nameValuePairList.add(new BasicNameValuePair(entry.getKey(), entry.getValue()));
+    private HttpResponse exchange(Request request, Deadline deadline, TrafficRecorder recorder, long startMillis,
+            long startNanos) throws IOException {
+        TransportRequest transportRequest = prepare(request);
+        try {
+            if (deadline != null) {
+                if (deadline.isExpired()) {
+                    throw new RequestTimeoutException(TimeoutPhase.DEADLINE,
+                            "budget of " + deadline.getBudgetMillis() + "ms exhausted before sending", null);
+                }
+                transportRequest.setDeadline(deadline);
+            }
+            Object span = tracer.beginExchange();
+            if (span == null && recorder == null) {
+                return decode(request, send(transportRequest, request.getUrl()));
+            }
+            HttpResponse response = null;
+            Throwable error = null;
+            try {
+                response = send(transportRequest, request.getUrl());
+            } catch (IOException | RuntimeException e) {
+                error = e;
+                throw e;
+            } finally {
+                int status = response == null ? 0 : response.getStatusLine().getStatusCode();
+                long responseBytes = response == null || response.getEntity() == null ? -1
+                        : response.getEntity().getContentLength();
+                if (span != null) {
+                    tracer.endExchange(span, request.getUrl().getPath(), request.getMethod().name(), status,
+                            transportRequest.getBody() == null ? 0 : transportRequest.getBody().getContentLength(),
+                            responseBytes, error);
+                }
+                if (recorder != null) {
+                    recorder.record(request, startMillis, System.nanoTime() - startNanos, status, responseBytes,
+                            error);
+                }
+            }
+            //埋点与录制记录的是传输的字节数，之后再替换为解压流
+            return decode(request, response);
+        } finally {
+            release(transportRequest);
+        }
+    }
+
+    /**
+     * 请求声明了Accept-Encoding时解压响应，设置了响应Body存储时读入存储
+     */
+    private HttpResponse decode(Request request, HttpResponse response) throws IOException {
+        if (isDecompress(request)) {
+            ResponseDecoder.decode(response, responseCompressionStats);
+        }
+        ResponseBodyStore store = responseBodyStore;
+        if (store != null && !Boolean.FALSE.equals(request.getStoreResponse())) {
+            store.store(response);
+        }
+        return response;
+    }
+
+    /**
+     * 判断是否接受压缩的响应，调用方自行设置了Accept-Encoding时由调用方处理
+     */
+    private boolean isDecompress(Request request) {
+        boolean decompress = request.getDecompressResponse() != null ? request.getDecompressResponse()
+                : responseDecompressionEnabled;
+        return decompress && request.getHeaders().get(HttpHeader.HTTP_HEADER_ACCEPT_ENCODING) == null;
+    }
+
+    /**
+     * 从限流器获取令牌
+     *
+     * @throws RateLimitedException
+     *             非阻塞模式下令牌不足，或预计等待时间超过截止时间
+     */
+    private void acquirePermit(String path, Deadline deadline) throws IOException {
+        RateLimiter limiter = rateLimiter;
+        if (limiter == null) {
+            return;
+        }
+        boolean acquired = true;
+        try {
+            if (!rateLimitBlocking) {
+                acquired = limiter.tryAcquire(appKey, path);
+            } else if (deadline != null) {
+                acquired = limiter.tryAcquire(appKey, path, deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+            } else {
+                limiter.acquire(appKey, path);
             }
-            UrlEncodedFormEntity formEntity = new UrlEncodedFormEntity(nameValuePairList, charset);
-            formEntity.setContentType(ContentType.CONTENT_TYPE_FORM);
-            return formEntity;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ex = new InterruptedIOException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+        if (!acquired) {
+            throw new RateLimitedException(path, "client rate limit exceeded for " + path);
+        }
+    }
+
+    /**
+     * 发送请求，以响应的Date头估计时钟偏差，网关返回流控错误时通知限流器
+     */
+    private HttpResponse send(TransportRequest transportRequest, URL url) throws IOException {
+        ClockSkew skew = clockSkew;
+        long sentMillis = skew == null ? 0 : System.currentTimeMillis();
+        HttpResponse response = dispatch(transportRequest, url);
+        if (skew != null) {
+            skew.sample(response, sentMillis, System.currentTimeMillis());
+        }
+        RateLimiter limiter = rateLimiter;
+        if (limiter != null && RateLimiter.isThrottled(response)) {
+            limiter.throttled(appKey, url.getPath());
         }
-        return null;
+        return response;
     }
 
-    private HttpEntity getEntity(Request request) {
-        HttpEntity entity = null;
+    /**
+     * 交给传输层发送，目标host注册了地址分组时选择其中一个地址
+     */
+    private HttpResponse dispatch(TransportRequest transportRequest, URL url) throws IOException {
+        if (endpointGroups.isEmpty()) {
+            return transport().execute(transportRequest);
+        }
+        EndpointGroup group = endpointGroups
+                .get(endpointKey(url.getHost(), url.getPort() > 0 ? url.getPort() : url.getDefaultPort()));
+        Endpoint endpoint = group == null ? null : group.select();
+        if (endpoint == null) {
+            return transport().execute(transportRequest);
+        }
+        transportRequest.setTarget(endpoint.getAddress());
+        long start = group.start(endpoint);
+        boolean success = false;
+        try {
+            HttpResponse response = transport().execute(transportRequest);
+            //网关不可用类的状态码同样计为该地址的失败
+            int status = response.getStatusLine().getStatusCode();
+            success = status != HttpStatus.SC_BAD_GATEWAY && status != HttpStatus.SC_SERVICE_UNAVAILABLE
+                    && status != HttpStatus.SC_GATEWAY_TIMEOUT;
+            return response;
+        } finally {
+            group.complete(endpoint, start, success);
+        }
+    }
+
+    /**
+     * 预热Client，应在接入流量之前调用<br>
+     * 依次预解析域名、按路由预建连接（含TLS握手）、反复执行签名与请求序列化以触发JIT编译，
+     * 最后（可选）发送调用方指定的探测请求以预热传输层的请求处理路径。预热失败不会抛出异常，失败信息记录在报告中。
+     *
+     * @param options
+     *            预热选项
+     * @return 各预热步骤的耗时
+     */
+    public WarmUpReport warmUp(WarmUpOptions options) {
+        WarmUpReport report = new WarmUpReport();
+        long start = System.nanoTime();
+        long step = start;
+        for (URL url : options.getUrls()) {
+            try {
+                report.addResolvedAddresses(InetAddress.getAllByName(url.getHost()).length);
+            } catch (IOException e) {
+                report.addFailure("resolve " + url.getHost() + ": " + e.getMessage());
+            }
+        }
+        report.setDnsNanos(System.nanoTime() - step);
+
+        step = System.nanoTime();
+        if (options.getConnectionsPerRoute() > 0) {
+            for (URL url : options.getUrls()) {
+                URI uri = URI.create(url.toString());
+                //注册了地址分组的host按分组中的每个地址建立连接，与请求选择地址后使用的路由一致
+                EndpointGroup group = endpointGroups
+                        .get(endpointKey(url.getHost(), url.getPort() > 0 ? url.getPort() : url.getDefaultPort()));
+                List<InetSocketAddress> targets = new ArrayList<InetSocketAddress>();
+                if (group != null) {
+                    for (Endpoint endpoint : group.getEndpoints()) {
+                        targets.add(endpoint.getAddress());
+                    }
+                }
+                if (targets.isEmpty()) {
+                    targets.add(null);
+                }
+                for (InetSocketAddress target : targets) {
+                    try {
+                        report.addOpenedConnections(transport().preconnect(uri, target,
+                                options.getConnectionsPerRoute(), getTimeout(options.getTimeout())));
+                    } catch (IOException e) {
+                        report.addFailure("connect " + (target == null ? url.getHost() : target) + ": "
+                                + e.getMessage());
+                    }
+                }
+            }
+        }
+        report.setConnectNanos(System.nanoTime() - step);
+
+        step = System.nanoTime();
+        Map<String, String> form = new HashMap<String, String>();
+        form.put("warmUpKey", "warmUpValue");
+        for (URL url : options.getUrls()) {
+            Request get = new Request(Method.GET, url);
+            Request postForm = Request.newBuilder(Method.POST_FORM, url).setFormBody(form).build();
+            Request postString = Request.newBuilder(Method.POST_STRING, url).setStringBody("{\"warmUp\":true}")
+                    .build();
+            Request postBytes = Request.newBuilder(Method.POST_BYTES, url).setBytesBody(new byte[64]).build();
+            try {
+                for (int i = 0; i < options.getSignIterations(); i++) {
+                    prepare(get);
+                    release(prepare(postForm));
+                    release(prepare(postString));
+                    prepare(postBytes);
+                }
+            } catch (IOException | RuntimeException e) {
+                report.addFailure("sign " + url + ": " + e.getMessage());
+            }
+        }
+        report.setSignNanos(System.nanoTime() - step);
+
+        step = System.nanoTime();
+        for (int i = 0; options.getProbeRequest() != null && i < options.getProbeCount(); i++) {
+            try {
+                HttpResponse response = execute(options.getProbeRequest());
+                EntityUtils.consume(response.getEntity());
+            } catch (IOException e) {
+                report.addFailure("probe: " + e.getMessage());
+            }
+        }
+        report.setProbeNanos(System.nanoTime() - step);
+        report.setTotalNanos(System.nanoTime() - start);
+        log.info("Client warm-up finished: {}", report);
+        return report;
+    }
+
+    /**
+     * 构建并签名待发送的请求，不产生网络访问
+     *
+     * @param request
+     *            request对象
+     * @return 已签名的请求
+     * @throws IOException
+     *             构建Body失败
+     */
+    private TransportRequest prepare(Request request) throws IOException {
+        TransportRequest transportRequest = new TransportRequest(request.getMethod().getHttpMethod(),
+                request.getUri());
+        transportRequest.setTimeout(getTimeout(request.getTimeout()));
+        if (request.getMethod().getContentType() != null) {
+            transportRequest.setHeader(HttpHeader.HTTP_HEADER_CONTENT_TYPE, request.getMethod().getContentType());
+        }
+        ClockSkew skew = clockSkew;
+        transportRequest.setHeader(SystemHeader.X_CA_TIMESTAMP,
+                String.valueOf(skew == null ? System.currentTimeMillis() : skew.currentTimeMillis()));
+        transportRequest.setHeader(SystemHeader.X_CA_NONCE, UUID.randomUUID().toString());
+        transportRequest.setHeader(SystemHeader.X_CA_KEY, appKey);
+        if (testEnv) {
+            transportRequest.setHeader(SystemHeader.X_CA_STAGE, "test");
+        }
+        if (isDecompress(request)) {
+            transportRequest.setHeader(HttpHeader.HTTP_HEADER_ACCEPT_ENCODING, ResponseDecoder.ACCEPT_ENCODING);
+        }
+        RequestBody body = getBody(request);
+        if (request.isComputeContentMD5() && request.getHeaders().get(HttpHeader.HTTP_HEADER_CONTENT_MD5) == null) {
+            //压缩的Body在签名时以压缩后字节的Content-MD5覆盖
+            if (body instanceof EncodedBody) {
+                transportRequest.setHeader(HttpHeader.HTTP_HEADER_CONTENT_MD5, ((EncodedBody) body).getContentMD5());
+            } else if (body != null && !(body instanceof GzipBody) && request.getBytesBody() != null) {
+                transportRequest.setHeader(HttpHeader.HTTP_HEADER_CONTENT_MD5,
+                        MessageDigestUtil.base64AndMD5(request.getBytesBody()));
+            } else if (body instanceof ByteBufferBody) {
+                transportRequest.setHeader(HttpHeader.HTTP_HEADER_CONTENT_MD5,
+                        MessageDigestUtil.base64AndMD5(((ByteBufferBody) body).getBuffer()));
+            } else if (body instanceof FileBody) {
+                //Content-MD5参与签名，需在发送前得到，为此要多流式读取一遍文件
+                transportRequest.setHeader(HttpHeader.HTTP_HEADER_CONTENT_MD5,
+                        MessageDigestUtil.base64AndMD5(((FileBody) body).getPath()));
+            }
+        }
+        Object span = tracer.beginSign();
+        initialBasicHeader(transportRequest, request.getHeaders(), request.getPathAndQuery(),
+                request.signHeaderPrefixes(), body);
+        tracer.endSign(span, request.getUrl().getPath(), request.getMethod().name());
+        transportRequest.setBody(body);
+        return transportRequest;
+    }
+
+    private RequestBody getBody(Request request) throws IOException {
+        RequestBody body = null;
         if (request.getFormBody() != null) {
-            entity = buildFormEntity(request.getFormBody(), Constants.ENCODING);
-        } else if (StringUtils.isNotBlank(request.getStringBody())) {
-            entity = new StringEntity(request.getStringBody(), Constants.ENCODING);
+            body = FormEncoder.encode(request.getPathAndQuery(), request.getFormBody());
+        } else if (request.getStringBody() != null && !request.getStringBody().isEmpty()) {
+            String stringBody = request.getStringBody();
+            //字符数不大于UTF-8编码后的字节数，用于阈值判断可避免额外编码一次
+            if (isCompress(request, stringBody.length())) {
+                body = new GzipBody(GzipUtil.gzip(stringBody));
+            } else {
+                body = Utf8Encoder.encode(stringBody, DEFAULT_STRING_CONTENT_TYPE, request.isComputeContentMD5());
+            }
         } else if (request.getBytesBody() != null) {
-            entity = new ByteArrayEntity(request.getBytesBody());
+            if (isCompress(request, request.getBytesBody().length)) {
+                body = new GzipBody(GzipUtil.gzip(request.getBytesBody()));
+            } else {
+                body = new ByteArrayBody(request.getBytesBody(), null);
+            }
+        } else if (request.getByteBufferBody() != null) {
+            body = new ByteBufferBody(request.getByteBufferBody(), null);
+        } else if (request.getFileBody() != null) {
+            body = new FileBody(request.getFileBody(), null);
+        } else if (request.getStreamBody() != null) {
+            body = new InputStreamBody(request.getStreamBody(), request.getStreamBodyLength(), null,
+                    request.getHeaders().get(HttpHeader.HTTP_HEADER_CONTENT_MD5));
         }
-        return entity;
+        return body;
+    }
+
+    /**
+     * 判断Body是否需要压缩
+     * 
+     * @param request
+     *            请求
+     * @param length
+     *            Body长度
+     * @return 是否压缩
+     */
+    private boolean isCompress(Request request, int length) {
+        boolean compress = request.getCompressBody() != null ? request.getCompressBody() : compressionEnabled;
+        return compress && length >= compressionThreshold;
     }
 
     /**
@@ -216,36 +746,55 @@ public class Client implements AutoCloseable {
     /**
      * 初始化基础Header
      * 
-     * @param requestBuilder
-     *            请求构造器
+     * @param transportRequest
+     *            待发送的请求
      * @param headers
      *            Http头
-     * @param url
-     *            http://host+path+query
-     * @param formParam
-     *            表单参数
+     * @param pathAndQuery
+     *            Path+Query
      * @param signHeaderPrefixes
      *            自定义参与签名Header前缀
-     * @return 基础Header
-     * @throws MalformedURLException
+     * @param body
+     *            请求Body，若为压缩Body则以压缩后的Content-MD5覆盖调用方设置的值
      */
-    private void initialBasicHeader(RequestBuilder requestBuilder, Map<String, String> headers, URL url,
-            Map<String, String> formParam, String[] signHeaderPrefixes) throws MalformedURLException {
-        if (headers != null) {
-            for (Map.Entry<String, String> e : headers.entrySet()) {
-                requestBuilder.removeHeaders(e.getKey()).addHeader(e.getKey(), e.getValue());
-            }
+    private void initialBasicHeader(TransportRequest transportRequest, Headers headers, String pathAndQuery,
+            String[] signHeaderPrefixes, RequestBody body) {
+        for (int i = 0; i < headers.size(); i++) {
+            transportRequest.setHeader(headers.name(i), headers.value(i));
+        }
+        if (body instanceof GzipBody) {
+            transportRequest.setHeader(HttpHeader.HTTP_HEADER_CONTENT_ENCODING, GzipUtil.ENCODING_GZIP);
+            transportRequest.setHeader(HttpHeader.HTTP_HEADER_CONTENT_MD5, ((GzipBody) body).contentMD5);
         }
-        StringBuilder stringBuilder = new StringBuilder();
-        if (StringUtils.isNotBlank(url.getPath())) {
-            stringBuilder.append(url.getPath());
+        String signature;
+        if (body instanceof FormBody) {
+            //表单编码时已一并构建好待签名的Path+Query+FormParams
+            signature = SignUtil.signResource(transportRequest.getMethod(), transportRequest.getHeaders(),
+                    ((FormBody) body).getSignResource(), signer(), signHeaderPrefixes);
+        } else {
+            signature = SignUtil.sign(transportRequest.getMethod(), transportRequest.getHeaders(), pathAndQuery, null,
+                    signer(), signHeaderPrefixes);
         }
-        if (StringUtils.isNotBlank(url.getQuery())) {
-            stringBuilder.append("?");
-            stringBuilder.append(url.getQuery());
+        transportRequest.setHeader(SystemHeader.X_CA_SIGNATURE, signature);
+    }
+
+    /** 归还表单Body占用的线程内缓冲区及字符串Body占用的池化缓冲区 */
+    private static void release(TransportRequest transportRequest) {
+        if (transportRequest.getBody() instanceof FormBody) {
+            ((FormBody) transportRequest.getBody()).release();
+        } else if (transportRequest.getBody() instanceof EncodedBody) {
+            ((EncodedBody) transportRequest.getBody()).release();
+        }
+    }
+
+    /** GZIP压缩后的Body，携带压缩字节的Content-MD5 */
+    private static class GzipBody extends ByteArrayBody {
+        private final String contentMD5;
+
+        GzipBody(CompressedBody body) {
+            super(body.getBytes(), 0, body.getLength(), null);
+            this.contentMD5 = body.getContentMD5();
         }
-        requestBuilder.addHeader(SystemHeader.X_CA_SIGNATURE,
-                SignUtil.sign(requestBuilder, stringBuilder.toString(), formParam, appSecret, signHeaderPrefixes));
     }
 
     @Override
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.utils.DateUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+
+/**
+ * 本地时钟与网关时钟的偏差估计，用于校正{@link com.aliyun.api.gateway.demo.constant.SystemHeader#X_CA_TIMESTAMP}<br>
+ * 以响应的Date头为网关时间：Date精确到秒，取该秒的中点，与请求发出及收到响应时刻的中点相减得到一个样本。
+ * 连续{@link #MIN_SAMPLES}个相差不超过{@link #SAMPLE_TOLERANCE}的样本才会生效，避免单个异常的Date头（如缓存、代理）
+ * 改写时间戳；生效后与当前偏差一致的样本按EWMA平滑，不一致的样本须再次连续一致才会替换当前偏差。
+ * 偏差限制在{@link #getMaxSkewMillis()}以内，往返超过{@link #MAX_SAMPLE_RTT}的样本误差过大而被丢弃。
+ * <p>
+ * 每{@link #SAMPLE_INTERVAL}最多采样一次，其余请求只有一次时间比较；取时间只比本地时间多读一个volatile字段。
+ * 可在访问同一网关的多个Client间共享。
+ */
+public class ClockSkew {
+    /** 默认最大偏差，单位毫秒，远小于网关允许的15分钟时间戳误差 */
+    public static final long DEFAULT_MAX_SKEW = 5 * 60 * 1000;
+    /** 采样间隔，单位毫秒 */
+    public static final long SAMPLE_INTERVAL = 1000;
+    /** 样本的最大往返时间，单位毫秒 */
+    public static final long MAX_SAMPLE_RTT = 5000;
+    /** 偏差生效或变更所需的连续一致样本数 */
+    public static final int MIN_SAMPLES = 3;
+    /** 样本之间视为一致的最大差值，单位毫秒，Date头精确到秒，需容纳1秒的量化误差及往返时间的波动 */
+    public static final long SAMPLE_TOLERANCE = 2000;
+    /** EWMA平滑系数 */
+    public static final double SMOOTHING = 0.2;
+    /** 偏差变化超过该值时记录日志，单位毫秒 */
+    private static final long LOG_THRESHOLD = 1000;
+    private static final String MONTHS = "JanFebMarAprMayJunJulAugSepOctNovDec";
+    private static final Logger log = LoggerFactory.getLogger(ClockSkew.class);
+
+    private final long maxSkew;
+    /** 当前生效的偏差，网关时间减本地时间 */
+    private volatile long skew;
+    private final AtomicLong lastSample = new AtomicLong(Long.MIN_VALUE / 2);
+    private final AtomicLong samples = new AtomicLong();
+    /** 以下字段在采样时加锁访问 */
+    private double estimate;
+    private boolean initialized;
+    /** 与当前偏差不一致的候选偏差，连续一致的样本数达到{@link #MIN_SAMPLES}时生效 */
+    private double candidate;
+    private int candidateSamples;
+    private long loggedSkew;
+
+    public ClockSkew() {
+        this(DEFAULT_MAX_SKEW);
+    }
+
+    /**
+     * @param maxSkew
+     *            最大偏差，单位毫秒
+     */
+    public ClockSkew(long maxSkew) {
+        this.maxSkew = maxSkew;
+    }
+
+    /**
+     * @return 按网关时钟校正后的当前时间，单位毫秒
+     */
+    public long currentTimeMillis() {
+        return System.currentTimeMillis() + skew;
+    }
+
+    /**
+     * 从响应的Date头采样，距上次采样不足{@link #SAMPLE_INTERVAL}时直接返回
+     *
+     * @param response
+     *            响应
+     * @param sentMillis
+     *            发出请求时的本地时间
+     * @param receivedMillis
+     *            收到响应时的本地时间
+     * @return 是否采用了该样本
+     */
+    public boolean sample(HttpResponse response, long sentMillis, long receivedMillis) {
+        long last = lastSample.get();
+        if (receivedMillis - last < SAMPLE_INTERVAL || receivedMillis - sentMillis > MAX_SAMPLE_RTT) {
+            return false;
+        }
+        Header header = response.getFirstHeader(HttpHeader.HTTP_HEADER_DATE);
+        if (header == null || !lastSample.compareAndSet(last, receivedMillis)) {
+            return false;
+        }
+        long date = parseDate(header.getValue());
+        if (date < 0) {
+            return false;
+        }
+        update(date + 500 - (sentMillis + receivedMillis) / 2);
+        return true;
+    }
+
+    /**
+     * 加入一个偏差样本
+     *
+     * @param offset
+     *            网关时间减本地时间，单位毫秒
+     */
+    synchronized void update(long offset) {
+        offset = Math.max(-maxSkew, Math.min(maxSkew, offset));
+        samples.incrementAndGet();
+        if (initialized && Math.abs(offset - estimate) <= SAMPLE_TOLERANCE) {
+            estimate += SMOOTHING * (offset - estimate);
+            candidateSamples = 0;
+        } else {
+            if (candidateSamples > 0 && Math.abs(offset - candidate) <= SAMPLE_TOLERANCE) {
+                candidateSamples++;
+                candidate += (offset - candidate) / candidateSamples;
+            } else {
+                candidate = offset;
+                candidateSamples = 1;
+            }
+            if (candidateSamples < MIN_SAMPLES) {
+                return;
+            }
+            estimate = candidate;
+            initialized = true;
+            candidateSamples = 0;
+        }
+        skew = Math.round(estimate);
+        if (Math.abs(skew - loggedSkew) >= LOG_THRESHOLD) {
+            log.info("Clock skew to gateway changed from {}ms to {}ms", loggedSkew, skew);
+            loggedSkew = skew;
+        }
+    }
+
+    /**
+     * 解析HTTP日期，优先按最常见的IMF-fixdate格式（如Sun, 06 Nov 1994 08:49:37 GMT）直接解析，不产生对象
+     *
+     * @return 毫秒时间戳，无法解析时返回-1
+     */
+    static long parseDate(String value) {
+        if (value.length() == 29 && value.charAt(3) == ',' && value.endsWith(" GMT")) {
+            int day = digits(value, 5, 7);
+            int year = digits(value, 12, 16);
+            int hour = digits(value, 17, 19);
+            int minute = digits(value, 20, 22);
+            int second = digits(value, 23, 25);
+            int month = -1;
+            for (int i = 0; i < 12; i++) {
+                if (value.regionMatches(8, MONTHS, i * 3, 3)) {
+                    month = i + 1;
+                    break;
+                }
+            }
+            if (day > 0 && year >= 0 && hour >= 0 && minute >= 0 && second >= 0 && month > 0) {
+                return (((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute) * 60 + second) * 1000;
+            }
+        }
+        Date date = DateUtils.parseDate(value);
+        return date == null ? -1 : date.getTime();
+    }
+
+    private static int digits(String value, int from, int to) {
+        int result = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /** 公历日期距1970-01-01的天数 */
+    private static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return 当前生效的偏差，网关时间减本地时间，单位毫秒；Date头精确到秒，单个样本的误差约为±(500+往返时间/2)毫秒
+     */
+    public long getSkewMillis() {
+        return skew;
+    }
+
+    /**
+     * @return 已采用的样本数，包括尚未生效的候选样本
+     */
+    public long getSamples() {
+        return samples.get();
+    }
+
+    /**
+     * @return 最大偏差，单位毫秒
+     */
+    public long getMaxSkewMillis() {
+        return maxSkew;
+    }
+
+    @Override
+    public String toString() {
+        return "skew=" + skew + "ms, samples=" + getSamples();
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 不可变的HTTP头集合<br>
+ * 以两个并行数组保存名称与值，按名称查找时不区分大小写；同名Header只保留一个，保持首次设置的顺序。
+ * Header数量通常很少，线性查找比散列表更省内存也更快。
+ */
+public final class Headers {
+    /** 空集合 */
+    public static final Headers EMPTY = new Headers(new String[0], new String[0], 0);
+
+    private final String[] names;
+    private final String[] values;
+    private final int size;
+
+    private Headers(String[] names, String[] values, int size) {
+        this.names = names;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * @param headers
+     *            HTTP头，可为null
+     * @return 不可变的HTTP头集合
+     */
+    public static Headers of(Map<String, String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return EMPTY;
+        }
+        Builder builder = new Builder(headers.size());
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            builder.set(e.getKey(), e.getValue());
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return Header数量
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     *            下标，0至size()-1
+     * @return Header名称
+     */
+    public String name(int index) {
+        checkIndex(index);
+        return names[index];
+    }
+
+    /**
+     * @param index
+     *            下标，0至size()-1
+     * @return Header值
+     */
+    public String value(int index) {
+        checkIndex(index);
+        return values[index];
+    }
+
+    /**
+     * @param name
+     *            Header名称，不区分大小写
+     * @return Header值，不存在时返回null
+     */
+    public String get(String name) {
+        int index = indexOf(names, size, name);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * @return 基于当前集合的构建器，修改构建器不影响当前集合
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    /**
+     * @return 按设置顺序排列的只读Map副本
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> map = new LinkedHashMap<String, String>(size * 2);
+        for (int i = 0; i < size; i++) {
+            map.put(names[i], values[i]);
+        }
+        return Collections.unmodifiableMap(map);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private static int indexOf(String[] names, int size, String name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(names[i]).append(": ").append(values[i]);
+        }
+        return sb.append('}').toString();
+    }
+
+    /**
+     * HTTP头构建器，从已有集合派生时共享其数组，直到第一次修改才复制
+     */
+    public static final class Builder {
+        private String[] names;
+        private String[] values;
+        private int size;
+        /** 数组是否与某个Headers共享 */
+        private boolean shared;
+
+        public Builder() {
+            this(8);
+        }
+
+        Builder(int capacity) {
+            names = new String[capacity];
+            values = new String[capacity];
+        }
+
+        Builder(Headers headers) {
+            names = headers.names;
+            values = headers.values;
+            size = headers.size;
+            shared = true;
+        }
+
+        /**
+         * 设置Header，已存在同名（不区分大小写）Header时替换其名称与值
+         *
+         * @param name
+         *            Header名称，不能为null
+         * @param value
+         *            Header值
+         * @return 当前构建器
+         */
+        public Builder set(String name, String value) {
+            if (name == null) {
+                throw new IllegalArgumentException("Header name cannot be null");
+            }
+            int index = indexOf(names, size, name);
+            if (index < 0) {
+                ensureWritable(size + 1);
+                index = size++;
+            } else {
+                ensureWritable(size);
+            }
+            names[index] = name;
+            values[index] = value;
+            return this;
+        }
+
+        /**
+         * @param name
+         *            Header名称，不区分大小写
+         * @return 当前构建器
+         */
+        public Builder remove(String name) {
+            int index = indexOf(names, size, name);
+            if (index >= 0) {
+                ensureWritable(size);
+                System.arraycopy(names, index + 1, names, index, size - index - 1);
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+                names[size] = null;
+                values[size] = null;
+            }
+            return this;
+        }
+
+        private void ensureWritable(int capacity) {
+            int length;
+            if (capacity > names.length) {
+                length = Math.max(capacity, names.length * 2);
+            } else if (shared) {
+                length = names.length;
+            } else {
+                return;
+            }
+            names = Arrays.copyOf(names, length);
+            values = Arrays.copyOf(values, length);
+            shared = false;
+        }
+
+        /**
+         * @return 不可变的HTTP头集合，之后对构建器的修改不影响该集合
+         */
+        public Headers build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            shared = true;
+            return new Headers(names, values, size);
+        }
+    }
+}
@@ -15,6 +15,7 @@ import com.aliyun.api.gateway.demo.constant.Constants;
 import com.aliyun.api.gateway.demo.constant.ContentType;
 import com.aliyun.api.gateway.demo.constant.HttpHeader;
 import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.transport.ResponseBodyStore;
 import com.aliyun.api.gateway.demo.util.MessageDigestUtil;
 
 /**
@@ -43,6 +44,8 @@ public class Main {
 
     public static void main(String[] args) {
         try (Client client = new Client(APP_KEY, APP_SECRET, TEST_ENV)) {
+            //（可选）响应Body先读入有界的池化内存，超过1MB的溢出到临时文件，避免同时到达的大响应撑爆堆
+            client.setResponseBodyStore(new ResponseBodyStore());
             //请选择合适的方法留下，其余方法删除
             get(client);
             postForm(client);
@@ -99,8 +102,8 @@ public class Main {
         //（可选）响应内容序列化格式,默认application/json,目前仅支持application/json
         headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
 
-        Request request = new Request(Method.POST_FORM, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setFormBody(bodyParam);
+        Request request = Request.newBuilder(Method.POST_FORM, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setFormBody(bodyParam).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -124,13 +127,13 @@ public class Main {
         Map<String, String> headers = new HashMap<String, String>();
         //（可选）响应内容序列化格式,默认application/json,目前仅支持application/json
         headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
-        //（可选）Body MD5,服务端会校验Body内容是否被篡改,建议Body非Form表单时添加此Header
-        headers.put(HttpHeader.HTTP_HEADER_CONTENT_MD5, MessageDigestUtil.base64AndMD5(body));
         //（POST/PUT请求必选）请求Body内容格式
         headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
 
-        Request request = new Request(Method.POST_STRING, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setStringBody(body);
+        //（可选）Body MD5,服务端会校验Body内容是否被篡改,建议Body非Form表单时添加此Header；由Client按发送的字节自动计算，Body只编码一次
+        Request request = Request.newBuilder(Method.POST_STRING, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setStringBody(body).setComputeContentMD5(true)
+                .build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -159,8 +162,8 @@ public class Main {
         //（POST/PUT请求必选）请求Body内容格式
         headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
 
-        Request request = new Request(Method.POST_BYTES, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setBytesBody(bytesBody);
+        Request request = Request.newBuilder(Method.POST_BYTES, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setBytesBody(bytesBody).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -186,8 +189,8 @@ public class Main {
         //（可选）响应内容序列化格式,默认application/json,目前仅支持application/json
         headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
 
-        Request request = new Request(Method.PUT_FORM, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setFormBody(bodyParam);
+        Request request = Request.newBuilder(Method.PUT_FORM, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setFormBody(bodyParam).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -211,13 +214,13 @@ public class Main {
         Map<String, String> headers = new HashMap<String, String>();
         //（可选）响应内容序列化格式,默认application/json,目前仅支持application/json
         headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
-        //（可选）Body MD5,服务端会校验Body内容是否被篡改,建议Body非Form表单时添加此Header
-        headers.put(HttpHeader.HTTP_HEADER_CONTENT_MD5, MessageDigestUtil.base64AndMD5(body));
         //（POST/PUT请求必选）请求Body内容格式
         headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
 
-        Request request = new Request(Method.PUT_STRING, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setStringBody(body);
+        //（可选）Body MD5,服务端会校验Body内容是否被篡改,建议Body非Form表单时添加此Header；由Client按发送的字节自动计算，Body只编码一次
+        Request request = Request.newBuilder(Method.PUT_STRING, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setStringBody(body).setComputeContentMD5(true)
+                .build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -246,8 +249,8 @@ public class Main {
         //（POST/PUT请求必选）请求Body内容格式
         headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
 
-        Request request = new Request(Method.PUT_BYTES, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setBytesBody(bytesBody);
+        Request request = Request.newBuilder(Method.PUT_BYTES, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setBytesBody(bytesBody).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
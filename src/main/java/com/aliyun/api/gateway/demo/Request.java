@@ -18,61 +18,134 @@
  */
 package com.aliyun.api.gateway.demo;
 
+import java.io.File;
+import java.io.InputStream;
+import java.net.URI;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
+import org.apache.commons.lang3.StringUtils;
+
 import com.aliyun.api.gateway.demo.constant.Constants;
 import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.enums.Priority;
 
 /**
- * Request包装Bean
+ * Request包装Bean<br>
+ * 不可变，可在线程间共享；通过{@link #newBuilder(Method, URL)}构建，通过{@link #toBuilder()}派生修改了部分属性的新请求
+ * （如重试时），派生时未修改的Header等属性与原请求共享而不复制。URL在构建时解析一次。
+ * 输入流类型Body只能读取一次，携带它的请求只能发送一次。
  * 
  * @author qiming.wqm 2016/06/24
  */
 public class Request {
 
     /**
-     * （可选）字节数组类型Body体
+     * （可选）字节数组类型Body体，构建后调用方不应再修改该数组
+     */
+    private final byte[] bytesBody;
+
+    /**
+     * （可选）ByteBuffer类型Body体，发送[position, limit)区间的字节，支持只读及直接内存缓冲区
+     */
+    private final ByteBuffer byteBufferBody;
+
+    /**
+     * （可选）是否GZIP压缩Body体，仅对字符串及字节数组类型Body生效，为null时使用{@link Client}的配置
+     */
+    private final Boolean compressBody;
+
+    /**
+     * （可选）未设置Content-MD5时是否按实际发送的字节自动计算，仅对字符串、字节数组、ByteBuffer及文件类型Body生效
      */
-    private byte[] bytesBody;
+    private final boolean computeContentMD5;
 
     /**
-     * （可选）表单参数
+     * （可选）端到端超时时间，单位毫秒，覆盖连接池等待、连接、TLS握手、发送、等待响应及所有重试，
+     * 使用ApacheHttpTransport时还覆盖读取响应Body，设置零表示不限制
      */
-    private Map<String, String> formBody;
+    private final int deadline;
+
+    /**
+     * （可选）是否声明Accept-Encoding接受gzip/deflate压缩的响应并在读取时流式解压，为null时使用{@link Client}的配置
+     */
+    private final Boolean decompressResponse;
+
+    /**
+     * （可选）是否先将响应Body读入{@link Client}的{@link com.aliyun.api.gateway.demo.transport.ResponseBodyStore}，
+     * 为null时使用{@link Client}的配置
+     */
+    private final Boolean storeResponse;
+
+    /**
+     * （可选）文件类型Body体，发送时流式读取
+     */
+    private final Path fileBody;
+
+    /**
+     * （可选）表单参数，只读
+     */
+    private final Map<String, String> formBody;
 
     /**
      * （可选） HTTP头
      */
-    private Map<String, String> headers;
+    private final Headers headers;
 
     /**
      * （必选）请求方法
      */
-    private Method method;
+    private final Method method;
+
+    /**
+     * （可选）优先级，仅在{@link Client}设置了调度器时生效，为null时按普通优先级调度
+     */
+    private final Priority priority;
 
     /**
      * （可选）自定义参与签名Header前缀
      */
-    private String[] signHeaderPrefixes;
+    private final String[] signHeaderPrefixes;
+
+    /**
+     * （可选）输入流类型Body体，发送时流式读取，只能发送一次
+     */
+    private final InputStream streamBody;
+
+    /**
+     * 输入流类型Body体的长度，未知时为-1，将使用chunked传输
+     */
+    private final long streamBodyLength;
 
     /**
      * （可选）字符串Body体
      */
-    private String stringBody;
+    private final String stringBody;
+
+    /**
+     * （可选）租户，调度器在同一优先级内按租户公平分配，为null时归入默认租户
+     */
+    private final String tenant;
 
     /**
      * （必选）超时时间，单位毫秒，设置零默认使用com.aliyun.apigateway.demo.constant.Constants.DEFAULT_TIMEOUT
      */
-    private int timeout;
+    private final int timeout;
 
     /**
      * （必选）Host+Path+Query
      */
-    private URL url;
+    private final URL url;
 
-    public Request() {
-    }
+    /** 由url解析得到 */
+    private final URI uri;
+
+    /** 由url解析得到的Path+Query，用于签名 */
+    private final String pathAndQuery;
 
     public Request(Method method, URL url) {
         this(method, url, Constants.DEFAULT_TIMEOUT, null, null);
@@ -87,22 +160,112 @@ public class Request {
     }
 
     public Request(Method method, URL url, int timeout, Map<String, String> headers, String[] signHeaderPrefixes) {
-        this.method = method;
-        this.url = url;
-        this.timeout = timeout;
-        this.headers = headers;
-        this.signHeaderPrefixes = signHeaderPrefixes;
+        this(newBuilder(method, url).setTimeout(timeout).setHeaders(headers)
+                .setSignHeaderPrefixes(signHeaderPrefixes));
+    }
+
+    private Request(Builder builder) {
+        if (builder.method == null || builder.url == null) {
+            throw new IllegalArgumentException("Parameter method and url cannot be null");
+        }
+        this.method = builder.method;
+        this.url = builder.url;
+        if (builder.url == builder.parsedUrl) {
+            this.uri = builder.uri;
+            this.pathAndQuery = builder.pathAndQuery;
+        } else {
+            this.uri = URI.create(url.toString());
+            this.pathAndQuery = pathAndQuery(url);
+        }
+        this.timeout = builder.timeout;
+        this.deadline = builder.deadline;
+        this.headers = builder.headers.build();
+        this.signHeaderPrefixes = builder.signHeaderPrefixes;
+        this.formBody = builder.formBody;
+        this.stringBody = builder.stringBody;
+        this.bytesBody = builder.bytesBody;
+        this.byteBufferBody = builder.byteBufferBody;
+        this.fileBody = builder.fileBody;
+        this.streamBody = builder.streamBody;
+        this.streamBodyLength = builder.streamBodyLength;
+        this.compressBody = builder.compressBody;
+        this.computeContentMD5 = builder.computeContentMD5;
+        this.decompressResponse = builder.decompressResponse;
+        this.storeResponse = builder.storeResponse;
+        this.priority = builder.priority;
+        this.tenant = builder.tenant;
+    }
+
+    /**
+     * @param method
+     *            请求方法
+     * @param url
+     *            Host+Path+Query
+     * @return 请求构建器
+     */
+    public static Builder newBuilder(Method method, URL url) {
+        return new Builder().setMethod(method).setUrl(url);
+    }
+
+    /**
+     * @return 以当前请求为初始值的构建器
+     */
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    private static String pathAndQuery(URL url) {
+        StringBuilder stringBuilder = new StringBuilder();
+        if (StringUtils.isNotBlank(url.getPath())) {
+            stringBuilder.append(url.getPath());
+        }
+        if (StringUtils.isNotBlank(url.getQuery())) {
+            stringBuilder.append("?");
+            stringBuilder.append(url.getQuery());
+        }
+        return stringBuilder.toString();
     }
 
     public byte[] getBytesBody() {
         return bytesBody;
     }
 
+    /**
+     * @return ByteBuffer类型Body体的独立视图，读取它不影响请求本身
+     */
+    public ByteBuffer getByteBufferBody() {
+        return byteBufferBody == null ? null : byteBufferBody.duplicate();
+    }
+
+    public Boolean getCompressBody() {
+        return compressBody;
+    }
+
+    public boolean isComputeContentMD5() {
+        return computeContentMD5;
+    }
+
+    public int getDeadline() {
+        return deadline;
+    }
+
+    public Boolean getDecompressResponse() {
+        return decompressResponse;
+    }
+
+    public Boolean getStoreResponse() {
+        return storeResponse;
+    }
+
+    public Path getFileBody() {
+        return fileBody;
+    }
+
     public Map<String, String> getFormBody() {
         return formBody;
     }
 
-    public Map<String, String> getHeaders() {
+    public Headers getHeaders() {
         return headers;
     }
 
@@ -110,51 +273,313 @@ public class Request {
         return method;
     }
 
-    public String[] getSignHeaderPrefixes() {
-        return signHeaderPrefixes;
+    public Priority getPriority() {
+        return priority;
     }
 
-    public String getStringBody() {
-        return stringBody;
+    /**
+     * @return 自定义参与签名Header前缀的副本
+     */
+    public String[] getSignHeaderPrefixes() {
+        return signHeaderPrefixes == null ? null : signHeaderPrefixes.clone();
     }
 
-    public int getTimeout() {
-        return timeout;
+    /**
+     * @return 自定义参与签名Header前缀，调用方不得修改
+     */
+    String[] signHeaderPrefixes() {
+        return signHeaderPrefixes;
     }
 
-    public URL getUrl() {
-        return url;
+    public InputStream getStreamBody() {
+        return streamBody;
     }
 
-    public void setBytesBody(byte[] bytesBody) {
-        this.bytesBody = bytesBody;
+    /**
+     * @return 输入流类型Body体的长度，未知时返回-1
+     */
+    public long getStreamBodyLength() {
+        return streamBodyLength;
     }
 
-    public void setFormBody(Map<String, String> formBody) {
-        this.formBody = formBody;
+    public String getStringBody() {
+        return stringBody;
     }
 
-    public void setHeaders(Map<String, String> headers) {
-        this.headers = headers;
+    public String getTenant() {
+        return tenant;
     }
 
-    public void setMethod(Method method) {
-        this.method = method;
+    public int getTimeout() {
+        return timeout;
     }
 
-    public void setSignHeaderPrefixList(String[] signHeaderPrefixes) {
-        this.signHeaderPrefixes = signHeaderPrefixes;
+    public URL getUrl() {
+        return url;
     }
 
-    public void setStringBody(String stringBody) {
-        this.stringBody = stringBody;
+    /**
+     * @return 由URL解析得到的URI
+     */
+    public URI getUri() {
+        return uri;
     }
 
-    public void setTimeout(int timeout) {
-        this.timeout = timeout;
+    /**
+     * @return Path+Query，用于签名
+     */
+    public String getPathAndQuery() {
+        return pathAndQuery;
     }
 
-    public void setUrl(URL url) {
-        this.url = url;
+    /**
+     * Request构建器，非线程安全
+     */
+    public static final class Builder {
+        private Method method;
+        private URL url;
+        /** 已解析的url，url未变化时直接沿用解析结果 */
+        private URL parsedUrl;
+        private URI uri;
+        private String pathAndQuery;
+        private int timeout = Constants.DEFAULT_TIMEOUT;
+        private int deadline;
+        private Headers.Builder headers;
+        private String[] signHeaderPrefixes;
+        private Map<String, String> formBody;
+        private String stringBody;
+        private byte[] bytesBody;
+        private ByteBuffer byteBufferBody;
+        private Path fileBody;
+        private InputStream streamBody;
+        private long streamBodyLength = -1;
+        private Boolean compressBody;
+        private boolean computeContentMD5;
+        private Boolean decompressResponse;
+        private Boolean storeResponse;
+        private Priority priority;
+        private String tenant;
+
+        public Builder() {
+            headers = new Headers.Builder();
+        }
+
+        private Builder(Request request) {
+            method = request.method;
+            url = request.url;
+            parsedUrl = request.url;
+            uri = request.uri;
+            pathAndQuery = request.pathAndQuery;
+            timeout = request.timeout;
+            deadline = request.deadline;
+            headers = request.headers.toBuilder();
+            signHeaderPrefixes = request.signHeaderPrefixes;
+            formBody = request.formBody;
+            stringBody = request.stringBody;
+            bytesBody = request.bytesBody;
+            byteBufferBody = request.byteBufferBody;
+            fileBody = request.fileBody;
+            streamBody = request.streamBody;
+            streamBodyLength = request.streamBodyLength;
+            compressBody = request.compressBody;
+            computeContentMD5 = request.computeContentMD5;
+            decompressResponse = request.decompressResponse;
+            storeResponse = request.storeResponse;
+            priority = request.priority;
+            tenant = request.tenant;
+        }
+
+        public Builder setMethod(Method method) {
+            this.method = method;
+            return this;
+        }
+
+        public Builder setUrl(URL url) {
+            this.url = url;
+            return this;
+        }
+
+        /**
+         * @param timeout
+         *            超时时间，单位毫秒，设置零默认使用{@link Constants#DEFAULT_TIMEOUT}
+         */
+        public Builder setTimeout(int timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * @param deadline
+         *            端到端超时时间，单位毫秒，设置零表示不限制
+         */
+        public Builder setDeadline(int deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+
+        /**
+         * 设置Header，已存在同名（不区分大小写）Header时替换
+         */
+        public Builder setHeader(String name, String value) {
+            headers.set(name, value);
+            return this;
+        }
+
+        /**
+         * 设置多个Header，已存在同名（不区分大小写）Header时替换
+         */
+        public Builder setHeaders(Map<String, String> headers) {
+            if (headers != null) {
+                for (Map.Entry<String, String> e : headers.entrySet()) {
+                    this.headers.set(e.getKey(), e.getValue());
+                }
+            }
+            return this;
+        }
+
+        public Builder removeHeader(String name) {
+            headers.remove(name);
+            return this;
+        }
+
+        public Builder setSignHeaderPrefixes(String... signHeaderPrefixes) {
+            this.signHeaderPrefixes = signHeaderPrefixes == null ? null : signHeaderPrefixes.clone();
+            return this;
+        }
+
+        /**
+         * @param formBody
+         *            表单参数，保存其只读副本
+         */
+        public Builder setFormBody(Map<String, String> formBody) {
+            this.formBody = formBody == null ? null
+                    : Collections.unmodifiableMap(new LinkedHashMap<String, String>(formBody));
+            return this;
+        }
+
+        public Builder setStringBody(String stringBody) {
+            this.stringBody = stringBody;
+            return this;
+        }
+
+        /**
+         * @param bytesBody
+         *            字节数组类型Body体，不复制，构建后调用方不应再修改该数组
+         */
+        public Builder setBytesBody(byte[] bytesBody) {
+            this.bytesBody = bytesBody;
+            return this;
+        }
+
+        /**
+         * @param byteBufferBody
+         *            ByteBuffer类型Body体，发送[position, limit)区间的字节，保存其独立视图，不修改缓冲区的position及limit；
+         *            支持只读及直接内存缓冲区，发送时不复制到堆中，Content-MD5直接在缓冲区上计算，不压缩；
+         *            请求返回前调用方不应修改其内容，需要从头构建Body时可使用
+         *            {@link com.aliyun.api.gateway.demo.transport.DirectBufferAllocator}
+         */
+        public Builder setByteBufferBody(ByteBuffer byteBufferBody) {
+            this.byteBufferBody = byteBufferBody == null ? null : byteBufferBody.duplicate();
+            return this;
+        }
+
+        /**
+         * @param fileBody
+         *            文件类型Body体，发送时流式读取，不读入内存；开启{@link #setComputeContentMD5(boolean)}且未设置Content-MD5时，
+         *            发送前需额外流式读取一遍文件计算
+         */
+        public Builder setFileBody(Path fileBody) {
+            this.fileBody = fileBody;
+            return this;
+        }
+
+        public Builder setFileBody(File fileBody) {
+            return setFileBody(fileBody == null ? null : fileBody.toPath());
+        }
+
+        /**
+         * @param streamBody
+         *            输入流类型Body体，发送时流式读取，发送完成后由调用方关闭；设置了Content-MD5时边发送边校验
+         * @param length
+         *            长度，未知时传-1，将使用chunked传输
+         */
+        public Builder setStreamBody(InputStream streamBody, long length) {
+            this.streamBody = streamBody;
+            this.streamBodyLength = length;
+            return this;
+        }
+
+        public Builder setCompressBody(Boolean compressBody) {
+            this.compressBody = compressBody;
+            return this;
+        }
+
+        /**
+         * @param computeContentMD5
+         *            未设置Content-MD5时是否自动计算；字符串Body只编码一次，Content-MD5与发送的Body共用编码结果，
+         *            调用方不必再自行调用{@link com.aliyun.api.gateway.demo.util.MessageDigestUtil#base64AndMD5(String)}
+         */
+        public Builder setComputeContentMD5(boolean computeContentMD5) {
+            this.computeContentMD5 = computeContentMD5;
+            return this;
+        }
+
+        /**
+         * @param decompressResponse
+         *            是否接受压缩的响应，为null时使用{@link Client}的配置；调用方自行设置了Accept-Encoding时不做处理
+         */
+        public Builder setDecompressResponse(Boolean decompressResponse) {
+            this.decompressResponse = decompressResponse;
+            return this;
+        }
+
+        /**
+         * @param storeResponse
+         *            是否先将响应Body读入{@link Client#setResponseBodyStore}设置的存储，为null时使用{@link Client}的配置；
+         *            需要自行流式处理响应的请求可设置为false
+         */
+        public Builder setStoreResponse(Boolean storeResponse) {
+            this.storeResponse = storeResponse;
+            return this;
+        }
+
+        /**
+         * @param priority
+         *            优先级，见{@link com.aliyun.api.gateway.demo.schedule.FairScheduler}
+         */
+        public Builder setPriority(Priority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * @param tenant
+         *            租户，见{@link com.aliyun.api.gateway.demo.schedule.FairScheduler#setWeight(String, double)}
+         */
+        public Builder setTenant(String tenant) {
+            this.tenant = tenant;
+            return this;
+        }
+
+        /**
+         * @return 不可变的请求
+         * @throws IllegalArgumentException
+         *             未设置method或url，或url不是合法的URI
+         * @throws IllegalStateException
+         *             设置了多种Body，更换Body类型时需先将原Body设置为null
+         */
+        public Request build() {
+            int bodies = (formBody != null ? 1 : 0) + (stringBody != null ? 1 : 0) + (bytesBody != null ? 1 : 0)
+                    + (byteBufferBody != null ? 1 : 0) + (fileBody != null ? 1 : 0) + (streamBody != null ? 1 : 0);
+            if (bodies > 1) {
+                throw new IllegalStateException("Only one of form, string, bytes, byteBuffer, file and stream body "
+                        + "can be set");
+            }
+            Request request = new Request(this);
+            parsedUrl = request.url;
+            uri = request.uri;
+            pathAndQuery = request.pathAndQuery;
+            return request;
+        }
     }
 }
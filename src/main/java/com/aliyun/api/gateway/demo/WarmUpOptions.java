@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * {@link Client#warmUp(WarmUpOptions)}的预热选项
+ */
+public class WarmUpOptions {
+    /** 默认每个路由预建的连接数 */
+    public static final int DEFAULT_CONNECTIONS_PER_ROUTE = 2;
+    /** 默认签名预热次数，足以让签名及序列化路径达到C2编译阈值 */
+    public static final int DEFAULT_SIGN_ITERATIONS = 10000;
+
+    /** 需要预热的API地址，只使用host、port及path */
+    private List<URL> urls = new ArrayList<URL>();
+    /** 每个路由预建的连接数，0表示不预建连接 */
+    private int connectionsPerRoute = DEFAULT_CONNECTIONS_PER_ROUTE;
+    /** 每个地址、每种请求类型的签名及序列化次数 */
+    private int signIterations = DEFAULT_SIGN_ITERATIONS;
+    /** （可选）探测请求，应为无副作用的API调用 */
+    private Request probeRequest;
+    /** 探测请求的发送次数 */
+    private int probeCount;
+    /** 连接超时时间，单位毫秒 */
+    private int timeout = Constants.DEFAULT_TIMEOUT;
+
+    public WarmUpOptions() {
+    }
+
+    public WarmUpOptions(URL... urls) {
+        this.urls = new ArrayList<URL>(Arrays.asList(urls));
+    }
+
+    public List<URL> getUrls() {
+        return urls;
+    }
+
+    public int getConnectionsPerRoute() {
+        return connectionsPerRoute;
+    }
+
+    public int getSignIterations() {
+        return signIterations;
+    }
+
+    public Request getProbeRequest() {
+        return probeRequest;
+    }
+
+    public int getProbeCount() {
+        return probeCount;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setUrls(List<URL> urls) {
+        this.urls = urls;
+    }
+
+    public void setConnectionsPerRoute(int connectionsPerRoute) {
+        this.connectionsPerRoute = connectionsPerRoute;
+    }
+
+    public void setSignIterations(int signIterations) {
+        this.signIterations = signIterations;
+    }
+
+    /**
+     * @param probeRequest
+     *            探测请求，应为无副作用的API调用
+     * @param probeCount
+     *            发送次数
+     */
+    public void setProbe(Request probeRequest, int probeCount) {
+        this.probeRequest = probeRequest;
+        this.probeCount = probeCount;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Client#warmUp(WarmUpOptions)}的预热结果，记录每个步骤的耗时
+ */
+public class WarmUpReport {
+    private long dnsNanos;
+    private long connectNanos;
+    private long signNanos;
+    private long probeNanos;
+    private long totalNanos;
+    private int resolvedAddresses;
+    private int openedConnections;
+    private final List<String> failures = new ArrayList<String>();
+
+    /**
+     * @return 域名解析耗时，单位毫秒
+     */
+    public long getDnsMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(dnsNanos);
+    }
+
+    /**
+     * @return 预建连接（含TLS握手）耗时，单位毫秒
+     */
+    public long getConnectMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(connectNanos);
+    }
+
+    /**
+     * @return 签名及序列化预热耗时，单位毫秒
+     */
+    public long getSignMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(signNanos);
+    }
+
+    /**
+     * @return 探测请求耗时，单位毫秒
+     */
+    public long getProbeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(probeNanos);
+    }
+
+    /**
+     * @return 总耗时，单位毫秒
+     */
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    /**
+     * @return 解析得到的地址数
+     */
+    public int getResolvedAddresses() {
+        return resolvedAddresses;
+    }
+
+    /**
+     * @return 新建立的连接数
+     */
+    public int getOpenedConnections() {
+        return openedConnections;
+    }
+
+    /**
+     * @return 失败的步骤及原因
+     */
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    void setDnsNanos(long dnsNanos) {
+        this.dnsNanos = dnsNanos;
+    }
+
+    void setConnectNanos(long connectNanos) {
+        this.connectNanos = connectNanos;
+    }
+
+    void setSignNanos(long signNanos) {
+        this.signNanos = signNanos;
+    }
+
+    void setProbeNanos(long probeNanos) {
+        this.probeNanos = probeNanos;
+    }
+
+    void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    void addResolvedAddresses(int count) {
+        resolvedAddresses += count;
+    }
+
+    void addOpenedConnections(int count) {
+        openedConnections += count;
+    }
+
+    void addFailure(String failure) {
+        failures.add(failure);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("dns=%dms(%d addresses), connect=%dms(%d connections), sign=%dms, probe=%dms, "
+                + "total=%dms, failures=%s", getDnsMillis(), resolvedAddresses, getConnectMillis(), openedConnections,
+                getSignMillis(), getProbeMillis(), getTotalMillis(), failures);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.batch;
+
+/**
+ * 一个条目所在批次的响应，同一批次的条目共享状态码及响应Body
+ */
+public class BatchResult {
+    private final int index;
+    private final int batchSize;
+    private final int status;
+    private final String body;
+
+    BatchResult(int index, int batchSize, int status, String body) {
+        this.index = index;
+        this.batchSize = batchSize;
+        this.status = status;
+        this.body = body;
+    }
+
+    /**
+     * @return 条目在批次数组中的下标，用于从逐条返回结果的响应中取出本条的结果
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return 批次中的条目数
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return 批次请求的HTTP状态码
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return 状态码是否为2xx
+     */
+    public boolean isSuccess() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * @return 批次请求的响应Body，没有时返回null
+     */
+    public String getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return "status=" + status + ", index=" + index + ", batchSize=" + batchSize;
+    }
+}
@@ -0,0 +1,467 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.batch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.util.Utf8Encoder;
+
+/**
+ * 客户端微批量提交，用于以很高的频率向接受JSON数组的API发送小的POST_STRING/PUT_STRING请求<br>
+ * 调用方把条目（一个JSON值的字符串）放入无锁队列，后台线程在条目数、字节数达到上限或最早的条目等待超过linger时间时，
+ * 将一批条目拼成JSON数组，以模板请求的地址和Header作为一个请求签名发送，签名、Nonce及往返只按批次付出一次。
+ * 每个条目得到一个Future，批次请求完成后以{@link BatchResult}完成，发送失败时以异常完成；非2xx的响应不视为失败，由调用方判断。
+ * <p>
+ * 队列已满时{@link #submit(String)}阻塞，在途批次达到并发上限时后台线程不再取出条目，从而把网关的处理能力反压到调用方。
+ */
+public class BatchSubmitter implements AutoCloseable {
+    /** 默认每批最多条目数 */
+    public static final int DEFAULT_MAX_ITEMS = 100;
+    /** 默认每批最多字节数（UTF-8编码后，不含数组括号及逗号） */
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+    /** 默认最早的条目最多等待的时间，单位毫秒 */
+    public static final long DEFAULT_LINGER_MILLIS = 5;
+    /** 默认队列容量 */
+    public static final int DEFAULT_CAPACITY = 10000;
+    /** 默认最大在途批次数 */
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private final Client client;
+    private final Request template;
+    private final ConcurrentLinkedQueue<Item> queue = new ConcurrentLinkedQueue<Item>();
+    /** 队列剩余容量 */
+    private final Semaphore capacity;
+    /** 在途批次许可 */
+    private final Semaphore inFlight;
+    private final AtomicInteger queuedItems = new AtomicInteger();
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final ExecutorService executor;
+    private final Thread flusher;
+    private volatile int maxItems = DEFAULT_MAX_ITEMS;
+    private volatile int maxBytes = DEFAULT_MAX_BYTES;
+    private volatile long lingerNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_LINGER_MILLIS);
+    private volatile boolean flushRequested;
+    private volatile boolean closed;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+
+    /**
+     * 使用默认的队列容量及并发数
+     *
+     * @see #BatchSubmitter(Client, Request, int, int)
+     */
+    public BatchSubmitter(Client client, Request template) {
+        this(client, template, DEFAULT_CAPACITY, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * @param client
+     *            用于发送的Client，由调用方关闭
+     * @param template
+     *            批次请求的模板，method须为POST_STRING或PUT_STRING，使用其地址、Header等设置，Body被替换为条目数组
+     * @param capacity
+     *            队列容量，已满时提交阻塞
+     * @param concurrency
+     *            最大在途批次数
+     */
+    public BatchSubmitter(Client client, Request template, int capacity, int concurrency) {
+        if (template.getMethod() != Method.POST_STRING && template.getMethod() != Method.PUT_STRING) {
+            throw new IllegalArgumentException("template method must be POST_STRING or PUT_STRING");
+        }
+        if (capacity < 1 || concurrency < 1) {
+            throw new IllegalArgumentException("capacity and concurrency must be positive");
+        }
+        this.client = client;
+        this.template = template;
+        this.capacity = new Semaphore(capacity);
+        this.inFlight = new Semaphore(concurrency);
+        this.executor = Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gateway-batch-sender-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.flusher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        }, "gateway-batch-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * @param maxItems
+     *            每批最多条目数
+     */
+    public void setMaxItems(int maxItems) {
+        if (maxItems < 1) {
+            throw new IllegalArgumentException("maxItems must be positive");
+        }
+        this.maxItems = maxItems;
+    }
+
+    /**
+     * @param maxBytes
+     *            每批最多字节数，单个条目超过该值时单独成批
+     */
+    public void setMaxBytes(int maxBytes) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param lingerMillis
+     *            最早的条目最多等待的时间，单位毫秒，为0时有条目即发送（在途批次达到上限期间到达的条目仍会合并）
+     */
+    public void setLingerMillis(long lingerMillis) {
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    }
+
+    /**
+     * 提交一个条目，队列已满时阻塞等待
+     *
+     * @param item
+     *            一个JSON值，如对象或字符串字面量，原样放入批次数组
+     * @return 批次请求完成时完成的Future
+     * @throws InterruptedException
+     *             等待时被中断
+     * @throws IllegalStateException
+     *             已关闭
+     */
+    public Future<BatchResult> submit(String item) throws InterruptedException {
+        checkNotClosed();
+        capacity.acquire();
+        return enqueue(item);
+    }
+
+    /**
+     * 提交一个条目，队列已满时最多等待timeout
+     *
+     * @return 批次请求完成时完成的Future，超时仍未入队时返回null
+     * @throws InterruptedException
+     *             等待时被中断
+     * @throws IllegalStateException
+     *             已关闭
+     */
+    public Future<BatchResult> trySubmit(String item, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotClosed();
+        if (!capacity.tryAcquire(timeout, unit)) {
+            return null;
+        }
+        return enqueue(item);
+    }
+
+    /**
+     * 立即发送已提交的条目，不等待linger时间，不等待发送完成
+     */
+    public void flush() {
+        flushRequested = true;
+        LockSupport.unpark(flusher);
+    }
+
+    /**
+     * 停止接受新条目，发送已提交的条目并等待所有批次完成
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(flusher);
+        flusher.join();
+        //关闭前已通过检查、在后台线程退出后才入队的条目
+        while (!queue.isEmpty()) {
+            dispatch(drain());
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        //此后入队的条目由提交方在enqueue中撤回；撤回之前被这里取出的条目以异常完成
+        IllegalStateException cause = new IllegalStateException("BatchSubmitter is closed");
+        Item item;
+        while ((item = queue.poll()) != null) {
+            queuedItems.decrementAndGet();
+            queuedBytes.addAndGet(-item.bytes);
+            item.future.complete(null, cause);
+        }
+    }
+
+    /**
+     * @return 已发送的批次数
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * @return 已发送的条目数
+     */
+    public long getItems() {
+        return items.get();
+    }
+
+    /**
+     * @return 发送失败（抛出异常）的批次数
+     */
+    public long getFailedBatches() {
+        return failedBatches.get();
+    }
+
+    /**
+     * @return 队列中等待发送的条目数
+     */
+    public int getQueued() {
+        return queuedItems.get();
+    }
+
+    @Override
+    public String toString() {
+        long batches = getBatches();
+        return String.format("batches=%d, items=%d, itemsPerBatch=%.1f, failedBatches=%d, queued=%d", batches,
+                getItems(), batches == 0 ? 0.0 : getItems() / (double) batches, getFailedBatches(), getQueued());
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("BatchSubmitter is closed");
+        }
+    }
+
+    private Future<BatchResult> enqueue(String item) {
+        Item entry = new Item(item, Utf8Encoder.encodedLength(item), System.nanoTime());
+        queue.offer(entry);
+        int count = queuedItems.incrementAndGet();
+        long bytes = queuedBytes.addAndGet(entry.bytes);
+        //入队后再检查：此时仍未关闭则close()最后一次取出队列时必能看到该条目；已关闭且条目仍在队列中则撤回
+        if (closed && queue.remove(entry)) {
+            queuedItems.decrementAndGet();
+            queuedBytes.addAndGet(-entry.bytes);
+            capacity.release();
+            throw new IllegalStateException("BatchSubmitter is closed");
+        }
+        //队列由空变为非空时唤醒以开始计算linger，达到阈值时唤醒以立即发送
+        if (count == 1 || count >= maxItems || bytes >= maxBytes) {
+            LockSupport.unpark(flusher);
+        }
+        return entry.future;
+    }
+
+    /**
+     * 后台线程：等待批次满足发送条件，取出并交给发送线程
+     */
+    private void flushLoop() {
+        while (true) {
+            Item head = queue.peek();
+            if (head == null) {
+                if (closed) {
+                    return;
+                }
+                flushRequested = false;
+                LockSupport.park(this);
+                continue;
+            }
+            if (!closed && !flushRequested && queuedItems.get() < maxItems && queuedBytes.get() < maxBytes) {
+                long wait = head.enqueuedNanos + lingerNanos - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                    continue;
+                }
+            }
+            dispatch(drain());
+        }
+    }
+
+    /**
+     * 从队首取出一批条目，至少一个
+     */
+    private List<Item> drain() {
+        int limitItems = maxItems;
+        long limitBytes = maxBytes;
+        List<Item> batch = new ArrayList<Item>(Math.min(limitItems, Math.max(1, queuedItems.get())));
+        long bytes = 0;
+        Item item;
+        while (batch.size() < limitItems && (item = queue.peek()) != null) {
+            if (!batch.isEmpty() && bytes + item.bytes > limitBytes) {
+                break;
+            }
+            queue.poll();
+            batch.add(item);
+            bytes += item.bytes;
+        }
+        queuedItems.addAndGet(-batch.size());
+        queuedBytes.addAndGet(-bytes);
+        capacity.release(batch.size());
+        return batch;
+    }
+
+    /**
+     * 在途批次达到上限时等待，交给发送线程
+     */
+    private void dispatch(final List<Item> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        inFlight.acquireUninterruptibly();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        send(batch);
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            fail(batch, e);
+        }
+    }
+
+    private void send(List<Item> batch) {
+        long bytes = 2 + batch.size() - 1;
+        for (Item item : batch) {
+            bytes += item.bytes;
+        }
+        StringBuilder sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE, bytes)).append('[');
+        for (int i = 0; i < batch.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(batch.get(i).value);
+        }
+        sb.append(']');
+        batches.incrementAndGet();
+        items.addAndGet(batch.size());
+        try {
+            HttpResponse response = client.execute(template.toBuilder().setStringBody(sb.toString()).build());
+            String body = response.getEntity() == null ? null
+                    : EntityUtils.toString(response.getEntity(), Constants.ENCODING);
+            int status = response.getStatusLine().getStatusCode();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(new BatchResult(i, batch.size(), status, body), null);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(batch, e);
+        }
+    }
+
+    private void fail(List<Item> batch, Exception e) {
+        failedBatches.incrementAndGet();
+        for (Item item : batch) {
+            item.future.complete(null, e);
+        }
+    }
+
+    /** 队列中的条目 */
+    private static class Item {
+        final String value;
+        final int bytes;
+        final long enqueuedNanos;
+        final ItemFuture future = new ItemFuture();
+
+        Item(String value, int bytes, long enqueuedNanos) {
+            this.value = value;
+            this.bytes = bytes;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /** 由批次结果完成的Future，条目入队后不能取消 */
+    private static class ItemFuture implements Future<BatchResult> {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile BatchResult result;
+        private volatile Throwable error;
+
+        void complete(BatchResult result, Throwable error) {
+            this.result = result;
+            this.error = error;
+            done.countDown();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done.getCount() == 0;
+        }
+
+        @Override
+        public BatchResult get() throws InterruptedException, ExecutionException {
+            done.await();
+            return report();
+        }
+
+        @Override
+        public BatchResult get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!done.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return report();
+        }
+
+        private BatchResult report() throws ExecutionException {
+            if (error != null) {
+                throw new ExecutionException(error);
+            }
+            return result;
+        }
+    }
+}
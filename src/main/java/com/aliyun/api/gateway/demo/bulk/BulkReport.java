@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.bulk;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link BulkRunner#run(java.io.File, java.io.File, java.io.File)}的执行结果，只统计本次运行
+ */
+public class BulkReport {
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong errorStatus = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+    private long totalNanos;
+
+    /**
+     * @return 已发送的请求数
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return 响应状态码为2xx的请求数
+     */
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    /**
+     * @return 响应状态码不是2xx的请求数
+     */
+    public long getErrorStatus() {
+        return errorStatus.get();
+    }
+
+    /**
+     * @return 发送失败（抛出异常）的请求数
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return 无法解析的行数
+     */
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    /**
+     * @return 续跑时因上次运行已完成而跳过的行数
+     */
+    public long getResumed() {
+        return resumed.get();
+    }
+
+    /**
+     * @return 总耗时，单位毫秒
+     */
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    void addSent() {
+        sent.incrementAndGet();
+    }
+
+    void addSucceeded() {
+        succeeded.incrementAndGet();
+    }
+
+    void addErrorStatus() {
+        errorStatus.incrementAndGet();
+    }
+
+    void addFailed() {
+        failed.incrementAndGet();
+    }
+
+    void addInvalid() {
+        invalid.incrementAndGet();
+    }
+
+    void addResumed() {
+        resumed.incrementAndGet();
+    }
+
+    void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "sent=" + getSent() + ", succeeded=" + getSucceeded() + ", errorStatus=" + getErrorStatus()
+                + ", failed=" + getFailed() + ", invalid=" + getInvalid() + ", resumed=" + getResumed() + ", total="
+                + getTotalMillis() + "ms";
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.bulk;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.ratelimit.TokenBucket;
+
+/**
+ * 批量执行JSONL文件中的请求，用于夜间批处理等大批量调用<br>
+ * 输入文件每行一个请求，逐行流式读取，不会整体加载到内存：
+ *
+ * <pre>
+ * {"id":"1","method":"POST_STRING","path":"/items?x=1","headers":{"Content-Type":"application/json"},"body":"{...}"}
+ * </pre>
+ *
+ * method为{@link Method}的名称；path为Path+Query，发往构造时指定的地址；headers、body及id可选。
+ * body按method解释：*_STRING为字符串，*_BYTES为Base64编码的字节，*_FORM为字符串值的对象。
+ * 空行被忽略，无法解析的行作为失败结果写出。
+ * <p>
+ * 请求按给定的并发数及速率经{@link Client#execute(Request)}发送，每个结果完成后即写入输出文件的一行（与输入顺序不一定一致，
+ * 以line对应输入的行号，从1开始）。运行中按间隔将输出刷到磁盘并保存断点，进程崩溃后以相同参数重新运行即从断点续跑：
+ * 已写出结果的行不会重复写出，断点之后发出但未写出结果的请求会被再次发送，因此请求本身应是幂等的。
+ * 全部完成后断点保留，再次运行不会重复发送；要重新执行需删除断点文件。
+ * <p>
+ * 用法：{@code java -cp <classpath> com.aliyun.api.gateway.demo.bulk.BulkRunner
+ * <input.jsonl> <output.jsonl> <baseUrl> <appKey> <appSecret> [concurrency] [permitsPerSecond]}，
+ * 断点文件为输出文件名加.checkpoint。
+ */
+public class BulkRunner {
+    /** 默认最大并发请求数 */
+    public static final int DEFAULT_CONCURRENCY = 16;
+    /** 默认保存断点的间隔，单位毫秒 */
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 5000;
+
+    private final Client client;
+    private final URL baseUrl;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private double permitsPerSecond;
+    private long checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+    private boolean responseBodyIncluded = true;
+
+    /**
+     * @param client
+     *            用于发送的Client，由调用方关闭
+     * @param baseUrl
+     *            请求发往的地址，仅使用其中的协议、host及端口
+     */
+    public BulkRunner(Client client, URL baseUrl) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("Usage: BulkRunner <input.jsonl> <output.jsonl> <baseUrl> <appKey> <appSecret> "
+                    + "[concurrency] [permitsPerSecond]");
+            System.exit(1);
+        }
+        try (Client client = new Client(args[3], args[4], false)) {
+            BulkRunner runner = new BulkRunner(client, new URL(args[2]));
+            if (args.length > 5) {
+                runner.setConcurrency(Integer.parseInt(args[5]));
+            }
+            if (args.length > 6) {
+                runner.setPermitsPerSecond(Double.parseDouble(args[6]));
+            }
+            File output = new File(args[1]);
+            System.out.println(runner.run(new File(args[0]), output, new File(args[1] + ".checkpoint")));
+        }
+    }
+
+    /**
+     * @param concurrency
+     *            最大并发请求数
+     */
+    public void setConcurrency(int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("concurrency must be positive");
+        }
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param permitsPerSecond
+     *            每秒最多发送的请求数，不大于0时不限速
+     */
+    public void setPermitsPerSecond(double permitsPerSecond) {
+        this.permitsPerSecond = permitsPerSecond;
+    }
+
+    /**
+     * @param checkpointIntervalMillis
+     *            保存断点的间隔，单位毫秒
+     */
+    public void setCheckpointIntervalMillis(long checkpointIntervalMillis) {
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+    }
+
+    /**
+     * @param responseBodyIncluded
+     *            是否将响应Body作为字符串写入结果，默认写入；不写入时只读取并丢弃
+     */
+    public void setResponseBodyIncluded(boolean responseBodyIncluded) {
+        this.responseBodyIncluded = responseBodyIncluded;
+    }
+
+    /**
+     * 执行输入文件中的全部请求，所有请求完成后返回；checkpoint存在时从断点续跑
+     *
+     * @param input
+     *            JSONL格式的请求文件
+     * @param output
+     *            JSONL格式的结果文件，不从断点续跑时被覆盖
+     * @param checkpoint
+     *            断点文件
+     * @return 本次运行的结果
+     * @throws IOException
+     *             读取输入、写入结果或断点失败，已保存的断点仍可用于续跑
+     * @throws InterruptedException
+     *             等待时被中断
+     */
+    public BulkReport run(File input, File output, File checkpoint) throws IOException, InterruptedException {
+        String inputPath = input.getAbsolutePath();
+        Path checkpointPath = checkpoint.toPath();
+        Checkpoint resume = Checkpoint.load(checkpointPath);
+        if (resume != null && !inputPath.equals(resume.input)) {
+            throw new IOException("checkpoint " + checkpoint + " belongs to " + resume.input);
+        }
+        long index = resume == null ? 0 : resume.index;
+        long offset = resume == null ? 0 : resume.offset;
+
+        final BulkReport report = new BulkReport();
+        final Semaphore permits = new Semaphore(concurrency);
+        final AtomicReference<IOException> writeError = new AtomicReference<>();
+        TokenBucket bucket = permitsPerSecond > 0 ? new TokenBucket(permitsPerSecond, 1) : null;
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        final ResultJournal journal = new ResultJournal(inputPath, output.toPath(), index, offset,
+                resume == null ? 0 : resume.outputLength);
+        try (LineReader reader = new LineReader(input.toPath(), offset)) {
+            long nextCheckpoint = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(checkpointIntervalMillis);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (writeError.get() != null) {
+                    throw writeError.get();
+                }
+                if (System.nanoTime() - nextCheckpoint >= 0) {
+                    journal.checkpoint(checkpointPath);
+                    nextCheckpoint = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(checkpointIntervalMillis);
+                }
+                final long lineIndex = index++;
+                long lineOffset = offset;
+                offset = reader.getOffset();
+                if (line.trim().isEmpty()) {
+                    journal.advance(index, offset);
+                    continue;
+                }
+                if (resume != null && resume.isDone(lineIndex)) {
+                    report.addResumed();
+                    journal.advance(index, offset);
+                    continue;
+                }
+                final Object id;
+                final Request request;
+                try {
+                    Map<?, ?> spec = (Map<?, ?>) Json.parse(line);
+                    id = spec.get("id");
+                    request = toRequest(spec);
+                } catch (IllegalArgumentException | ClassCastException | IOException e) {
+                    report.addInvalid();
+                    journal.complete(lineIndex, result(lineIndex, null, 0, 0, null, "invalid request: " + e));
+                    journal.advance(index, offset);
+                    continue;
+                }
+                if (bucket != null) {
+                    bucket.acquire();
+                }
+                permits.acquire();
+                journal.submitted(lineIndex, lineOffset);
+                journal.advance(index, offset);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            journal.complete(lineIndex, send(lineIndex, id, request, report));
+                        } catch (IOException e) {
+                            writeError.compareAndSet(null, e);
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            try {
+                if (writeError.get() == null) {
+                    journal.checkpoint(checkpointPath);
+                }
+            } finally {
+                journal.close();
+            }
+        }
+        if (writeError.get() != null) {
+            throw writeError.get();
+        }
+        report.setTotalNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    /**
+     * 发送请求并生成结果行，失败时结果中记录异常
+     */
+    private CharSequence send(long index, Object id, Request request, BulkReport report) {
+        report.addSent();
+        long start = System.nanoTime();
+        try {
+            HttpResponse response = client.execute(request);
+            String body = null;
+            if (responseBodyIncluded && response.getEntity() != null) {
+                body = EntityUtils.toString(response.getEntity(), Constants.ENCODING);
+            } else {
+                EntityUtils.consume(response.getEntity());
+            }
+            int status = response.getStatusLine().getStatusCode();
+            if (status >= 200 && status < 300) {
+                report.addSucceeded();
+            } else {
+                report.addErrorStatus();
+            }
+            Header message = response.getFirstHeader(SystemHeader.X_CA_ERROR_MESSAGE);
+            return result(index, id, status, System.nanoTime() - start, body,
+                    message == null ? null : message.getValue());
+        } catch (IOException | RuntimeException e) {
+            report.addFailed();
+            return result(index, id, 0, System.nanoTime() - start, null, e.toString());
+        }
+    }
+
+    /**
+     * 结果行：{"line":1,"id":"1","status":200,"millis":12,"body":"...","error":"..."}，status为0表示未收到响应
+     */
+    private static CharSequence result(long index, Object id, int status, long nanos, String body, String error) {
+        StringBuilder sb = new StringBuilder(128).append("{\"line\":").append(index + 1);
+        if (id != null) {
+            sb.append(",\"id\":");
+            Json.quote(sb, id.toString());
+        }
+        sb.append(",\"status\":").append(status).append(",\"millis\":").append(TimeUnit.NANOSECONDS.toMillis(nanos));
+        if (body != null) {
+            Json.quote(sb.append(",\"body\":"), body);
+        }
+        if (error != null) {
+            Json.quote(sb.append(",\"error\":"), error);
+        }
+        return sb.append('}');
+    }
+
+    /**
+     * 将一行请求描述转换为{@link Request}
+     *
+     * @throws IllegalArgumentException
+     *             缺少字段或字段类型不正确
+     */
+    private Request toRequest(Map<?, ?> spec) throws IOException {
+        Object methodName = spec.get("method");
+        Object path = spec.get("path");
+        if (!(methodName instanceof String) || !(path instanceof String) || !((String) path).startsWith("/")) {
+            throw new IllegalArgumentException("method and path (starting with /) are required");
+        }
+        Method method = Method.valueOf((String) methodName);
+        Request.Builder builder = Request.newBuilder(method,
+                new URL(baseUrl.getProtocol(), baseUrl.getHost(), baseUrl.getPort(), (String) path));
+        Object headers = spec.get("headers");
+        if (headers != null) {
+            for (Map.Entry<String, String> header : strings(headers, "headers").entrySet()) {
+                builder.setHeader(header.getKey(), header.getValue());
+            }
+        }
+        Object body = spec.get("body");
+        if (body != null) {
+            switch (method) {
+            case POST_FORM:
+            case PUT_FORM:
+                builder.setFormBody(strings(body, "body"));
+                break;
+            case POST_STRING:
+            case PUT_STRING:
+                builder.setStringBody((String) body);
+                break;
+            case POST_BYTES:
+            case PUT_BYTES:
+                builder.setBytesBody(Base64.decodeBase64((String) body));
+                break;
+            default:
+                throw new IllegalArgumentException(method + " does not take a body");
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * 将JSON对象转换为字符串值的Map，数字及布尔值转为字符串
+     */
+    private static Map<String, String> strings(Object object, String field) {
+        if (!(object instanceof Map)) {
+            throw new IllegalArgumentException(field + " must be an object");
+        }
+        Map<String, String> map = new HashMap<>();
+        for (Map.Entry<?, ?> entry : ((Map<?, ?>) object).entrySet()) {
+            Object value = entry.getValue();
+            if (value instanceof Map || value instanceof List) {
+                throw new IllegalArgumentException(field + "." + entry.getKey() + " must be a scalar");
+            }
+            map.put((String) entry.getKey(), value == null ? null : value.toString());
+        }
+        return map;
+    }
+}
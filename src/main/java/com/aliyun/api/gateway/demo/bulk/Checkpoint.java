@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.bulk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * {@link BulkRunner}的断点，以properties格式保存<br>
+ * index之前的行均已完成且结果已写入输出文件的前outputLength字节；index之后已完成的行以区间记录在done中
+ * （如{@code 12-80,82-95}），区间数不超过未完成的请求数，不随某个请求长时间未完成而增长；
+ * 续跑时从输入文件的offset处读取，跳过done中的行，并将输出文件截断到outputLength。
+ */
+class Checkpoint {
+    private static final String INPUT = "input";
+    private static final String INDEX = "index";
+    private static final String OFFSET = "offset";
+    private static final String OUTPUT_LENGTH = "outputLength";
+    private static final String DONE = "done";
+
+    /** 输入文件的绝对路径 */
+    final String input;
+    /** 第一个未完成的行号，从0开始 */
+    final long index;
+    /** 第index行在输入文件中的字节偏移 */
+    final long offset;
+    /** 输出文件中已确认的字节数 */
+    final long outputLength;
+    /** index之后已完成的行号区间，起始行号 -> 结束行号（含） */
+    final TreeMap<Long, Long> done;
+
+    Checkpoint(String input, long index, long offset, long outputLength, TreeMap<Long, Long> done) {
+        this.input = input;
+        this.index = index;
+        this.offset = offset;
+        this.outputLength = outputLength;
+        this.done = done;
+    }
+
+    /**
+     * @return 第line行是否已完成
+     */
+    boolean isDone(long line) {
+        if (line < index) {
+            return true;
+        }
+        Map.Entry<Long, Long> range = done.floorEntry(line);
+        return range != null && line <= range.getValue();
+    }
+
+    /**
+     * 先写入临时文件再原子替换，崩溃时不会留下不完整的断点
+     */
+    void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(INPUT, input);
+        properties.setProperty(INDEX, String.valueOf(index));
+        properties.setProperty(OFFSET, String.valueOf(offset));
+        properties.setProperty(OUTPUT_LENGTH, String.valueOf(outputLength));
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Long, Long> range : done.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(range.getKey());
+            if (!range.getValue().equals(range.getKey())) {
+                sb.append('-').append(range.getValue());
+            }
+        }
+        properties.setProperty(DONE, sb.toString());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, "BulkRunner checkpoint");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return 断点文件不存在时返回null
+     * @throws IOException
+     *             读取失败或内容不完整
+     */
+    static Checkpoint load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        try {
+            TreeMap<Long, Long> done = new TreeMap<>();
+            for (String range : properties.getProperty(DONE, "").split(",")) {
+                if (!range.isEmpty()) {
+                    int dash = range.indexOf('-');
+                    long from = Long.parseLong(dash < 0 ? range : range.substring(0, dash));
+                    done.put(from, dash < 0 ? from : Long.parseLong(range.substring(dash + 1)));
+                }
+            }
+            return new Checkpoint(properties.getProperty(INPUT), Long.parseLong(properties.getProperty(INDEX)),
+                    Long.parseLong(properties.getProperty(OFFSET)),
+                    Long.parseLong(properties.getProperty(OUTPUT_LENGTH)), done);
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IOException("invalid checkpoint " + file, e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.bulk;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * {@link BulkRunner}的输出文件及进度<br>
+ * 写入结果与标记该行完成在同一把锁内进行，生成断点时输出文件与进度一致，续跑时不会重复或遗漏结果。
+ */
+class ResultJournal implements Closeable {
+    private final String input;
+    private final FileChannel channel;
+    private final Writer writer;
+    /** 已提交未完成的行号 -> 字节偏移 */
+    private final TreeMap<Long, Long> pending = new TreeMap<>();
+    /** 已读取到的下一行 */
+    private long nextIndex;
+    private long nextOffset;
+
+    /**
+     * @param output
+     *            输出文件，截断到outputLength后追加
+     */
+    ResultJournal(String input, Path output, long index, long offset, long outputLength) throws IOException {
+        this.input = input;
+        this.channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        if (channel.size() < outputLength) {
+            channel.close();
+            throw new IOException("output " + output + " is shorter than its checkpoint");
+        }
+        channel.truncate(outputLength);
+        channel.position(outputLength);
+        this.writer = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), Constants.ENCODING));
+        this.nextIndex = index;
+        this.nextOffset = offset;
+    }
+
+    /**
+     * 第index行已提交执行
+     */
+    synchronized void submitted(long index, long offset) {
+        pending.put(index, offset);
+    }
+
+    /**
+     * 已读取到nextIndex行（不含），之前的行已提交、已写入结果或无需执行
+     */
+    synchronized void advance(long nextIndex, long nextOffset) {
+        this.nextIndex = nextIndex;
+        this.nextOffset = nextOffset;
+    }
+
+    /**
+     * 写入第index行的结果并标记完成
+     */
+    synchronized void complete(long index, CharSequence result) throws IOException {
+        try {
+            writer.append(result).append('\n');
+        } finally {
+            pending.remove(index);
+        }
+    }
+
+    /**
+     * 将输出刷到磁盘并保存断点
+     */
+    synchronized void checkpoint(Path file) throws IOException {
+        writer.flush();
+        channel.force(false);
+        long index = nextIndex;
+        long offset = nextOffset;
+        //未完成行之间的已完成区间，区间数不超过未完成的行数
+        TreeMap<Long, Long> done = new TreeMap<>();
+        if (!pending.isEmpty()) {
+            Map.Entry<Long, Long> first = pending.firstEntry();
+            index = first.getKey();
+            offset = first.getValue();
+            long from = index + 1;
+            for (Long line : pending.tailMap(index, false).keySet()) {
+                if (line > from) {
+                    done.put(from, line - 1);
+                }
+                from = line + 1;
+            }
+            if (nextIndex > from) {
+                done.put(from, nextIndex - 1);
+            }
+        }
+        new Checkpoint(input, index, offset, channel.position(), done).save(file);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
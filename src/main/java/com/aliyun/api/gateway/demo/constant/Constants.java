@@ -33,6 +33,8 @@ public class Constants {
     public static final String LF = "\n";
     /** 默认请求超时时间,单位毫秒 */
     public static final int DEFAULT_TIMEOUT = 1000;
+    /** 默认请求Body压缩阈值,单位字节,小于该长度的Body压缩收益不足以抵消CPU开销 */
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
     /** 参与签名的系统Header前缀,只有指定前缀的Header才会参与到签名中 */
     public static final String CA_HEADER_TO_SIGN_PREFIX_SYSTEM = "X-Ca-";
 }
@@ -32,4 +32,10 @@ public class HttpHeader {
     public static final String HTTP_HEADER_USER_AGENT = "User-Agent";
     /** 请求Header Date */
     public static final String HTTP_HEADER_DATE = "Date";
+    /** 请求Header Content-Encoding */
+    public static final String HTTP_HEADER_CONTENT_ENCODING = "Content-Encoding";
+    /** 请求Header Accept-Encoding */
+    public static final String HTTP_HEADER_ACCEPT_ENCODING = "Accept-Encoding";
+    /** 响应Header Content-Length */
+    public static final String HTTP_HEADER_CONTENT_LENGTH = "Content-Length";
 }
@@ -24,6 +24,8 @@ package com.aliyun.api.gateway.demo.constant;
 public class SystemHeader {
     /** 签名Header */
     public static final String X_CA_SIGNATURE = "X-Ca-Signature";
+    /** 签名算法，见{@link com.aliyun.api.gateway.demo.enums.SignatureMethod}，未设置时网关按HmacSHA256校验 */
+    public static final String X_CA_SIGNATURE_METHOD = "X-Ca-Signature-Method";
     /** 所有参与签名的Header */
     public static final String X_CA_SIGNATURE_HEADERS = "X-Ca-Signature-Headers";
     /** 请求时间戳 */
@@ -34,4 +36,6 @@ public class SystemHeader {
     public static final String X_CA_KEY = "X-Ca-Key";
     /** 运行环境 */
     public static final String X_CA_STAGE = "X-Ca-Stage";
+    /** 网关返回的错误信息 */
+    public static final String X_CA_ERROR_MESSAGE = "X-Ca-Error-Message";
 }
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.endpoint;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 逻辑API host下的一个实际地址，记录其延迟EWMA、在途请求数及连续失败情况
+ */
+public class Endpoint {
+    /** EWMA平滑系数，越大越偏重最近的样本 */
+    private static final double ALPHA = 0.3;
+
+    private final InetSocketAddress address;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    /** 延迟EWMA，单位纳秒，小于0表示尚无样本 */
+    private volatile double ewmaNanos = -1;
+    private int consecutiveFailures;
+    /** 摘除截止时间（System.nanoTime），0表示未被摘除 */
+    private volatile long ejectedUntil;
+
+    Endpoint(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    long start() {
+        outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    synchronized void complete(long startNanos, boolean success, int failureThreshold, long ejectionNanos) {
+        outstanding.decrementAndGet();
+        long now = System.nanoTime();
+        //失败的请求同样计入延迟，超时的节点会因此被降权
+        long sample = now - startNanos;
+        ewmaNanos = ewmaNanos < 0 ? sample : ewmaNanos + ALPHA * (sample - ewmaNanos);
+        if (success) {
+            consecutiveFailures = 0;
+            ejectedUntil = 0;
+        } else if (++consecutiveFailures >= failureThreshold) {
+            //摘除期满后的首个请求若仍失败则立即再次摘除
+            ejectedUntil = now + ejectionNanos;
+        }
+    }
+
+    boolean isAvailable(long now) {
+        long until = ejectedUntil;
+        return until == 0 || now - until >= 0;
+    }
+
+    double getEwmaNanos() {
+        return ewmaNanos;
+    }
+
+    /**
+     * @return 实际连接的地址
+     */
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    /**
+     * @return 在途请求数
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * @return 延迟EWMA，单位毫秒，尚无样本时返回-1
+     */
+    public double getLatencyMillis() {
+        double ewma = ewmaNanos;
+        return ewma < 0 ? -1 : ewma / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return 当前是否处于摘除状态
+     */
+    public boolean isEjected() {
+        return !isAvailable(System.nanoTime());
+    }
+
+    @Override
+    public String toString() {
+        return address + "{latency=" + String.format("%.2f", getLatencyMillis()) + "ms, outstanding="
+                + outstanding.get() + (isEjected() ? ", ejected" : "") + "}";
+    }
+}
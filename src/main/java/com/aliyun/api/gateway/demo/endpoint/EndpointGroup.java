@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.endpoint;
+
+import java.io.Closeable;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 一个逻辑API host（如xxx.market.alicloudapi.com）对应的一组实际地址<br>
+ * 地址由逻辑host的DNS解析结果或显式指定的目标得到，并在后台定时刷新；
+ * 每次请求按power-of-two-choices随机取两个可用地址，选择延迟EWMA×(在途请求数+1)较小者；
+ * 连续失败的地址被暂时摘除。请求的URL、Host头及签名始终使用逻辑host，只有实际连接的地址被替换。
+ * <p>
+ * 注意JVM自身的DNS缓存（networkaddress.cache.ttl）同样会影响刷新到的结果。
+ */
+public class EndpointGroup implements Closeable {
+    /** 默认刷新间隔，单位毫秒 */
+    public static final long DEFAULT_REFRESH_INTERVAL = 30 * 1000;
+    /** 默认连续失败多少次后摘除 */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    /** 默认摘除时间，单位毫秒 */
+    public static final long DEFAULT_EJECTION_TIME = 30 * 1000;
+    private static final Logger log = LoggerFactory.getLogger(EndpointGroup.class);
+    /** 所有分组共享一个刷新线程 */
+    private static final ScheduledThreadPoolExecutor REFRESHER = createRefresher();
+
+    private final String host;
+    private final int port;
+    /** 待解析的目标，host或host:port */
+    private final List<String> targets;
+    private volatile Endpoint[] endpoints = new Endpoint[0];
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long ejectionTime = DEFAULT_EJECTION_TIME;
+    private ScheduledFuture<?> refreshTask;
+
+    /**
+     * 使用逻辑host的DNS解析结果作为地址
+     *
+     * @param baseUrl
+     *            逻辑API地址，仅使用其中的协议、host及端口
+     */
+    public EndpointGroup(URL baseUrl) {
+        this(baseUrl, baseUrl.getHost());
+    }
+
+    /**
+     * 使用显式指定的目标作为地址
+     *
+     * @param baseUrl
+     *            逻辑API地址，仅使用其中的协议、host及端口
+     * @param targets
+     *            实际目标，格式为host、host:port或http(s)://host:port，未指定端口时使用逻辑地址的端口
+     */
+    public EndpointGroup(URL baseUrl, String... targets) {
+        if (targets == null || targets.length == 0) {
+            throw new IllegalArgumentException("Parameter targets cannot be empty");
+        }
+        this.host = baseUrl.getHost();
+        this.port = baseUrl.getPort() > 0 ? baseUrl.getPort() : baseUrl.getDefaultPort();
+        this.targets = Arrays.asList(targets);
+    }
+
+    /**
+     * 解析一次地址并开始后台定时刷新
+     *
+     * @throws UnknownHostException
+     *             首次解析不到任何地址
+     */
+    public synchronized void start() throws UnknownHostException {
+        refresh();
+        if (refreshTask == null && refreshInterval > 0) {
+            refreshTask = REFRESHER.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        refresh();
+                    } catch (Exception e) {
+                        //保留上一次的解析结果
+                        log.warn("Refresh endpoints of " + host + " failed: " + e.getMessage());
+                    }
+                }
+            }, refreshInterval, refreshInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 重新解析所有目标，已存在地址的统计数据保持不变
+     *
+     * @throws UnknownHostException
+     *             没有解析到任何地址
+     */
+    public void refresh() throws UnknownHostException {
+        Map<InetSocketAddress, Endpoint> existing = new HashMap<InetSocketAddress, Endpoint>();
+        for (Endpoint endpoint : endpoints) {
+            existing.put(endpoint.getAddress(), endpoint);
+        }
+        List<Endpoint> resolved = new ArrayList<Endpoint>();
+        UnknownHostException failure = null;
+        for (String target : targets) {
+            String targetHost = target;
+            int targetPort = port;
+            if (target.contains("://")) {
+                URI uri = URI.create(target);
+                targetHost = uri.getHost();
+                targetPort = uri.getPort() > 0 ? uri.getPort() : port;
+            } else if (target.lastIndexOf(':') > 0 && target.indexOf(':') == target.lastIndexOf(':')) {
+                targetHost = target.substring(0, target.indexOf(':'));
+                targetPort = Integer.parseInt(target.substring(target.indexOf(':') + 1));
+            }
+            try {
+                for (InetAddress address : InetAddress.getAllByName(targetHost)) {
+                    InetSocketAddress socketAddress = new InetSocketAddress(address, targetPort);
+                    Endpoint endpoint = existing.get(socketAddress);
+                    resolved.add(endpoint != null ? endpoint : new Endpoint(socketAddress));
+                }
+            } catch (UnknownHostException e) {
+                failure = e;
+            }
+        }
+        if (resolved.isEmpty()) {
+            throw failure != null ? failure : new UnknownHostException(host);
+        }
+        endpoints = resolved.toArray(new Endpoint[resolved.size()]);
+    }
+
+    /**
+     * power-of-two-choices选择一个地址，所有地址均被摘除时在全部地址中选择
+     *
+     * @return 选中的地址，尚未解析到地址时返回null
+     */
+    public Endpoint select() {
+        Endpoint[] all = endpoints;
+        if (all.length <= 1) {
+            return all.length == 0 ? null : all[0];
+        }
+        long now = System.nanoTime();
+        Endpoint[] candidates = new Endpoint[all.length];
+        int count = 0;
+        for (Endpoint endpoint : all) {
+            if (endpoint.isAvailable(now)) {
+                candidates[count++] = endpoint;
+            }
+        }
+        if (count == 0) {
+            candidates = all;
+            count = all.length;
+        }
+        if (count == 1) {
+            return candidates[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(count);
+        int j = random.nextInt(count - 1);
+        if (j >= i) {
+            j++;
+        }
+        Endpoint a = candidates[i];
+        Endpoint b = candidates[j];
+        double latencyA = a.getEwmaNanos();
+        double latencyB = b.getEwmaNanos();
+        //尚无样本的地址借用对方的延迟，只比较在途请求数
+        if (latencyA < 0) {
+            latencyA = latencyB < 0 ? 1 : latencyB;
+        }
+        if (latencyB < 0) {
+            latencyB = latencyA;
+        }
+        return latencyA * (a.getOutstanding() + 1) <= latencyB * (b.getOutstanding() + 1) ? a : b;
+    }
+
+    /**
+     * 请求发出前调用
+     *
+     * @return 开始时间，传给{@link #complete(Endpoint, long, boolean)}
+     */
+    public long start(Endpoint endpoint) {
+        return endpoint.start();
+    }
+
+    /**
+     * 请求完成后调用，更新延迟与失败统计
+     *
+     * @param endpoint
+     *            {@link #select()}选中的地址
+     * @param startNanos
+     *            {@link #start(Endpoint)}的返回值
+     * @param success
+     *            是否成功
+     */
+    public void complete(Endpoint endpoint, long startNanos, boolean success) {
+        endpoint.complete(startNanos, success, failureThreshold, TimeUnit.MILLISECONDS.toNanos(ejectionTime));
+    }
+
+    /**
+     * @return 当前所有地址
+     */
+    public List<Endpoint> getEndpoints() {
+        return Arrays.asList(endpoints);
+    }
+
+    /**
+     * @return 逻辑host
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return 逻辑端口
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @param refreshInterval
+     *            后台刷新间隔，单位毫秒，不大于0表示不刷新，需在{@link #start()}前设置
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @param failureThreshold
+     *            连续失败多少次后摘除
+     * @param ejectionTime
+     *            摘除时间，单位毫秒
+     */
+    public void setEjection(int failureThreshold, long ejectionTime) {
+        this.failureThreshold = failureThreshold;
+        this.ejectionTime = ejectionTime;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+            refreshTask = null;
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createRefresher() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gateway-endpoint-refresh");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    @Override
+    public String toString() {
+        return host + ':' + port + Arrays.toString(endpoints);
+    }
+}
@@ -30,55 +30,83 @@ import com.aliyun.api.gateway.demo.constant.HttpHeader;
  * @author qiming.wqm 2016/06/24
  */
 public enum Method {
-    GET {
+    GET("GET") {
         @Override
         public RequestBuilder requestbuilder() {
             return RequestBuilder.get();
         }
     },
-    POST_FORM {
+    POST_FORM("POST", ContentType.CONTENT_TYPE_FORM) {
         @Override
         public RequestBuilder requestbuilder() {
             return RequestBuilder.post().addHeader(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_FORM);
         }
     },
-    POST_STRING {
+    POST_STRING("POST") {
         @Override
         public RequestBuilder requestbuilder() {
             return RequestBuilder.post();
         }
     },
-    POST_BYTES {
+    POST_BYTES("POST") {
         @Override
         public RequestBuilder requestbuilder() {
             return RequestBuilder.post();
         }
     },
-    PUT_FORM {
+    PUT_FORM("PUT") {
         @Override
         public RequestBuilder requestbuilder() {
             return RequestBuilder.put();
         }
     },
-    PUT_STRING {
+    PUT_STRING("PUT") {
         @Override
         public RequestBuilder requestbuilder() {
             return RequestBuilder.put();
         }
     },
-    PUT_BYTES {
+    PUT_BYTES("PUT") {
         @Override
         public RequestBuilder requestbuilder() {
             return RequestBuilder.put();
         }
     },
-    DELETE {
+    DELETE("DELETE") {
         @Override
         public RequestBuilder requestbuilder() {
             return RequestBuilder.delete();
         }
     };
 
+    /** HTTP方法名 */
+    private final String httpMethod;
+    /** 签名前预置的Content-Type，可以为null */
+    private final String contentType;
+
+    private Method(String httpMethod) {
+        this(httpMethod, null);
+    }
+
+    private Method(String httpMethod, String contentType) {
+        this.httpMethod = httpMethod;
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return HTTP方法名，如GET、POST
+     */
+    public String getHttpMethod() {
+        return httpMethod;
+    }
+
+    /**
+     * @return 签名前需要预置的Content-Type，与{@link #requestbuilder()}中添加的保持一致，没有时返回null
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
     /**
      * @return 该Method对应的{@link RequestBuilder}
      */
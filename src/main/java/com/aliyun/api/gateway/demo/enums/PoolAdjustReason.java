@@ -0,0 +1,33 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.enums;
+
+/**
+ * 连接池自动调整的原因
+ */
+public enum PoolAdjustReason {
+    /** 等待连接池分配连接的平均时间超过阈值 */
+    POOL_WAIT,
+    /** 有请求在排队等待连接 */
+    PENDING,
+    /** 总连接数已满，连接被频繁关闭并新建 */
+    CHURN,
+    /** 利用率持续偏低 */
+    IDLE
+}
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.enums;
+
+/**
+ * 签名算法，取值即{@link com.aliyun.api.gateway.demo.constant.SystemHeader#X_CA_SIGNATURE_METHOD}的值，也是JCA中的Mac算法名
+ */
+public enum SignatureMethod {
+    /** 网关默认的签名算法 */
+    HMAC_SHA256("HmacSHA256"),
+    HMAC_SHA1("HmacSHA1");
+
+    private final String algorithm;
+
+    private SignatureMethod(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * @return JCA算法名，同时作为X-Ca-Signature-Method的值
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.enums;
+
+/**
+ * 请求超时发生的阶段
+ */
+public enum TimeoutPhase {
+    /** 在客户端调度队列中等待 */
+    QUEUE,
+    /** 等待连接池分配连接 */
+    POOL,
+    /** 建立TCP连接及TLS握手 */
+    CONNECT,
+    /** 发送请求并等待响应 */
+    RESPONSE,
+    /** 端到端时间预算（含重试）已耗尽 */
+    DEADLINE
+}
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.ratelimit;
+
+import java.io.IOException;
+
+/**
+ * 客户端限流拒绝了请求，请求未被签名和发送
+ */
+public class RateLimitedException extends IOException {
+    private static final long serialVersionUID = -3086612734046190826L;
+
+    private final String path;
+
+    public RateLimitedException(String path, String message) {
+        super(message);
+        this.path = path;
+    }
+
+    /**
+     * @return 被限流的API Path
+     */
+    public String getPath() {
+        return path;
+    }
+}
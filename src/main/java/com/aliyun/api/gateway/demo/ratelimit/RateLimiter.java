@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.ratelimit;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+
+/**
+ * 客户端限流器，与网关按APP、按API的流控对齐<br>
+ * 按APP Key+API Path各自维护一个{@link TokenBucket}，速率与突发数按Path配置，未配置的Path使用默认配置，
+ * 均未配置时不限流。网关返回限流错误（见{@link #isThrottled(HttpResponse)}）时，对应令牌桶自动降速。
+ * <p>
+ * Path按URL原样匹配，Path中含变量（如/users/123）的API应在调用方归一化后自行使用{@link TokenBucket}。
+ */
+public class RateLimiter {
+    /** 网关流控错误信息的前缀，如Throttled by APP Flow Control */
+    public static final String THROTTLED_MESSAGE_PREFIX = "Throttled";
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final ConcurrentHashMap<String, Limit> limits = new ConcurrentHashMap<String, Limit>();
+    /** APP Key -> API Path -> 令牌桶，两级查找避免每次请求拼接key */
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, TokenBucket>> buckets =
+            new ConcurrentHashMap<String, ConcurrentHashMap<String, TokenBucket>>();
+    private volatile Limit defaultLimit;
+
+    /**
+     * 设置API的限流配置，该API已有的令牌桶按新配置重建，其他API的令牌及降速状态不受影响
+     *
+     * @param path
+     *            API Path
+     * @param permitsPerSecond
+     *            每秒请求数
+     * @param burst
+     *            允许的突发请求数
+     */
+    public void setLimit(String path, double permitsPerSecond, int burst) {
+        limits.put(path, new Limit(permitsPerSecond, burst));
+        invalidate(path);
+    }
+
+    public void removeLimit(String path) {
+        limits.remove(path);
+        invalidate(path);
+    }
+
+    /**
+     * 设置未单独配置的API使用的限流配置，只重建这些API的令牌桶
+     *
+     * @param permitsPerSecond
+     *            每秒请求数
+     * @param burst
+     *            允许的突发请求数
+     */
+    public void setDefaultLimit(double permitsPerSecond, int burst) {
+        defaultLimit = new Limit(permitsPerSecond, burst);
+        for (ConcurrentHashMap<String, TokenBucket> appBuckets : buckets.values()) {
+            appBuckets.keySet().retainAll(limits.keySet());
+        }
+    }
+
+    /** 丢弃各APP下该API的令牌桶，下次获取时按当前配置重建 */
+    private void invalidate(String path) {
+        for (ConcurrentHashMap<String, TokenBucket> appBuckets : buckets.values()) {
+            appBuckets.remove(path);
+        }
+    }
+
+    /**
+     * @param appKey
+     *            APP Key
+     * @param path
+     *            API Path
+     * @return 对应的令牌桶，不限流时返回null
+     */
+    public TokenBucket getBucket(String appKey, String path) {
+        ConcurrentHashMap<String, TokenBucket> appBuckets = buckets.get(appKey);
+        if (appBuckets == null) {
+            appBuckets = new ConcurrentHashMap<String, TokenBucket>();
+            ConcurrentHashMap<String, TokenBucket> previous = buckets.putIfAbsent(appKey, appBuckets);
+            if (previous != null) {
+                appBuckets = previous;
+            }
+        }
+        TokenBucket bucket = appBuckets.get(path);
+        if (bucket != null) {
+            return bucket;
+        }
+        Limit limit = limits.get(path);
+        if (limit == null) {
+            limit = defaultLimit;
+        }
+        if (limit == null) {
+            return null;
+        }
+        bucket = new TokenBucket(limit.permitsPerSecond, limit.burst);
+        TokenBucket previous = appBuckets.putIfAbsent(path, bucket);
+        return previous != null ? previous : bucket;
+    }
+
+    /**
+     * 获取一个令牌，令牌不足时阻塞等待
+     *
+     * @throws InterruptedException
+     *             等待时被中断
+     */
+    public void acquire(String appKey, String path) throws InterruptedException {
+        TokenBucket bucket = getBucket(appKey, path);
+        if (bucket != null) {
+            bucket.acquire();
+        }
+    }
+
+    /**
+     * @return 立即获取到令牌或不限流时返回true，不会阻塞
+     */
+    public boolean tryAcquire(String appKey, String path) {
+        TokenBucket bucket = getBucket(appKey, path);
+        return bucket == null || bucket.tryAcquire();
+    }
+
+    /**
+     * @return 在timeout内获取到令牌或不限流时返回true，预计等待超过timeout时立即返回false
+     * @throws InterruptedException
+     *             等待时被中断
+     */
+    public boolean tryAcquire(String appKey, String path, long timeout, TimeUnit unit) throws InterruptedException {
+        TokenBucket bucket = getBucket(appKey, path);
+        return bucket == null || bucket.tryAcquire(timeout, unit);
+    }
+
+    /**
+     * 异步获取一个令牌，见{@link TokenBucket#acquireAsync(Runnable)}；不限流时在调用线程上立即执行task
+     *
+     * @return 可用于等待或取消的Future
+     */
+    public Future<?> acquireAsync(String appKey, String path, Runnable task) {
+        TokenBucket bucket = getBucket(appKey, path);
+        if (bucket != null) {
+            return bucket.acquireAsync(task);
+        }
+        FutureTask<Void> future = new FutureTask<Void>(task, null);
+        future.run();
+        return future;
+    }
+
+    /**
+     * 网关对该APP、API返回了限流错误，降低对应令牌桶的速率
+     */
+    public void throttled(String appKey, String path) {
+        TokenBucket bucket = getBucket(appKey, path);
+        if (bucket != null) {
+            bucket.throttled();
+        }
+    }
+
+    /**
+     * 判断是否为网关的流控错误：403或429，且{@link SystemHeader#X_CA_ERROR_MESSAGE}以Throttled开头
+     */
+    public static boolean isThrottled(HttpResponse response) {
+        int status = response.getStatusLine().getStatusCode();
+        if (status != HttpStatus.SC_FORBIDDEN && status != SC_TOO_MANY_REQUESTS) {
+            return false;
+        }
+        Header message = response.getFirstHeader(SystemHeader.X_CA_ERROR_MESSAGE);
+        return message != null && message.getValue() != null
+                && message.getValue().startsWith(THROTTLED_MESSAGE_PREFIX);
+    }
+
+    private static class Limit {
+        final double permitsPerSecond;
+        final int burst;
+
+        Limit(double permitsPerSecond, int burst) {
+            if (!(permitsPerSecond > 0) || burst < 1) {
+                throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+            }
+            this.permitsPerSecond = permitsPerSecond;
+            this.burst = burst;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.ratelimit;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶<br>
+ * 以GCRA（理论到达时间）实现：令牌状态只有一个long，获取令牌是一次CAS，不会成为并发热点。
+ * 空闲时最多累积{@code burst}个令牌；阻塞获取时按到达顺序预约未来的令牌，然后在调用线程上等待。
+ * <p>
+ * 收到网关限流错误时调用{@link #throttled()}将速率减半（最低为配置速率的{@link #MIN_RATE_RATIO}），
+ * 此后每{@link #ADJUST_INTERVAL_NANOS}未再被限流则恢复配置速率的{@link #RECOVERY_RATIO}，直到回到配置速率。
+ */
+public class TokenBucket {
+    /** 自适应降速的下限，相对配置速率 */
+    public static final double MIN_RATE_RATIO = 1.0 / 16;
+    /** 每次恢复的速率，相对配置速率 */
+    public static final double RECOVERY_RATIO = 0.1;
+    /** 两次速率调整的最小间隔，避免同一批在途请求的限流错误把速率连续减半 */
+    public static final long ADJUST_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final double permitsPerSecond;
+    private final int burst;
+    /** 配置速率对应的令牌间隔，单位纳秒 */
+    private final long configuredInterval;
+    private final long maxInterval;
+    /** 当前令牌间隔，单位纳秒 */
+    private final AtomicLong interval;
+    /** 上次降速的时间 */
+    private final AtomicLong lastDecrease;
+    /** 上次恢复速率的时间 */
+    private final AtomicLong lastIncrease;
+    /** 下一个令牌的理论到达时间 */
+    private final AtomicLong tat;
+
+    /**
+     * @param permitsPerSecond
+     *            每秒令牌数
+     * @param burst
+     *            最多累积的令牌数，即允许的突发请求数
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (!(permitsPerSecond > 0) || burst < 1) {
+            throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+        }
+        this.permitsPerSecond = permitsPerSecond;
+        this.burst = burst;
+        this.configuredInterval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.maxInterval = (long) (configuredInterval / MIN_RATE_RATIO);
+        this.interval = new AtomicLong(configuredInterval);
+        long now = System.nanoTime();
+        this.lastDecrease = new AtomicLong(now - ADJUST_INTERVAL_NANOS);
+        this.lastIncrease = new AtomicLong(now - ADJUST_INTERVAL_NANOS);
+        this.tat = new AtomicLong(now);
+    }
+
+    /**
+     * 获取一个令牌，令牌不足时阻塞等待
+     *
+     * @throws InterruptedException
+     *             等待时被中断，已预约的令牌不会归还
+     */
+    public void acquire() throws InterruptedException {
+        sleep(reserve(Long.MAX_VALUE));
+    }
+
+    /**
+     * 立即获取一个令牌
+     *
+     * @return 令牌不足时返回false，不会阻塞
+     */
+    public boolean tryAcquire() {
+        return reserve(0) == 0;
+    }
+
+    /**
+     * 在给定时间内获取一个令牌，预计等待时间超过timeout时立即返回false而不预约令牌
+     *
+     * @param timeout
+     *            最长等待时间
+     * @param unit
+     *            时间单位
+     * @return 是否获取到令牌
+     * @throws InterruptedException
+     *             等待时被中断
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long wait = reserve(Math.max(0, unit.toNanos(timeout)));
+        if (wait < 0) {
+            return false;
+        }
+        sleep(wait);
+        return true;
+    }
+
+    /**
+     * 异步获取一个令牌，不阻塞调用线程<br>
+     * 立即预约令牌，并在令牌到达时于限流器的定时线程上执行task；task不应阻塞，耗时的工作应转交给业务线程池
+     *
+     * @param task
+     *            获取到令牌后执行的任务
+     * @return 可用于等待或取消的Future，取消时已预约的令牌不会归还
+     */
+    public Future<?> acquireAsync(Runnable task) {
+        return Timer.EXECUTOR.schedule(task, reserve(Long.MAX_VALUE), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 预约一个令牌
+     *
+     * @param maxWaitNanos
+     *            可接受的最长等待时间
+     * @return 需要等待的纳秒数，超过maxWaitNanos时返回-1且不预约
+     */
+    long reserve(long maxWaitNanos) {
+        long now = System.nanoTime();
+        long current = interval.get();
+        if (current != configuredInterval) {
+            current = recover(now, current);
+        }
+        long tolerance = (burst - 1) * current;
+        for (;;) {
+            long t = tat.get();
+            long start = t - now > 0 ? t : now;
+            long wait = start - now - tolerance;
+            if (wait < 0) {
+                wait = 0;
+            }
+            if (wait > maxWaitNanos) {
+                return -1;
+            }
+            if (tat.compareAndSet(t, start + current)) {
+                return wait;
+            }
+        }
+    }
+
+    /**
+     * 网关返回限流错误，降低速率
+     */
+    public void throttled() {
+        long now = System.nanoTime();
+        long last = lastDecrease.get();
+        if (now - last < ADJUST_INTERVAL_NANOS || !lastDecrease.compareAndSet(last, now)) {
+            return;
+        }
+        long current = interval.get();
+        long next = Math.min(maxInterval, current * 2);
+        interval.compareAndSet(current, next);
+        //网关已判定超出配额，清空累积的令牌，避免随后立即再突发一批请求
+        long empty = now + (burst - 1) * next;
+        for (;;) {
+            long t = tat.get();
+            if (t - empty >= 0 || tat.compareAndSet(t, empty)) {
+                return;
+            }
+        }
+    }
+
+    private long recover(long now, long current) {
+        long last = lastIncrease.get();
+        if (now - lastDecrease.get() < ADJUST_INTERVAL_NANOS || now - last < ADJUST_INTERVAL_NANOS
+                || !lastIncrease.compareAndSet(last, now)) {
+            return current;
+        }
+        double rate = TimeUnit.SECONDS.toNanos(1) / (double) current + permitsPerSecond * RECOVERY_RATIO;
+        long next = rate >= permitsPerSecond ? configuredInterval
+                : (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        return interval.compareAndSet(current, next) ? next : interval.get();
+    }
+
+    private static void sleep(long nanos) throws InterruptedException {
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    /**
+     * @return 配置的每秒令牌数
+     */
+    public double getPermitsPerSecond() {
+        return permitsPerSecond;
+    }
+
+    /**
+     * @return 当前生效的每秒令牌数，被限流后低于配置值
+     */
+    public double getCurrentRate() {
+        return TimeUnit.SECONDS.toNanos(1) / (double) interval.get();
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /** 所有令牌桶共享一个定时线程，首次异步获取时才创建 */
+    private static class Timer {
+        static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gateway-rate-limiter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        static {
+            EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1f/%.1f qps, burst %d", getCurrentRate(), permitsPerSecond, burst);
+    }
+}
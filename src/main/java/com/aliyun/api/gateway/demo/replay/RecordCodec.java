@@ -0,0 +1,297 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.replay;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.aliyun.api.gateway.demo.Headers;
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.enums.Method;
+
+/**
+ * 录制记录的二进制编解码<br>
+ * 记录只保存调用方构造的请求（不含时间戳、Nonce、签名等由Client生成的Header）及响应的元数据，
+ * 字符串以长度前缀的UTF-8保存，长度为-1表示null。
+ */
+class RecordCodec {
+    static final byte VERSION = 1;
+
+    static final byte BODY_NONE = 0;
+    static final byte BODY_FORM = 1;
+    static final byte BODY_STRING = 2;
+    static final byte BODY_BYTES = 3;
+    static final byte BODY_FILE = 4;
+    /** 有Body但未录制：输入流Body、超过大小限制或未开启Body录制 */
+    static final byte BODY_OMITTED = 5;
+
+    /** 线程内复用的编码缓冲区最多保留的大小 */
+    private static final int MAX_RETAINED = 64 * 1024;
+    private static final ThreadLocal<ByteBuffer[]> SCRATCH = new ThreadLocal<ByteBuffer[]>() {
+        @Override
+        protected ByteBuffer[] initialValue() {
+            return new ByteBuffer[] { ByteBuffer.allocate(1024) };
+        }
+    };
+
+    private ByteBuffer buffer;
+
+    private RecordCodec(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * 将一次请求编码到线程内缓冲区
+     *
+     * @return 已flip的缓冲区，在同一线程下一次编码之前有效
+     */
+    static ByteBuffer encode(Request request, boolean recordBodies, int maxBodyBytes, long startMillis,
+            long durationNanos, int status, long responseLength, Throwable error) {
+        ByteBuffer[] holder = SCRATCH.get();
+        holder[0].clear();
+        RecordCodec codec = new RecordCodec(holder[0]);
+        codec.ensure(64);
+        ByteBuffer b = codec.buffer;
+        b.put(VERSION);
+        b.putLong(startMillis);
+        b.putLong(durationNanos);
+        b.putInt(status);
+        b.putLong(responseLength);
+        codec.putString(error == null ? null : error.getClass().getName() + ": " + error.getMessage());
+        codec.putString(request.getMethod().name());
+        //URI缓存了其字符串形式，URL.toString()每次都会重新拼接
+        codec.putString(request.getUri().toString());
+        codec.ensure(16);
+        codec.buffer.putInt(request.getTimeout());
+        codec.buffer.putInt(request.getDeadline());
+        Boolean compress = request.getCompressBody();
+        codec.buffer.put((byte) (compress == null ? -1 : compress ? 1 : 0));
+        Headers headers = request.getHeaders();
+        codec.buffer.putInt(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            codec.putString(headers.name(i));
+            codec.putString(headers.value(i));
+        }
+        String[] prefixes = request.getSignHeaderPrefixes();
+        codec.ensure(4);
+        codec.buffer.putInt(prefixes == null ? -1 : prefixes.length);
+        if (prefixes != null) {
+            for (String prefix : prefixes) {
+                codec.putString(prefix);
+            }
+        }
+        codec.putBody(request, recordBodies, maxBodyBytes);
+        if (codec.buffer.capacity() <= MAX_RETAINED) {
+            holder[0] = codec.buffer;
+        }
+        codec.buffer.flip();
+        return codec.buffer;
+    }
+
+    private void putBody(Request request, boolean recordBodies, int maxBodyBytes) {
+        ensure(1);
+        if (request.getFormBody() != null) {
+            if (!recordBodies || exceeds(request.getFormBody(), maxBodyBytes)) {
+                buffer.put(BODY_OMITTED);
+                return;
+            }
+            buffer.put(BODY_FORM);
+            ensure(4);
+            buffer.putInt(request.getFormBody().size());
+            for (Map.Entry<String, String> e : request.getFormBody().entrySet()) {
+                putString(e.getKey());
+                putString(e.getValue());
+            }
+        } else if (request.getStringBody() != null) {
+            if (!recordBodies || request.getStringBody().length() > maxBodyBytes) {
+                buffer.put(BODY_OMITTED);
+                return;
+            }
+            buffer.put(BODY_STRING);
+            putString(request.getStringBody());
+        } else if (request.getBytesBody() != null) {
+            if (!recordBodies || request.getBytesBody().length > maxBodyBytes) {
+                buffer.put(BODY_OMITTED);
+                return;
+            }
+            buffer.put(BODY_BYTES);
+            ensure(4 + request.getBytesBody().length);
+            buffer.putInt(request.getBytesBody().length);
+            buffer.put(request.getBytesBody());
+        } else if (request.getByteBufferBody() != null) {
+            //按字节数组录制，回放时以字节数组Body发送
+            ByteBuffer body = request.getByteBufferBody();
+            if (!recordBodies || body.remaining() > maxBodyBytes) {
+                buffer.put(BODY_OMITTED);
+                return;
+            }
+            buffer.put(BODY_BYTES);
+            ensure(4 + body.remaining());
+            buffer.putInt(body.remaining());
+            buffer.put(body);
+        } else if (request.getFileBody() != null) {
+            //只记录路径，回放时文件需仍然存在
+            buffer.put(BODY_FILE);
+            putString(request.getFileBody().toString());
+        } else if (request.getStreamBody() != null) {
+            buffer.put(BODY_OMITTED);
+        } else {
+            buffer.put(BODY_NONE);
+        }
+    }
+
+    /** 与字符串Body一样按字符数估算表单的大小 */
+    private static boolean exceeds(Map<String, String> form, int maxBodyBytes) {
+        long length = 0;
+        for (Map.Entry<String, String> e : form.entrySet()) {
+            length += e.getKey() == null ? 0 : e.getKey().length();
+            length += e.getValue() == null ? 0 : e.getValue().length();
+            if (length > maxBodyBytes) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() < bytes) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+            buffer.flip();
+            grown.put(buffer);
+            buffer = grown;
+        }
+    }
+
+    /** 不经过中间byte[]直接编码为UTF-8 */
+    private void putString(String s) {
+        if (s == null) {
+            ensure(4);
+            buffer.putInt(-1);
+            return;
+        }
+        int length = s.length();
+        ensure(4 + length * 3);
+        int lengthPosition = buffer.position();
+        buffer.putInt(0);
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xc0 | c >> 6));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xf0 | cp >> 18));
+                buffer.put((byte) (0x80 | cp >> 12 & 0x3f));
+                buffer.put((byte) (0x80 | cp >> 6 & 0x3f));
+                buffer.put((byte) (0x80 | cp & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                //孤立的代理字符，与String.getBytes一致替换为'?'
+                buffer.put((byte) '?');
+            } else {
+                buffer.put((byte) (0xe0 | c >> 12));
+                buffer.put((byte) (0x80 | c >> 6 & 0x3f));
+                buffer.put((byte) (0x80 | c & 0x3f));
+            }
+        }
+        buffer.putInt(lengthPosition, buffer.position() - lengthPosition - 4);
+    }
+
+    /**
+     * 解码一条记录
+     *
+     * @param b
+     *            position位于记录开头，limit为记录结尾
+     */
+    static RecordedExchange decode(ByteBuffer b) throws IOException {
+        byte version = b.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported record version " + version);
+        }
+        long startMillis = b.getLong();
+        long durationNanos = b.getLong();
+        int status = b.getInt();
+        long responseLength = b.getLong();
+        String error = getString(b);
+        Method method = Method.valueOf(getString(b));
+        Request.Builder builder = Request.newBuilder(method, new URL(getString(b)));
+        builder.setTimeout(b.getInt());
+        builder.setDeadline(b.getInt());
+        byte compress = b.get();
+        builder.setCompressBody(compress < 0 ? null : compress == 1);
+        int headerCount = b.getInt();
+        for (int i = 0; i < headerCount; i++) {
+            builder.setHeader(getString(b), getString(b));
+        }
+        int prefixCount = b.getInt();
+        if (prefixCount >= 0) {
+            String[] prefixes = new String[prefixCount];
+            for (int i = 0; i < prefixCount; i++) {
+                prefixes[i] = getString(b);
+            }
+            builder.setSignHeaderPrefixes(prefixes);
+        }
+        boolean bodyOmitted = false;
+        byte bodyType = b.get();
+        switch (bodyType) {
+        case BODY_FORM:
+            int size = b.getInt();
+            Map<String, String> form = new LinkedHashMap<String, String>();
+            for (int i = 0; i < size; i++) {
+                form.put(getString(b), getString(b));
+            }
+            builder.setFormBody(form);
+            break;
+        case BODY_STRING:
+            builder.setStringBody(getString(b));
+            break;
+        case BODY_BYTES:
+            byte[] bytes = new byte[b.getInt()];
+            b.get(bytes);
+            builder.setBytesBody(bytes);
+            break;
+        case BODY_FILE:
+            builder.setFileBody(Paths.get(getString(b)));
+            break;
+        case BODY_OMITTED:
+            bodyOmitted = true;
+            break;
+        default:
+            break;
+        }
+        return new RecordedExchange(startMillis, durationNanos, status, responseLength, error, builder.build(),
+                bodyOmitted);
+    }
+
+    private static String getString(ByteBuffer b) {
+        int length = b.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        b.get(bytes);
+        return new String(bytes, Constants.ENCODING);
+    }
+}
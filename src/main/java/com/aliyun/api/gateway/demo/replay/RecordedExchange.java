@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.replay;
+
+import java.util.concurrent.TimeUnit;
+
+import com.aliyun.api.gateway.demo.Request;
+
+/**
+ * 录制日志中的一次请求及其响应元数据
+ */
+public class RecordedExchange {
+    private final long startMillis;
+    private final long durationNanos;
+    private final int status;
+    private final long responseLength;
+    private final String error;
+    private final Request request;
+    private final boolean bodyOmitted;
+
+    RecordedExchange(long startMillis, long durationNanos, int status, long responseLength, String error,
+            Request request, boolean bodyOmitted) {
+        this.startMillis = startMillis;
+        this.durationNanos = durationNanos;
+        this.status = status;
+        this.responseLength = responseLength;
+        this.error = error;
+        this.request = request;
+        this.bodyOmitted = bodyOmitted;
+    }
+
+    /**
+     * @return 请求开始的时间，epoch毫秒
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return 请求耗时，单位毫秒
+     */
+    public double getDurationMillis() {
+        return durationNanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return 响应状态码，请求失败时为0
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @return 响应Body长度，未知时为-1
+     */
+    public long getResponseLength() {
+        return responseLength;
+    }
+
+    /**
+     * @return 请求失败时的异常信息，成功时为null
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return 调用方构造的原始请求，不含Client生成的时间戳、Nonce及签名
+     */
+    public Request getRequest() {
+        return request;
+    }
+
+    /**
+     * @return 原请求有Body但未被录制
+     */
+    public boolean isBodyOmitted() {
+        return bodyOmitted;
+    }
+
+    @Override
+    public String toString() {
+        return request.getMethod() + " " + request.getUrl() + " -> " + (error != null ? error : status);
+    }
+}
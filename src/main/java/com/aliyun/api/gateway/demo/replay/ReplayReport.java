@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.replay;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link TrafficReplayer#replay(java.io.File)}的回放结果
+ */
+public class ReplayReport {
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong statusMismatches = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+    private long totalNanos;
+
+    /**
+     * @return 已发送的请求数
+     */
+    public long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return 发送失败（抛出异常）的请求数
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return 因Body未被录制而跳过的请求数
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * @return 响应状态码与录制时不一致的请求数
+     */
+    public long getStatusMismatches() {
+        return statusMismatches.get();
+    }
+
+    /**
+     * @return 实际发送时间相对录制节奏的最大延后，单位毫秒，较大时说明回放端或被测服务跟不上
+     */
+    public long getMaxLagMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get());
+    }
+
+    /**
+     * @return 总耗时，单位毫秒
+     */
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    void addSent() {
+        sent.incrementAndGet();
+    }
+
+    void addFailed() {
+        failed.incrementAndGet();
+    }
+
+    void addSkipped() {
+        skipped.incrementAndGet();
+    }
+
+    void addStatusMismatch() {
+        statusMismatches.incrementAndGet();
+    }
+
+    void updateLag(long lagNanos) {
+        long max;
+        while (lagNanos > (max = maxLagNanos.get()) && !maxLagNanos.compareAndSet(max, lagNanos)) {
+            //retry
+        }
+    }
+
+    void setTotalNanos(long totalNanos) {
+        this.totalNanos = totalNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "sent=" + getSent() + ", failed=" + getFailed() + ", skipped=" + getSkipped() + ", statusMismatches="
+                + getStatusMismatches() + ", maxLag=" + getMaxLagMillis() + "ms, total=" + getTotalMillis() + "ms";
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 按分段顺序读取{@link TrafficRecorder}写出的录制日志，非线程安全
+ */
+public class TrafficLogReader implements Closeable {
+    private final List<File> segments;
+    private int nextSegment;
+    private MappedByteBuffer buffer;
+
+    /**
+     * @param directory
+     *            日志目录
+     * @throws IOException
+     *             目录不存在
+     */
+    public TrafficLogReader(File directory) throws IOException {
+        if (!directory.isDirectory()) {
+            throw new IOException("Not a directory: " + directory);
+        }
+        this.segments = segments(directory);
+    }
+
+    /**
+     * @return 下一条记录，已读完时返回null
+     * @throws IOException
+     *             读取或解码失败
+     */
+    public RecordedExchange next() throws IOException {
+        for (;;) {
+            if (buffer != null && buffer.remaining() >= 4) {
+                int length = buffer.getInt(buffer.position());
+                if (length > 0 && length <= buffer.remaining() - 4) {
+                    buffer.position(buffer.position() + 4);
+                    ByteBuffer record = buffer.slice();
+                    record.limit(length);
+                    buffer.position(buffer.position() + length);
+                    return RecordCodec.decode(record);
+                }
+            }
+            //当前分段结束
+            if (nextSegment >= segments.size()) {
+                buffer = null;
+                return null;
+            }
+            buffer = map(segments.get(nextSegment++));
+        }
+    }
+
+    private static MappedByteBuffer map(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+    }
+
+    /**
+     * @return 目录下的分段文件，按序号排列
+     */
+    static List<File> segments(File directory) {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.isFile() && segmentIndex(file) >= 0;
+            }
+        });
+        if (files == null) {
+            return Collections.emptyList();
+        }
+        List<File> result = new ArrayList<File>(Arrays.asList(files));
+        Collections.sort(result, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Integer.compare(segmentIndex(a), segmentIndex(b));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * @return 分段序号，不是分段文件时返回-1
+     */
+    static int segmentIndex(File file) {
+        String name = file.getName();
+        if (!name.startsWith(TrafficRecorder.SEGMENT_PREFIX) || !name.endsWith(TrafficRecorder.SEGMENT_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(TrafficRecorder.SEGMENT_PREFIX.length(),
+                    name.length() - TrafficRecorder.SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void close() {
+        buffer = null;
+        nextSegment = segments.size();
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.replay;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aliyun.api.gateway.demo.Request;
+
+/**
+ * 流量录制器，将经过{@link com.aliyun.api.gateway.demo.Client}的请求及响应元数据追加到内存映射的日志文件<br>
+ * 日志按固定大小分段（segment-000000.log、segment-000001.log……），写满后滚动到新的分段。
+ * 请求在调用方线程中编码到线程内缓冲区，然后通过CAS在当前分段中预留空间并直接拷贝到映射内存，
+ * 不加锁也不产生系统调用；只有滚动分段时加锁。
+ * <p>
+ * 每条记录为4字节长度前缀加记录内容，长度在内容写完后最后写入，读取时遇到长度为0即视为分段结束。
+ * 分段文件按满额预分配（稀疏文件），录制器关闭后才能完整读取。响应Body不会被录制，请求Body只在构造时开启后才录制。
+ */
+public class TrafficRecorder implements Closeable {
+    /** 默认分段大小，单位字节 */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /** 默认单个Body最大录制长度，单位字节，超过的Body不录制 */
+    public static final int DEFAULT_MAX_BODY_BYTES = 64 * 1024;
+    static final String SEGMENT_PREFIX = "segment-";
+    static final String SEGMENT_SUFFIX = ".log";
+    private static final Logger log = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private final File directory;
+    private final int segmentSize;
+    private final boolean recordBodies;
+    private final int maxBodyBytes;
+    private volatile Segment current;
+    private volatile boolean closed;
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * 使用默认分段大小，不录制请求Body（Body可能含敏感数据，需要时用完整的构造器显式开启）
+     *
+     * @param directory
+     *            日志目录，不存在时创建
+     * @throws IOException
+     *             创建分段失败
+     */
+    public TrafficRecorder(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, false, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    /**
+     * @param directory
+     *            日志目录，不存在时创建；已有分段不会被覆盖，新分段从已有的最大序号之后开始
+     * @param segmentSize
+     *            分段大小，单位字节
+     * @param recordBodies
+     *            是否录制请求Body
+     * @param maxBodyBytes
+     *            单个Body最大录制长度，单位字节
+     * @throws IOException
+     *             创建分段失败
+     */
+    public TrafficRecorder(File directory, int segmentSize, boolean recordBodies, int maxBodyBytes)
+            throws IOException {
+        if (segmentSize < 1024) {
+            throw new IllegalArgumentException("segmentSize must be at least 1024");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.recordBodies = recordBodies;
+        this.maxBodyBytes = maxBodyBytes;
+        int next = 0;
+        for (File file : TrafficLogReader.segments(directory)) {
+            next = Math.max(next, TrafficLogReader.segmentIndex(file) + 1);
+        }
+        this.current = openSegment(next);
+    }
+
+    /**
+     * 录制一次请求，录制失败只记录日志，不影响请求
+     *
+     * @param request
+     *            调用方构造的请求
+     * @param startMillis
+     *            请求开始时间，epoch毫秒
+     * @param durationNanos
+     *            请求耗时
+     * @param status
+     *            响应状态码，失败时为0
+     * @param responseLength
+     *            响应Body长度，未知时为-1
+     * @param error
+     *            请求失败的异常，成功时为null
+     */
+    public void record(Request request, long startMillis, long durationNanos, int status, long responseLength,
+            Throwable error) {
+        if (closed) {
+            return;
+        }
+        ByteBuffer record = RecordCodec.encode(request, recordBodies, maxBodyBytes, startMillis, durationNanos,
+                status, responseLength, error);
+        int length = record.remaining();
+        int total = 4 + length;
+        if (total > segmentSize) {
+            dropped.incrementAndGet();
+            return;
+        }
+        for (;;) {
+            Segment segment = current;
+            int offset = segment.reserve(total, segmentSize);
+            if (offset >= 0) {
+                ByteBuffer target = segment.buffer.duplicate();
+                target.position(offset + 4);
+                target.put(record);
+                //长度最后写入，作为记录完整的标志
+                segment.buffer.putInt(offset, length);
+                recorded.incrementAndGet();
+                return;
+            }
+            try {
+                roll(segment);
+            } catch (IOException e) {
+                dropped.incrementAndGet();
+                log.warn("Failed to roll traffic log segment: {}", e.getMessage());
+                return;
+            }
+            if (closed) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void roll(Segment full) throws IOException {
+        if (current == full && !closed) {
+            current = openSegment(full.index + 1);
+            //写满的分段不再预留新记录，刷到磁盘；此时仍在拷贝的记录随后由操作系统写回
+            full.buffer.force();
+        }
+    }
+
+    private Segment openSegment(int index) throws IOException {
+        File file = new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            //映射在通道关闭后仍然有效
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            return new Segment(index, buffer);
+        }
+    }
+
+    /**
+     * @return 已录制的记录数
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    /**
+     * @return 因超过分段大小或滚动失败而丢弃的记录数
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 停止录制并将当前分段刷到磁盘<br>
+     * 与close并发的{@link #record}可能在刷盘之后仍写入最后一个分段，这些记录由操作系统随映射写回，不保证已刷盘
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current.buffer.force();
+    }
+
+    private static class Segment {
+        final int index;
+        final MappedByteBuffer buffer;
+        /** 下一条记录的起始位置 */
+        final AtomicInteger position = new AtomicInteger();
+
+        Segment(int index, MappedByteBuffer buffer) {
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return 预留到的起始位置，剩余空间不足时返回-1
+         */
+        int reserve(int bytes, int capacity) {
+            for (;;) {
+                int offset = position.get();
+                if (capacity - offset < bytes) {
+                    return -1;
+                }
+                if (position.compareAndSet(offset, offset + bytes)) {
+                    return offset;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.replay;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.aliyun.api.gateway.demo.Request;
+
+/**
+ * 按录制时的节奏回放{@link TrafficRecorder}录制的流量<br>
+ * 每条记录经{@link Client#execute(Request)}重新发送，因此使用新的时间戳、Nonce并以回放Client的密钥重新签名。
+ * 可将请求改发到本地桩服务，并按倍速加快回放。原请求Body未被录制的记录会被跳过。
+ * <p>
+ * 用法：{@code java -cp <classpath> com.aliyun.api.gateway.demo.replay.TrafficReplayer
+ * <dir> <appKey> <appSecret> [targetBaseUrl] [speed]}
+ */
+public class TrafficReplayer {
+    /** 默认最大并发请求数 */
+    public static final int DEFAULT_CONCURRENCY = 16;
+
+    private final Client client;
+    private double speed = 1;
+    private URL target;
+    private int concurrency = DEFAULT_CONCURRENCY;
+
+    /**
+     * @param client
+     *            用于发送的Client，由调用方关闭
+     */
+    public TrafficReplayer(Client client) {
+        this.client = client;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: TrafficReplayer <dir> <appKey> <appSecret> [targetBaseUrl] [speed]");
+            System.exit(1);
+        }
+        try (Client client = new Client(args[1], args[2], false)) {
+            TrafficReplayer replayer = new TrafficReplayer(client);
+            if (args.length > 3) {
+                replayer.setTarget(new URL(args[3]));
+            }
+            if (args.length > 4) {
+                replayer.setSpeed(Double.parseDouble(args[4]));
+            }
+            System.out.println(replayer.replay(new File(args[0])));
+        }
+    }
+
+    /**
+     * @param speed
+     *            回放倍速，2表示以两倍速率回放，不大于0时不等待、尽快发送
+     */
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    /**
+     * @param target
+     *            改发的目标，仅使用其中的协议、host及端口，为null时发往录制时的地址
+     */
+    public void setTarget(URL target) {
+        this.target = target;
+    }
+
+    /**
+     * @param concurrency
+     *            最大并发请求数，达到上限时回放节奏会被推迟
+     */
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * 回放目录下的全部记录，所有请求完成后返回
+     *
+     * @param directory
+     *            日志目录
+     * @return 回放结果
+     * @throws IOException
+     *             读取日志失败
+     * @throws InterruptedException
+     *             等待时被中断
+     */
+    public ReplayReport replay(File directory) throws IOException, InterruptedException {
+        final ReplayReport report = new ReplayReport();
+        final Semaphore permits = new Semaphore(concurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        long firstMillis = -1;
+        try (TrafficLogReader reader = new TrafficLogReader(directory)) {
+            RecordedExchange recorded;
+            while ((recorded = reader.next()) != null) {
+                if (recorded.isBodyOmitted()) {
+                    report.addSkipped();
+                    continue;
+                }
+                if (firstMillis < 0) {
+                    firstMillis = recorded.getStartMillis();
+                }
+                long due = start;
+                if (speed > 0) {
+                    due += (long) (TimeUnit.MILLISECONDS.toNanos(recorded.getStartMillis() - firstMillis) / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    }
+                }
+                permits.acquire();
+                if (speed > 0) {
+                    report.updateLag(System.nanoTime() - due);
+                }
+                final RecordedExchange exchange = recorded;
+                final Request request = retarget(recorded.getRequest());
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            send(exchange, request, report);
+                        } finally {
+                            permits.release();
+                        }
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        report.setTotalNanos(System.nanoTime() - start);
+        return report;
+    }
+
+    private void send(RecordedExchange exchange, Request request, ReplayReport report) {
+        report.addSent();
+        try {
+            HttpResponse response = client.execute(request);
+            EntityUtils.consume(response.getEntity());
+            if (exchange.getStatus() != 0 && exchange.getStatus() != response.getStatusLine().getStatusCode()) {
+                report.addStatusMismatch();
+            }
+        } catch (IOException | RuntimeException e) {
+            report.addFailed();
+        }
+    }
+
+    private Request retarget(Request request) throws IOException {
+        if (target == null) {
+            return request;
+        }
+        URL url = request.getUrl();
+        return request.toBuilder().setUrl(new URL(target.getProtocol(), target.getHost(), target.getPort(),
+                url.getFile())).build();
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.schedule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import com.aliyun.api.gateway.demo.enums.Priority;
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+import com.aliyun.api.gateway.demo.transport.Deadline;
+import com.aliyun.api.gateway.demo.transport.RequestTimeoutException;
+import com.aliyun.api.gateway.demo.transport.ResponseBodyStore;
+import com.aliyun.api.gateway.demo.transport.ResponseBodyStore.StoredBody;
+
+/**
+ * 传输层前的公平调度器，限制同时在途的请求数，超出的请求排队<br>
+ * 不同优先级之间按严格优先级调度：只要有更高优先级的请求在排队，低优先级的请求就不会获得许可；
+ * 同一优先级内按租户做赤字轮转（DRR），每轮每个租户按权重获得许可，单个租户的突发不会阻塞其他租户。
+ * 每个优先级的队列长度有上限，超出时抛出{@link QueueFullException}；设置了截止时间的请求排队超时时抛出
+ * {@link TimeoutPhase#QUEUE}阶段的{@link RequestTimeoutException}。
+ * <p>
+ * 在途数应不大于连接池的连接数，使排队发生在调度器而不是连接池的先进先出队列中。
+ * 许可在响应Body读完或关闭后才归还，未消费的响应会一直占用许可，与连接池的要求相同。
+ */
+public class FairScheduler {
+    /** 默认每个优先级的最大排队数 */
+    public static final int DEFAULT_MAX_QUEUED = 1024;
+    /** 未指定租户的请求使用的租户 */
+    public static final String DEFAULT_TENANT = "";
+
+    private final int concurrency;
+    private final int maxQueued;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Lane[] lanes;
+    private final QueueStats[] stats;
+    private final ConcurrentHashMap<String, Double> weights = new ConcurrentHashMap<String, Double>();
+    /** 以下字段在lock内访问 */
+    private int inFlight;
+    private int queued;
+
+    /**
+     * @param concurrency
+     *            最大在途请求数
+     */
+    public FairScheduler(int concurrency) {
+        this(concurrency, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * @param concurrency
+     *            最大在途请求数
+     * @param maxQueued
+     *            每个优先级的最大排队数
+     */
+    public FairScheduler(int concurrency, int maxQueued) {
+        if (concurrency < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("concurrency must be positive and maxQueued must not be negative");
+        }
+        this.concurrency = concurrency;
+        this.maxQueued = maxQueued;
+        Priority[] priorities = Priority.values();
+        this.lanes = new Lane[priorities.length];
+        this.stats = new QueueStats[priorities.length];
+        for (int i = 0; i < priorities.length; i++) {
+            lanes[i] = new Lane();
+            stats[i] = new QueueStats();
+        }
+    }
+
+    /**
+     * 设置租户的权重，同一优先级内各租户获得的许可数与权重成正比
+     *
+     * @param tenant
+     *            租户
+     * @param weight
+     *            权重，默认为1
+     */
+    public void setWeight(String tenant, double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        weights.put(tenant, weight);
+    }
+
+    private double weight(String tenant) {
+        Double weight = weights.get(tenant);
+        return weight == null ? 1 : weight;
+    }
+
+    /**
+     * 获取执行许可，没有空闲许可时排队等待
+     *
+     * @param priority
+     *            优先级，为null时使用{@link Priority#NORMAL}
+     * @param tenant
+     *            租户，为null时使用{@link #DEFAULT_TENANT}
+     * @param deadline
+     *            截止时间，为null时一直等待
+     * @return 许可，使用后必须归还
+     * @throws QueueFullException
+     *             该优先级的队列已满
+     * @throws RequestTimeoutException
+     *             排队超过截止时间
+     * @throws InterruptedIOException
+     *             排队时被中断
+     */
+    public Permit acquire(Priority priority, String tenant, Deadline deadline) throws IOException {
+        if (priority == null) {
+            priority = Priority.NORMAL;
+        }
+        if (tenant == null) {
+            tenant = DEFAULT_TENANT;
+        }
+        QueueStats laneStats = stats[priority.ordinal()];
+        lock.lock();
+        try {
+            if (inFlight < concurrency && queued == 0) {
+                inFlight++;
+                laneStats.recordDispatch(0);
+                return new Permit();
+            }
+            Lane lane = lanes[priority.ordinal()];
+            if (lane.queued >= maxQueued) {
+                laneStats.recordRejected();
+                throw new QueueFullException(priority, priority + " queue is full (" + maxQueued + " queued)");
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            lane.add(tenant, waiter);
+            queued++;
+            try {
+                while (!waiter.granted) {
+                    if (deadline == null) {
+                        waiter.condition.await();
+                        continue;
+                    }
+                    long remaining = deadline.remainingMillis();
+                    if (remaining <= 0) {
+                        lane.remove(tenant, waiter);
+                        queued--;
+                        laneStats.recordTimedOut();
+                        throw new RequestTimeoutException(TimeoutPhase.QUEUE, "queued " + deadline.elapsedMillis()
+                                + "ms of " + deadline.getBudgetMillis() + "ms budget as " + priority, null);
+                    }
+                    waiter.condition.await(remaining, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                if (!waiter.granted) {
+                    lane.remove(tenant, waiter);
+                    queued--;
+                    InterruptedIOException ex = new InterruptedIOException("Interrupted while queued");
+                    ex.initCause(e);
+                    throw ex;
+                }
+                //已获得许可，保留中断状态交给后续的I/O处理
+                Thread.currentThread().interrupt();
+            }
+            laneStats.recordDispatch(System.nanoTime() - waiter.enqueueNanos);
+            return new Permit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** 归还一个许可，有请求在排队时直接转交给下一个请求 */
+    private void release() {
+        lock.lock();
+        try {
+            Waiter next = null;
+            for (int i = 0; i < lanes.length && next == null; i++) {
+                next = lanes[i].poll();
+            }
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+            queued--;
+            next.granted = true;
+            next.condition.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 该优先级的排队统计
+     */
+    public QueueStats getStats(Priority priority) {
+        return stats[priority.ordinal()];
+    }
+
+    /**
+     * @return 当前在途请求数
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return 该优先级当前的排队数
+     */
+    public int getQueued(Priority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("inFlight=").append(getInFlight()).append('/').append(concurrency);
+        for (Priority priority : Priority.values()) {
+            sb.append(", ").append(priority).append("{queuedNow=").append(getQueued(priority)).append(", ")
+                    .append(stats[priority.ordinal()]).append('}');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 执行许可，归还是幂等的
+     */
+    public class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Permit() {
+        }
+
+        /** 归还许可 */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                FairScheduler.this.release();
+            }
+        }
+
+        /**
+         * 在响应Body读完或关闭时归还许可，Body已完整缓存在内存中、已读入{@link ResponseBodyStore}或没有Body时立即归还
+         *
+         * @param response
+         *            响应，为null时立即归还
+         */
+        public void releaseOnConsumed(HttpResponse response) {
+            HttpEntity entity = response == null ? null : response.getEntity();
+            //StoredBody在释放前isStreaming()为true，但已不占用连接，且须保持类型供调用方转换
+            if (entity == null || !entity.isStreaming() || entity instanceof StoredBody) {
+                release();
+                return;
+            }
+            response.setEntity(new ReleasingEntity(entity, this));
+        }
+    }
+
+    /** 一个优先级的排队请求，按租户分队列做赤字轮转 */
+    private class Lane {
+        /** 有请求排队的租户，队首为当前轮到的租户 */
+        private final ArrayDeque<TenantQueue> active = new ArrayDeque<TenantQueue>();
+        private final Map<String, TenantQueue> tenants = new HashMap<String, TenantQueue>();
+        int queued;
+
+        void add(String tenant, Waiter waiter) {
+            TenantQueue queue = tenants.get(tenant);
+            if (queue == null) {
+                queue = new TenantQueue(tenant);
+                tenants.put(tenant, queue);
+                active.addLast(queue);
+            }
+            queue.waiters.addLast(waiter);
+            queued++;
+        }
+
+        void remove(String tenant, Waiter waiter) {
+            TenantQueue queue = tenants.get(tenant);
+            if (queue != null && queue.waiters.remove(waiter)) {
+                queued--;
+                if (queue.waiters.isEmpty()) {
+                    tenants.remove(tenant);
+                    active.remove(queue);
+                }
+            }
+        }
+
+        Waiter poll() {
+            while (!active.isEmpty()) {
+                TenantQueue queue = active.peekFirst();
+                if (!queue.credited) {
+                    //每次轮到该租户时增加一次额度，权重小于1的租户需要多轮才能累积到一次许可
+                    queue.deficit += weight(queue.tenant);
+                    queue.credited = true;
+                }
+                if (queue.deficit >= 1) {
+                    queue.deficit -= 1;
+                    Waiter waiter = queue.waiters.pollFirst();
+                    queued--;
+                    if (queue.waiters.isEmpty()) {
+                        //空闲的租户不保留额度
+                        tenants.remove(queue.tenant);
+                        active.pollFirst();
+                    }
+                    return waiter;
+                }
+                queue.credited = false;
+                active.addLast(active.pollFirst());
+            }
+            return null;
+        }
+    }
+
+    private static class TenantQueue {
+        final String tenant;
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<Waiter>();
+        double deficit;
+        /** 本次轮到时是否已增加额度 */
+        boolean credited;
+
+        TenantQueue(String tenant) {
+            this.tenant = tenant;
+        }
+    }
+
+    private static class Waiter {
+        final Condition condition;
+        final long enqueueNanos = System.nanoTime();
+        boolean granted;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    /** Body读完或关闭时归还许可 */
+    private static class ReleasingEntity extends HttpEntityWrapper {
+        private final Permit permit;
+
+        ReleasingEntity(HttpEntity wrapped, Permit permit) {
+            super(wrapped);
+            this.permit = permit;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            final InputStream in = wrappedEntity.getContent();
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    int b = in.read();
+                    if (b < 0) {
+                        permit.release();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = in.read(b, off, len);
+                    if (n < 0) {
+                        permit.release();
+                    }
+                    return n;
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    return in.skip(n);
+                }
+
+                @Override
+                public int available() throws IOException {
+                    return in.available();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        in.close();
+                    } finally {
+                        permit.release();
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try {
+                wrappedEntity.writeTo(out);
+            } finally {
+                permit.release();
+            }
+        }
+    }
+}
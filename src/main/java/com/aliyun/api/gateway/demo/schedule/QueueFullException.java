@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.schedule;
+
+import java.io.IOException;
+
+import com.aliyun.api.gateway.demo.enums.Priority;
+
+/**
+ * 调度队列已满，请求未被签名和发送
+ */
+public class QueueFullException extends IOException {
+    private static final long serialVersionUID = 2871542931165930814L;
+
+    private final Priority priority;
+
+    public QueueFullException(Priority priority, String message) {
+        super(message);
+        this.priority = priority;
+    }
+
+    /**
+     * @return 队列已满的优先级
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.schedule;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 一个优先级的排队统计，线程安全<br>
+ * 排队时间按微秒的2的幂分桶计数，百分位数取所在桶的上界（不超过最大值），误差不超过一倍。
+ */
+public class QueueStats {
+    /** 第i个桶记录[2^(i-1), 2^i)微秒，最后一个桶记录更长的时间 */
+    private static final int BUCKETS = 40;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong queueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    /**
+     * 记录一次获得执行许可
+     *
+     * @param nanos
+     *            排队时间，单位纳秒，未排队时为0
+     */
+    void recordDispatch(long nanos) {
+        dispatched.incrementAndGet();
+        if (nanos > 0) {
+            queued.incrementAndGet();
+            queueNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxQueueNanos.get()) && !maxQueueNanos.compareAndSet(max, nanos)) {
+                //retry
+            }
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+    }
+
+    void recordRejected() {
+        rejected.incrementAndGet();
+    }
+
+    void recordTimedOut() {
+        timedOut.incrementAndGet();
+    }
+
+    /**
+     * @return 获得执行许可的请求数
+     */
+    public long getDispatched() {
+        return dispatched.get();
+    }
+
+    /**
+     * @return 其中经过排队的请求数
+     */
+    public long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return 因队列已满被拒绝的请求数
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return 排队时超过截止时间的请求数
+     */
+    public long getTimedOut() {
+        return timedOut.get();
+    }
+
+    /**
+     * @return 平均排队时间（含未排队的请求），单位毫秒
+     */
+    public double getAverageQueueMillis() {
+        long count = dispatched.get();
+        return count == 0 ? 0 : queueNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1) / count;
+    }
+
+    /**
+     * @return 最长排队时间，单位毫秒
+     */
+    public double getMaxQueueMillis() {
+        return maxQueueNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @param percentile
+     *            百分位，如99
+     * @return 排队时间百分位数的近似值，单位毫秒
+     */
+    public double getQueueMillis(double percentile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == 0 ? 0 : Math.min((1L << i) / 1000.0, getMaxQueueMillis());
+            }
+        }
+        return getMaxQueueMillis();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("dispatched=%d, queued=%d, rejected=%d, timedOut=%d, avg=%.2fms, p99=%.2fms, max=%.2fms",
+                getDispatched(), getQueued(), getRejected(), getTimedOut(), getAverageQueueMillis(),
+                getQueueMillis(99), getMaxQueueMillis());
+    }
+}
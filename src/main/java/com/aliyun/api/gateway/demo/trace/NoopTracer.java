@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.trace;
+
+import com.aliyun.api.gateway.demo.transport.PoolAdjustment;
+
+/**
+ * 不做任何事情的埋点实现
+ */
+class NoopTracer implements Tracer {
+    static final NoopTracer INSTANCE = new NoopTracer();
+
+    @Override
+    public Object beginSign() {
+        return null;
+    }
+
+    @Override
+    public void endSign(Object span, String path, String method) {
+    }
+
+    @Override
+    public Object beginAcquire() {
+        return null;
+    }
+
+    @Override
+    public void endAcquire(Object span, String route, boolean reused) {
+    }
+
+    @Override
+    public Object beginExchange() {
+        return null;
+    }
+
+    @Override
+    public void endExchange(Object span, String path, String method, int status, long requestBytes,
+            long responseBytes, Throwable error) {
+    }
+
+    @Override
+    public void poolAdjusted(PoolAdjustment adjustment) {
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.trace;
+
+import com.aliyun.api.gateway.demo.transport.PoolAdjustment;
+
+/**
+ * 请求链路埋点<br>
+ * 每个埋点由begin/end成对调用，begin返回的span原样传给end；未开启采集时begin返回null，end直接返回，
+ * 调用方无需判断。实现需线程安全，且begin与end可能在不同线程中调用。
+ */
+public interface Tracer {
+
+    /**
+     * @return 签名span，未开启采集时返回null
+     */
+    Object beginSign();
+
+    /**
+     * @param span
+     *            {@link #beginSign()}的返回值
+     * @param path
+     *            API路径
+     * @param method
+     *            {@link com.aliyun.api.gateway.demo.enums.Method}名称
+     */
+    void endSign(Object span, String path, String method);
+
+    /**
+     * @return 连接获取span，未开启采集时返回null
+     */
+    Object beginAcquire();
+
+    /**
+     * @param span
+     *            {@link #beginAcquire()}的返回值
+     * @param route
+     *            路由，如http://host:port
+     * @param reused
+     *            是否复用了已建立的连接
+     */
+    void endAcquire(Object span, String route, boolean reused);
+
+    /**
+     * @return 请求交换span，未开启采集时返回null
+     */
+    Object beginExchange();
+
+    /**
+     * @param span
+     *            {@link #beginExchange()}的返回值
+     * @param path
+     *            API路径
+     * @param method
+     *            {@link com.aliyun.api.gateway.demo.enums.Method}名称
+     * @param status
+     *            HTTP状态码，失败时为0
+     * @param requestBytes
+     *            请求Body字节数，未知时为-1
+     * @param responseBytes
+     *            响应Body字节数，未知时为-1
+     * @param error
+     *            失败原因，成功时为null
+     */
+    void endExchange(Object span, String path, String method, int status, long requestBytes, long responseBytes,
+            Throwable error);
+
+    /**
+     * 连接池被自动调整，为瞬时事件
+     *
+     * @param adjustment
+     *            调整内容
+     */
+    void poolAdjusted(PoolAdjustment adjustment);
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.trace;
+
+/**
+ * 埋点实现的获取<br>
+ * JDK 11及以上且包含jdk.jfr模块时使用JDK Flight Recorder事件，否则使用空实现。
+ * 可通过系统属性{@value #PROPERTY_ENABLED}=false关闭。
+ */
+public class Tracers {
+    /** 控制是否启用JFR埋点的系统属性 */
+    public static final String PROPERTY_ENABLED = "gateway.jfr.enabled";
+    private static final String JFR_TRACER = "com.aliyun.api.gateway.demo.trace.JfrTracer";
+    private static final Tracer TRACER = load();
+
+    private Tracers() {
+    }
+
+    /**
+     * @return 当前进程使用的埋点实现
+     */
+    public static Tracer get() {
+        return TRACER;
+    }
+
+    private static Tracer load() {
+        if ("false".equalsIgnoreCase(System.getProperty(PROPERTY_ENABLED))) {
+            return NoopTracer.INSTANCE;
+        }
+        try {
+            return (Tracer) Class.forName(JFR_TRACER).getConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return NoopTracer.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,654 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+import com.aliyun.api.gateway.demo.trace.Tracer;
+import com.aliyun.api.gateway.demo.trace.Tracers;
+
+/**
+ * 基于Apache HttpClient 4.5的HTTP/1.1传输层，每个并发请求占用一个连接
+ */
+public class ApacheHttpTransport implements Transport {
+    /** 默认连接池总连接数 */
+    public static final int DEFAULT_MAX_TOTAL = 20;
+    /** 默认每个路由（host+port）的最大连接数 */
+    public static final int DEFAULT_MAX_PER_ROUTE = 2;
+    private static final Logger log = LoggerFactory.getLogger(ApacheHttpTransport.class);
+    /** 当前线程正在执行的请求，连接池与重试处理器据此取得截止时间并记录所处阶段 */
+    private static final Tracer tracer = Tracers.get();
+    private static final ThreadLocal<Exchange> CURRENT = new ThreadLocal<Exchange>();
+    /** 截止时间到达时中止请求，所有实例共享一个守护线程 */
+    private static final ScheduledThreadPoolExecutor WATCHDOG = createWatchdog();
+
+    /** TLS握手统计 */
+    private final TlsStats tlsStats = new TlsStats();
+    /** 连接池统计 */
+    private final PoolStats poolStats = new PoolStats();
+    /** 连接池 */
+    private final PoolingHttpClientConnectionManager connectionManager;
+    /** HttpClient实例 */
+    private final CloseableHttpClient httpClient;
+
+    /**
+     * @param testEnv
+     *            是否是测试环境，测试环境信任所有证书
+     */
+    public ApacheHttpTransport(boolean testEnv) {
+        this(testEnv, DEFAULT_MAX_TOTAL, DEFAULT_MAX_PER_ROUTE);
+    }
+
+    /**
+     * @param testEnv
+     *            是否是测试环境，测试环境信任所有证书
+     * @param maxTotal
+     *            连接池总连接数
+     * @param maxPerRoute
+     *            每个路由的最大连接数
+     */
+    public ApacheHttpTransport(boolean testEnv, int maxTotal, int maxPerRoute) {
+        this(testEnv, maxTotal, maxPerRoute, new TlsConfig());
+    }
+
+    /**
+     * @param testEnv
+     *            是否是测试环境，测试环境信任所有证书
+     * @param maxTotal
+     *            连接池总连接数
+     * @param maxPerRoute
+     *            每个路由的最大连接数
+     * @param tlsConfig
+     *            TLS配置
+     */
+    public ApacheHttpTransport(boolean testEnv, int maxTotal, int maxPerRoute, TlsConfig tlsConfig) {
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new LazySSLConnectionSocketFactory(testEnv, tlsConfig, tlsStats)).build();
+        connectionManager = new DeadlineAwareConnectionManager(registry, poolStats);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        //Accept-Encoding及响应解压由Client按请求配置统一处理，见ResponseDecoder
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager).setUserAgent(Constants.USER_AGENT)
+                .disableContentCompression().setRequestExecutor(new DeadlineAwareRequestExecutor())
+                .setRetryHandler(new DeadlineAwareRetryHandler()).build();
+    }
+
+    @Override
+    public HttpResponse execute(TransportRequest request) throws IOException {
+        Deadline deadline = request.getDeadline();
+        RequestConfig.Builder config = RequestConfig.custom();
+        if (deadline == null) {
+            config.setConnectTimeout(request.getTimeout());
+        } else {
+            //各阶段的超时时间均不超过剩余时间，进入每个阶段时还会按当时的剩余时间再次收紧
+            config.setConnectionRequestTimeout(deadline.clamp(0)).setConnectTimeout(deadline.clamp(request.getTimeout()))
+                    .setSocketTimeout(deadline.clamp(0));
+        }
+        RequestBuilder requestBuilder = RequestBuilder.create(request.getMethod()).setUri(request.getUri());
+        requestBuilder.setConfig(config.build());
+        for (Map.Entry<String, String> e : request.getHeaders().entrySet()) {
+            requestBuilder.addHeader(e.getKey(), e.getValue());
+        }
+        if (request.getBody() != null) {
+            requestBuilder.setEntity(new RequestBodyEntity(request.getBody()));
+        }
+        final HttpUriRequest httpRequest = requestBuilder.build();
+        final Exchange exchange = new Exchange(deadline);
+        ScheduledFuture<?> abort = null;
+        if (deadline != null) {
+            abort = WATCHDOG.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    exchange.aborted = true;
+                    httpRequest.abort();
+                }
+            }, deadline.remainingMillis(), TimeUnit.MILLISECONDS);
+        }
+        CURRENT.set(exchange);
+        try {
+            InetSocketAddress target = request.getTarget();
+            HttpResponse response = target == null ? httpClient.execute(httpRequest)
+                    : httpClient.execute(targetHost(request.getUri(), target), httpRequest);
+            if (abort != null && response.getEntity() != null) {
+                //截止时间同样覆盖读取响应Body，Body读完或关闭时才取消中止
+                response.setEntity(new DeadlineEntity(response.getEntity(), exchange, abort));
+                abort = null;
+            }
+            return response;
+        } catch (ConnectionPoolTimeoutException e) {
+            throw timeout(TimeoutPhase.POOL, exchange, e);
+        } catch (ConnectTimeoutException e) {
+            throw timeout(TimeoutPhase.CONNECT, exchange, e);
+        } catch (SocketTimeoutException e) {
+            //TLS握手时的读超时同样属于连接阶段
+            throw timeout(exchange.phase, exchange, e);
+        } catch (IOException e) {
+            throw deadlineExceeded(exchange, e);
+        } finally {
+            CURRENT.remove();
+            if (abort != null) {
+                abort.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 带地址的HttpHost跳过DNS解析，连接池按地址区分路由，Host头与TLS校验仍使用逻辑host
+     */
+    private static HttpHost targetHost(URI uri, InetSocketAddress target) {
+        return new HttpHost(target.getAddress(), uri.getHost(), target.getPort(), uri.getScheme());
+    }
+
+    /**
+     * @return 被截止时间中止时返回{@link RequestTimeoutException}，否则原样返回
+     */
+    private static IOException deadlineExceeded(Exchange exchange, IOException e) {
+        //剩余时间按毫秒截断，中止可能略早于截止时间
+        if (exchange.deadline != null && !(e instanceof RequestTimeoutException)
+                && (exchange.aborted || exchange.deadline.isExpired())) {
+            //被截止时间中止，重试过的请求归为总预算耗尽
+            return timeout(exchange.attempts > 1 ? TimeoutPhase.DEADLINE : exchange.phase, exchange, e);
+        }
+        return e;
+    }
+
+    private static RequestTimeoutException timeout(TimeoutPhase phase, Exchange exchange, IOException cause) {
+        String message = exchange.deadline == null ? String.valueOf(cause.getMessage())
+                : "elapsed " + exchange.deadline.elapsedMillis() + "ms of " + exchange.deadline.getBudgetMillis()
+                        + "ms budget in " + exchange.phase + " phase after " + exchange.attempts + " attempt(s)";
+        return new RequestTimeoutException(phase, message, cause);
+    }
+
+    private static ScheduledThreadPoolExecutor createWatchdog() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gateway-deadline-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    @Override
+    public int preconnect(URI uri, InetSocketAddress target, int connections, int timeout) throws IOException {
+        boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+        int port = uri.getPort() > 0 ? uri.getPort() : (secure ? 443 : 80);
+        //与execute使用相同的目标HttpHost，预建立的连接才会被请求租用
+        HttpHost host = target == null ? new HttpHost(uri.getHost(), port, uri.getScheme()) : targetHost(uri, target);
+        HttpRoute route = new HttpRoute(host, null, secure);
+        int count = Math.min(connections, connectionManager.getMaxPerRoute(route));
+        List<HttpClientConnection> leased = new ArrayList<HttpClientConnection>(count);
+        HttpClientContext context = HttpClientContext.create();
+        int opened = 0;
+        try {
+            //同时持有所有连接，确保从连接池中取得的是不同的连接
+            for (int i = 0; i < count; i++) {
+                ConnectionRequest connectionRequest = connectionManager.requestConnection(route, null);
+                HttpClientConnection connection = connectionRequest.get(timeout, TimeUnit.MILLISECONDS);
+                leased.add(connection);
+                if (!connection.isOpen()) {
+                    connectionManager.connect(connection, route, timeout, context);
+                    connectionManager.routeComplete(connection, route, context);
+                    opened++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while leasing connection");
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            for (HttpClientConnection connection : leased) {
+                connectionManager.releaseConnection(connection, null, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * @return 连接池
+     */
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    /**
+     * @return TLS握手次数与耗时统计
+     */
+    public TlsStats getTlsStats() {
+        return tlsStats;
+    }
+
+    /**
+     * @return 连接池等待、周转及在用连接数统计，见{@link PoolController}
+     */
+    public PoolStats getPoolStats() {
+        return poolStats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    /**
+     * 首次建立https连接时才构造SSLContext及SSLConnectionSocketFactory<br>
+     * 构造SSLContext需要加载JSSE并初始化信任库，只访问http的进程（如命令行工具、短任务）不必为此付出启动时间。
+     */
+    private static class LazySSLConnectionSocketFactory implements LayeredConnectionSocketFactory {
+        private final boolean testEnv;
+        private final TlsConfig tlsConfig;
+        private final TlsStats stats;
+        private volatile LayeredConnectionSocketFactory delegate;
+
+        LazySSLConnectionSocketFactory(boolean testEnv, TlsConfig tlsConfig, TlsStats stats) {
+            this.testEnv = testEnv;
+            this.tlsConfig = tlsConfig;
+            this.stats = stats;
+        }
+
+        private LayeredConnectionSocketFactory delegate() {
+            LayeredConnectionSocketFactory factory = delegate;
+            if (factory == null) {
+                synchronized (this) {
+                    factory = delegate;
+                    if (factory == null) {
+                        factory = create();
+                        delegate = factory;
+                    }
+                }
+            }
+            return factory;
+        }
+
+        private LayeredConnectionSocketFactory create() {
+            try {
+                SSLContext sslContext = SSLContextFactory.getShared(testEnv, tlsConfig);
+                return new InstrumentedSSLConnectionSocketFactory(sslContext,
+                        tlsConfig.getSupportedProtocols(sslContext), tlsConfig.getCipherSuites(), stats);
+            } catch (Exception e) {
+                log.error(e.getMessage(), e);
+                return SSLConnectionSocketFactory.getSocketFactory();
+            }
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return delegate().createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress,
+                InetSocketAddress localAddress, HttpContext context) throws IOException {
+            return delegate().connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                throws IOException {
+            return delegate().createLayeredSocket(socket, target, port, context);
+        }
+    }
+
+    /** 统计握手次数与耗时的SSLConnectionSocketFactory */
+    private static class InstrumentedSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
+        private final TlsStats stats;
+
+        InstrumentedSSLConnectionSocketFactory(SSLContext sslContext, String[] protocols, String[] cipherSuites,
+                TlsStats stats) {
+            super(sslContext, protocols, cipherSuites, SSLConnectionSocketFactory.getDefaultHostnameVerifier());
+            this.stats = stats;
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                throws IOException {
+            long startMillis = System.currentTimeMillis();
+            long start = System.nanoTime();
+            try {
+                SSLSocket sslSocket = (SSLSocket) super.createLayeredSocket(socket, target, port, context);
+                //恢复的会话沿用原会话的创建时间
+                stats.record(System.nanoTime() - start, sslSocket.getSession().getCreationTime() < startMillis);
+                return sslSocket;
+            } catch (IOException e) {
+                stats.recordFailure();
+                throw e;
+            }
+        }
+    }
+
+    /** 单次请求的执行状态 */
+    private static class Exchange {
+        final Deadline deadline;
+        volatile TimeoutPhase phase = TimeoutPhase.POOL;
+        volatile int attempts = 1;
+        /** 是否已被截止时间中止 */
+        volatile boolean aborted;
+        /** 连接获取埋点，获取到连接后结束 */
+        Object acquireSpan;
+        HttpRoute route;
+
+        Exchange(Deadline deadline) {
+            this.deadline = deadline;
+        }
+
+        void endAcquire(boolean reused) {
+            if (acquireSpan != null) {
+                HttpHost target = route.getTargetHost();
+                tracer.endAcquire(acquireSpan,
+                        target.getAddress() == null ? target.toURI()
+                                : target.toURI() + '@' + target.getAddress().getHostAddress(),
+                        reused);
+                acquireSpan = null;
+            }
+        }
+    }
+
+    /** Body读完或关闭时取消截止时间的中止任务，读取中被中止时抛出{@link RequestTimeoutException} */
+    private static class DeadlineEntity extends HttpEntityWrapper {
+        private final Exchange exchange;
+        private final ScheduledFuture<?> abort;
+
+        DeadlineEntity(HttpEntity wrapped, Exchange exchange, ScheduledFuture<?> abort) {
+            super(wrapped);
+            this.exchange = exchange;
+            this.abort = abort;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            final InputStream in;
+            try {
+                in = wrappedEntity.getContent();
+            } catch (IOException e) {
+                throw deadlineExceeded(exchange, e);
+            }
+            return new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        int b = in.read();
+                        if (b < 0) {
+                            abort.cancel(false);
+                        }
+                        return b;
+                    } catch (IOException e) {
+                        throw deadlineExceeded(exchange, e);
+                    }
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    try {
+                        int n = in.read(b, off, len);
+                        if (n < 0) {
+                            abort.cancel(false);
+                        }
+                        return n;
+                    } catch (IOException e) {
+                        throw deadlineExceeded(exchange, e);
+                    }
+                }
+
+                @Override
+                public long skip(long n) throws IOException {
+                    try {
+                        return in.skip(n);
+                    } catch (IOException e) {
+                        throw deadlineExceeded(exchange, e);
+                    }
+                }
+
+                @Override
+                public int available() throws IOException {
+                    return in.available();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        throw deadlineExceeded(exchange, e);
+                    } finally {
+                        abort.cancel(false);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try {
+                wrappedEntity.writeTo(out);
+            } catch (IOException e) {
+                throw deadlineExceeded(exchange, e);
+            } finally {
+                abort.cancel(false);
+            }
+        }
+    }
+
+    /** 记录请求所处阶段及连接池统计，并将连接池等待及建连超时限制在剩余时间内的连接池 */
+    private static class DeadlineAwareConnectionManager extends PoolingHttpClientConnectionManager {
+        private final PoolStats stats;
+
+        DeadlineAwareConnectionManager(Registry<ConnectionSocketFactory> registry, PoolStats stats) {
+            super(registry);
+            this.stats = stats;
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final ConnectionRequest request = super.requestConnection(route, state);
+            final Exchange exchange = CURRENT.get();
+            if (exchange != null) {
+                exchange.phase = TimeoutPhase.POOL;
+                exchange.acquireSpan = tracer.beginAcquire();
+                exchange.route = route;
+            }
+            return new ConnectionRequest() {
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit tunit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    if (exchange != null && exchange.deadline != null) {
+                        timeout = exchange.deadline.clamp(tunit.toMillis(timeout));
+                        tunit = TimeUnit.MILLISECONDS;
+                    }
+                    long start = System.nanoTime();
+                    HttpClientConnection connection = request.get(timeout, tunit);
+                    stats.recordAcquire(System.nanoTime() - start);
+                    if (exchange == null) {
+                        return connection;
+                    }
+                    if (connection.isOpen()) {
+                        exchange.phase = TimeoutPhase.RESPONSE;
+                        exchange.endAcquire(true);
+                    } else {
+                        exchange.phase = TimeoutPhase.CONNECT;
+                    }
+                    return connection;
+                }
+            };
+        }
+
+        @Override
+        public void connect(HttpClientConnection managedConn, HttpRoute route, int connectTimeout,
+                HttpContext context) throws IOException {
+            Exchange exchange = CURRENT.get();
+            if (exchange != null) {
+                exchange.phase = TimeoutPhase.CONNECT;
+                if (exchange.deadline != null) {
+                    connectTimeout = exchange.deadline.clamp(connectTimeout);
+                }
+            }
+            super.connect(managedConn, route, connectTimeout, context);
+        }
+
+        @Override
+        public void routeComplete(HttpClientConnection managedConn, HttpRoute route, HttpContext context)
+                throws IOException {
+            super.routeComplete(managedConn, route, context);
+            stats.recordOpen();
+            Exchange exchange = CURRENT.get();
+            if (exchange != null) {
+                exchange.phase = TimeoutPhase.RESPONSE;
+                exchange.endAcquire(false);
+            }
+        }
+
+        @Override
+        public void releaseConnection(HttpClientConnection managedConn, Object state, long keepalive,
+                TimeUnit tunit) {
+            try {
+                super.releaseConnection(managedConn, state, keepalive, tunit);
+            } finally {
+                stats.recordRelease();
+            }
+        }
+    }
+
+    /** 发送请求前按剩余时间收紧读超时 */
+    private static class DeadlineAwareRequestExecutor extends HttpRequestExecutor {
+        @Override
+        public HttpResponse execute(HttpRequest request, HttpClientConnection conn, HttpContext context)
+                throws IOException, HttpException {
+            Exchange exchange = CURRENT.get();
+            if (exchange != null) {
+                exchange.phase = TimeoutPhase.RESPONSE;
+                if (exchange.deadline != null) {
+                    conn.setSocketTimeout(exchange.deadline.clamp(conn.getSocketTimeout()));
+                }
+            }
+            return super.execute(request, conn, context);
+        }
+    }
+
+    /** 截止时间已到时不再重试 */
+    private static class DeadlineAwareRetryHandler extends DefaultHttpRequestRetryHandler {
+        @Override
+        public boolean retryRequest(IOException exception, int executionCount, HttpContext context) {
+            Exchange exchange = CURRENT.get();
+            if (exchange != null && exchange.deadline != null && exchange.deadline.isExpired()) {
+                return false;
+            }
+            boolean retry = super.retryRequest(exception, executionCount, context);
+            if (retry && exchange != null) {
+                exchange.attempts = executionCount + 1;
+            }
+            return retry;
+        }
+    }
+
+    /** 将{@link RequestBody}适配为HttpEntity */
+    private static class RequestBodyEntity extends AbstractHttpEntity {
+        private final RequestBody body;
+
+        RequestBodyEntity(RequestBody body) {
+            this.body = body;
+            setContentType(body.getContentType());
+            setChunked(body.getContentLength() < 0);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return body.isRepeatable();
+        }
+
+        @Override
+        public long getContentLength() {
+            return body.getContentLength();
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            throw new UnsupportedOperationException("RequestBody can only be written");
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) throws IOException {
+            body.writeTo(outstream);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return !body.isRepeatable();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 字节数组类型的Body，只有[offset, offset + length)区间的字节会被发送
+ */
+public class ByteArrayBody implements RequestBody {
+    private final byte[] bytes;
+    private final int offset;
+    private final int length;
+    private final String contentType;
+
+    public ByteArrayBody(byte[] bytes, String contentType) {
+        this(bytes, 0, lengthOf(bytes), contentType);
+    }
+
+    public ByteArrayBody(byte[] bytes, int offset, int length, String contentType) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Parameter bytes cannot be null");
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+        this.contentType = contentType;
+    }
+
+    /** 在委托的构造器检查之前取长度，null时交由其抛出IllegalArgumentException */
+    private static int lengthOf(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return 字节数组是否来自缓冲池，请求完成后会被归还复用；在请求返回后仍可能继续发送Body的传输层须先复制
+     */
+    public boolean isPooled() {
+        return false;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes, offset, length);
+    }
+}
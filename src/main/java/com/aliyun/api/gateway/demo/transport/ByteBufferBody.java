@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * ByteBuffer类型的Body，发送构造时[position, limit)区间的字节，不修改调用方缓冲区的position及limit<br>
+ * 支持只读及直接内存缓冲区：NIO传输层直接将其写入socket，HTTP/2传输层直接交给JDK HttpClient；
+ * Apache传输层对可访问底层数组的堆缓冲区直接写出数组，其余缓冲区经小块中转数组分段写出，不会整体复制到堆中。
+ * 发送完成前调用方不应修改缓冲区内容。
+ */
+public class ByteBufferBody implements RequestBody {
+    /** 写入OutputStream时中转数组的最大长度 */
+    private static final int TRANSFER_CHUNK_SIZE = 8 * 1024;
+
+    private final ByteBuffer buffer;
+    private final String contentType;
+
+    public ByteBufferBody(ByteBuffer buffer, String contentType) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Parameter buffer cannot be null");
+        }
+        this.buffer = buffer.slice();
+        this.contentType = contentType;
+    }
+
+    /**
+     * @return Body内容的独立视图，position为0、limit为Body长度，读取它不影响Body本身
+     */
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate();
+    }
+
+    @Override
+    public long getContentLength() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer src = buffer.duplicate();
+        if (src.hasArray()) {
+            out.write(src.array(), src.arrayOffset() + src.position(), src.remaining());
+            return;
+        }
+        byte[] chunk = new byte[Math.min(TRANSFER_CHUNK_SIZE, src.remaining())];
+        while (src.hasRemaining()) {
+            int n = Math.min(chunk.length, src.remaining());
+            src.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 响应解压统计，线程安全<br>
+ * 每个压缩响应在读到末尾或关闭时计入一次，提前关闭的响应按已读取的部分计入。
+ */
+public class CompressionStats {
+    private final AtomicLong responses = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong decompressedBytes = new AtomicLong();
+
+    /**
+     * 记录一个压缩响应
+     *
+     * @param compressed
+     *            读取的压缩字节数
+     * @param decompressed
+     *            解压得到的字节数
+     */
+    void record(long compressed, long decompressed) {
+        responses.incrementAndGet();
+        compressedBytes.addAndGet(compressed);
+        decompressedBytes.addAndGet(decompressed);
+    }
+
+    /**
+     * @return 压缩响应数
+     */
+    public long getResponses() {
+        return responses.get();
+    }
+
+    /**
+     * @return 传输的压缩字节数
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * @return 解压后的字节数
+     */
+    public long getDecompressedBytes() {
+        return decompressedBytes.get();
+    }
+
+    /**
+     * @return 节省的传输字节数
+     */
+    public long getSavedBytes() {
+        return decompressedBytes.get() - compressedBytes.get();
+    }
+
+    /**
+     * @return 压缩字节数与解压后字节数之比
+     */
+    public double getRatio() {
+        long decompressed = decompressedBytes.get();
+        return decompressed == 0 ? 1 : compressedBytes.get() / (double) decompressed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("responses=%d, compressed=%d, decompressed=%d, ratio=%.3f", getResponses(),
+                getCompressedBytes(), getDecompressedBytes(), getRatio());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求的截止时间，基于{@link System#nanoTime()}，不受系统时钟调整影响
+ */
+public class Deadline {
+    private final long startNanos;
+    private final long deadlineNanos;
+    private final long budgetMillis;
+
+    private Deadline(long budgetMillis) {
+        this.budgetMillis = budgetMillis;
+        this.startNanos = System.nanoTime();
+        this.deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * @param budgetMillis
+     *            从现在开始的时间预算，单位毫秒
+     * @return 截止时间
+     */
+    public static Deadline after(long budgetMillis) {
+        return new Deadline(budgetMillis);
+    }
+
+    /**
+     * @return 剩余时间，单位毫秒，已过期时返回0
+     */
+    public long remainingMillis() {
+        long remaining = deadlineNanos - System.nanoTime();
+        return remaining <= 0 ? 0 : Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 1);
+    }
+
+    /**
+     * 将某一阶段的超时时间限制在剩余时间内
+     *
+     * @param timeout
+     *            阶段自身的超时时间，单位毫秒，不大于0表示不限
+     * @return 实际使用的超时时间，单位毫秒，至少为1（0对Socket表示不超时）
+     */
+    public int clamp(long timeout) {
+        long remaining = Math.max(remainingMillis(), 1);
+        return (int) Math.min(timeout > 0 ? Math.min(timeout, remaining) : remaining, Integer.MAX_VALUE);
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * @return 已经过的时间，单位毫秒
+     */
+    public long elapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return 总时间预算，单位毫秒
+     */
+    public long getBudgetMillis() {
+        return budgetMillis;
+    }
+}
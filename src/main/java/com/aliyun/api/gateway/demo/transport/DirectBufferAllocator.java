@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 池化的直接内存缓冲区分配器，供从头构建{@link ByteBufferBody}的调用方使用<br>
+ * 缓冲区按2的幂分级，归还后按级别复用，池中保留的总字节数不超过上限；超过最大级别的请求直接分配，归还时丢弃。
+ * <p>
+ * 泄漏检测：每个未归还的{@link PooledBuffer}由虚引用跟踪，若其在未调用{@link PooledBuffer#release()}的情况下被GC回收，
+ * 下一次分配时记录警告并计入{@link #getLeaks()}；开启{@link #setLeakTraceEnabled(boolean)}后警告中包含分配时的调用栈。
+ * 泄漏的缓冲区可能仍被调用方引用，不会回收到池中。
+ */
+public class DirectBufferAllocator {
+    /** 默认最小级别，单位字节 */
+    public static final int DEFAULT_MIN_SIZE = 4 * 1024;
+    /** 默认最大级别，单位字节 */
+    public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+    /** 默认池中最多保留的总字节数 */
+    public static final long DEFAULT_MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+    private static final Logger log = LoggerFactory.getLogger(DirectBufferAllocator.class);
+
+    private final int minShift;
+    private final int maxSize;
+    private final long maxRetainedBytes;
+    /** 第i级的缓冲区容量为1 << (minShift + i) */
+    private final ConcurrentLinkedQueue<?>[] pool;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    /** 未归还的缓冲区，保持虚引用本身可达 */
+    private final Set<LeakTracker> outstanding = Collections
+            .newSetFromMap(new ConcurrentHashMap<LeakTracker, Boolean>());
+    private final ReferenceQueue<PooledBuffer> collected = new ReferenceQueue<PooledBuffer>();
+    private volatile boolean leakTraceEnabled;
+
+    private final AtomicLong allocations = new AtomicLong();
+    private final AtomicLong poolHits = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    public DirectBufferAllocator() {
+        this(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_MAX_RETAINED_BYTES);
+    }
+
+    /**
+     * @param minSize
+     *            最小级别，向上取整到2的幂
+     * @param maxSize
+     *            最大级别，向上取整到2的幂，超过的请求不经过缓冲池
+     * @param maxRetainedBytes
+     *            池中最多保留的总字节数
+     */
+    public DirectBufferAllocator(int minSize, int maxSize, long maxRetainedBytes) {
+        if (minSize < 1 || maxSize < minSize || maxSize > 1 << 30) {
+            throw new IllegalArgumentException("Invalid size classes: " + minSize + " - " + maxSize);
+        }
+        this.minShift = ceilShift(minSize);
+        int maxShift = ceilShift(maxSize);
+        this.maxSize = 1 << maxShift;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.pool = new ConcurrentLinkedQueue<?>[maxShift - minShift + 1];
+        for (int i = 0; i < pool.length; i++) {
+            pool[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+    }
+
+    /**
+     * 开启后记录每次分配的调用栈，泄漏警告中会包含它；有额外开销，建议仅在排查时开启
+     */
+    public void setLeakTraceEnabled(boolean leakTraceEnabled) {
+        this.leakTraceEnabled = leakTraceEnabled;
+    }
+
+    /**
+     * 分配缓冲区
+     *
+     * @param size
+     *            所需字节数
+     * @return position为0、limit为size的缓冲区，容量可能大于size
+     */
+    @SuppressWarnings("unchecked")
+    public PooledBuffer allocate(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size: " + size);
+        }
+        reportLeaks();
+        allocations.incrementAndGet();
+        int sizeClass = sizeClass(size);
+        ByteBuffer buffer = null;
+        if (sizeClass >= 0) {
+            buffer = ((ConcurrentLinkedQueue<ByteBuffer>) pool[sizeClass]).poll();
+            if (buffer != null) {
+                retainedBytes.addAndGet(-buffer.capacity());
+                poolHits.incrementAndGet();
+            } else {
+                buffer = ByteBuffer.allocateDirect(1 << (minShift + sizeClass));
+            }
+        } else {
+            buffer = ByteBuffer.allocateDirect(size);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        PooledBuffer pooled = new PooledBuffer(this, buffer);
+        LeakTracker tracker = new LeakTracker(pooled, collected, buffer.capacity(),
+                leakTraceEnabled ? new Throwable("Allocated at") : null);
+        pooled.tracker = tracker;
+        outstanding.add(tracker);
+        return pooled;
+    }
+
+    @SuppressWarnings("unchecked")
+    void release(PooledBuffer pooled) {
+        LeakTracker tracker = pooled.tracker;
+        outstanding.remove(tracker);
+        tracker.clear();
+        ByteBuffer buffer = pooled.buffer;
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+        if (sizeClass < 0 || capacity != 1 << (minShift + sizeClass)) {
+            return;
+        }
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+        ((ConcurrentLinkedQueue<ByteBuffer>) pool[sizeClass]).offer(buffer);
+    }
+
+    private void reportLeaks() {
+        Reference<? extends PooledBuffer> ref;
+        while ((ref = collected.poll()) != null) {
+            LeakTracker tracker = (LeakTracker) ref;
+            if (outstanding.remove(tracker)) {
+                leaks.incrementAndGet();
+                if (tracker.trace != null) {
+                    log.warn("direct buffer of " + tracker.capacity + " bytes was not released", tracker.trace);
+                } else {
+                    log.warn("direct buffer of {} bytes was not released, enable leak trace to find the caller",
+                            tracker.capacity);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 所在的级别，不经过缓冲池时返回-1
+     */
+    private int sizeClass(int size) {
+        if (size > maxSize) {
+            return -1;
+        }
+        return Math.max(0, ceilShift(size) - minShift);
+    }
+
+    private static int ceilShift(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * @return 分配次数
+     */
+    public long getAllocations() {
+        return allocations.get();
+    }
+
+    /**
+     * @return 从池中复用缓冲区的次数
+     */
+    public long getPoolHits() {
+        return poolHits.get();
+    }
+
+    /**
+     * @return 未归还即被GC回收的缓冲区数
+     */
+    public long getLeaks() {
+        reportLeaks();
+        return leaks.get();
+    }
+
+    /**
+     * @return 已分配尚未归还的缓冲区数
+     */
+    public int getOutstanding() {
+        return outstanding.size();
+    }
+
+    /**
+     * @return 池中保留的总字节数
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("allocations=%d, poolHits=%d, outstanding=%d, retained=%dB, leaks=%d", getAllocations(),
+                getPoolHits(), getOutstanding(), getRetainedBytes(), leaks.get());
+    }
+
+    /**
+     * 从{@link DirectBufferAllocator}分配的缓冲区，用完后须调用{@link #release()}归还
+     */
+    public static class PooledBuffer implements AutoCloseable {
+        private final DirectBufferAllocator allocator;
+        private final ByteBuffer buffer;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private LeakTracker tracker;
+
+        PooledBuffer(DirectBufferAllocator allocator, ByteBuffer buffer) {
+            this.allocator = allocator;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @return 缓冲区，归还后不可再使用
+         */
+        public ByteBuffer buffer() {
+            return buffer;
+        }
+
+        /**
+         * 归还缓冲区，携带它的请求须已返回；重复调用无副作用
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                allocator.release(this);
+            }
+        }
+
+        @Override
+        public void close() {
+            release();
+        }
+    }
+
+    /** 跟踪未归还缓冲区的虚引用 */
+    private static class LeakTracker extends PhantomReference<PooledBuffer> {
+        final int capacity;
+        /** 分配时的调用栈，未开启时为null */
+        final Throwable trace;
+
+        LeakTracker(PooledBuffer referent, ReferenceQueue<PooledBuffer> queue, int capacity, Throwable trace) {
+            super(referent, queue);
+            this.capacity = capacity;
+            this.trace = trace;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 文件类型的Body，发送时从文件流式读取，不将文件读入堆内存<br>
+ * 传输层能直接访问socket通道时（如{@link com.aliyun.api.gateway.demo.transport.nio.NioHttpTransport}）
+ * 以{@link FileChannel#transferTo(long, long, WritableByteChannel)}零拷贝发送。
+ * 文件长度在构造时确定，发送期间文件不应被修改。
+ */
+public class FileBody implements RequestBody {
+    private final Path path;
+    private final long length;
+    private final String contentType;
+
+    /**
+     * @param path
+     *            文件路径
+     * @param contentType
+     *            Content-Type，可以为null
+     * @throws IOException
+     *             读取文件长度失败
+     */
+    public FileBody(Path path, String contentType) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Parameter path cannot be null");
+        }
+        this.path = path;
+        this.length = Files.size(path);
+        this.contentType = contentType;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return 以只读方式打开的文件通道，由调用方关闭
+     */
+    public FileChannel openChannel() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        try (FileChannel channel = openChannel()) {
+            WritableByteChannel target = Channels.newChannel(out);
+            long position = 0;
+            while (position < length) {
+                long n = channel.transferTo(position, length - position, target);
+                if (n <= 0) {
+                    throw new EOFException("File " + path + " truncated at " + position + " of " + length + " bytes");
+                }
+                position += n;
+            }
+        }
+    }
+}
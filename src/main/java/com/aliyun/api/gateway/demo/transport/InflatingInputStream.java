@@ -0,0 +1,312 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * 流式解压gzip或deflate编码的响应Body<br>
+ * 自行解析gzip/zlib头尾并校验CRC32/Adler32，从而可以复用Inflater及输入缓冲区：二者在读到末尾或关闭时归还到共享池，
+ * 避免每个响应都初始化一次zlib。deflate编码兼容不带zlib头的裸deflate数据。多成员gzip只解压第一个成员。
+ */
+class InflatingInputStream extends InputStream {
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_POOLED = 64;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final ConcurrentLinkedQueue<Resources> POOL = new ConcurrentLinkedQueue<Resources>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    private final InputStream in;
+    private final boolean gzip;
+    private final CompressionStats stats;
+    private Resources resources;
+    private Inflater inflater;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    /** 解压内容的校验和，裸deflate为null */
+    private Checksum checksum;
+    private boolean headerRead;
+    private boolean eof;
+    private boolean closed;
+    private boolean recorded;
+    private long compressed;
+    private long decompressed;
+    private byte[] single;
+
+    /**
+     * @param in
+     *            压缩的Body
+     * @param gzip
+     *            true为gzip编码，false为deflate编码
+     * @param stats
+     *            解压统计，可为null
+     */
+    InflatingInputStream(InputStream in, boolean gzip, CompressionStats stats) {
+        this.in = in;
+        this.gzip = gzip;
+        this.stats = stats;
+        this.resources = acquire();
+        this.inflater = resources.inflater;
+        this.buffer = resources.buffer;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (single == null) {
+            single = new byte[1];
+        }
+        return read(single, 0, 1) == 1 ? single[0] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (eof) {
+            return -1;
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (!headerRead) {
+            readHeader();
+            headerRead = true;
+        }
+        try {
+            for (;;) {
+                int n = inflater.inflate(b, off, len);
+                if (n > 0) {
+                    if (checksum != null) {
+                        checksum.update(b, off, n);
+                    }
+                    decompressed += n;
+                    return n;
+                }
+                if (inflater.finished()) {
+                    //未被消费的输入属于尾部
+                    pos = limit - inflater.getRemaining();
+                    readTrailer();
+                    if (pos == limit) {
+                        //读到底层流的末尾，使按EOF归还连接的实现能及时归还连接
+                        in.read(buffer, 0, buffer.length);
+                    }
+                    eof = true;
+                    release();
+                    return -1;
+                }
+                if (inflater.needsDictionary()) {
+                    throw new ZipException("Preset dictionary is not supported");
+                }
+                if (inflater.needsInput()) {
+                    if (!ensure(1)) {
+                        throw new EOFException("Unexpected end of compressed response");
+                    }
+                    inflater.setInput(buffer, pos, limit - pos);
+                    pos = limit;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (gzip) {
+            checksum = resources.crc;
+            if (readShortLE() != GZIP_MAGIC) {
+                throw new ZipException("Not in GZIP format");
+            }
+            if (readByte() != 8) {
+                throw new ZipException("Unsupported compression method");
+            }
+            int flags = readByte();
+            //MTIME(4) XFL(1) OS(1)
+            skipBytes(6);
+            if ((flags & FEXTRA) != 0) {
+                skipBytes(readShortLE());
+            }
+            if ((flags & FNAME) != 0) {
+                skipString();
+            }
+            if ((flags & FCOMMENT) != 0) {
+                skipString();
+            }
+            if ((flags & FHCRC) != 0) {
+                skipBytes(2);
+            }
+        } else {
+            if (!ensure(2)) {
+                throw new EOFException("Unexpected end of compressed response");
+            }
+            int cmf = buffer[pos] & 0xff;
+            int flg = buffer[pos + 1] & 0xff;
+            //RFC 1950的zlib头，否则按裸deflate处理
+            if ((cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0) {
+                if ((flg & 0x20) != 0) {
+                    throw new ZipException("Preset dictionary is not supported");
+                }
+                pos += 2;
+                checksum = resources.adler;
+            }
+        }
+        if (pos < limit) {
+            inflater.setInput(buffer, pos, limit - pos);
+            pos = limit;
+        }
+    }
+
+    private void readTrailer() throws IOException {
+        if (checksum == null) {
+            return;
+        }
+        if (gzip) {
+            long crc = readShortLE() | ((long) readShortLE() << 16);
+            long size = readShortLE() | ((long) readShortLE() << 16);
+            if (crc != checksum.getValue()) {
+                throw new ZipException("Corrupt GZIP trailer: CRC mismatch");
+            }
+            if (size != (decompressed & 0xffffffffL)) {
+                throw new ZipException("Corrupt GZIP trailer: size mismatch");
+            }
+        } else {
+            long adler = ((long) readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+            if (adler != checksum.getValue()) {
+                throw new ZipException("Corrupt deflate trailer: Adler-32 mismatch");
+            }
+        }
+    }
+
+    private int readByte() throws IOException {
+        if (!ensure(1)) {
+            throw new EOFException("Unexpected end of compressed response");
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    private int readShortLE() throws IOException {
+        return readByte() | (readByte() << 8);
+    }
+
+    private void skipBytes(int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            readByte();
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (readByte() != 0) {
+            //skip
+        }
+    }
+
+    /**
+     * 保证缓冲区中至少有n个未读字节，必要时把剩余字节移到开头
+     *
+     * @return 流提前结束时返回false
+     */
+    private boolean ensure(int n) throws IOException {
+        while (limit - pos < n) {
+            if (pos > 0) {
+                System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+                limit -= pos;
+                pos = 0;
+            }
+            int read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                return false;
+            }
+            limit += read;
+            compressed += read;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        release();
+        in.close();
+    }
+
+    /** 记录统计并归还Inflater及缓冲区 */
+    private void release() {
+        if (!recorded) {
+            recorded = true;
+            if (stats != null) {
+                stats.record(compressed, decompressed);
+            }
+        }
+        if (resources == null) {
+            return;
+        }
+        resources.reset();
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(resources);
+        } else {
+            POOLED.decrementAndGet();
+            resources.inflater.end();
+        }
+        resources = null;
+        inflater = null;
+        buffer = null;
+        checksum = null;
+    }
+
+    private static Resources acquire() {
+        Resources resources = POOL.poll();
+        if (resources == null) {
+            return new Resources();
+        }
+        POOLED.decrementAndGet();
+        return resources;
+    }
+
+    /** 可复用的解压状态 */
+    private static class Resources {
+        final Inflater inflater = new Inflater(true);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final CRC32 crc = new CRC32();
+        final Adler32 adler = new Adler32();
+
+        void reset() {
+            inflater.reset();
+            crc.reset();
+            adler.reset();
+        }
+    }
+}
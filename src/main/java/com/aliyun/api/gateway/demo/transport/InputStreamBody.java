@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * 输入流类型的Body，只能发送一次，长度未知时使用chunked传输<br>
+ * 发送过程中边读边计算MD5：指定了期望的Content-MD5时，在最后一段数据发出之前校验，不一致则中止请求，
+ * 服务端不会收到完整的Body；同时校验实际长度与声明的长度一致。
+ */
+public class InputStreamBody implements RequestBody {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final InputStream in;
+    private final long length;
+    private final String contentType;
+    private final String contentMD5;
+    private final AtomicBoolean consumed = new AtomicBoolean();
+
+    /**
+     * @param in
+     *            输入流，发送完成后由调用方关闭
+     * @param length
+     *            长度，未知时传-1
+     * @param contentType
+     *            Content-Type，可以为null
+     * @param contentMD5
+     *            期望的Content-MD5（Base64编码），为null时不校验
+     */
+    public InputStreamBody(InputStream in, long length, String contentType, String contentMD5) {
+        if (in == null) {
+            throw new IllegalArgumentException("Parameter in cannot be null");
+        }
+        this.in = in;
+        this.length = length;
+        this.contentType = contentType;
+        this.contentMD5 = contentMD5;
+    }
+
+    /**
+     * 打开用于发送的输入流，读取时校验长度及Content-MD5
+     *
+     * @throws IllegalStateException
+     *             Body已被发送过
+     */
+    public InputStream openStream() {
+        if (!consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("InputStream body can only be sent once");
+        }
+        return new VerifyingInputStream(in, length, contentMD5);
+    }
+
+    @Override
+    public long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean isRepeatable() {
+        return false;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        InputStream stream = openStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int n;
+        while ((n = stream.read(buffer)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+    }
+
+    /** 校验长度及MD5的输入流，不关闭被包装的流 */
+    private static class VerifyingInputStream extends FilterInputStream {
+        private final long length;
+        private final String contentMD5;
+        private final MessageDigest digest;
+        private long count;
+        private boolean verified;
+
+        VerifyingInputStream(InputStream in, long length, String contentMD5) {
+            super(in);
+            this.length = length;
+            this.contentMD5 = contentMD5;
+            this.digest = contentMD5 == null ? null : DigestUtils.getMd5Digest();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int n = read(b, 0, 1);
+            return n < 0 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (length >= 0 && count == length) {
+                //已读到声明的长度，不再读取被包装的流
+                return -1;
+            }
+            int n = in.read(b, off, length >= 0 ? (int) Math.min(len, length - count) : len);
+            if (n < 0) {
+                if (length >= 0) {
+                    throw new IOException("Body ended after " + count + " of " + length + " bytes");
+                }
+                verify();
+                return -1;
+            }
+            count += n;
+            if (digest != null) {
+                digest.update(b, off, n);
+            }
+            if (count == length) {
+                //长度已知时在返回最后一段数据之前完成校验
+                verify();
+            }
+            return n;
+        }
+
+        private void verify() throws IOException {
+            if (digest == null || verified) {
+                return;
+            }
+            verified = true;
+            String actual = Base64.encodeBase64String(digest.digest());
+            if (!actual.equals(contentMD5)) {
+                throw new IOException("Content-MD5 mismatch: expected " + contentMD5 + ", actual " + actual);
+            }
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            throw new IOException("skip not supported");
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            //由调用方关闭被包装的流
+        }
+    }
+}
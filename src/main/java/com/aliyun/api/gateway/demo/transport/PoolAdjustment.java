@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import com.aliyun.api.gateway.demo.enums.PoolAdjustReason;
+
+/**
+ * 连接池的一次自动调整，由{@link PoolController}生成
+ */
+public class PoolAdjustment {
+    private final long timeMillis;
+    private final PoolAdjustReason reason;
+    private final int previousMaxPerRoute;
+    private final int maxPerRoute;
+    private final int previousMaxTotal;
+    private final int maxTotal;
+    private final double averageWaitMillis;
+    private final long peakLeased;
+    private final int pending;
+    private final double churn;
+
+    PoolAdjustment(long timeMillis, PoolAdjustReason reason, int previousMaxPerRoute, int maxPerRoute,
+            int previousMaxTotal, int maxTotal, double averageWaitMillis, long peakLeased, int pending,
+            double churn) {
+        this.timeMillis = timeMillis;
+        this.reason = reason;
+        this.previousMaxPerRoute = previousMaxPerRoute;
+        this.maxPerRoute = maxPerRoute;
+        this.previousMaxTotal = previousMaxTotal;
+        this.maxTotal = maxTotal;
+        this.averageWaitMillis = averageWaitMillis;
+        this.peakLeased = peakLeased;
+        this.pending = pending;
+        this.churn = churn;
+    }
+
+    /**
+     * @return 调整时间
+     */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public PoolAdjustReason getReason() {
+        return reason;
+    }
+
+    public int getPreviousMaxPerRoute() {
+        return previousMaxPerRoute;
+    }
+
+    public int getMaxPerRoute() {
+        return maxPerRoute;
+    }
+
+    public int getPreviousMaxTotal() {
+        return previousMaxTotal;
+    }
+
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * @return 统计周期内等待连接池分配的平均时间，单位毫秒
+     */
+    public double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    /**
+     * @return 统计周期内在用连接数的峰值
+     */
+    public long getPeakLeased() {
+        return peakLeased;
+    }
+
+    /**
+     * @return 调整时排队等待连接的请求数
+     */
+    public int getPending() {
+        return pending;
+    }
+
+    /**
+     * @return 统计周期内新建连接数与取得连接次数之比
+     */
+    public double getChurn() {
+        return churn;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: maxPerRoute %d->%d, maxTotal %d->%d (avgWait=%.2fms, peakLeased=%d, pending=%d, "
+                + "churn=%.2f)", reason, previousMaxPerRoute, maxPerRoute, previousMaxTotal, maxTotal,
+                averageWaitMillis, peakLeased, pending, churn);
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aliyun.api.gateway.demo.enums.PoolAdjustReason;
+import com.aliyun.api.gateway.demo.trace.Tracer;
+import com.aliyun.api.gateway.demo.trace.Tracers;
+
+/**
+ * {@link ApacheHttpTransport}连接池大小的自动调整<br>
+ * 每个周期读取{@link PoolStats}的增量及连接池状态，在配置的上下限内调整默认的每路由最大连接数及总连接数：
+ * <ul>
+ * <li>有请求排队或平均等待时间超过阈值时，每路由连接数增加一半，总连接数随之增加；</li>
+ * <li>总连接数已用满且新建连接占比超过阈值（路由间互相挤占连接）时，只增加总连接数；</li>
+ * <li>在用连接峰值连续{@link #SHRINK_AFTER_PERIODS}个周期低于容量的一定比例时，每路由连接数减少四分之一
+ * （不低于峰值所需），并关闭空闲超过一个周期的连接。</li>
+ * </ul>
+ * 扩容立即生效，缩容需连续多个周期确认，避免在突发流量间来回振荡。每次调整都会记录日志、提交JFR事件（见{@link Tracer}），
+ * 并保留在{@link #getRecentAdjustments()}中。通过{@code setMaxPerRoute}单独配置过的路由不受影响。
+ */
+public class PoolController implements Closeable {
+    /** 默认调整周期，单位毫秒 */
+    public static final long DEFAULT_INTERVAL = 5 * 1000;
+    /** 默认触发扩容的平均等待时间，单位毫秒 */
+    public static final double DEFAULT_WAIT_THRESHOLD = 1;
+    /** 默认低利用率阈值，在用连接峰值与容量之比 */
+    public static final double DEFAULT_LOW_UTILIZATION = 0.5;
+    /** 默认连接周转阈值，新建连接数与取得连接次数之比 */
+    public static final double DEFAULT_CHURN_THRESHOLD = 0.1;
+    /** 连续多少个低利用率周期后才缩容 */
+    public static final int SHRINK_AFTER_PERIODS = 3;
+    /** 保留的最近调整记录数 */
+    private static final int HISTORY_SIZE = 32;
+    private static final Logger log = LoggerFactory.getLogger(PoolController.class);
+    private static final Tracer tracer = Tracers.get();
+    /** 所有控制器共享一个调整线程 */
+    private static final ScheduledThreadPoolExecutor SCHEDULER = createScheduler();
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final PoolStats stats;
+    private final int minPerRoute;
+    private final int maxPerRoute;
+    private final int minTotal;
+    private final int maxTotal;
+    private long interval = DEFAULT_INTERVAL;
+    private volatile double waitThreshold = DEFAULT_WAIT_THRESHOLD;
+    private volatile double lowUtilization = DEFAULT_LOW_UTILIZATION;
+    private volatile double churnThreshold = DEFAULT_CHURN_THRESHOLD;
+    private ScheduledFuture<?> task;
+    /** 上个周期结束时的累计值 */
+    private long lastAcquisitions;
+    private long lastWaitNanos;
+    private long lastOpened;
+    /** 连续低利用率的周期数 */
+    private int lowPeriods;
+    private final AtomicLong adjustments = new AtomicLong();
+    private final ArrayDeque<PoolAdjustment> history = new ArrayDeque<PoolAdjustment>(HISTORY_SIZE);
+
+    /**
+     * @param transport
+     *            被调整的传输层
+     * @param minPerRoute
+     *            每路由最大连接数的下限
+     * @param maxPerRoute
+     *            每路由最大连接数的上限
+     * @param minTotal
+     *            总连接数的下限
+     * @param maxTotal
+     *            总连接数的上限
+     */
+    public PoolController(ApacheHttpTransport transport, int minPerRoute, int maxPerRoute, int minTotal,
+            int maxTotal) {
+        if (minPerRoute < 1 || maxPerRoute < minPerRoute || minTotal < minPerRoute || maxTotal < minTotal
+                || maxTotal < maxPerRoute) {
+            throw new IllegalArgumentException("Invalid pool bounds: perRoute [" + minPerRoute + ", " + maxPerRoute
+                    + "], total [" + minTotal + ", " + maxTotal + "]");
+        }
+        this.connectionManager = transport.getConnectionManager();
+        this.stats = transport.getPoolStats();
+        this.minPerRoute = minPerRoute;
+        this.maxPerRoute = maxPerRoute;
+        this.minTotal = minTotal;
+        this.maxTotal = maxTotal;
+    }
+
+    /**
+     * 将当前配置收紧到上下限内并开始定时调整
+     */
+    public synchronized void start() {
+        connectionManager.setDefaultMaxPerRoute(clamp(connectionManager.getDefaultMaxPerRoute(), minPerRoute,
+                maxPerRoute));
+        connectionManager.setMaxTotal(clamp(connectionManager.getMaxTotal(), minTotal, maxTotal));
+        lastAcquisitions = stats.getAcquisitions();
+        lastWaitNanos = stats.getWaitNanos();
+        lastOpened = stats.getOpened();
+        stats.resetPeakLeased();
+        if (task == null) {
+            task = SCHEDULER.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        adjust();
+                    } catch (Exception e) {
+                        log.warn("Adjust connection pool failed: " + e.getMessage(), e);
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 按上个周期以来的统计调整一次，通常由定时任务调用
+     *
+     * @return 本次调整，未调整时返回null
+     */
+    public synchronized PoolAdjustment adjust() {
+        long acquisitions = stats.getAcquisitions();
+        long waitNanos = stats.getWaitNanos();
+        long opened = stats.getOpened();
+        long count = acquisitions - lastAcquisitions;
+        double averageWait = count == 0 ? 0
+                : (waitNanos - lastWaitNanos) / (double) TimeUnit.MILLISECONDS.toNanos(1) / count;
+        double churn = count == 0 ? 0 : (opened - lastOpened) / (double) count;
+        lastAcquisitions = acquisitions;
+        lastWaitNanos = waitNanos;
+        lastOpened = opened;
+        long peak = stats.resetPeakLeased();
+        int pending = connectionManager.getTotalStats().getPending();
+        int routes = activeRoutes();
+
+        int perRoute = connectionManager.getDefaultMaxPerRoute();
+        int total = connectionManager.getMaxTotal();
+        int capacity = Math.min(total, perRoute * routes);
+        int newPerRoute = perRoute;
+        int newTotal = total;
+        PoolAdjustReason reason = null;
+        if (pending > 0 || averageWait >= waitThreshold) {
+            lowPeriods = 0;
+            reason = averageWait >= waitThreshold ? PoolAdjustReason.POOL_WAIT : PoolAdjustReason.PENDING;
+            newPerRoute = Math.min(maxPerRoute, perRoute + Math.max(1, perRoute / 2));
+            newTotal = clamp(Math.max(total, newPerRoute * routes), minTotal, maxTotal);
+        } else if (churn >= churnThreshold && peak >= total) {
+            lowPeriods = 0;
+            reason = PoolAdjustReason.CHURN;
+            newTotal = Math.min(maxTotal, total + Math.max(1, total / 2));
+        } else if (peak < capacity * lowUtilization && churn < churnThreshold) {
+            if (++lowPeriods < SHRINK_AFTER_PERIODS) {
+                return null;
+            }
+            lowPeriods = 0;
+            reason = PoolAdjustReason.IDLE;
+            //为峰值保留一个连接的余量
+            int needed = (int) ((peak + routes - 1) / routes) + 1;
+            newPerRoute = clamp(Math.max(perRoute - Math.max(1, perRoute / 4), needed), minPerRoute, perRoute);
+            newTotal = clamp(Math.max(newPerRoute * routes, (int) peak + 1), minTotal, Math.max(total, minTotal));
+        } else {
+            lowPeriods = 0;
+        }
+        if (newPerRoute == perRoute && newTotal == total) {
+            return null;
+        }
+        connectionManager.setDefaultMaxPerRoute(newPerRoute);
+        connectionManager.setMaxTotal(newTotal);
+        if (reason == PoolAdjustReason.IDLE) {
+            //超出新上限的空闲连接在下次分配时关闭，空闲已久的连接立即关闭
+            connectionManager.closeIdleConnections(interval, TimeUnit.MILLISECONDS);
+        }
+        PoolAdjustment adjustment = new PoolAdjustment(System.currentTimeMillis(), reason, perRoute, newPerRoute,
+                total, newTotal, averageWait, peak, pending, churn);
+        adjustments.incrementAndGet();
+        synchronized (history) {
+            if (history.size() == HISTORY_SIZE) {
+                history.removeFirst();
+            }
+            history.addLast(adjustment);
+        }
+        log.info("Connection pool adjusted, " + adjustment);
+        tracer.poolAdjusted(adjustment);
+        return adjustment;
+    }
+
+    /** 有连接或有请求排队的路由数，至少为1 */
+    private int activeRoutes() {
+        int routes = 0;
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            org.apache.http.pool.PoolStats routeStats = connectionManager.getStats(route);
+            if (routeStats.getLeased() + routeStats.getAvailable() + routeStats.getPending() > 0) {
+                routes++;
+            }
+        }
+        return Math.max(1, routes);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * @param interval
+     *            调整周期，单位毫秒，需在{@link #start()}前设置
+     */
+    public void setInterval(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.interval = interval;
+    }
+
+    /**
+     * @param waitThreshold
+     *            触发扩容的平均等待时间，单位毫秒
+     */
+    public void setWaitThreshold(double waitThreshold) {
+        this.waitThreshold = waitThreshold;
+    }
+
+    /**
+     * @param lowUtilization
+     *            低利用率阈值，在用连接峰值与容量之比
+     */
+    public void setLowUtilization(double lowUtilization) {
+        this.lowUtilization = lowUtilization;
+    }
+
+    /**
+     * @param churnThreshold
+     *            连接周转阈值，新建连接数与取得连接次数之比
+     */
+    public void setChurnThreshold(double churnThreshold) {
+        this.churnThreshold = churnThreshold;
+    }
+
+    /**
+     * @return 累计调整次数
+     */
+    public long getAdjustments() {
+        return adjustments.get();
+    }
+
+    /**
+     * @return 最近的调整记录，按时间先后排列
+     */
+    public List<PoolAdjustment> getRecentAdjustments() {
+        synchronized (history) {
+            return new ArrayList<PoolAdjustment>(history);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (task != null) {
+            task.cancel(false);
+            task = null;
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor createScheduler() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "gateway-pool-controller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("maxPerRoute=%d [%d, %d], maxTotal=%d [%d, %d], adjustments=%d",
+                connectionManager.getDefaultMaxPerRoute(), minPerRoute, maxPerRoute, connectionManager.getMaxTotal(),
+                minTotal, maxTotal, getAdjustments());
+    }
+}
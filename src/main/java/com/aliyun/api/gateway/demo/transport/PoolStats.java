@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 连接池统计，线程安全<br>
+ * 累计值只增不减，使用方按两次读取的差值计算区间内的速率；在用连接数的峰值由{@link #resetPeakLeased()}按区间重置。
+ */
+public class PoolStats {
+    private final AtomicLong acquisitions = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong leased = new AtomicLong();
+    private final AtomicLong peakLeased = new AtomicLong();
+
+    /**
+     * 记录一次从连接池取得连接
+     *
+     * @param nanos
+     *            等待连接池分配的时间，单位纳秒，不含建连
+     */
+    void recordAcquire(long nanos) {
+        acquisitions.incrementAndGet();
+        waitNanos.addAndGet(nanos);
+        long max;
+        while (nanos > (max = maxWaitNanos.get()) && !maxWaitNanos.compareAndSet(max, nanos)) {
+            //retry
+        }
+        long current = leased.incrementAndGet();
+        long peak;
+        while (current > (peak = peakLeased.get()) && !peakLeased.compareAndSet(peak, current)) {
+            //retry
+        }
+    }
+
+    /** 记录一次新建连接 */
+    void recordOpen() {
+        opened.incrementAndGet();
+    }
+
+    /** 记录一次归还连接 */
+    void recordRelease() {
+        leased.decrementAndGet();
+    }
+
+    /**
+     * @return 从连接池取得连接的次数
+     */
+    public long getAcquisitions() {
+        return acquisitions.get();
+    }
+
+    /**
+     * @return 等待连接池分配的总时间，单位纳秒
+     */
+    public long getWaitNanos() {
+        return waitNanos.get();
+    }
+
+    /**
+     * @return 平均等待时间，单位毫秒
+     */
+    public double getAverageWaitMillis() {
+        long count = acquisitions.get();
+        return count == 0 ? 0 : waitNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1) / count;
+    }
+
+    /**
+     * @return 最长等待时间，单位毫秒
+     */
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return 新建连接数，与取得连接次数之比反映连接的周转
+     */
+    public long getOpened() {
+        return opened.get();
+    }
+
+    /**
+     * @return 当前在用的连接数
+     */
+    public long getLeased() {
+        return leased.get();
+    }
+
+    /**
+     * @return 上次重置以来在用连接数的峰值
+     */
+    public long getPeakLeased() {
+        return peakLeased.get();
+    }
+
+    /**
+     * 以当前在用连接数重置峰值
+     *
+     * @return 重置前的峰值
+     */
+    public long resetPeakLeased() {
+        return peakLeased.getAndSet(leased.get());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("acquisitions=%d, opened=%d, leased=%d, peakLeased=%d, avgWait=%.2fms, maxWait=%.2fms",
+                getAcquisitions(), getOpened(), getLeased(), getPeakLeased(), getAverageWaitMillis(),
+                getMaxWaitMillis());
+    }
+}
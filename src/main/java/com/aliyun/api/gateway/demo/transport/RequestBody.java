@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 请求Body，与具体的HTTP客户端实现无关
+ */
+public interface RequestBody {
+
+    /**
+     * @return Body长度，未知时返回-1（将使用chunked传输）
+     */
+    long getContentLength();
+
+    /**
+     * @return Body的Content-Type，请求中未设置Content-Type头时使用，可以为null
+     */
+    String getContentType();
+
+    /**
+     * @return 是否可以重复写出，不可重复的Body无法用于重试
+     */
+    boolean isRepeatable();
+
+    /**
+     * 将Body写入输出流
+     *
+     * @param out
+     *            输出流，本方法不负责关闭
+     * @throws IOException
+     *             写入异常
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
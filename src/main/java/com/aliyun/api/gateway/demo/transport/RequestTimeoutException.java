@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.net.SocketTimeoutException;
+
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+
+/**
+ * 请求超时，{@link #getPhase()}指明超时发生的阶段，便于分别调整各阶段的超时配置
+ */
+public class RequestTimeoutException extends SocketTimeoutException {
+    private static final long serialVersionUID = 5183413380287463518L;
+
+    private final TimeoutPhase phase;
+
+    public RequestTimeoutException(TimeoutPhase phase, String message, Throwable cause) {
+        super(phase + " timeout: " + message);
+        this.phase = phase;
+        if (cause != null) {
+            initCause(cause);
+        }
+    }
+
+    /**
+     * @return 超时发生的阶段
+     */
+    public TimeoutPhase getPhase() {
+        return phase;
+    }
+}
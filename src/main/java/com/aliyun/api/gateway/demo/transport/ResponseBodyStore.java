@@ -0,0 +1,474 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 以有界内存读取响应Body<br>
+ * 响应Body先读入池化的内存块，超过溢出阈值（或Content-Length已超过阈值）时转写到临时文件；
+ * 所有未释放响应占用的内存块总量不超过上限，达到上限后新的响应直接溢出到磁盘而不是等待。
+ * 读取完成后连接即可复用，响应的Entity被替换为{@link StoredBody}。
+ * <p>
+ * {@link StoredBody}只能读取一次：关闭其{@link StoredBody#getContent()}返回的流（如EntityUtils.toString、
+ * EntityUtils.consume）或调用{@link StoredBody#release()}后，内存块归还、临时文件删除。未释放的Body会一直占用配额。
+ */
+public class ResponseBodyStore {
+    /** 默认溢出阈值，单位字节 */
+    public static final long DEFAULT_SPILL_THRESHOLD = 1024 * 1024;
+    /** 默认内存上限，单位字节 */
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 64 * 1024 * 1024;
+    /** 内存块大小 */
+    static final int CHUNK_SIZE = 8 * 1024;
+    private static final Logger log = LoggerFactory.getLogger(ResponseBodyStore.class);
+
+    private final long maxMemoryBytes;
+    private final long spillThreshold;
+    private final Path directory;
+    /** 归还的内存块，保留的总量不超过内存上限 */
+    private final ConcurrentLinkedQueue<byte[]> pool = new ConcurrentLinkedQueue<byte[]>();
+    private final AtomicInteger pooled = new AtomicInteger();
+    /** 未释放的响应占用的内存字节数，按内存块计 */
+    private final AtomicLong memoryBytes = new AtomicLong();
+    private final AtomicLong peakMemoryBytes = new AtomicLong();
+    private final AtomicLong bodies = new AtomicLong();
+    private final AtomicLong spilledBodies = new AtomicLong();
+    private final AtomicLong spilledBytes = new AtomicLong();
+
+    /**
+     * 使用默认的内存上限及溢出阈值，临时文件写入java.io.tmpdir
+     */
+    public ResponseBodyStore() {
+        this(DEFAULT_MAX_MEMORY_BYTES, DEFAULT_SPILL_THRESHOLD, null);
+    }
+
+    /**
+     * @param maxMemoryBytes
+     *            所有未释放响应占用内存的上限，单位字节
+     * @param spillThreshold
+     *            单个响应Body超过该长度时溢出到临时文件，单位字节
+     * @param directory
+     *            临时文件目录，为null时使用java.io.tmpdir
+     */
+    public ResponseBodyStore(long maxMemoryBytes, long spillThreshold, Path directory) {
+        if (maxMemoryBytes < 0 || spillThreshold < 0) {
+            throw new IllegalArgumentException("maxMemoryBytes and spillThreshold must not be negative");
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.spillThreshold = spillThreshold;
+        this.directory = directory;
+    }
+
+    /**
+     * 读取响应Body并将Entity替换为{@link StoredBody}，无Body时不做处理
+     *
+     * @return 替换后的Body，无Body时返回null
+     * @throws IOException
+     *             读取响应或写临时文件失败，已占用的内存及临时文件均已释放
+     */
+    public StoredBody store(HttpResponse response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity == null) {
+            return null;
+        }
+        StoredBody body = new StoredBody(this);
+        body.setContentType(entity.getContentType());
+        body.setContentEncoding(entity.getContentEncoding());
+        try (InputStream in = entity.getContent()) {
+            if (in != null) {
+                read(in, body, entity.getContentLength() > spillThreshold);
+            }
+        } catch (IOException | RuntimeException e) {
+            body.release();
+            throw e;
+        }
+        bodies.incrementAndGet();
+        if (body.file != null) {
+            spilledBodies.incrementAndGet();
+            spilledBytes.addAndGet(body.length);
+        }
+        response.setEntity(body);
+        return body;
+    }
+
+    private void read(InputStream in, StoredBody body, boolean spill) throws IOException {
+        if (spill) {
+            spill(body);
+        }
+        byte[] chunk = null;
+        int filled = 0;
+        while (true) {
+            if (body.channel != null) {
+                //已溢出，剩余部分直接写入文件
+                byte[] buffer = new byte[CHUNK_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    write(body.channel, buffer, n);
+                    body.length += n;
+                }
+                body.channel.close();
+                body.channel = null;
+                return;
+            }
+            if (chunk == null || filled == chunk.length) {
+                chunk = acquire();
+                if (chunk == null) {
+                    //内存配额已用完
+                    spill(body);
+                    continue;
+                }
+                body.chunks.add(chunk);
+                filled = 0;
+            }
+            int n = in.read(chunk, filled, chunk.length - filled);
+            if (n == -1) {
+                body.lastChunkLength = filled;
+                return;
+            }
+            filled += n;
+            body.length += n;
+            if (body.length > spillThreshold) {
+                spill(body);
+            }
+        }
+    }
+
+    /**
+     * 创建临时文件，写入已读入内存的部分并归还内存块
+     */
+    private void spill(StoredBody body) throws IOException {
+        body.file = directory == null ? Files.createTempFile("response-", ".body")
+                : Files.createTempFile(directory, "response-", ".body");
+        body.channel = FileChannel.open(body.file, StandardOpenOption.WRITE);
+        long remaining = body.length;
+        for (byte[] chunk : body.chunks) {
+            int n = (int) Math.min(chunk.length, remaining);
+            write(body.channel, chunk, n);
+            remaining -= n;
+        }
+        body.releaseChunks();
+    }
+
+    private static void write(FileChannel channel, byte[] bytes, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * 在内存上限内取一个内存块
+     *
+     * @return 超过上限时返回null
+     */
+    private byte[] acquire() {
+        long used;
+        do {
+            used = memoryBytes.get();
+            if (used + CHUNK_SIZE > maxMemoryBytes) {
+                return null;
+            }
+        } while (!memoryBytes.compareAndSet(used, used + CHUNK_SIZE));
+        long peak;
+        while ((peak = peakMemoryBytes.get()) < used + CHUNK_SIZE
+                && !peakMemoryBytes.compareAndSet(peak, used + CHUNK_SIZE)) {
+            //retry
+        }
+        byte[] chunk = pool.poll();
+        if (chunk == null) {
+            return new byte[CHUNK_SIZE];
+        }
+        pooled.decrementAndGet();
+        return chunk;
+    }
+
+    void release(byte[] chunk) {
+        memoryBytes.addAndGet(-CHUNK_SIZE);
+        if (pooled.incrementAndGet() * (long) CHUNK_SIZE <= maxMemoryBytes) {
+            pool.offer(chunk);
+        } else {
+            pooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return 未释放的响应当前占用的内存字节数，按内存块计
+     */
+    public long getMemoryBytes() {
+        return memoryBytes.get();
+    }
+
+    /**
+     * @return 占用内存的峰值
+     */
+    public long getPeakMemoryBytes() {
+        return peakMemoryBytes.get();
+    }
+
+    /**
+     * @return 已读取的响应数
+     */
+    public long getBodies() {
+        return bodies.get();
+    }
+
+    /**
+     * @return 溢出到临时文件的响应数
+     */
+    public long getSpilledBodies() {
+        return spilledBodies.get();
+    }
+
+    /**
+     * @return 溢出到临时文件的字节数
+     */
+    public long getSpilledBytes() {
+        return spilledBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("bodies=%d, spilled=%d (%dB), memory=%dB, peakMemory=%dB, maxMemory=%dB",
+                getBodies(), getSpilledBodies(), getSpilledBytes(), getMemoryBytes(), getPeakMemoryBytes(),
+                maxMemoryBytes);
+    }
+
+    /**
+     * 已完整读取的响应Body，位于池化内存块或临时文件中，只能读取一次
+     */
+    public static class StoredBody extends AbstractHttpEntity {
+        private final ResponseBodyStore store;
+        private final List<byte[]> chunks = new ArrayList<byte[]>();
+        private final AtomicBoolean released = new AtomicBoolean();
+        /** 最后一个内存块中的有效字节数 */
+        private int lastChunkLength;
+        private long length;
+        private Path file;
+        /** 溢出时写临时文件的通道，读取完成后关闭 */
+        private FileChannel channel;
+
+        StoredBody(ResponseBodyStore store) {
+            this.store = store;
+        }
+
+        /**
+         * @return 是否已溢出到临时文件
+         */
+        public boolean isSpilled() {
+            return file != null;
+        }
+
+        /**
+         * @return 溢出的临时文件，未溢出时返回null；释放后文件被删除
+         */
+        public Path getFile() {
+            return file;
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return false;
+        }
+
+        /**
+         * @return 未释放时返回true，使EntityUtils.consume等关闭内容流从而释放Body
+         */
+        @Override
+        public boolean isStreaming() {
+            return !released.get();
+        }
+
+        /**
+         * @return 读取Body的流，关闭时释放Body
+         * @throws IllegalStateException
+         *             Body已释放
+         */
+        @Override
+        public InputStream getContent() throws IOException {
+            checkNotReleased();
+            InputStream in = file != null ? Files.newInputStream(file) : new ChunkInputStream();
+            return new ReleasingInputStream(in);
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                byte[] buffer = new byte[CHUNK_SIZE];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+
+        /**
+         * 以ByteBuffer读取Body，不释放Body：溢出的Body返回只读的内存映射，未溢出的Body复制为一个堆内缓冲区
+         * （长度不超过溢出阈值）。映射在释放Body后仍可读取，但Windows下映射未被回收前无法删除临时文件。
+         *
+         * @throws IllegalStateException
+         *             Body已释放
+         */
+        public ByteBuffer asByteBuffer() throws IOException {
+            checkNotReleased();
+            if (file != null) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                }
+            }
+            byte[] bytes = new byte[(int) length];
+            int offset = 0;
+            for (byte[] chunk : chunks) {
+                int n = Math.min(chunk.length, bytes.length - offset);
+                System.arraycopy(chunk, 0, bytes, offset, n);
+                offset += n;
+            }
+            return ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        }
+
+        /**
+         * 归还内存块并删除临时文件，可重复调用
+         */
+        public void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            releaseChunks();
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    //leave empty
+                }
+            }
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Failed to delete spilled response body {}: {}", file, e.toString());
+                }
+            }
+        }
+
+        void releaseChunks() {
+            for (byte[] chunk : chunks) {
+                store.release(chunk);
+            }
+            chunks.clear();
+        }
+
+        private void checkNotReleased() {
+            if (released.get()) {
+                throw new IllegalStateException("Response body already released");
+            }
+        }
+
+        /** 顺序读取内存块 */
+        private class ChunkInputStream extends InputStream {
+            private int index;
+            private int position;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) {
+                    return 0;
+                }
+                while (index < chunks.size()) {
+                    int limit = index == chunks.size() - 1 ? lastChunkLength : CHUNK_SIZE;
+                    if (position < limit) {
+                        int n = Math.min(len, limit - position);
+                        System.arraycopy(chunks.get(index), position, b, off, n);
+                        position += n;
+                        return n;
+                    }
+                    index++;
+                    position = 0;
+                }
+                return -1;
+            }
+        }
+
+        /** 关闭时释放Body的流 */
+        private class ReleasingInputStream extends InputStream {
+            private final InputStream in;
+
+            ReleasingInputStream(InputStream in) {
+                this.in = in;
+            }
+
+            @Override
+            public int read() throws IOException {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return in.read(b, off, len);
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                return in.skip(n);
+            }
+
+            @Override
+            public int available() throws IOException {
+                return in.available();
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    in.close();
+                } finally {
+                    release();
+                }
+            }
+        }
+    }
+}
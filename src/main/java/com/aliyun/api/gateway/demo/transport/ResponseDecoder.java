@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.HttpEntityWrapper;
+
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+
+/**
+ * 按Content-Encoding流式解压响应Body，与具体传输层无关
+ */
+public class ResponseDecoder {
+    /** 请求时声明的Accept-Encoding */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private ResponseDecoder() {
+    }
+
+    /**
+     * 响应为gzip或deflate编码时将Body替换为解压流，并移除Content-Encoding、Content-Length及Content-MD5，
+     * 其余编码及无Body的响应保持不变
+     *
+     * @param response
+     *            响应
+     * @param stats
+     *            解压统计，可为null
+     * @return 是否做了替换
+     */
+    public static boolean decode(HttpResponse response, CompressionStats stats) {
+        HttpEntity entity = response.getEntity();
+        Header encoding = response.getFirstHeader(HttpHeader.HTTP_HEADER_CONTENT_ENCODING);
+        if (entity == null || encoding == null || entity.getContentLength() == 0) {
+            return false;
+        }
+        String value = encoding.getValue().trim();
+        boolean gzip;
+        if ("gzip".equalsIgnoreCase(value) || "x-gzip".equalsIgnoreCase(value)) {
+            gzip = true;
+        } else if ("deflate".equalsIgnoreCase(value)) {
+            gzip = false;
+        } else {
+            return false;
+        }
+        response.setEntity(new DecodedEntity(entity, gzip, stats));
+        response.removeHeaders(HttpHeader.HTTP_HEADER_CONTENT_ENCODING);
+        response.removeHeaders(HttpHeader.HTTP_HEADER_CONTENT_LENGTH);
+        response.removeHeaders(HttpHeader.HTTP_HEADER_CONTENT_MD5);
+        return true;
+    }
+
+    /** 解压后的Body，长度未知 */
+    private static class DecodedEntity extends HttpEntityWrapper {
+        private final boolean gzip;
+        private final CompressionStats stats;
+        /** 不可重复读取的Body只创建一个解压流 */
+        private InputStream content;
+
+        DecodedEntity(HttpEntity wrapped, boolean gzip, CompressionStats stats) {
+            super(wrapped);
+            this.gzip = gzip;
+            this.stats = stats;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            if (wrappedEntity.isRepeatable()) {
+                return new InflatingInputStream(wrappedEntity.getContent(), gzip, stats);
+            }
+            if (content == null) {
+                content = new InflatingInputStream(wrappedEntity.getContent(), gzip, stats);
+            }
+            return content;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            try (InputStream in = getContent()) {
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+            }
+        }
+
+        @Override
+        public long getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public Header getContentEncoding() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.http.ssl.TrustStrategy;
+
+/**
+ * 各Transport实现共用的SSLContext构造逻辑
+ */
+public class SSLContextFactory {
+    /** 共享的SSLContext，按信任策略与会话缓存配置区分 */
+    private static final ConcurrentMap<String, SSLContext> SHARED = new ConcurrentHashMap<String, SSLContext>();
+
+    /**
+     * 获取共享的SSLContext<br>
+     * 会话缓存保存在SSLContext中，多个Client共享同一个SSLContext后，到同一host的新连接可以恢复已有会话而不必完整握手。
+     *
+     * @param testEnv
+     *            是否是测试环境，测试环境信任所有证书
+     * @param tlsConfig
+     *            TLS配置，决定会话缓存大小与超时时间
+     * @return SSLContext
+     * @throws GeneralSecurityException
+     *             构造失败
+     * @throws IOException
+     *             读取keystore失败
+     */
+    public static SSLContext getShared(boolean testEnv, TlsConfig tlsConfig) throws GeneralSecurityException,
+            IOException {
+        String key = testEnv + ":" + tlsConfig.getSessionCacheSize() + ":" + tlsConfig.getSessionTimeout();
+        SSLContext sslContext = SHARED.get(key);
+        if (sslContext == null) {
+            sslContext = create(testEnv);
+            sslContext.getClientSessionContext().setSessionCacheSize(tlsConfig.getSessionCacheSize());
+            sslContext.getClientSessionContext().setSessionTimeout(tlsConfig.getSessionTimeout());
+            SSLContext existing = SHARED.putIfAbsent(key, sslContext);
+            if (existing != null) {
+                sslContext = existing;
+            }
+        }
+        return sslContext;
+    }
+
+    /**
+     * 构造SSLContext<br>
+     * 当需要访问https的URL时，需要设置keystore文件及其storePassword。keystore文件的生成方法可以参考 《
+     * <a href="http://docs.oracle.com/javase/6/docs/technotes/tools/windows/keytool.html">keytool使用文档</a>》
+     *
+     * @param testEnv
+     *            是否是测试环境，测试环境信任所有证书
+     * @return SSLContext
+     * @throws GeneralSecurityException
+     *             构造失败
+     * @throws IOException
+     *             读取keystore失败
+     */
+    public static SSLContext create(boolean testEnv) throws GeneralSecurityException, IOException {
+        if (testEnv) {
+            return new SSLContextBuilder().loadTrustMaterial(null, new TrustStrategy() {
+                @Override
+                public boolean isTrusted(X509Certificate[] chain, String authType) throws CertificateException {
+                    //一概返回true仅在测试环境中，如果生产环境中永远返回true存在安全风险
+                    return true;
+                }
+            }).build();
+        }
+        //若出现错误，请用keytool生成keystore并在本段逻辑中指定该keystore
+        KeyStore ks = KeyStore.getInstance(KeyStore.getDefaultType());
+        ks.load(null, null);
+        return SSLContexts.custom().loadTrustMaterial(ks, new TrustSelfSignedStrategy()).build();
+    }
+}
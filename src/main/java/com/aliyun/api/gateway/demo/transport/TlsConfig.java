@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.net.ssl.SSLContext;
+
+/**
+ * TLS配置<br>
+ * 默认启用TLS 1.3与TLS 1.2（运行环境不支持的协议会被忽略），加密套件使用JVM默认值。
+ * 同一配置的Client共享同一个SSLContext（见{@link SSLContextFactory#getShared(boolean, TlsConfig)}），
+ * 其会话缓存使新连接可以通过会话恢复（TLS 1.2 Session ID/Ticket，TLS 1.3 PSK）跳过完整的密钥交换。
+ * JSSE不支持TLS 1.3的0-RTT早期数据，恢复握手仍需1-RTT。
+ */
+public class TlsConfig {
+    /** 默认协议，按优先级排列 */
+    public static final String[] DEFAULT_PROTOCOLS = { "TLSv1.3", "TLSv1.2" };
+    /** 默认会话缓存条目数，网关调用的目标host通常很少，无需JVM默认的上万条 */
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 512;
+    /** 默认会话超时时间，单位秒 */
+    public static final int DEFAULT_SESSION_TIMEOUT = 4 * 3600;
+
+    /** 启用的协议 */
+    private String[] protocols = DEFAULT_PROTOCOLS;
+    /** （可选）启用的加密套件，为null时使用JVM默认值 */
+    private String[] cipherSuites;
+    /** 会话缓存条目数 */
+    private int sessionCacheSize = DEFAULT_SESSION_CACHE_SIZE;
+    /** 会话超时时间，单位秒 */
+    private int sessionTimeout = DEFAULT_SESSION_TIMEOUT;
+
+    public TlsConfig() {
+    }
+
+    public TlsConfig(String[] protocols, String[] cipherSuites) {
+        this.protocols = protocols;
+        this.cipherSuites = cipherSuites;
+    }
+
+    /**
+     * 过滤掉SSLContext不支持的协议
+     *
+     * @param sslContext
+     *            SSLContext
+     * @return 可启用的协议，均不支持时返回null（使用JVM默认值）
+     */
+    public String[] getSupportedProtocols(SSLContext sslContext) {
+        if (protocols == null) {
+            return null;
+        }
+        List<String> supported = Arrays.asList(sslContext.getSupportedSSLParameters().getProtocols());
+        List<String> result = new ArrayList<String>(protocols.length);
+        for (String protocol : protocols) {
+            if (supported.contains(protocol)) {
+                result.add(protocol);
+            }
+        }
+        return result.isEmpty() ? null : result.toArray(new String[result.size()]);
+    }
+
+    public String[] getProtocols() {
+        return protocols;
+    }
+
+    public String[] getCipherSuites() {
+        return cipherSuites;
+    }
+
+    public int getSessionCacheSize() {
+        return sessionCacheSize;
+    }
+
+    public int getSessionTimeout() {
+        return sessionTimeout;
+    }
+
+    public void setProtocols(String[] protocols) {
+        this.protocols = protocols;
+    }
+
+    public void setCipherSuites(String[] cipherSuites) {
+        this.cipherSuites = cipherSuites;
+    }
+
+    public void setSessionCacheSize(int sessionCacheSize) {
+        this.sessionCacheSize = sessionCacheSize;
+    }
+
+    public void setSessionTimeout(int sessionTimeout) {
+        this.sessionTimeout = sessionTimeout;
+    }
+}
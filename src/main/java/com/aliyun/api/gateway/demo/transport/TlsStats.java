@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TLS握手统计，线程安全
+ */
+public class TlsStats {
+    private final AtomicLong handshakes = new AtomicLong();
+    private final AtomicLong resumed = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong fullNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * 记录一次成功的握手
+     *
+     * @param nanos
+     *            握手耗时，单位纳秒
+     * @param resumedSession
+     *            是否为会话恢复
+     */
+    public void record(long nanos, boolean resumedSession) {
+        handshakes.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        if (resumedSession) {
+            resumed.incrementAndGet();
+        } else {
+            fullNanos.addAndGet(nanos);
+        }
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            //retry
+        }
+    }
+
+    /** 记录一次失败的握手 */
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    /**
+     * @return 成功握手次数
+     */
+    public long getHandshakes() {
+        return handshakes.get();
+    }
+
+    /**
+     * @return 其中通过会话恢复完成的次数
+     */
+    public long getResumed() {
+        return resumed.get();
+    }
+
+    /**
+     * @return 完整握手次数
+     */
+    public long getFullHandshakes() {
+        return handshakes.get() - resumed.get();
+    }
+
+    /**
+     * @return 握手失败次数
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return 所有握手的总耗时，单位毫秒
+     */
+    public double getTotalMillis() {
+        return totalNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return 完整握手的平均耗时，单位毫秒
+     */
+    public double getAverageFullMillis() {
+        long full = getFullHandshakes();
+        return full == 0 ? 0 : fullNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1) / full;
+    }
+
+    /**
+     * @return 会话恢复握手的平均耗时，单位毫秒
+     */
+    public double getAverageResumedMillis() {
+        long count = resumed.get();
+        return count == 0 ? 0
+                : (totalNanos.get() - fullNanos.get()) / (double) TimeUnit.MILLISECONDS.toNanos(1) / count;
+    }
+
+    /**
+     * @return 最长握手耗时，单位毫秒
+     */
+    public double getMaxMillis() {
+        return maxNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("handshakes=%d, resumed=%d, failures=%d, avgFull=%.2fms, avgResumed=%.2fms, max=%.2fms",
+                getHandshakes(), getResumed(), getFailures(), getAverageFullMillis(), getAverageResumedMillis(),
+                getMaxMillis());
+    }
+}
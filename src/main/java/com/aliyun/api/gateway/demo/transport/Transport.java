@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+import org.apache.http.HttpResponse;
+
+/**
+ * HTTP传输层<br>
+ * 签名（{@link com.aliyun.api.gateway.demo.util.SignUtil}）与请求建模（{@link com.aliyun.api.gateway.demo.Request}、
+ * {@link com.aliyun.api.gateway.demo.enums.Method}）均在{@link com.aliyun.api.gateway.demo.Client}中完成，
+ * Transport只负责把已签名的{@link TransportRequest}发送出去并返回响应。响应沿用httpcore的{@link HttpResponse}模型，
+ * 以保持{@link com.aliyun.api.gateway.demo.Client#execute(com.aliyun.api.gateway.demo.Request)}的返回类型不变。
+ * <p>
+ * 实现类必须是线程安全的。
+ */
+public interface Transport extends Closeable {
+
+    /**
+     * 发送已签名的请求
+     *
+     * @param request
+     *            已签名的请求
+     * @return HTTP响应，调用方负责消费其Entity以释放连接
+     * @throws IOException
+     *             HTTP访问异常时，含网络等异常，抛出异常
+     */
+    HttpResponse execute(TransportRequest request) throws IOException;
+
+    /**
+     * 预先建立到目标地址的连接并放入连接池，用于消除首批请求的连接及TLS握手耗时
+     *
+     * @param uri
+     *            目标地址，只使用scheme、host与port
+     * @param target
+     *            （可选）实际连接的地址，与{@link TransportRequest#getTarget()}相同，预建立的连接与指定该地址的请求属于同一路由
+     * @param connections
+     *            期望的连接数，实现可以按自身连接模型减少（如HTTP/2只需一个连接）
+     * @param timeout
+     *            连接超时时间，单位毫秒
+     * @return 新建立的连接数
+     * @throws IOException
+     *             建立连接失败
+     */
+    int preconnect(URI uri, InetSocketAddress target, int connections, int timeout) throws IOException;
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 已签名、待发送的请求<br>
+ * 由{@link com.aliyun.api.gateway.demo.Client}构建并签名后交给{@link Transport}发送。Header按名称排序发送，
+ * 名称不区分大小写，同名Header后加入的覆盖先加入的。
+ */
+public class TransportRequest {
+    /** HTTP方法，如GET、POST */
+    private final String method;
+    /** 完整的请求地址 */
+    private final URI uri;
+    /** HTTP头，名称不区分大小写 */
+    private final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+    /** （可选）请求Body */
+    private RequestBody body;
+    /** 连接超时时间，单位毫秒 */
+    private int timeout;
+    /** （可选）端到端截止时间，覆盖连接池等待、连接、TLS握手、发送、等待响应及重试 */
+    private Deadline deadline;
+    /** （可选）实际连接的地址，为null时解析URI中的host；URI中的host仍用于Host头、TLS SNI及证书校验 */
+    private InetSocketAddress target;
+
+    public TransportRequest(String method, URI uri) {
+        this.method = method;
+        this.uri = uri;
+    }
+
+    /**
+     * 设置HTTP头，已存在的同名（不区分大小写）HTTP头会被移除
+     *
+     * @param name
+     *            名称
+     * @param value
+     *            值
+     * @return this
+     */
+    public TransportRequest setHeader(String name, String value) {
+        //先移除，使名称的大小写以本次设置的为准
+        headers.remove(name);
+        headers.put(name, value);
+        return this;
+    }
+
+    /**
+     * 读取HTTP头，名称不区分大小写
+     *
+     * @param name
+     *            名称
+     * @return 值，不存在时返回null
+     */
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * 移除HTTP头，名称不区分大小写
+     *
+     * @param name
+     *            名称
+     */
+    public void removeHeader(String name) {
+        headers.remove(name);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * @return 所有HTTP头，按名称查找不区分大小写，可直接修改
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public RequestBody getBody() {
+        return body;
+    }
+
+    public void setBody(RequestBody body) {
+        this.body = body;
+    }
+
+    public int getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public Deadline getDeadline() {
+        return deadline;
+    }
+
+    public void setDeadline(Deadline deadline) {
+        this.deadline = deadline;
+    }
+
+    public InetSocketAddress getTarget() {
+        return target;
+    }
+
+    public void setTarget(InetSocketAddress target) {
+        this.target = target;
+    }
+}
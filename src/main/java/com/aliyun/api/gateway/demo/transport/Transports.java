@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+
+import com.aliyun.api.gateway.demo.transport.nio.NioHttpTransport;
+
+/**
+ * 内置Transport的工厂方法
+ */
+public class Transports {
+    /** JDK HTTP/2实现，仅在JDK 11及以上版本中编译（见pom.xml中的jdk11 profile） */
+    private static final String JDK_HTTP2_TRANSPORT = "com.aliyun.api.gateway.demo.transport.JdkHttp2Transport";
+
+    /**
+     * 基于Apache HttpClient的HTTP/1.1传输层
+     *
+     * @param testEnv
+     *            是否是测试环境
+     * @return Transport
+     */
+    public static Transport apache(boolean testEnv) {
+        return new ApacheHttpTransport(testEnv);
+    }
+
+    /**
+     * 基于Apache HttpClient的HTTP/1.1传输层
+     *
+     * @param testEnv
+     *            是否是测试环境
+     * @param tlsConfig
+     *            TLS协议、加密套件及会话缓存配置
+     * @return Transport
+     */
+    public static Transport apache(boolean testEnv, TlsConfig tlsConfig) {
+        return new ApacheHttpTransport(testEnv, ApacheHttpTransport.DEFAULT_MAX_TOTAL,
+                ApacheHttpTransport.DEFAULT_MAX_PER_ROUTE, tlsConfig);
+    }
+
+    /**
+     * 基于java.nio选择器的精简HTTP/1.1传输层，仅支持http
+     *
+     * @param maxPerRoute
+     *            每个路由的最大连接数
+     * @param pipelineDepth
+     *            每个连接上最多同时在途的请求数，1表示不使用流水线
+     * @return Transport
+     * @throws IOException
+     *             打开选择器失败
+     */
+    public static Transport nio(int maxPerRoute, int pipelineDepth) throws IOException {
+        return new NioHttpTransport(maxPerRoute, pipelineDepth);
+    }
+
+    /**
+     * 基于JDK {@code java.net.http.HttpClient}的HTTP/2传输层，多个并发请求复用同一连接上的多个stream
+     *
+     * @param testEnv
+     *            是否是测试环境
+     * @return Transport
+     * @throws UnsupportedOperationException
+     *             运行环境低于JDK 11或未编译该实现时抛出异常
+     */
+    public static Transport http2(boolean testEnv) {
+        return http2(testEnv, new TlsConfig());
+    }
+
+    /**
+     * 基于JDK {@code java.net.http.HttpClient}的HTTP/2传输层
+     *
+     * @param testEnv
+     *            是否是测试环境
+     * @param tlsConfig
+     *            TLS协议、加密套件及会话缓存配置
+     * @return Transport
+     * @throws UnsupportedOperationException
+     *             运行环境低于JDK 11或未编译该实现时抛出异常
+     */
+    public static Transport http2(boolean testEnv, TlsConfig tlsConfig) {
+        try {
+            Class<?> clazz = Class.forName(JDK_HTTP2_TRANSPORT);
+            return (Transport) clazz.getConstructor(boolean.class, TlsConfig.class).newInstance(testEnv, tlsConfig);
+        } catch (ClassNotFoundException | LinkageError e) {
+            throw new UnsupportedOperationException("HTTP/2 transport requires JDK 11 or later", e);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 写入池化直接内存缓冲区链的输出流，用于在调用方线程中序列化请求
+ */
+class BufferChainOutputStream extends OutputStream {
+    private final DirectBufferPool pool;
+    private final List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(2);
+    private ByteBuffer current;
+
+    BufferChainOutputStream(DirectBufferPool pool) {
+        this.pool = pool;
+        this.current = pool.acquire();
+        buffers.add(current);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureRemaining();
+        current.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        while (len > 0) {
+            ensureRemaining();
+            int n = Math.min(len, current.remaining());
+            current.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 按ISO-8859-1写出字符串，与Apache HttpClient未指定字符集时的Header编码方式一致
+     */
+    void writeAscii(String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            ensureRemaining();
+            current.put((byte) s.charAt(i));
+        }
+    }
+
+    void writeCRLF() {
+        write('\r');
+        write('\n');
+    }
+
+    private void ensureRemaining() {
+        if (!current.hasRemaining()) {
+            current = pool.acquire();
+            buffers.add(current);
+        }
+    }
+
+    /**
+     * @return 已切换为读模式的缓冲区链
+     */
+    List<ByteBuffer> finish() {
+        for (ByteBuffer buffer : buffers) {
+            buffer.flip();
+        }
+        return buffers;
+    }
+
+    /** 归还所有缓冲区，用于序列化失败时 */
+    void discard() {
+        for (ByteBuffer buffer : buffers) {
+            pool.release(buffer);
+        }
+        buffers.clear();
+    }
+
+    /** chunked编码输出流，每次flush或缓冲满时输出一个chunk */
+    static class ChunkedOutputStream extends OutputStream {
+        private final BufferChainOutputStream out;
+        private final byte[] chunk;
+        private int count;
+
+        ChunkedOutputStream(BufferChainOutputStream out, int chunkSize) {
+            this.out = out;
+            this.chunk = new byte[chunkSize];
+        }
+
+        @Override
+        public void write(int b) {
+            if (count == chunk.length) {
+                flushChunk();
+            }
+            chunk[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (count == chunk.length) {
+                    flushChunk();
+                }
+                int n = Math.min(len, chunk.length - count);
+                System.arraycopy(b, off, chunk, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushChunk();
+        }
+
+        private void flushChunk() {
+            if (count > 0) {
+                out.writeAscii(Integer.toHexString(count));
+                out.writeCRLF();
+                out.write(chunk, 0, count);
+                out.writeCRLF();
+                count = 0;
+            }
+        }
+
+        /** 输出剩余数据及结束chunk */
+        @Override
+        public void close() throws IOException {
+            flushChunk();
+            out.writeAscii("0");
+            out.writeCRLF();
+            out.writeCRLF();
+        }
+    }
+}
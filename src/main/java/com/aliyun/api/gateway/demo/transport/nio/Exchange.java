@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+import com.aliyun.api.gateway.demo.transport.Deadline;
+import com.aliyun.api.gateway.demo.transport.RequestTimeoutException;
+
+/**
+ * 一次请求/响应交换，在调用方线程创建，由选择器线程完成
+ */
+class Exchange {
+    /** 没有截止时间时调用方等待响应的兜底上限，单位毫秒，防止选择器线程异常时永久阻塞 */
+    static final long MAX_AWAIT_MILLIS = 10 * 60 * 1000;
+    /** 有截止时间时，在截止时间之后再等待选择器线程处理超时的时间，单位毫秒 */
+    private static final long AWAIT_GRACE_MILLIS = 5 * 1000;
+    /** 路由标识，host:port */
+    final String routeKey;
+    final InetSocketAddress address;
+    /** 是否为HEAD请求 */
+    final boolean head;
+    /** 是否幂等，只有幂等请求才会被流水线发送或在连接失效时重发 */
+    final boolean idempotent;
+    /** 连接超时时间，单位毫秒 */
+    final int connectTimeout;
+    /** 端到端截止时间，可能为null */
+    final Deadline deadline;
+    /** 已序列化的请求，完成后归还缓冲区池 */
+    final List<ByteBuffer> buffers;
+    /** （可选）紧随buffers零拷贝写出的文件Body，完成后关闭 */
+    final FileRegion fileRegion;
+    /** （可选）紧随buffers直接写出的ByteBuffer Body，属于调用方，不归还缓冲区池 */
+    final ByteBuffer bodyBuffer;
+    /** 是否已重发过 */
+    boolean retried;
+    /** 连接获取埋点，在调用方线程开始，由选择器线程在分配到连接时结束 */
+    Object acquireSpan;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile HttpResponse response;
+    private volatile IOException failure;
+
+    Exchange(String routeKey, InetSocketAddress address, boolean head, boolean idempotent, int connectTimeout,
+            Deadline deadline, List<ByteBuffer> buffers, FileRegion fileRegion, ByteBuffer bodyBuffer) {
+        this.routeKey = routeKey;
+        this.address = address;
+        this.head = head;
+        this.idempotent = idempotent;
+        this.connectTimeout = connectTimeout;
+        this.deadline = deadline;
+        this.buffers = buffers;
+        this.fileRegion = fileRegion;
+        this.bodyBuffer = bodyBuffer;
+    }
+
+    /** 重发前将请求缓冲区恢复到起始位置 */
+    void rewind() {
+        for (ByteBuffer buffer : buffers) {
+            buffer.rewind();
+        }
+        if (fileRegion != null) {
+            fileRegion.rewind();
+        }
+        if (bodyBuffer != null) {
+            bodyBuffer.rewind();
+        }
+    }
+
+    /**
+     * @return 写队列中的元素是否属于本请求
+     */
+    boolean owns(Object item) {
+        if (item == fileRegion || item == bodyBuffer) {
+            return true;
+        }
+        for (ByteBuffer buffer : buffers) {
+            if (item == buffer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void complete(HttpResponse response) {
+        this.response = response;
+        done.countDown();
+    }
+
+    void fail(IOException failure) {
+        this.failure = failure;
+        done.countDown();
+    }
+
+    boolean isExpired() {
+        return deadline != null && deadline.isExpired();
+    }
+
+    boolean isDone() {
+        return done.getCount() == 0;
+    }
+
+    /**
+     * 等待响应，超时或被中断时调用方须通过{@link NioHttpTransport}取消本请求
+     */
+    HttpResponse await() throws IOException {
+        long timeout = deadline != null ? deadline.remainingMillis() + AWAIT_GRACE_MILLIS : MAX_AWAIT_MILLIS;
+        try {
+            if (!done.await(timeout, TimeUnit.MILLISECONDS)) {
+                throw new RequestTimeoutException(TimeoutPhase.RESPONSE, "no response after " + timeout + "ms", null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for response");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return response;
+    }
+
+    /**
+     * 等待选择器线程处理取消，最多等待{@link #AWAIT_GRACE_MILLIS}，期间的中断在返回后恢复
+     *
+     * @return 是否已处理
+     */
+    boolean awaitCancelled() {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(AWAIT_GRACE_MILLIS);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return done.await(end - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import com.aliyun.api.gateway.demo.transport.FileBody;
+
+/**
+ * 待以零拷贝方式写出的文件区间，与请求缓冲区一起排在连接的写队列中，只在选择器线程中写出
+ */
+class FileRegion {
+    private final FileChannel channel;
+    private final long count;
+    private long transferred;
+
+    private FileRegion(FileChannel channel, long count) {
+        this.channel = channel;
+        this.count = count;
+    }
+
+    /** 在调用方线程中打开文件 */
+    static FileRegion open(FileBody body) throws IOException {
+        return new FileRegion(body.openChannel(), body.getContentLength());
+    }
+
+    /**
+     * 尽可能多地写出，socket发送缓冲区满时返回
+     *
+     * @return 是否已全部写出
+     * @throws IOException
+     *             写出失败，或文件在发送期间被截断
+     */
+    boolean transferTo(WritableByteChannel target) throws IOException {
+        while (transferred < count) {
+            long n = channel.transferTo(transferred, count - transferred, target);
+            if (n <= 0) {
+                if (channel.size() < count) {
+                    throw new EOFException("File truncated at " + channel.size() + " of " + count + " bytes");
+                }
+                return false;
+            }
+            transferred += n;
+        }
+        return true;
+    }
+
+    /** 重发前恢复到起始位置 */
+    void rewind() {
+        transferred = 0;
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //leave empty
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+
+/**
+ * 单个TCP连接的状态，只在选择器线程中访问
+ */
+class NioConnection {
+    final Route route;
+    final SocketChannel channel;
+    SelectionKey key;
+    /** 读缓冲区，连接关闭时归还 */
+    ByteBuffer readBuffer;
+    /** 已发送（或排队发送）、尚未收到完整响应的请求，按发送顺序排列 */
+    final ArrayDeque<Exchange> inFlight = new ArrayDeque<Exchange>();
+    /** 待写出的{@link ByteBuffer}或{@link FileRegion} */
+    final ArrayDeque<Object> writeQueue = new ArrayDeque<Object>();
+    final ResponseParser parser;
+    boolean connected;
+    /** 连接建立的截止时间，System.nanoTime() */
+    long connectDeadline;
+    /** 最近一次变为空闲的时间，System.nanoTime() */
+    long idleSince;
+    /** 收到最后一个响应后需要关闭 */
+    boolean closing;
+    /** 已关闭，读缓冲区已归还 */
+    boolean closed;
+    /** （可选）发起预连接的任务，连接建立或失败时通知 */
+    Preconnect preconnect;
+
+    NioConnection(Route route, SocketChannel channel, int maxResponseLength) {
+        this.route = route;
+        this.channel = channel;
+        this.parser = new ResponseParser(maxResponseLength);
+    }
+
+    boolean isIdle() {
+        return inFlight.isEmpty() && !closing;
+    }
+
+    /**
+     * @param pipelineDepth
+     *            每个连接最多同时在途的请求数
+     * @return 是否可以再流水线发送一个幂等请求
+     */
+    boolean canPipeline(int pipelineDepth) {
+        if (closing || inFlight.size() >= pipelineDepth) {
+            return false;
+        }
+        for (Exchange exchange : inFlight) {
+            if (!exchange.idempotent) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
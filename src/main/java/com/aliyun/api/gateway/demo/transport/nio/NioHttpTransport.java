@@ -0,0 +1,811 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+import com.aliyun.api.gateway.demo.trace.Tracer;
+import com.aliyun.api.gateway.demo.trace.Tracers;
+import com.aliyun.api.gateway.demo.transport.ByteBufferBody;
+import com.aliyun.api.gateway.demo.transport.FileBody;
+import com.aliyun.api.gateway.demo.transport.RequestBody;
+import com.aliyun.api.gateway.demo.transport.RequestTimeoutException;
+import com.aliyun.api.gateway.demo.transport.Transport;
+import com.aliyun.api.gateway.demo.transport.TransportRequest;
+
+/**
+ * 直接基于java.nio通道与选择器实现的精简HTTP/1.1传输层<br>
+ * 适用于高QPS、小报文的网关调用：请求在调用方线程中直接序列化到池化的直接内存缓冲区，
+ * 由单个选择器线程负责连接、写出与响应的增量解析；连接保持长连接复用，可选按连接流水线发送幂等请求。
+ * <p>
+ * {@link FileBody}以{@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}
+ * 零拷贝写出，其余Body在发送前完整序列化到缓冲区。
+ * <p>
+ * 限制：仅支持http，https请使用{@link com.aliyun.api.gateway.demo.transport.ApacheHttpTransport}；
+ * 响应Body完整读入内存后返回，不适合大响应，超过{@link #DEFAULT_MAX_RESPONSE_LENGTH}（可配置）的响应直接失败；大的输入流Body同样会被完整缓冲，应使用其他传输层。
+ */
+public class NioHttpTransport implements Transport {
+    /** 默认每个路由的最大连接数 */
+    public static final int DEFAULT_MAX_PER_ROUTE = 8;
+    /** 默认缓冲区大小 */
+    public static final int DEFAULT_BUFFER_SIZE = 16 * 1024;
+    /** 空闲连接保持时间，单位毫秒，需小于网关侧的空闲超时 */
+    public static final long DEFAULT_IDLE_TIMEOUT = 30 * 1000;
+    /** 默认响应Body的最大长度，单位字节 */
+    public static final int DEFAULT_MAX_RESPONSE_LENGTH = 64 * 1024 * 1024;
+    private static final Logger log = LoggerFactory.getLogger(NioHttpTransport.class);
+    private static final Tracer tracer = Tracers.get();
+    /** select的最长等待时间，单位毫秒 */
+    private static final long MAX_SELECT_TIMEOUT = 1000;
+
+    private final int maxPerRoute;
+    private final int pipelineDepth;
+    private final long idleTimeoutNanos;
+    private final int maxResponseLength;
+    private final DirectBufferPool bufferPool;
+    private final Selector selector;
+    private final Thread selectorThread;
+    /** 调用方线程提交、选择器线程消费的请求 */
+    private final ConcurrentLinkedQueue<Exchange> submissions = new ConcurrentLinkedQueue<Exchange>();
+    /** 调用方等待超时或被中断后取消的请求 */
+    private final ConcurrentLinkedQueue<Exchange> cancellations = new ConcurrentLinkedQueue<Exchange>();
+    /** 调用方线程提交的预连接任务 */
+    private final ConcurrentLinkedQueue<Preconnect> preconnects = new ConcurrentLinkedQueue<Preconnect>();
+    private final Map<String, Route> routes = new HashMap<String, Route>();
+    private volatile boolean running = true;
+
+    /**
+     * 不使用流水线的传输层
+     */
+    public NioHttpTransport() throws IOException {
+        this(DEFAULT_MAX_PER_ROUTE, 1);
+    }
+
+    /**
+     * @param maxPerRoute
+     *            每个路由（host+port）的最大连接数
+     * @param pipelineDepth
+     *            每个连接上最多同时在途的请求数，大于1时对幂等请求（GET、HEAD、PUT、DELETE）启用HTTP/1.1流水线
+     * @throws IOException
+     *             打开选择器失败
+     */
+    public NioHttpTransport(int maxPerRoute, int pipelineDepth) throws IOException {
+        this(maxPerRoute, pipelineDepth, DEFAULT_BUFFER_SIZE, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    /**
+     * @param maxPerRoute
+     *            每个路由（host+port）的最大连接数
+     * @param pipelineDepth
+     *            每个连接上最多同时在途的请求数
+     * @param bufferSize
+     *            直接内存缓冲区大小，单位字节
+     * @param idleTimeout
+     *            空闲连接保持时间，单位毫秒
+     * @throws IOException
+     *             打开选择器失败
+     */
+    public NioHttpTransport(int maxPerRoute, int pipelineDepth, int bufferSize, long idleTimeout)
+            throws IOException {
+        this(maxPerRoute, pipelineDepth, bufferSize, idleTimeout, DEFAULT_MAX_RESPONSE_LENGTH);
+    }
+
+    /**
+     * @param maxPerRoute
+     *            每个路由（host+port）的最大连接数
+     * @param pipelineDepth
+     *            每个连接上最多同时在途的请求数
+     * @param bufferSize
+     *            直接内存缓冲区大小，单位字节
+     * @param idleTimeout
+     *            空闲连接保持时间，单位毫秒
+     * @param maxResponseLength
+     *            响应Body的最大长度，单位字节，服务端声明或发送的Body超出时请求以{@link java.net.ProtocolException}失败
+     * @throws IOException
+     *             打开选择器失败
+     */
+    public NioHttpTransport(int maxPerRoute, int pipelineDepth, int bufferSize, long idleTimeout,
+            int maxResponseLength) throws IOException {
+        if (maxPerRoute <= 0 || pipelineDepth <= 0 || maxResponseLength <= 0) {
+            throw new IllegalArgumentException("maxPerRoute, pipelineDepth and maxResponseLength must be positive");
+        }
+        this.maxPerRoute = maxPerRoute;
+        this.pipelineDepth = pipelineDepth;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        this.maxResponseLength = maxResponseLength;
+        this.bufferPool = new DirectBufferPool(bufferSize, maxPerRoute * 16);
+        this.selector = Selector.open();
+        this.selectorThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loop();
+            }
+        }, "gateway-nio-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    @Override
+    public HttpResponse execute(TransportRequest request) throws IOException {
+        URI uri = request.getUri();
+        if (!"http".equalsIgnoreCase(uri.getScheme())) {
+            throw new IOException("NioHttpTransport only supports http: " + uri);
+        }
+        if (!running) {
+            throw new IOException("Transport closed");
+        }
+        int port = uri.getPort() > 0 ? uri.getPort() : 80;
+        String method = request.getMethod().toUpperCase();
+        InetSocketAddress target = request.getTarget();
+        String routeKey = uri.getHost() + ':' + port;
+        if (target == null) {
+            target = new InetSocketAddress(uri.getHost(), port);
+        } else {
+            routeKey = routeKey + '@' + target;
+        }
+        FileRegion fileRegion = request.getBody() instanceof FileBody ? FileRegion.open((FileBody) request.getBody())
+                : null;
+        ByteBuffer bodyBuffer = request.getBody() instanceof ByteBufferBody ? ((ByteBufferBody) request.getBody())
+                .getBuffer() : null;
+        List<ByteBuffer> buffers;
+        try {
+            buffers = encode(request, method, port, fileRegion != null || bodyBuffer != null);
+        } catch (IOException | RuntimeException e) {
+            if (fileRegion != null) {
+                fileRegion.close();
+            }
+            throw e;
+        }
+        Exchange exchange = new Exchange(routeKey, target,
+                "HEAD".equals(method), isIdempotent(method), request.getTimeout(), request.getDeadline(),
+                buffers, fileRegion, bodyBuffer);
+        exchange.acquireSpan = tracer.beginAcquire();
+        submissions.add(exchange);
+        selector.wakeup();
+        if (!running && submissions.remove(exchange)) {
+            release(exchange);
+            throw new IOException("Transport closed");
+        }
+        try {
+            return exchange.await();
+        } catch (InterruptedIOException e) {
+            //等待超时或被中断时交换可能仍在排队或写出，须等选择器线程移除后才能返回，之后调用方即可复用请求Body
+            if (!exchange.isDone()) {
+                cancellations.add(exchange);
+                selector.wakeup();
+                if (!exchange.awaitCancelled()) {
+                    log.warn("Selector thread did not cancel the exchange to {} in time", exchange.address);
+                }
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public int preconnect(URI uri, InetSocketAddress target, int connections, int timeout) throws IOException {
+        if (!"http".equalsIgnoreCase(uri.getScheme())) {
+            throw new IOException("NioHttpTransport only supports http: " + uri);
+        }
+        int port = uri.getPort() > 0 ? uri.getPort() : 80;
+        //路由标识与execute一致
+        String routeKey = uri.getHost() + ':' + port;
+        if (target == null) {
+            target = new InetSocketAddress(uri.getHost(), port);
+        } else {
+            routeKey = routeKey + '@' + target;
+        }
+        Preconnect preconnect = new Preconnect(routeKey, target, connections, timeout);
+        preconnects.add(preconnect);
+        selector.wakeup();
+        return preconnect.await();
+    }
+
+    private static boolean isIdempotent(String method) {
+        return "GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method) || "DELETE".equals(method)
+                || "OPTIONS".equals(method);
+    }
+
+    /**
+     * 在调用方线程中将请求序列化到池化缓冲区
+     *
+     * @param bodyAsRegion
+     *            Body是否作为文件区间或ByteBuffer单独写出，为true时只序列化请求行及Header
+     */
+    private List<ByteBuffer> encode(TransportRequest request, String method, int port, boolean bodyAsRegion)
+            throws IOException {
+        URI uri = request.getUri();
+        BufferChainOutputStream out = new BufferChainOutputStream(bufferPool);
+        try {
+            out.writeAscii(method);
+            out.write(' ');
+            String path = uri.getRawPath();
+            out.writeAscii(path == null || path.isEmpty() ? "/" : path);
+            if (uri.getRawQuery() != null) {
+                out.write('?');
+                out.writeAscii(uri.getRawQuery());
+            }
+            out.writeAscii(" HTTP/1.1");
+            out.writeCRLF();
+            writeHeader(out, "Host", port == 80 ? uri.getHost() : uri.getHost() + ':' + port);
+            if (request.getHeader(HttpHeader.HTTP_HEADER_USER_AGENT) == null) {
+                writeHeader(out, HttpHeader.HTTP_HEADER_USER_AGENT, Constants.USER_AGENT);
+            }
+            for (Map.Entry<String, String> e : request.getHeaders().entrySet()) {
+                String name = e.getKey();
+                if (!"Host".equalsIgnoreCase(name) && !"Content-Length".equalsIgnoreCase(name)
+                        && !"Transfer-Encoding".equalsIgnoreCase(name)) {
+                    writeHeader(out, name, e.getValue());
+                }
+            }
+            RequestBody body = request.getBody();
+            if (body != null) {
+                if (body.getContentType() != null && request.getHeader(HttpHeader.HTTP_HEADER_CONTENT_TYPE) == null) {
+                    writeHeader(out, HttpHeader.HTTP_HEADER_CONTENT_TYPE, body.getContentType());
+                }
+                if (body.getContentLength() >= 0) {
+                    writeHeader(out, "Content-Length", String.valueOf(body.getContentLength()));
+                    out.writeCRLF();
+                    if (!bodyAsRegion) {
+                        body.writeTo(out);
+                    }
+                } else {
+                    writeHeader(out, "Transfer-Encoding", "chunked");
+                    out.writeCRLF();
+                    OutputStream chunked = new BufferChainOutputStream.ChunkedOutputStream(out,
+                            DEFAULT_BUFFER_SIZE - 16);
+                    body.writeTo(chunked);
+                    chunked.close();
+                }
+            } else {
+                if ("POST".equals(method) || "PUT".equals(method)) {
+                    writeHeader(out, "Content-Length", "0");
+                }
+                out.writeCRLF();
+            }
+            return out.finish();
+        } catch (IOException | RuntimeException e) {
+            out.discard();
+            throw e;
+        }
+    }
+
+    private static void writeHeader(BufferChainOutputStream out, String name, String value) {
+        out.writeAscii(name);
+        out.write(':');
+        out.write(' ');
+        out.writeAscii(value == null ? "" : value);
+        out.writeCRLF();
+    }
+
+    private void loop() {
+        long nextTimeout = MAX_SELECT_TIMEOUT;
+        while (running) {
+            try {
+                selector.select(nextTimeout);
+                Preconnect preconnect;
+                while ((preconnect = preconnects.poll()) != null) {
+                    preconnect(preconnect);
+                }
+                Exchange exchange;
+                while ((exchange = submissions.poll()) != null) {
+                    Route route = route(exchange.routeKey, exchange.address);
+                    route.pending.add(exchange);
+                    dispatch(route);
+                }
+                while ((exchange = cancellations.poll()) != null) {
+                    cancel(exchange);
+                }
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        if (key.isValid() && key.isConnectable()) {
+                            finishConnect(connection);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            flush(connection);
+                        }
+                        if (key.isValid() && key.isReadable()) {
+                            read(connection);
+                        }
+                    } catch (IOException e) {
+                        close(connection, e);
+                    } catch (RuntimeException | Error e) {
+                        //处理连接时的意外错误，连接状态已不可信，关闭连接并使其上的请求全部失败，不重发
+                        log.error("Unexpected error on connection to " + connection.route.address, e);
+                        close(connection, new IOException("Unexpected error on connection", e), false);
+                    }
+                }
+                nextTimeout = checkTimeouts();
+            } catch (ClosedSelectorException e) {
+                break;
+            } catch (Throwable t) {
+                log.error(t.getMessage(), t);
+            }
+        }
+        shutdown();
+    }
+
+    private Route route(String key, InetSocketAddress address) {
+        Route route = routes.get(key);
+        if (route == null) {
+            route = new Route(key, address);
+            routes.put(key, route);
+        }
+        return route;
+    }
+
+    private void preconnect(Preconnect preconnect) {
+        Route route = route(preconnect.routeKey, preconnect.address);
+        int count = Math.max(Math.min(preconnect.connections, maxPerRoute) - route.connections.size(), 0);
+        preconnect.start(count);
+        for (int i = 0; i < count; i++) {
+            try {
+                NioConnection connection = open(route, preconnect.timeout);
+                if (connection.connected) {
+                    connection.idleSince = System.nanoTime();
+                    preconnect.connected();
+                } else {
+                    connection.preconnect = preconnect;
+                }
+            } catch (IOException e) {
+                preconnect.failed(e);
+            }
+        }
+    }
+
+    /**
+     * 为路由上等待的请求分配连接：优先空闲连接，其次新建连接，最后对幂等请求使用流水线
+     */
+    private void dispatch(Route route) {
+        while (!route.pending.isEmpty()) {
+            Exchange exchange = route.pending.peek();
+            NioConnection connection = null;
+            for (NioConnection c : route.connections) {
+                if (c.isIdle()) {
+                    connection = c;
+                    break;
+                }
+            }
+            boolean opened = false;
+            if (connection == null && route.connections.size() < maxPerRoute) {
+                try {
+                    connection = open(route, exchange.deadline == null ? exchange.connectTimeout
+                            : exchange.deadline.clamp(exchange.connectTimeout));
+                    opened = true;
+                } catch (IOException e) {
+                    route.pending.poll();
+                    release(exchange);
+                    exchange.fail(e);
+                    continue;
+                }
+            }
+            if (connection == null && pipelineDepth > 1 && exchange.idempotent) {
+                for (NioConnection c : route.connections) {
+                    if (c.canPipeline(pipelineDepth)
+                            && (connection == null || c.inFlight.size() < connection.inFlight.size())) {
+                        connection = c;
+                    }
+                }
+            }
+            if (connection == null) {
+                return;
+            }
+            route.pending.poll();
+            if (exchange.acquireSpan != null) {
+                //新建连接时在连接发起后即结束，TCP握手计入后续的交换
+                tracer.endAcquire(exchange.acquireSpan, "http://" + route.key, !opened);
+                exchange.acquireSpan = null;
+            }
+            send(connection, exchange);
+        }
+    }
+
+    private NioConnection open(Route route, int connectTimeout) throws IOException {
+        SocketChannel channel = SocketChannel.open();
+        NioConnection connection = new NioConnection(route, channel, maxResponseLength);
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+            connection.connectDeadline = System.nanoTime()
+                    + TimeUnit.MILLISECONDS.toNanos(connectTimeout > 0 ? connectTimeout : Constants.DEFAULT_TIMEOUT);
+            connection.connected = channel.connect(route.address);
+            connection.key = channel.register(selector,
+                    connection.connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, connection);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        connection.readBuffer = bufferPool.acquire();
+        route.connections.add(connection);
+        return connection;
+    }
+
+    private void finishConnect(NioConnection connection) throws IOException {
+        try {
+            connection.channel.finishConnect();
+        } catch (IOException e) {
+            ConnectException ex = new ConnectException(
+                    "Connect to " + connection.route.address + " failed: " + e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+        connection.connected = true;
+        connection.idleSince = System.nanoTime();
+        if (connection.preconnect != null) {
+            connection.preconnect.connected();
+            connection.preconnect = null;
+        }
+        connection.key.interestOps(SelectionKey.OP_READ
+                | (connection.writeQueue.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+    }
+
+    private void send(NioConnection connection, Exchange exchange) {
+        if (connection.inFlight.isEmpty()) {
+            connection.parser.reset(exchange.head);
+        }
+        connection.inFlight.add(exchange);
+        connection.writeQueue.addAll(exchange.buffers);
+        if (exchange.fileRegion != null) {
+            connection.writeQueue.add(exchange.fileRegion);
+        }
+        if (exchange.bodyBuffer != null) {
+            connection.writeQueue.add(exchange.bodyBuffer);
+        }
+        if (connection.connected) {
+            try {
+                flush(connection);
+            } catch (IOException e) {
+                close(connection, e);
+            }
+        }
+    }
+
+    private void flush(NioConnection connection) throws IOException {
+        while (!connection.writeQueue.isEmpty()) {
+            Object next = connection.writeQueue.peek();
+            boolean written;
+            if (next instanceof FileRegion) {
+                written = ((FileRegion) next).transferTo(connection.channel);
+            } else {
+                ByteBuffer buffer = (ByteBuffer) next;
+                connection.channel.write(buffer);
+                written = !buffer.hasRemaining();
+            }
+            if (!written) {
+                connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.writeQueue.poll();
+        }
+        connection.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void read(NioConnection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer;
+        int n = connection.channel.read(buffer);
+        if (n < 0) {
+            if (!connection.inFlight.isEmpty() && connection.parser.finishOnEof()) {
+                complete(connection);
+            }
+            close(connection, new IOException("Connection closed by peer"));
+            return;
+        }
+        if (connection.inFlight.isEmpty()) {
+            //空闲连接上收到数据，无法对应到请求
+            close(connection, new IOException("Unexpected data on idle connection"));
+            return;
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining() && !connection.inFlight.isEmpty()) {
+                if (!connection.parser.parse(buffer)) {
+                    break;
+                }
+                complete(connection);
+                if (connection.closed) {
+                    //complete中分派的下一个请求写出失败时连接已关闭，读缓冲区已归还，可能已被新连接或调用方取走
+                    return;
+                }
+                if (connection.closing) {
+                    break;
+                }
+            }
+        } finally {
+            if (!connection.closed) {
+                buffer.compact();
+            }
+        }
+        if (connection.closing) {
+            close(connection, new IOException("Connection closed by server after response"));
+        }
+    }
+
+    /** 当前解析完成的响应属于在途队列的第一个请求 */
+    private void complete(NioConnection connection) {
+        Exchange exchange = connection.inFlight.poll();
+        HttpResponse response = connection.parser.getResponse();
+        if (!connection.parser.isKeepAlive()) {
+            connection.closing = true;
+        }
+        if (discardUnwritten(connection, exchange)) {
+            //服务端在请求写完之前已响应（如413、401），连接上的请求流已不完整，不能再复用
+            connection.closing = true;
+        }
+        release(exchange);
+        exchange.complete(response);
+        if (!connection.inFlight.isEmpty()) {
+            connection.parser.reset(connection.inFlight.peek().head);
+        } else {
+            connection.idleSince = System.nanoTime();
+            if (!connection.closing) {
+                dispatch(connection.route);
+            }
+        }
+    }
+
+    /**
+     * 取消调用方已不再等待的请求：仍在排队时直接移除，已分配到连接时关闭该连接，
+     * 使其不再写出请求Body，迟到的响应也不会留在流水线连接上
+     */
+    private void cancel(Exchange exchange) {
+        if (exchange.isDone()) {
+            return;
+        }
+        IOException cause = new InterruptedIOException("Exchange cancelled by caller");
+        Route route = routes.get(exchange.routeKey);
+        if (route == null) {
+            return;
+        }
+        if (route.pending.remove(exchange)) {
+            release(exchange);
+            exchange.fail(cause);
+            return;
+        }
+        for (NioConnection connection : route.connections) {
+            if (connection.inFlight.remove(exchange)) {
+                discardUnwritten(connection, exchange);
+                release(exchange);
+                exchange.fail(cause);
+                //其余请求按连接关闭处理，尚未收到响应数据的幂等请求重新排队
+                close(connection, cause);
+                return;
+            }
+        }
+    }
+
+    /**
+     * 关闭连接，尚未收到任何响应数据的幂等请求重新排队（只重发一次），其余请求失败
+     */
+    private void close(NioConnection connection, IOException cause) {
+        close(connection, cause, true);
+    }
+
+    /**
+     * @param retry
+     *            是否允许重发尚未收到响应数据的幂等请求
+     */
+    private void close(NioConnection connection, IOException cause, boolean retry) {
+        if (connection.closed) {
+            return;
+        }
+        connection.closed = true;
+        connection.route.connections.remove(connection);
+        if (connection.key != null) {
+            connection.key.cancel();
+        }
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            //leave empty
+        }
+        bufferPool.release(connection.readBuffer);
+        connection.readBuffer = null;
+        if (connection.preconnect != null) {
+            connection.preconnect.failed(cause);
+            connection.preconnect = null;
+        }
+        boolean first = true;
+        List<Exchange> retries = new ArrayList<Exchange>();
+        for (Exchange exchange : connection.inFlight) {
+            boolean started = first && connection.parser.isStarted();
+            first = false;
+            if (exchange.isExpired()) {
+                release(exchange);
+                exchange.fail(timeout(connection.connected ? TimeoutPhase.RESPONSE : TimeoutPhase.CONNECT,
+                        exchange, cause));
+            } else if (retry && connection.connected && !started && exchange.idempotent && !exchange.retried
+                    && running) {
+                exchange.retried = true;
+                exchange.rewind();
+                retries.add(exchange);
+            } else {
+                release(exchange);
+                exchange.fail(cause);
+            }
+        }
+        connection.inFlight.clear();
+        connection.writeQueue.clear();
+        for (int i = retries.size() - 1; i >= 0; i--) {
+            connection.route.pending.addFirst(retries.get(i));
+        }
+        if (running) {
+            dispatch(connection.route);
+        }
+    }
+
+    /**
+     * 处理连接超时、请求截止时间及空闲连接
+     *
+     * @return 距下一个截止时间的毫秒数，用作下一次select的超时时间
+     */
+    private long checkTimeouts() {
+        long now = System.nanoTime();
+        long next = MAX_SELECT_TIMEOUT;
+        for (Route route : routes.values()) {
+            for (Iterator<Exchange> it = route.pending.iterator(); it.hasNext();) {
+                Exchange exchange = it.next();
+                if (exchange.isExpired()) {
+                    it.remove();
+                    release(exchange);
+                    exchange.fail(timeout(TimeoutPhase.POOL, exchange, null));
+                } else if (exchange.deadline != null) {
+                    next = Math.min(next, exchange.deadline.remainingMillis());
+                }
+            }
+            for (NioConnection connection : new ArrayList<NioConnection>(route.connections)) {
+                if (!connection.connected && now - connection.connectDeadline > 0) {
+                    //连接超时不重发
+                    close(connection, new RequestTimeoutException(TimeoutPhase.CONNECT,
+                            "connect to " + route.address + " timed out", null));
+                } else if (connection.connected && connection.inFlight.isEmpty()
+                        && now - connection.idleSince > idleTimeoutNanos) {
+                    close(connection, new IOException("Idle connection evicted"));
+                } else if (hasExpired(connection)) {
+                    //连接上的响应无法跳过，只能关闭连接，其余未超时的幂等请求会重新排队
+                    close(connection, new SocketTimeoutException("Response from " + route.address + " timed out"));
+                } else {
+                    if (!connection.connected) {
+                        next = Math.min(next, TimeUnit.NANOSECONDS.toMillis(connection.connectDeadline - now));
+                    }
+                    for (Exchange exchange : connection.inFlight) {
+                        if (exchange.deadline != null) {
+                            next = Math.min(next, exchange.deadline.remainingMillis());
+                        }
+                    }
+                }
+            }
+        }
+        return Math.max(next, 1);
+    }
+
+    private static boolean hasExpired(NioConnection connection) {
+        for (Exchange exchange : connection.inFlight) {
+            if (exchange.isExpired()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static RequestTimeoutException timeout(TimeoutPhase phase, Exchange exchange, IOException cause) {
+        if (cause instanceof RequestTimeoutException) {
+            phase = ((RequestTimeoutException) cause).getPhase();
+        }
+        return new RequestTimeoutException(phase, "elapsed " + exchange.deadline.elapsedMillis() + "ms of "
+                + exchange.deadline.getBudgetMillis() + "ms budget", cause);
+    }
+
+    /**
+     * 从写队列中移除请求尚未写出的部分，之后才能归还其缓冲区
+     *
+     * @return 请求是否尚未完整写出
+     */
+    private static boolean discardUnwritten(NioConnection connection, Exchange exchange) {
+        boolean found = false;
+        for (Iterator<Object> it = connection.writeQueue.iterator(); it.hasNext();) {
+            if (exchange.owns(it.next())) {
+                it.remove();
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    private void release(Exchange exchange) {
+        if (exchange.isDone()) {
+            return;
+        }
+        for (ByteBuffer buffer : exchange.buffers) {
+            bufferPool.release(buffer);
+        }
+        if (exchange.fileRegion != null) {
+            exchange.fileRegion.close();
+        }
+    }
+
+    private void shutdown() {
+        IOException cause = new IOException("Transport closed");
+        for (Route route : routes.values()) {
+            for (NioConnection connection : new ArrayList<NioConnection>(route.connections)) {
+                close(connection, cause);
+            }
+            for (Exchange exchange : route.pending) {
+                release(exchange);
+                exchange.fail(cause);
+            }
+            route.pending.clear();
+        }
+        Exchange exchange;
+        while ((exchange = submissions.poll()) != null) {
+            release(exchange);
+            exchange.fail(cause);
+        }
+        Preconnect preconnect;
+        while ((preconnect = preconnects.poll()) != null) {
+            preconnect.start(1);
+            preconnect.failed(cause);
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            //leave empty
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
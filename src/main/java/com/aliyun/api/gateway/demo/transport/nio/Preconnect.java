@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预连接任务，由选择器线程发起连接，调用方线程等待连接建立
+ */
+class Preconnect {
+    final String routeKey;
+    final InetSocketAddress address;
+    final int connections;
+    final int timeout;
+    private final CountDownLatch assigned = new CountDownLatch(1);
+    private volatile CountDownLatch pending;
+    private final AtomicInteger opened = new AtomicInteger();
+    private volatile IOException failure;
+
+    Preconnect(String routeKey, InetSocketAddress address, int connections, int timeout) {
+        this.routeKey = routeKey;
+        this.address = address;
+        this.connections = connections;
+        this.timeout = timeout;
+    }
+
+    /** 选择器线程确定本次需要新建的连接数后调用 */
+    void start(int count) {
+        pending = new CountDownLatch(count);
+        assigned.countDown();
+    }
+
+    void connected() {
+        opened.incrementAndGet();
+        pending.countDown();
+    }
+
+    void failed(IOException cause) {
+        failure = cause;
+        pending.countDown();
+    }
+
+    int await() throws IOException {
+        try {
+            if (!assigned.await(timeout, TimeUnit.MILLISECONDS)
+                    || !pending.await(timeout, TimeUnit.MILLISECONDS)) {
+                throw new SocketTimeoutException("Preconnect to " + address + " timed out");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while preconnecting");
+        }
+        if (opened.get() == 0 && failure != null) {
+            throw failure;
+        }
+        return opened.get();
+    }
+}
@@ -0,0 +1,349 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+
+/**
+ * HTTP/1.1响应增量解析器，每次读到数据即推进状态机，不要求一次读到完整的响应
+ */
+class ResponseParser {
+    /** 状态行或单个Header的最大长度 */
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+    /** 默认响应Body的最大长度 */
+    static final int DEFAULT_MAX_BODY_LENGTH = NioHttpTransport.DEFAULT_MAX_RESPONSE_LENGTH;
+
+    private enum State {
+        STATUS_LINE, HEADERS, BODY_FIXED, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILERS, BODY_UNTIL_CLOSE, DONE
+    }
+
+    /** 响应Body的最大长度，超出时在分配内存之前报错 */
+    private final int maxBodyLength;
+    private State state;
+    /** 是否为HEAD请求的响应，HEAD响应没有Body */
+    private boolean headRequest;
+    private BasicHttpResponse response;
+    private boolean keepAlive;
+    private boolean chunked;
+    private long contentLength;
+    /** 当前Body段剩余字节数 */
+    private long remaining;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private byte[] body = new byte[0];
+    private int bodyLength;
+    /** 是否已收到当前响应的任何字节 */
+    private boolean started;
+
+    ResponseParser() {
+        this(DEFAULT_MAX_BODY_LENGTH);
+    }
+
+    /**
+     * @param maxBodyLength
+     *            响应Body的最大长度，单位字节
+     */
+    ResponseParser(int maxBodyLength) {
+        this.maxBodyLength = maxBodyLength;
+    }
+
+    /**
+     * 开始解析下一个响应
+     *
+     * @param headRequest
+     *            是否为HEAD请求
+     */
+    void reset(boolean headRequest) {
+        this.headRequest = headRequest;
+        this.state = State.STATUS_LINE;
+        this.response = null;
+        this.chunked = false;
+        this.contentLength = -1;
+        this.lineLength = 0;
+        this.body = new byte[0];
+        this.bodyLength = 0;
+        this.started = false;
+    }
+
+    boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * 消费缓冲区中的数据
+     *
+     * @param in
+     *            读模式的缓冲区，解析完成时剩余数据属于下一个响应
+     * @return 当前响应是否已完整
+     * @throws ProtocolException
+     *             响应格式错误
+     */
+    boolean parse(ByteBuffer in) throws ProtocolException {
+        if (in.hasRemaining()) {
+            started = true;
+        }
+        while (state != State.DONE && in.hasRemaining()) {
+            switch (state) {
+            case STATUS_LINE:
+                if (readLine(in)) {
+                    parseStatusLine();
+                }
+                break;
+            case HEADERS:
+                if (readLine(in)) {
+                    if (lineLength == 0) {
+                        headersComplete();
+                    } else {
+                        parseHeader();
+                    }
+                }
+                break;
+            case BODY_FIXED:
+                readBody(in);
+                if (remaining == 0) {
+                    state = State.DONE;
+                }
+                break;
+            case BODY_UNTIL_CLOSE:
+                remaining = in.remaining();
+                readBody(in);
+                break;
+            case CHUNK_SIZE:
+                if (readLine(in)) {
+                    remaining = parseChunkSize();
+                    state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+                }
+                break;
+            case CHUNK_DATA:
+                readBody(in);
+                if (remaining == 0) {
+                    state = State.CHUNK_DATA_END;
+                }
+                break;
+            case CHUNK_DATA_END:
+                if (readLine(in)) {
+                    if (lineLength != 0) {
+                        throw new ProtocolException("Missing CRLF after chunk data");
+                    }
+                    state = State.CHUNK_SIZE;
+                }
+                break;
+            case TRAILERS:
+                if (readLine(in)) {
+                    if (lineLength == 0) {
+                        state = State.DONE;
+                    } else {
+                        //Trailer与Header格式相同，加入响应Header
+                        parseHeader();
+                    }
+                }
+                break;
+            default:
+                break;
+            }
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * 连接被对端关闭时调用
+     *
+     * @return 以连接关闭作为结束的响应是否已完整
+     */
+    boolean finishOnEof() {
+        if (state == State.BODY_UNTIL_CLOSE) {
+            state = State.DONE;
+            return true;
+        }
+        return state == State.DONE;
+    }
+
+    /**
+     * @return 已解析完成的响应
+     */
+    HttpResponse getResponse() {
+        ByteArrayEntity entity = new ByteArrayEntity(body, 0, bodyLength);
+        entity.setContentType(response.getFirstHeader(HttpHeader.HTTP_HEADER_CONTENT_TYPE));
+        entity.setContentEncoding(response.getFirstHeader(HttpHeader.HTTP_HEADER_CONTENT_ENCODING));
+        response.setEntity(entity);
+        return response;
+    }
+
+    /**
+     * @return 响应完成后连接是否可以复用
+     */
+    boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    private boolean readLine(ByteBuffer in) throws ProtocolException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            if (b == '\n') {
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return true;
+            }
+            if (lineLength == MAX_LINE_LENGTH) {
+                throw new ProtocolException("Response line too long");
+            }
+            if (lineLength == line.length) {
+                line = Arrays.copyOf(line, Math.min(line.length * 2, MAX_LINE_LENGTH));
+            }
+            line[lineLength++] = b;
+        }
+        return false;
+    }
+
+    private String lineString(int from, int to) {
+        char[] chars = new char[to - from];
+        for (int i = from; i < to; i++) {
+            chars[i - from] = (char) (line[i] & 0xff);
+        }
+        return new String(chars);
+    }
+
+    private void parseStatusLine() throws ProtocolException {
+        String statusLine = lineString(0, lineLength);
+        lineLength = 0;
+        //HTTP/1.1 200 OK
+        if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12) {
+            throw new ProtocolException("Invalid status line: " + statusLine);
+        }
+        ProtocolVersion version = statusLine.charAt(7) == '0' ? HttpVersion.HTTP_1_0 : HttpVersion.HTTP_1_1;
+        int status;
+        try {
+            status = Integer.parseInt(statusLine.substring(9, 12));
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Invalid status line: " + statusLine);
+        }
+        String reason = statusLine.length() > 13 ? statusLine.substring(13) : "";
+        response = new BasicHttpResponse(version, status, reason);
+        keepAlive = version == HttpVersion.HTTP_1_1;
+        state = State.HEADERS;
+    }
+
+    private void parseHeader() throws ProtocolException {
+        int colon = -1;
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] == ':') {
+                colon = i;
+                break;
+            }
+        }
+        if (colon <= 0) {
+            throw new ProtocolException("Invalid header: " + lineString(0, lineLength));
+        }
+        int valueStart = colon + 1;
+        while (valueStart < lineLength && (line[valueStart] == ' ' || line[valueStart] == '\t')) {
+            valueStart++;
+        }
+        int valueEnd = lineLength;
+        while (valueEnd > valueStart && (line[valueEnd - 1] == ' ' || line[valueEnd - 1] == '\t')) {
+            valueEnd--;
+        }
+        String name = lineString(0, colon);
+        String value = lineString(valueStart, valueEnd);
+        lineLength = 0;
+        response.addHeader(name, value);
+        if ("Content-Length".equalsIgnoreCase(name)) {
+            try {
+                contentLength = Long.parseLong(value);
+            } catch (NumberFormatException e) {
+                throw new ProtocolException("Invalid Content-Length: " + value);
+            }
+        } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+            chunked = value.toLowerCase().contains("chunked");
+        } else if ("Connection".equalsIgnoreCase(name)) {
+            if (value.equalsIgnoreCase("close")) {
+                keepAlive = false;
+            } else if (value.equalsIgnoreCase("keep-alive")) {
+                keepAlive = true;
+            }
+        }
+    }
+
+    private void headersComplete() throws ProtocolException {
+        int status = response.getStatusLine().getStatusCode();
+        if (status >= 100 && status < 200) {
+            //忽略100-continue等临时响应，继续解析最终响应
+            state = State.STATUS_LINE;
+            return;
+        }
+        if (headRequest || status == 204 || status == 304) {
+            state = State.DONE;
+        } else if (chunked) {
+            state = State.CHUNK_SIZE;
+        } else if (contentLength >= 0) {
+            remaining = contentLength;
+            ensureBodyCapacity(contentLength);
+            state = remaining == 0 ? State.DONE : State.BODY_FIXED;
+        } else {
+            keepAlive = false;
+            state = State.BODY_UNTIL_CLOSE;
+        }
+    }
+
+    private long parseChunkSize() throws ProtocolException {
+        int end = 0;
+        while (end < lineLength && line[end] != ';' && line[end] != ' ') {
+            end++;
+        }
+        String size = lineString(0, end);
+        lineLength = 0;
+        try {
+            long chunkSize = Long.parseLong(size, 16);
+            if (chunkSize < 0) {
+                throw new ProtocolException("Invalid chunk size: " + size);
+            }
+            ensureBodyCapacity(bodyLength + chunkSize);
+            return chunkSize;
+        } catch (NumberFormatException e) {
+            throw new ProtocolException("Invalid chunk size: " + size);
+        }
+    }
+
+    private void readBody(ByteBuffer in) throws ProtocolException {
+        int n = (int) Math.min(remaining, in.remaining());
+        ensureBodyCapacity(bodyLength + n);
+        in.get(body, bodyLength, n);
+        bodyLength += n;
+        remaining -= n;
+    }
+
+    private void ensureBodyCapacity(long capacity) throws ProtocolException {
+        if (capacity > maxBodyLength) {
+            throw new ProtocolException("Response body exceeds " + maxBodyLength + " bytes: " + capacity);
+        }
+        if (capacity > body.length) {
+            body = Arrays.copyOf(body, (int) Math.max(capacity, Math.min(body.length * 2L, maxBodyLength)));
+        }
+    }
+}
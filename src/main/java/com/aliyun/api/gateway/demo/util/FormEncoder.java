@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.aliyun.api.gateway.demo.constant.ContentType;
+import com.aliyun.api.gateway.demo.transport.ByteArrayBody;
+
+/**
+ * 表单编码器<br>
+ * 对表单参数按Key排序后只遍历一次，同时生成签名用的Path+Query+FormParams与URL编码后的Body字节。
+ * Body直接写入线程内复用的缓冲区，交给传输层时不再复制，请求完成后需调用{@link FormBody#release()}归还。
+ */
+public class FormEncoder {
+    /** 超过该大小的缓冲区用完即丢弃，不在线程内保留 */
+    private static final int MAX_RETAINED_SIZE = 64 * 1024;
+    private static final int INITIAL_SIZE = 1024;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    /** 与URLEncodedUtils表单编码一致的不需转义字符 */
+    private static final boolean[] UNRESERVED = new boolean[128];
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = 'A'; c <= 'Z'; c++) {
+            UNRESERVED[c] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            UNRESERVED[c] = true;
+        }
+        UNRESERVED['-'] = true;
+        UNRESERVED['_'] = true;
+        UNRESERVED['.'] = true;
+        UNRESERVED['*'] = true;
+    }
+
+    private FormEncoder() {
+    }
+
+    /**
+     * 编码表单
+     *
+     * @param pathAndQuery
+     *            Path+Query，Query中的参数只参与签名，不写入Body
+     * @param formParamMap
+     *            表单参数，不会被修改
+     * @return 表单Body
+     */
+    public static FormBody encode(String pathAndQuery, Map<String, String> formParamMap) {
+        String path = pathAndQuery;
+        Map<String, String> queryParams = null;
+        //与SignUtil.buildResource的解析规则保持一致
+        if (pathAndQuery.contains("?")) {
+            String[] fregments = pathAndQuery.split("\\?");
+            path = fregments[0];
+            String queryString = fregments.length > 1 ? fregments[1] : null;
+            if (StringUtils.isNotBlank(queryString)) {
+                queryParams = new LinkedHashMap<String, String>();
+                for (String query : queryString.split("\\&")) {
+                    fregments = query.split("\\=");
+                    String key = fregments[0];
+                    if (formParamMap.get(key) == null && !queryParams.containsKey(key)) {
+                        queryParams.put(key, fregments.length == 2 ? fregments[1] : "");
+                    }
+                }
+            }
+        }
+        int formSize = formParamMap.size();
+        String[] keys = formParamMap.keySet().toArray(new String[formSize + (queryParams == null ? 0
+                : queryParams.size())]);
+        int count = formSize;
+        if (queryParams != null) {
+            for (String key : queryParams.keySet()) {
+                if (!formParamMap.containsKey(key)) {
+                    keys[count++] = key;
+                }
+            }
+        }
+        Arrays.sort(keys, 0, count);
+
+        Scratch scratch = SCRATCH.get();
+        byte[] buffer;
+        if (scratch.leased) {
+            //同一线程上一个请求的Body尚未归还
+            buffer = new byte[INITIAL_SIZE];
+            scratch = null;
+        } else {
+            buffer = scratch.buffer;
+            scratch.leased = true;
+        }
+        StringBuilder resource = new StringBuilder(path.length() + 16 * count).append(path);
+        if (count > 0) {
+            resource.append('?');
+        }
+        int length = 0;
+        for (int i = 0; i < count; i++) {
+            String key = keys[i];
+            String value = formParamMap.get(key);
+            if (formParamMap.containsKey(key)) {
+                if (length > 0) {
+                    buffer = ensureCapacity(buffer, length, 1);
+                    buffer[length++] = '&';
+                }
+                buffer = ensureCapacity(buffer, length, key.length() * 9);
+                length = urlEncode(key, buffer, length);
+                if (value != null) {
+                    buffer = ensureCapacity(buffer, length, 1 + value.length() * 9);
+                    buffer[length++] = '=';
+                    length = urlEncode(value, buffer, length);
+                }
+            }
+            if (value == null && queryParams != null && queryParams.containsKey(key)) {
+                value = queryParams.get(key);
+            }
+            resource.append(key);
+            if (StringUtils.isNotBlank(value)) {
+                resource.append('=').append(value);
+            }
+            resource.append('&');
+        }
+        if (count > 0) {
+            resource.setLength(resource.length() - 1);
+        }
+        return new FormBody(buffer, length, resource.toString(), scratch);
+    }
+
+    private static byte[] ensureCapacity(byte[] buffer, int length, int extra) {
+        if (length + extra <= buffer.length) {
+            return buffer;
+        }
+        return Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+    }
+
+    /**
+     * 按application/x-www-form-urlencoded规则以UTF-8编码，调用方需保证缓冲区至少剩余value.length()*9字节
+     */
+    private static int urlEncode(String value, byte[] buffer, int pos) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (UNRESERVED[c]) {
+                    buffer[pos++] = (byte) c;
+                } else if (c == ' ') {
+                    buffer[pos++] = '+';
+                } else {
+                    pos = escape(c, buffer, pos);
+                }
+            } else if (c < 0x800) {
+                pos = escape(0xC0 | (c >> 6), buffer, pos);
+                pos = escape(0x80 | (c & 0x3F), buffer, pos);
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                pos = escape(0xF0 | (cp >> 18), buffer, pos);
+                pos = escape(0x80 | ((cp >> 12) & 0x3F), buffer, pos);
+                pos = escape(0x80 | ((cp >> 6) & 0x3F), buffer, pos);
+                pos = escape(0x80 | (cp & 0x3F), buffer, pos);
+            } else if (Character.isSurrogate(c)) {
+                //不成对的代理字符按字符集编码器的默认行为替换为'?'
+                pos = escape('?', buffer, pos);
+            } else {
+                pos = escape(0xE0 | (c >> 12), buffer, pos);
+                pos = escape(0x80 | ((c >> 6) & 0x3F), buffer, pos);
+                pos = escape(0x80 | (c & 0x3F), buffer, pos);
+            }
+        }
+        return pos;
+    }
+
+    private static int escape(int b, byte[] buffer, int pos) {
+        buffer[pos++] = '%';
+        buffer[pos++] = (byte) HEX[(b >> 4) & 0xF];
+        buffer[pos++] = (byte) HEX[b & 0xF];
+        return pos;
+    }
+
+    /** 线程内复用的缓冲区 */
+    private static class Scratch {
+        byte[] buffer = new byte[INITIAL_SIZE];
+        boolean leased;
+    }
+
+    /**
+     * URL编码后的表单Body，同时携带签名用的Path+Query+FormParams
+     */
+    public static class FormBody extends ByteArrayBody {
+        private final String signResource;
+        private Scratch scratch;
+
+        FormBody(byte[] buffer, int length, String signResource, Scratch scratch) {
+            super(buffer, 0, length, ContentType.CONTENT_TYPE_FORM);
+            this.signResource = signResource;
+            this.scratch = scratch;
+        }
+
+        /**
+         * @return 签名用的Path+Query+FormParams，与{@link SignUtil}对同一请求构建的结果一致
+         */
+        public String getSignResource() {
+            return signResource;
+        }
+
+        @Override
+        public boolean isPooled() {
+            return scratch != null;
+        }
+
+        /**
+         * 请求发送完成后将缓冲区归还给当前线程，之后不可再读取Body；重复调用无副作用
+         */
+        public void release() {
+            if (scratch != null) {
+                if (getBytes().length <= MAX_RETAINED_SIZE) {
+                    scratch.buffer = getBytes();
+                }
+                scratch.leased = false;
+                scratch = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+
+/**
+ * GZIP压缩工具<br>
+ * 压缩与MD5摘要在同一次流式写入中完成：原始内容写入GZIP流，压缩后的字节一边写入缓冲区一边更新MD5，
+ * 因此Content-MD5是针对实际发送的压缩字节计算的，且Body只会被缓冲一次。
+ */
+public class GzipUtil {
+    /** Content-Encoding取值 */
+    public static final String ENCODING_GZIP = "gzip";
+
+    /**
+     * 压缩字符串，字符串按UTF-8编码后直接写入压缩流，不会生成中间字节数组
+     *
+     * @param str
+     *            需要压缩的字符串，不能为null
+     * @return 压缩结果
+     * @throws IllegalArgumentException
+     *             如果参数str为null则抛出异常
+     */
+    public static CompressedBody gzip(String str) {
+        if (str == null) {
+            throw new IllegalArgumentException("Parameter str cannot be null");
+        }
+        // 压缩后的大小事先未知，按原始长度的1/4预估缓冲区
+        ExposedByteArrayOutputStream buffer = new ExposedByteArrayOutputStream(Math.max(str.length() / 4, 64));
+        MessageDigest md5 = newMD5();
+        try (Writer writer = new OutputStreamWriter(
+                new GZIPOutputStream(new DigestOutputStream(buffer, md5)), Constants.ENCODING)) {
+            writer.write(str);
+        } catch (IOException e) {
+            //写入内存缓冲区不会产生IO异常
+            throw new IllegalStateException(e);
+        }
+        return new CompressedBody(buffer.buffer(), buffer.size(), Base64.encodeBase64String(md5.digest()));
+    }
+
+    /**
+     * 压缩字节数组
+     *
+     * @param bytes
+     *            需要压缩的字节数组，不能为null
+     * @return 压缩结果
+     * @throws IllegalArgumentException
+     *             如果参数bytes为null则抛出异常
+     */
+    public static CompressedBody gzip(byte[] bytes) {
+        if (bytes == null) {
+            throw new IllegalArgumentException("Parameter bytes cannot be null");
+        }
+        ExposedByteArrayOutputStream buffer = new ExposedByteArrayOutputStream(Math.max(bytes.length / 4, 64));
+        MessageDigest md5 = newMD5();
+        try (OutputStream out = new GZIPOutputStream(new DigestOutputStream(buffer, md5))) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new CompressedBody(buffer.buffer(), buffer.size(), Base64.encodeBase64String(md5.digest()));
+    }
+
+    private static MessageDigest newMD5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            //MD5是JRE必须支持的算法
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 压缩结果，{@link #getBytes()}中只有前{@link #getLength()}个字节有效
+     */
+    public static class CompressedBody {
+        private final byte[] bytes;
+        private final int length;
+        private final String contentMD5;
+
+        CompressedBody(byte[] bytes, int length, String contentMD5) {
+            this.bytes = bytes;
+            this.length = length;
+            this.contentMD5 = contentMD5;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int getLength() {
+            return length;
+        }
+
+        /**
+         * @return 压缩后字节的MD5摘要（Base64编码），可直接作为Content-MD5的值
+         */
+        public String getContentMD5() {
+            return contentMD5;
+        }
+    }
+
+    /** 暴露内部数组，避免toByteArray再复制一次 */
+    private static class ExposedByteArrayOutputStream extends ByteArrayOutputStream {
+        ExposedByteArrayOutputStream(int size) {
+            super(size);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.enums.SignatureMethod;
+
+/**
+ * 按给定算法及JCA Provider计算签名<br>
+ * 每个线程持有一个已初始化密钥的{@link Mac}并重复使用，不必每次签名都查找Provider、初始化密钥。
+ * 可通过{@link #fastestProvider(SignatureMethod)}在启动时对本机可用的Provider测速后选择最快的一个，
+ * 各Provider对同一输入的签名结果须与默认Provider完全一致才会参与选择，签名与网关的校验保持兼容。
+ */
+public class HmacSigner {
+    private static final Logger log = LoggerFactory.getLogger(HmacSigner.class);
+    /** 测速时每轮的签名次数 */
+    private static final int BENCHMARK_ITERATIONS = 2000;
+    /** 测速轮数，取最快一轮，第一轮同时用于预热 */
+    private static final int BENCHMARK_ROUNDS = 5;
+    /** 测速结果，按签名算法缓存 */
+    private static final ConcurrentMap<SignatureMethod, Provider> FASTEST = new ConcurrentHashMap<SignatureMethod, Provider>();
+
+    private final SignatureMethod method;
+    private final Provider provider;
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>();
+
+    /**
+     * 使用JCA默认优先级最高的Provider
+     *
+     * @param method
+     *            签名算法
+     * @param secret
+     *            APP密钥
+     */
+    public HmacSigner(SignatureMethod method, String secret) {
+        this(method, secret, null);
+    }
+
+    /**
+     * @param method
+     *            签名算法
+     * @param secret
+     *            APP密钥
+     * @param provider
+     *            JCA Provider，为null时使用默认优先级最高的Provider
+     * @throws IllegalArgumentException
+     *             Provider不支持该算法或密钥无效
+     */
+    public HmacSigner(SignatureMethod method, String secret, Provider provider) {
+        this.method = method;
+        this.provider = provider;
+        this.key = new SecretKeySpec(secret.getBytes(Constants.ENCODING), method.getAlgorithm());
+        //立即构造一次以便尽早暴露配置错误
+        macs.set(newMac());
+    }
+
+    /**
+     * @param stringToSign
+     *            待签名字符串
+     * @return Base64编码的签名
+     */
+    public String sign(String stringToSign) {
+        Mac mac = macs.get();
+        if (mac == null) {
+            mac = newMac();
+            macs.set(mac);
+        }
+        return new String(Base64.encodeBase64(mac.doFinal(stringToSign.getBytes(Constants.ENCODING))),
+                Constants.ENCODING);
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = provider == null ? Mac.getInstance(method.getAlgorithm())
+                    : Mac.getInstance(method.getAlgorithm(), provider);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalArgumentException(method.getAlgorithm() + " is not available"
+                    + (provider == null ? "" : " from provider " + provider.getName()), e);
+        }
+    }
+
+    public SignatureMethod getMethod() {
+        return method;
+    }
+
+    /**
+     * @return 指定的JCA Provider，使用默认Provider时返回null
+     */
+    public Provider getProvider() {
+        return provider;
+    }
+
+    /**
+     * 对本机所有支持该算法的Provider测速，返回最快的一个，结果按算法缓存<br>
+     * 签名结果与默认Provider不一致的Provider会被忽略。测速耗时约数毫秒至数十毫秒，应在启动时调用。
+     *
+     * @param method
+     *            签名算法
+     * @return 最快的Provider
+     * @throws IllegalArgumentException
+     *             没有任何Provider支持该算法
+     */
+    public static Provider fastestProvider(SignatureMethod method) {
+        Provider fastest = FASTEST.get(method);
+        if (fastest == null) {
+            fastest = benchmark(method);
+            Provider existing = FASTEST.putIfAbsent(method, fastest);
+            if (existing != null) {
+                fastest = existing;
+            }
+        }
+        return fastest;
+    }
+
+    private static Provider benchmark(SignatureMethod method) {
+        Provider[] providers = Security.getProviders("Mac." + method.getAlgorithm());
+        if (providers == null) {
+            throw new IllegalArgumentException(method.getAlgorithm() + " is not available");
+        }
+        //长度与常见的待签名字符串相当
+        byte[] data = new byte[512];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        SecretKeySpec key = new SecretKeySpec("benchmark-secret-0123456789abcdef".getBytes(Constants.ENCODING),
+                method.getAlgorithm());
+        byte[] expected = null;
+        Provider reference = null;
+        Provider fastest = null;
+        long fastestNanos = Long.MAX_VALUE;
+        for (Provider provider : providers) {
+            Mac mac;
+            try {
+                mac = Mac.getInstance(method.getAlgorithm(), provider);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                log.warn("skip provider {} for {}: {}", provider.getName(), method.getAlgorithm(), e.getMessage());
+                continue;
+            }
+            byte[] result = mac.doFinal(data);
+            if (expected == null) {
+                expected = result;
+                reference = provider;
+            } else if (!Arrays.equals(expected, result)) {
+                log.warn("skip provider {} for {}: result differs from {}", provider.getName(),
+                        method.getAlgorithm(), reference.getName());
+                continue;
+            }
+            long best = Long.MAX_VALUE;
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (int i = 0; i < BENCHMARK_ITERATIONS; i++) {
+                    mac.update(data);
+                    result = mac.doFinal();
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            long nanos = best / BENCHMARK_ITERATIONS;
+            log.info("{} from provider {}: {} ns per signature", method.getAlgorithm(), provider.getName(), nanos);
+            if (nanos < fastestNanos) {
+                fastestNanos = nanos;
+                fastest = provider;
+            }
+        }
+        if (fastest == null) {
+            throw new IllegalArgumentException(method.getAlgorithm() + " is not available");
+        }
+        return fastest;
+    }
+}
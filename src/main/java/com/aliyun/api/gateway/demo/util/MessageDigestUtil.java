@@ -18,6 +18,13 @@
  */
 package com.aliyun.api.gateway.demo.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.digest.DigestUtils;
 
@@ -30,6 +37,9 @@ import com.aliyun.api.gateway.demo.constant.Constants;
  * @author qiming.wqm 2016/06/24
  */
 public class MessageDigestUtil {
+    /** 流式读取文件的缓冲区大小 */
+    private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
     /**
      * 先进行MD5摘要再进行Base64编码获取摘要字符串
      *
@@ -61,4 +71,46 @@ public class MessageDigestUtil {
         }
         return Base64.encodeBase64String(DigestUtils.md5(bytes));
     }
+
+    /**
+     * 直接在缓冲区上计算摘要，不复制到字节数组，不修改缓冲区的position
+     *
+     * @param buffer
+     *            需要加密的[position, limit)区间，可以是只读或直接内存缓冲区，不能为null
+     * @return 加密后的字符串
+     * @throws IllegalArgumentException
+     *             如果参数buffer为null则抛出异常
+     */
+    public static String base64AndMD5(ByteBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("Parameter buffer cannot be null");
+        }
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        digest.update(buffer.duplicate());
+        return Base64.encodeBase64String(digest.digest());
+    }
+
+    /**
+     * 流式读取文件，先进行MD5摘要再进行Base64编码获取摘要字符串，不将文件读入内存
+     *
+     * @param path
+     *            文件路径，不能为null
+     * @return 加密后的字符串
+     * @throws IOException
+     *             读取文件失败
+     */
+    public static String base64AndMD5(Path path) throws IOException {
+        if (path == null) {
+            throw new IllegalArgumentException("Parameter path cannot be null");
+        }
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        byte[] buffer = new byte[FILE_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(path)) {
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return Base64.encodeBase64String(digest.digest());
+    }
 }
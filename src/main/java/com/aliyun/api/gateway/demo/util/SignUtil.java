@@ -39,7 +39,7 @@ import com.aliyun.api.gateway.demo.constant.SystemHeader;
 
 /**
  * 签名工具<br>
- * 本签名工具使用HMAC+SHA256加密算法对url及header进行加密和签名。
+ * 本签名工具使用HMAC+SHA256加密算法对url及header进行加密和签名；通过{@link HmacSigner}可选择其他签名算法及JCA Provider。
  * 
  * @author qiming.wqm 2016/06/24
  */
@@ -62,32 +62,123 @@ public class SignUtil {
      */
     public static String sign(RequestBuilder requestBuilder, String url, Map<String, String> formParamMap,
             String secret, String[] signHeaderPrefixes) {
-        String sign = buildStringToSign(requestBuilder, url, formParamMap, signHeaderPrefixes);
-        //System.out.println(sign);
-        return new String(Base64.encodeBase64(HmacUtils.hmacSha256(secret, sign)), Constants.ENCODING);
+        Map<String, String> headers = new HashMap<>();
+        for (Header header : requestBuilder.build().getAllHeaders()) {
+            headers.put(header.getName(), header.getValue());
+        }
+        String sign = sign(requestBuilder.getMethod(), headers, url, formParamMap, secret, signHeaderPrefixes);
+        requestBuilder.addHeader(SystemHeader.X_CA_SIGNATURE_HEADERS,
+                headers.get(SystemHeader.X_CA_SIGNATURE_HEADERS));
+        return sign;
     }
 
     /**
-     * 构建待签名字符串
+     * 计算签名，不依赖具体的HTTP客户端实现
      *
-     * @param requestBuilder
-     *            HTTP请求构造器
+     * @param method
+     *            HTTP方法
+     * @param headers
+     *            请求中所有的Http头，本方法将会在其中加入{@link SystemHeader#X_CA_SIGNATURE_HEADERS}
      * @param url
      *            Path+Query
      * @param formParamMap
      *            POST表单参数
+     * @param secret
+     *            APP密钥
+     * @param signHeaderPrefixes
+     *            自定义参与签名Header前缀
+     * @return 签名后的字符串
+     */
+    public static String sign(String method, Map<String, String> headers, String url,
+            Map<String, String> formParamMap, String secret, String[] signHeaderPrefixes) {
+        return signResource(method, headers, buildResource(url, formParamMap), secret, signHeaderPrefixes);
+    }
+
+    /**
+     * 按给定的签名算法计算签名，不依赖具体的HTTP客户端实现
+     *
+     * @param method
+     *            HTTP方法
+     * @param headers
+     *            请求中所有的Http头，本方法将会在其中加入{@link SystemHeader#X_CA_SIGNATURE_METHOD}及
+     *            {@link SystemHeader#X_CA_SIGNATURE_HEADERS}
+     * @param url
+     *            Path+Query
+     * @param formParamMap
+     *            POST表单参数
+     * @param signer
+     *            签名算法及APP密钥
+     * @param signHeaderPrefixes
+     *            自定义参与签名Header前缀
+     * @return 签名后的字符串
+     */
+    public static String sign(String method, Map<String, String> headers, String url,
+            Map<String, String> formParamMap, HmacSigner signer, String[] signHeaderPrefixes) {
+        return signResource(method, headers, buildResource(url, formParamMap), signer, signHeaderPrefixes);
+    }
+
+    /**
+     * 使用已构建好的待签名Path+Query+FormParams计算签名，如{@link FormEncoder.FormBody#getSignResource()}
+     *
+     * @param method
+     *            HTTP方法
+     * @param headers
+     *            请求中所有的Http头，本方法将会在其中加入{@link SystemHeader#X_CA_SIGNATURE_HEADERS}
+     * @param resource
+     *            待签名Path+Query+FormParams
+     * @param secret
+     *            APP密钥
+     * @param signHeaderPrefixes
+     *            自定义参与签名Header前缀
+     * @return 签名后的字符串
+     */
+    public static String signResource(String method, Map<String, String> headers, String resource, String secret,
+            String[] signHeaderPrefixes) {
+        String sign = buildStringToSign(method, headers, resource, signHeaderPrefixes);
+        //System.out.println(sign);
+        return new String(Base64.encodeBase64(HmacUtils.hmacSha256(secret, sign)), Constants.ENCODING);
+    }
+
+    /**
+     * 使用已构建好的待签名Path+Query+FormParams，按给定的签名算法计算签名
+     *
+     * @param method
+     *            HTTP方法
+     * @param headers
+     *            请求中所有的Http头，本方法将会在其中加入{@link SystemHeader#X_CA_SIGNATURE_METHOD}及
+     *            {@link SystemHeader#X_CA_SIGNATURE_HEADERS}
+     * @param resource
+     *            待签名Path+Query+FormParams
+     * @param signer
+     *            签名算法及APP密钥
+     * @param signHeaderPrefixes
+     *            自定义参与签名Header前缀
+     * @return 签名后的字符串
+     */
+    public static String signResource(String method, Map<String, String> headers, String resource,
+            HmacSigner signer, String[] signHeaderPrefixes) {
+        //签名算法以X-Ca-开头，本身也参与签名
+        headers.put(SystemHeader.X_CA_SIGNATURE_METHOD, signer.getMethod().getAlgorithm());
+        return signer.sign(buildStringToSign(method, headers, resource, signHeaderPrefixes));
+    }
+
+    /**
+     * 构建待签名字符串
+     *
+     * @param method
+     *            HTTP方法
+     * @param headers
+     *            请求中所有的Http头
+     * @param resource
+     *            待签名Path+Query+FormParams
      * @param signHeaderPrefixes
      *            自定义参与签名Header前缀
      * @return 签名字符串
      */
-    private static String buildStringToSign(RequestBuilder requestBuilder, String url, Map<String, String> formParamMap,
+    private static String buildStringToSign(String method, Map<String, String> headers, String resource,
             String[] signHeaderPrefixes) {
-        Map<String, String> headers = new HashMap<>();
-        for (Header header : requestBuilder.build().getAllHeaders()) {
-            headers.put(header.getName(), header.getValue());
-        }
         StringBuilder sb = new StringBuilder();
-        sb.append(requestBuilder.getMethod().toUpperCase()).append(Constants.LF);
+        sb.append(method.toUpperCase()).append(Constants.LF);
         if (headers.get(HttpHeader.HTTP_HEADER_ACCEPT) != null) {
             sb.append(headers.get(HttpHeader.HTTP_HEADER_ACCEPT));
         }
@@ -104,8 +195,8 @@ public class SignUtil {
             sb.append(headers.get(HttpHeader.HTTP_HEADER_DATE));
         }
         sb.append(Constants.LF);
-        sb.append(buildHeaders(requestBuilder, headers, signHeaderPrefixes));
-        sb.append(buildResource(url, formParamMap));
+        sb.append(buildHeaders(headers, signHeaderPrefixes));
+        sb.append(resource);
         return sb.toString();
     }
 
@@ -158,16 +249,13 @@ public class SignUtil {
     /**
      * 构建待签名HTTP头，并在header的Map里加入签名头信息
      * 
-     * @param requestBuilder
-     *            HTTP请求构造器，本方法将会在HTTP请求构造器中添加头部信息：{@link SystemHeader#X_CA_SIGNATURE_HEADERS}
      * @param headers
-     *            请求中所有的Http头
+     *            请求中所有的Http头，本方法将会在其中加入头部信息：{@link SystemHeader#X_CA_SIGNATURE_HEADERS}
      * @param signHeaderPrefixes
      *            自定义参与签名Header前缀
      * @return 待签名HTTP头
      */
-    private static String buildHeaders(RequestBuilder requestBuilder, Map<String, String> headers,
-            final String[] signHeaderPrefixes) {
+    private static String buildHeaders(Map<String, String> headers, final String[] signHeaderPrefixes) {
         Map<String, String> headersToSign = new TreeMap<String, String>();
         if (headers != null) {
             StringBuilder signHeadersStringBuilder = new StringBuilder();
@@ -180,7 +268,7 @@ public class SignUtil {
             if (signHeadersStringBuilder.length() > 0) {
                 signHeadersStringBuilder.deleteCharAt(signHeadersStringBuilder.length() - 1);
             }
-            requestBuilder.addHeader(SystemHeader.X_CA_SIGNATURE_HEADERS, signHeadersStringBuilder.toString());
+            headers.put(SystemHeader.X_CA_SIGNATURE_HEADERS, signHeadersStringBuilder.toString());
         }
         StringBuilder sb = new StringBuilder();
         for (Entry<String, String> e : headersToSign.entrySet()) {
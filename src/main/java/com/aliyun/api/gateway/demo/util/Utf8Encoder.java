@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+
+import com.aliyun.api.gateway.demo.transport.ByteArrayBody;
+
+/**
+ * 字符串Body的UTF-8编码器<br>
+ * 先扫描一遍得到编码后的精确长度，再直接编码到缓冲池中按2的幂分级的缓冲区，Content-MD5与发送的Body共用这一份字节，
+ * 字符串只编码一次。MB级的Body在G1中会被分配为大对象，复用缓冲区可避免每个请求都分配、回收一次。
+ * 请求完成后需调用{@link EncodedBody#release()}归还缓冲区。
+ */
+public class Utf8Encoder {
+    /** 小于该大小的Body直接分配，不经过缓冲池 */
+    private static final int MIN_POOLED_SIZE = 4 * 1024;
+    /** 超过该大小的Body直接分配，用完即丢弃 */
+    private static final int MAX_POOLED_SIZE = 16 * 1024 * 1024;
+    /** 缓冲池最多保留的总字节数 */
+    private static final long MAX_RETAINED_BYTES = 64L * 1024 * 1024;
+    private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_POOLED_SIZE);
+    /** 按大小分级的空闲缓冲区，第i级的缓冲区大小为MIN_POOLED_SIZE << i */
+    private static final ConcurrentLinkedQueue<?>[] POOL = new ConcurrentLinkedQueue<?>[Integer
+            .numberOfTrailingZeros(MAX_POOLED_SIZE) - MIN_SHIFT + 1];
+    private static final AtomicLong RETAINED = new AtomicLong();
+
+    static {
+        for (int i = 0; i < POOL.length; i++) {
+            POOL[i] = new ConcurrentLinkedQueue<byte[]>();
+        }
+    }
+
+    private Utf8Encoder() {
+    }
+
+    /**
+     * 编码字符串Body
+     *
+     * @param str
+     *            字符串，不能为null
+     * @param contentType
+     *            Body的Content-Type
+     * @param computeContentMD5
+     *            是否同时计算编码后字节的Content-MD5
+     * @return 编码后的Body
+     */
+    public static EncodedBody encode(String str, String contentType, boolean computeContentMD5) {
+        if (str == null) {
+            throw new IllegalArgumentException("Parameter str cannot be null");
+        }
+        int length = encodedLength(str);
+        byte[] buffer = acquire(length);
+        encode(str, buffer);
+        String contentMD5 = null;
+        if (computeContentMD5) {
+            MessageDigest md5 = DigestUtils.getMd5Digest();
+            md5.update(buffer, 0, length);
+            contentMD5 = Base64.encodeBase64String(md5.digest());
+        }
+        return new EncodedBody(buffer, length, contentType, contentMD5);
+    }
+
+    /**
+     * @return 字符串按UTF-8编码后的字节数，与{@code str.getBytes(UTF_8).length}一致
+     */
+    public static int encodedLength(String str) {
+        int length = 0;
+        for (int i = 0, n = str.length(); i < n; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * 按UTF-8编码，不成对的代理字符与{@link String#getBytes(java.nio.charset.Charset)}一样替换为'?'
+     *
+     * @return 编码后的字节数
+     */
+    private static int encode(String str, byte[] buffer) {
+        int pos = 0;
+        for (int i = 0, n = str.length(); i < n; i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, str.charAt(++i));
+                buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+                buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[pos++] = '?';
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * @return 所在的级别，不经过缓冲池时返回-1
+     */
+    private static int sizeClass(int length) {
+        if (length < MIN_POOLED_SIZE || length > MAX_POOLED_SIZE) {
+            return -1;
+        }
+        return 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_SHIFT;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static byte[] acquire(int length) {
+        int sizeClass = sizeClass(length);
+        if (sizeClass < 0) {
+            return new byte[length];
+        }
+        byte[] buffer = ((ConcurrentLinkedQueue<byte[]>) POOL[sizeClass]).poll();
+        if (buffer == null) {
+            return new byte[MIN_POOLED_SIZE << sizeClass];
+        }
+        RETAINED.addAndGet(-buffer.length);
+        return buffer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void release(byte[] buffer) {
+        int sizeClass = sizeClass(buffer.length);
+        if (sizeClass < 0 || buffer.length != MIN_POOLED_SIZE << sizeClass) {
+            return;
+        }
+        if (RETAINED.addAndGet(buffer.length) > MAX_RETAINED_BYTES) {
+            RETAINED.addAndGet(-buffer.length);
+            return;
+        }
+        ((ConcurrentLinkedQueue<byte[]>) POOL[sizeClass]).offer(buffer);
+    }
+
+    /**
+     * UTF-8编码后的字符串Body，可携带编码后字节的Content-MD5
+     */
+    public static class EncodedBody extends ByteArrayBody {
+        private final String contentMD5;
+        private boolean released;
+
+        EncodedBody(byte[] buffer, int length, String contentType, String contentMD5) {
+            super(buffer, 0, length, contentType);
+            this.contentMD5 = contentMD5;
+        }
+
+        /**
+         * @return 编码后字节的MD5摘要（Base64编码），未要求计算时返回null
+         */
+        public String getContentMD5() {
+            return contentMD5;
+        }
+
+        @Override
+        public boolean isPooled() {
+            return true;
+        }
+
+        /**
+         * 请求发送完成后将缓冲区归还给缓冲池，之后不可再读取Body；重复调用无副作用
+         */
+        public void release() {
+            if (!released) {
+                released = true;
+                Utf8Encoder.release(getBytes());
+            }
+        }
+    }
+}
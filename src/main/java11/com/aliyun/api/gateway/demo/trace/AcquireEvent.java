@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * 从连接池获取连接，含等待及新建连接（TCP连接与TLS握手）的时间
+ */
+@Name(AcquireEvent.NAME)
+@Label("Gateway Connection Acquire")
+@Category({ "API Gateway", "Client" })
+@Description("Lease a pooled connection, including pool wait, connect and TLS handshake")
+@Threshold("5 ms")
+@StackTrace(false)
+class AcquireEvent extends Event {
+    static final String NAME = "com.aliyun.apigateway.ConnectionAcquire";
+
+    @Label("Route")
+    String route;
+
+    @Label("Reused")
+    boolean reused;
+}
@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.trace;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * 按API路径汇总JFR录制文件中的网关事件<br>
+ * 用法：{@code java -cp <classpath> com.aliyun.api.gateway.demo.trace.JfrAnalyzer recording.jfr}
+ */
+public class JfrAnalyzer {
+    private final Map<String, Stats> exchanges = new TreeMap<>();
+    private final Map<String, Stats> signs = new TreeMap<>();
+    private final Map<String, Stats> acquires = new TreeMap<>();
+    private final List<RecordedEvent> poolAdjustments = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: JfrAnalyzer <recording.jfr>");
+            System.exit(1);
+        }
+        JfrAnalyzer analyzer = new JfrAnalyzer();
+        analyzer.read(Paths.get(args[0]));
+        analyzer.print(System.out);
+    }
+
+    /**
+     * 读取录制文件中的网关事件
+     *
+     * @param recording
+     *            录制文件
+     * @throws IOException
+     *             读取失败
+     */
+    public void read(Path recording) throws IOException {
+        try (RecordingFile file = new RecordingFile(recording)) {
+            while (file.hasMoreEvents()) {
+                RecordedEvent event = file.readEvent();
+                switch (event.getEventType().getName()) {
+                case ExchangeEvent.NAME:
+                    Stats exchange = stats(exchanges, event.getString("method") + " " + event.getString("path"));
+                    exchange.add(event);
+                    int status = event.getInt("status");
+                    if (event.getString("error") != null || status >= 500) {
+                        exchange.errors++;
+                    }
+                    exchange.requestBytes += Math.max(event.getLong("requestBytes"), 0);
+                    exchange.responseBytes += Math.max(event.getLong("responseBytes"), 0);
+                    break;
+                case SignEvent.NAME:
+                    stats(signs, event.getString("method") + " " + event.getString("path")).add(event);
+                    break;
+                case AcquireEvent.NAME:
+                    Stats acquire = stats(acquires, event.getString("route"));
+                    acquire.add(event);
+                    if (!event.getBoolean("reused")) {
+                        acquire.errors++;
+                    }
+                    break;
+                case PoolAdjustEvent.NAME:
+                    poolAdjustments.add(event);
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * 输出汇总结果
+     *
+     * @param out
+     *            输出流
+     */
+    public void print(PrintStream out) {
+        out.println("== Exchanges (ms) ==");
+        out.printf("%-48s %8s %8s %8s %8s %8s %8s %10s %10s%n", "api", "count", "errors", "p50", "p90", "p99",
+                "max", "req KB", "resp KB");
+        for (Map.Entry<String, Stats> e : exchanges.entrySet()) {
+            Stats s = e.getValue();
+            out.printf("%-48s %8d %8d %8.2f %8.2f %8.2f %8.2f %10.1f %10.1f%n", e.getKey(), s.count(), s.errors,
+                    s.percentile(50), s.percentile(90), s.percentile(99), s.percentile(100),
+                    s.requestBytes / 1024.0, s.responseBytes / 1024.0);
+        }
+        out.println();
+        out.println("== Sign (ms) ==");
+        out.printf("%-48s %8s %8s %8s %8s%n", "api", "count", "p50", "p99", "max");
+        for (Map.Entry<String, Stats> e : signs.entrySet()) {
+            Stats s = e.getValue();
+            out.printf("%-48s %8d %8.3f %8.3f %8.3f%n", e.getKey(), s.count(), s.percentile(50), s.percentile(99),
+                    s.percentile(100));
+        }
+        out.println();
+        out.println("== Connection acquire (ms) ==");
+        out.printf("%-48s %8s %8s %8s %8s %8s%n", "route", "count", "new", "p50", "p99", "max");
+        for (Map.Entry<String, Stats> e : acquires.entrySet()) {
+            Stats s = e.getValue();
+            out.printf("%-48s %8d %8d %8.2f %8.2f %8.2f%n", e.getKey(), s.count(), s.errors, s.percentile(50),
+                    s.percentile(99), s.percentile(100));
+        }
+        out.println();
+        out.println("== Pool adjustments ==");
+        out.printf("%-30s %-10s %12s %12s %10s %8s %8s %8s%n", "time", "reason", "perRoute", "total", "wait ms",
+                "peak", "pending", "churn");
+        for (RecordedEvent e : poolAdjustments) {
+            out.printf("%-30s %-10s %5d -> %-4d %5d -> %-4d %10.2f %8d %8d %8.2f%n", e.getStartTime(),
+                    e.getString("reason"), e.getInt("previousMaxPerRoute"), e.getInt("maxPerRoute"),
+                    e.getInt("previousMaxTotal"), e.getInt("maxTotal"), e.getDouble("averageWaitMillis"),
+                    e.getLong("peakLeased"), e.getInt("pending"), e.getDouble("churn"));
+        }
+    }
+
+    private static Stats stats(Map<String, Stats> map, String key) {
+        Stats stats = map.get(key);
+        if (stats == null) {
+            stats = new Stats();
+            map.put(key, stats);
+        }
+        return stats;
+    }
+
+    /** 一组事件的耗时分布 */
+    private static class Stats {
+        private final List<Long> durations = new ArrayList<>();
+        private boolean sorted;
+        /** exchange为失败数，acquire为新建连接数 */
+        long errors;
+        long requestBytes;
+        long responseBytes;
+
+        void add(RecordedEvent event) {
+            durations.add(event.getDuration().toNanos());
+            sorted = false;
+        }
+
+        int count() {
+            return durations.size();
+        }
+
+        double percentile(int p) {
+            if (durations.isEmpty()) {
+                return 0;
+            }
+            if (!sorted) {
+                Collections.sort(durations);
+                sorted = true;
+            }
+            int index = (int) Math.ceil(p / 100.0 * durations.size()) - 1;
+            return durations.get(Math.max(index, 0)) / 1e6;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.trace;
+
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+
+import com.aliyun.api.gateway.demo.transport.PoolAdjustment;
+import com.aliyun.api.gateway.demo.transport.RequestTimeoutException;
+
+/**
+ * 基于JDK Flight Recorder的埋点实现<br>
+ * 事件未启用时begin不创建事件对象；事件耗时未超过阈值时不填充字段也不提交。
+ * JFR未初始化（未开始过录制）时直接视为未启用，不为查询事件类型而初始化JFR，避免拖慢启动。
+ */
+public class JfrTracer implements Tracer {
+
+    @Override
+    public Object beginSign() {
+        if (!FlightRecorder.isInitialized() || !Types.SIGN.isEnabled()) {
+            return null;
+        }
+        SignEvent event = new SignEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endSign(Object span, String path, String method) {
+        if (span == null) {
+            return;
+        }
+        SignEvent event = (SignEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.method = method;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginAcquire() {
+        if (!FlightRecorder.isInitialized() || !Types.ACQUIRE.isEnabled()) {
+            return null;
+        }
+        AcquireEvent event = new AcquireEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endAcquire(Object span, String route, boolean reused) {
+        if (span == null) {
+            return;
+        }
+        AcquireEvent event = (AcquireEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.route = route;
+            event.reused = reused;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object beginExchange() {
+        if (!FlightRecorder.isInitialized() || !Types.EXCHANGE.isEnabled()) {
+            return null;
+        }
+        ExchangeEvent event = new ExchangeEvent();
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public void endExchange(Object span, String path, String method, int status, long requestBytes,
+            long responseBytes, Throwable error) {
+        if (span == null) {
+            return;
+        }
+        ExchangeEvent event = (ExchangeEvent) span;
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path;
+            event.method = method;
+            event.status = status;
+            event.requestBytes = requestBytes;
+            event.responseBytes = responseBytes;
+            if (error instanceof RequestTimeoutException) {
+                event.error = "timeout:" + ((RequestTimeoutException) error).getPhase();
+            } else if (error != null) {
+                event.error = error.getClass().getName();
+            }
+            event.commit();
+        }
+    }
+
+    @Override
+    public void poolAdjusted(PoolAdjustment adjustment) {
+        if (!FlightRecorder.isInitialized() || !Types.POOL_ADJUST.isEnabled()) {
+            return;
+        }
+        PoolAdjustEvent event = new PoolAdjustEvent();
+        event.reason = adjustment.getReason().name();
+        event.previousMaxPerRoute = adjustment.getPreviousMaxPerRoute();
+        event.maxPerRoute = adjustment.getMaxPerRoute();
+        event.previousMaxTotal = adjustment.getPreviousMaxTotal();
+        event.maxTotal = adjustment.getMaxTotal();
+        event.averageWaitMillis = adjustment.getAverageWaitMillis();
+        event.peakLeased = adjustment.getPeakLeased();
+        event.pending = adjustment.getPending();
+        event.churn = adjustment.getChurn();
+        event.commit();
+    }
+
+    /** 事件类型，首次在录制中的进程里埋点时才获取 */
+    private static class Types {
+        static final EventType SIGN = EventType.getEventType(SignEvent.class);
+        static final EventType ACQUIRE = EventType.getEventType(AcquireEvent.class);
+        static final EventType EXCHANGE = EventType.getEventType(ExchangeEvent.class);
+        static final EventType POOL_ADJUST = EventType.getEventType(PoolAdjustEvent.class);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.trace;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * 连接池大小的一次自动调整，为瞬时事件
+ */
+@Name(PoolAdjustEvent.NAME)
+@Label("Gateway Pool Adjust")
+@Category({ "API Gateway", "Client" })
+@Description("Connection pool limits changed by the pool controller")
+@StackTrace(false)
+class PoolAdjustEvent extends Event {
+    static final String NAME = "com.aliyun.apigateway.PoolAdjust";
+
+    @Label("Reason")
+    String reason;
+
+    @Label("Previous Max Per Route")
+    int previousMaxPerRoute;
+
+    @Label("Max Per Route")
+    int maxPerRoute;
+
+    @Label("Previous Max Total")
+    int previousMaxTotal;
+
+    @Label("Max Total")
+    int maxTotal;
+
+    @Label("Average Wait (ms)")
+    double averageWaitMillis;
+
+    @Label("Peak Leased")
+    long peakLeased;
+
+    @Label("Pending")
+    int pending;
+
+    @Label("Churn")
+    double churn;
+}
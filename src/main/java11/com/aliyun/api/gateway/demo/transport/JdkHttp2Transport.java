@@ -0,0 +1,291 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+
+/**
+ * 基于JDK {@code java.net.http.HttpClient}的HTTP/2传输层<br>
+ * 同一host的并发请求复用少量连接上的多个stream；服务端不支持HTTP/2时自动降级为HTTP/1.1。
+ * 连接超时在构造时指定，对所有请求生效；请求的截止时间作为整个请求（含建连）的超时时间。
+ * JDK HttpClient总是自行解析host，因此忽略{@link TransportRequest#getTarget()}及预连接指定的地址。<br>
+ * JDK 11的HttpClient还不允许设置Date、From、Via及Warning（JDK 12起允许），这些Header可能参与签名，不能忽略，
+ * 请求中带有它们时{@link #execute(TransportRequest)}抛出{@link IllegalArgumentException}，需改用其他传输层或更高版本的JDK。
+ */
+public class JdkHttp2Transport implements Transport {
+    private static final ProtocolVersion HTTP_2 = new ProtocolVersion("HTTP", 2, 0);
+    /** 由JDK HttpClient自行设置、不允许调用方设置的Header，发送时忽略 */
+    private static final Set<String> RESTRICTED_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    /** 当前JDK的HttpClient不允许设置、但可能参与签名的Header（JDK 11中的Date、From、Via及Warning），不能忽略 */
+    private static final Set<String> UNSENDABLE_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        RESTRICTED_HEADERS.add("Connection");
+        RESTRICTED_HEADERS.add("Content-Length");
+        RESTRICTED_HEADERS.add("Expect");
+        RESTRICTED_HEADERS.add("Host");
+        RESTRICTED_HEADERS.add("Upgrade");
+        for (String name : new String[] { "Date", "From", "Via", "Warning" }) {
+            try {
+                HttpRequest.newBuilder().setHeader(name, "");
+            } catch (IllegalArgumentException e) {
+                UNSENDABLE_HEADERS.add(name);
+            }
+        }
+    }
+
+    private final HttpClient httpClient;
+
+    /**
+     * @param testEnv
+     *            是否是测试环境，测试环境信任所有证书
+     * @throws IllegalStateException
+     *             构造SSLContext失败时抛出异常
+     */
+    public JdkHttp2Transport(boolean testEnv) {
+        this(testEnv, new TlsConfig());
+    }
+
+    /**
+     * @param testEnv
+     *            是否是测试环境，测试环境信任所有证书
+     * @param tlsConfig
+     *            TLS配置
+     * @throws IllegalStateException
+     *             构造SSLContext失败时抛出异常
+     */
+    public JdkHttp2Transport(boolean testEnv, TlsConfig tlsConfig) {
+        this(testEnv, tlsConfig, Constants.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param testEnv
+     *            是否是测试环境，测试环境信任所有证书
+     * @param tlsConfig
+     *            TLS配置
+     * @param connectTimeout
+     *            连接超时时间，单位毫秒
+     * @throws IllegalStateException
+     *             构造SSLContext失败时抛出异常
+     */
+    public JdkHttp2Transport(boolean testEnv, TlsConfig tlsConfig, int connectTimeout) {
+        SSLContext sslContext;
+        try {
+            sslContext = SSLContextFactory.getShared(testEnv, tlsConfig);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        SSLParameters sslParameters = sslContext.getDefaultSSLParameters();
+        String[] protocols = tlsConfig.getSupportedProtocols(sslContext);
+        if (protocols != null) {
+            sslParameters.setProtocols(protocols);
+        }
+        if (tlsConfig.getCipherSuites() != null) {
+            sslParameters.setCipherSuites(tlsConfig.getCipherSuites());
+        }
+        httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).sslContext(sslContext)
+                .sslParameters(sslParameters).connectTimeout(Duration.ofMillis(connectTimeout))
+                .followRedirects(HttpClient.Redirect.NORMAL).build();
+    }
+
+    @Override
+    public HttpResponse execute(TransportRequest request) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(request.getUri());
+        builder.setHeader(HttpHeader.HTTP_HEADER_USER_AGENT, Constants.USER_AGENT);
+        for (Map.Entry<String, String> e : request.getHeaders().entrySet()) {
+            if (RESTRICTED_HEADERS.contains(e.getKey())) {
+                continue;
+            }
+            if (UNSENDABLE_HEADERS.contains(e.getKey())) {
+                throw new IllegalArgumentException("Header " + e.getKey() + " cannot be sent by the HttpClient of JDK "
+                        + Runtime.version() + ", use another transport or JDK 12 or later");
+            }
+            builder.setHeader(e.getKey(), e.getValue());
+        }
+        RequestBody body = request.getBody();
+        if (body != null && body.getContentType() != null
+                && request.getHeader(HttpHeader.HTTP_HEADER_CONTENT_TYPE) == null) {
+            builder.setHeader(HttpHeader.HTTP_HEADER_CONTENT_TYPE, body.getContentType());
+        }
+        builder.method(request.getMethod(), toPublisher(body));
+        Deadline deadline = request.getDeadline();
+        if (deadline != null) {
+            builder.timeout(Duration.ofMillis(deadline.clamp(0)));
+        }
+        java.net.http.HttpResponse<InputStream> response;
+        try {
+            response = httpClient.send(builder.build(), BodyHandlers.ofInputStream());
+        } catch (HttpConnectTimeoutException e) {
+            throw new RequestTimeoutException(TimeoutPhase.CONNECT, String.valueOf(e.getMessage()), e);
+        } catch (HttpTimeoutException e) {
+            throw new RequestTimeoutException(TimeoutPhase.RESPONSE, String.valueOf(e.getMessage()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException ex = new InterruptedIOException(e.getMessage());
+            ex.initCause(e);
+            throw ex;
+        }
+        return toHttpResponse(response);
+    }
+
+    /**
+     * HTTP/2下同一host的请求复用一个连接，因此只发送一个HEAD请求以建立连接并完成TLS握手与协议协商，
+     * 忽略其响应状态（未签名的请求通常会被网关拒绝）
+     */
+    @Override
+    public int preconnect(URI uri, InetSocketAddress target, int connections, int timeout) throws IOException {
+        URI root = URI.create(uri.getScheme() + "://" + uri.getRawAuthority() + "/");
+        HttpRequest request = HttpRequest.newBuilder(root).method("HEAD", BodyPublishers.noBody())
+                .timeout(Duration.ofMillis(timeout)).setHeader(HttpHeader.HTTP_HEADER_USER_AGENT, Constants.USER_AGENT)
+                .build();
+        try {
+            httpClient.send(request, BodyHandlers.discarding());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        return 1;
+    }
+
+    private static BodyPublisher toPublisher(RequestBody body) throws IOException {
+        if (body == null) {
+            return BodyPublishers.noBody();
+        }
+        if (body instanceof ByteArrayBody) {
+            ByteArrayBody bytes = (ByteArrayBody) body;
+            if (bytes.isPooled()) {
+                //HttpClient可能在收到响应头或超时后仍在发送Body，而池化缓冲区在execute返回时即被归还复用
+                return BodyPublishers.ofByteArray(Arrays.copyOfRange(bytes.getBytes(), bytes.getOffset(),
+                        bytes.getOffset() + (int) bytes.getContentLength()));
+            }
+            return BodyPublishers.ofByteArray(bytes.getBytes(), bytes.getOffset(), (int) bytes.getContentLength());
+        }
+        if (body instanceof ByteBufferBody) {
+            //直接交给HttpClient，直接内存缓冲区不复制到堆中
+            return BodyPublishers.fromPublisher(new ByteBufferPublisher((ByteBufferBody) body),
+                    body.getContentLength());
+        }
+        if (body instanceof FileBody) {
+            return BodyPublishers.ofFile(((FileBody) body).getPath());
+        }
+        if (body instanceof InputStreamBody) {
+            InputStreamBody stream = (InputStreamBody) body;
+            BodyPublisher publisher = BodyPublishers.ofInputStream(stream::openStream);
+            return stream.getContentLength() < 0 ? publisher
+                    : BodyPublishers.fromPublisher(publisher, stream.getContentLength());
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(
+                body.getContentLength() > 0 ? (int) body.getContentLength() : 4096);
+        body.writeTo(buffer);
+        return BodyPublishers.ofByteArray(buffer.toByteArray());
+    }
+
+    private static HttpResponse toHttpResponse(java.net.http.HttpResponse<InputStream> response) {
+        ProtocolVersion version = response.version() == HttpClient.Version.HTTP_2 ? HTTP_2 : HttpVersion.HTTP_1_1;
+        BasicHttpResponse httpResponse = new BasicHttpResponse(version, response.statusCode(), null);
+        for (Map.Entry<String, List<String>> e : response.headers().map().entrySet()) {
+            //HTTP/2的伪Header（如:status）不对外暴露
+            if (e.getKey().startsWith(":")) {
+                continue;
+            }
+            for (String value : e.getValue()) {
+                httpResponse.addHeader(e.getKey(), value);
+            }
+        }
+        long length = response.headers().firstValueAsLong("Content-Length").orElse(-1L);
+        InputStreamEntity entity = new InputStreamEntity(response.body(), length);
+        entity.setContentType(response.headers().firstValue(HttpHeader.HTTP_HEADER_CONTENT_TYPE).orElse(null));
+        entity.setContentEncoding(
+                response.headers().firstValue(HttpHeader.HTTP_HEADER_CONTENT_ENCODING).orElse(null));
+        httpResponse.setEntity(entity);
+        return httpResponse;
+    }
+
+    @Override
+    public void close() {
+        //JDK 11的HttpClient没有close方法，连接在空闲后由其自身回收
+    }
+
+    /** 发布单个ByteBuffer的Publisher，每次订阅（如重发）都发布Body的一个新视图 */
+    private static class ByteBufferPublisher implements Flow.Publisher<ByteBuffer> {
+        private final ByteBufferBody body;
+
+        ByteBufferPublisher(ByteBufferBody body) {
+            this.body = body;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            AtomicBoolean done = new AtomicBoolean();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    if (!done.compareAndSet(false, true)) {
+                        return;
+                    }
+                    if (n <= 0) {
+                        subscriber.onError(new IllegalArgumentException("non-positive request: " + n));
+                        return;
+                    }
+                    subscriber.onNext(body.getBuffer());
+                    subscriber.onComplete();
+                }
+
+                @Override
+                public void cancel() {
+                    done.set(true);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.ContentType;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.transport.Transport;
+import com.aliyun.api.gateway.demo.transport.TransportRequest;
+import com.aliyun.api.gateway.demo.transport.Transports;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 单次请求内存分配的回归测试<br>
+ * 在本机回环地址上启动桩服务，用{@link Client}（默认的Apache传输层）依次发送每种{@link Method}的请求，
+ * 以{@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}统计调用线程上每次请求的平均分配字节数，
+ * 超过allocation-budgets.properties中按Path配置的预算时失败，并打印按阶段划分的分配明细：
+ * <ul>
+ * <li>prepare：签名、构造Header及Body，直至交给传输层；
+ * <li>transport：传输层发送请求并解析响应头；
+ * <li>finish：传输层返回后Client的处理，如响应解压、归还Body缓冲区；
+ * <li>response：读取并消费响应Body。
+ * </ul>
+ * 只统计调用线程，桩服务线程的分配不计入。修改签名、Body编码或传输层后分配增加属预期时，同步调整预算文件。
+ */
+@RunWith(Parameterized.class)
+public class AllocationBudgetTest {
+    private static final String BUDGETS = "allocation-budgets.properties";
+    private static final String PATH_PREFIX = "/budget/";
+    private static final int WARM_UP_REQUESTS = 3000;
+    private static final int MEASURED_REQUESTS = 1000;
+    private static final byte[] RESPONSE = "{\"result\":\"ok\",\"data\":[1,2,3]}".getBytes(Constants.ENCODING);
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    private static HttpServer server;
+    private static MeteredTransport transport;
+    private static Client client;
+    private static Properties budgets;
+
+    private final Method method;
+
+    public AllocationBudgetTest(Method method) {
+        this.method = method;
+    }
+
+    @Parameters(name = "{0}")
+    public static List<Object[]> methods() {
+        List<Object[]> methods = new ArrayList<>();
+        for (Method method : Method.values()) {
+            methods.add(new Object[] { method });
+        }
+        return methods;
+    }
+
+    @BeforeClass
+    public static void setUp() throws IOException {
+        Assume.assumeTrue(THREADS.isThreadAllocatedMemorySupported());
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        budgets = new Properties();
+        try (InputStream in = AllocationBudgetTest.class.getClassLoader().getResourceAsStream(BUDGETS)) {
+            assertNotNull(BUDGETS + " not found", in);
+            budgets.load(in);
+        }
+        //桩服务分开写出响应头与Body，不关闭Nagle时与延迟确认叠加，每次请求约40ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try (InputStream in = exchange.getRequestBody()) {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) >= 0) {
+                        //丢弃请求Body
+                    }
+                }
+                exchange.getResponseHeaders().set("Content-Type", ContentType.CONTENT_TYPE_JSON);
+                exchange.sendResponseHeaders(200, RESPONSE.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(RESPONSE);
+                }
+            }
+        });
+        server.start();
+        transport = new MeteredTransport(Transports.apache(false));
+        client = new Client("app_key", "app_secret", false, transport);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (client != null) {
+            client.close();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void allocationPerRequestWithinBudget() throws IOException {
+        String path = PATH_PREFIX + method.name().toLowerCase().replace('_', '-');
+        String budget = budgets.getProperty(path);
+        assertNotNull("no allocation budget configured for " + path + " in " + BUDGETS, budget);
+        Request request = request(path);
+
+        for (int i = 0; i < WARM_UP_REQUESTS; i++) {
+            execute(request, null);
+        }
+        long[] phases = new long[4];
+        for (int i = 0; i < MEASURED_REQUESTS; i++) {
+            execute(request, phases);
+        }
+        long prepare = phases[0] / MEASURED_REQUESTS;
+        long sent = phases[1] / MEASURED_REQUESTS;
+        long finish = phases[2] / MEASURED_REQUESTS;
+        long response = phases[3] / MEASURED_REQUESTS;
+        long total = prepare + sent + finish + response;
+        String breakdown = String.format("%-12s total=%dB (prepare=%dB, transport=%dB, finish=%dB, response=%dB), "
+                + "budget=%sB", method, total, prepare, sent, finish, response, budget.trim());
+        System.out.println(breakdown);
+        assertTrue("allocation budget exceeded: " + breakdown, total <= Long.parseLong(budget.trim()));
+    }
+
+    /**
+     * 构造该Method的典型请求：表单3个参数，字符串及字节数组Body均为1KB
+     */
+    private Request request(String path) throws IOException {
+        URL url = new URL("http", InetAddress.getLoopbackAddress().getHostAddress(), server.getAddress().getPort(),
+                path + "?id=123&name=test");
+        Request.Builder builder = Request.newBuilder(method, url).setHeader("X-Ca-Stage", "TEST");
+        switch (method) {
+        case POST_FORM:
+        case PUT_FORM:
+            Map<String, String> form = new HashMap<>();
+            form.put("a", "value-a");
+            form.put("b", "中文参数");
+            form.put("c", "value with spaces");
+            builder.setFormBody(form);
+            break;
+        case POST_STRING:
+        case PUT_STRING:
+            StringBuilder json = new StringBuilder("[");
+            for (int i = 0; json.length() < 1024; i++) {
+                json.append("{\"id\":").append(i).append(",\"name\":\"商品").append(i).append("\"},");
+            }
+            json.setCharAt(json.length() - 1, ']');
+            builder.setStringBody(json.toString()).setHeader("Content-Type", ContentType.CONTENT_TYPE_JSON);
+            break;
+        case POST_BYTES:
+        case PUT_BYTES:
+            byte[] bytes = new byte[1024];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) i;
+            }
+            builder.setBytesBody(bytes).setHeader("Content-Type", ContentType.CONTENT_TYPE_STREAM);
+            break;
+        default:
+            break;
+        }
+        return builder.build();
+    }
+
+    /**
+     * 发送一次请求并消费响应，phases不为null时累加各阶段的分配字节数
+     */
+    private static void execute(Request request, long[] phases) throws IOException {
+        long id = Thread.currentThread().getId();
+        long start = THREADS.getThreadAllocatedBytes(id);
+        HttpResponse response = client.execute(request);
+        long executed = THREADS.getThreadAllocatedBytes(id);
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        EntityUtils.consume(response.getEntity());
+        long consumed = THREADS.getThreadAllocatedBytes(id);
+        if (phases != null) {
+            phases[0] += transport.entered - start;
+            phases[1] += transport.returned - transport.entered;
+            phases[2] += executed - transport.returned;
+            phases[3] += consumed - executed;
+        }
+    }
+
+    /**
+     * 记录进入及离开传输层时调用线程已分配字节数的Transport，只用于单线程测试
+     */
+    private static class MeteredTransport implements Transport {
+        private final Transport delegate;
+        long entered;
+        long returned;
+
+        MeteredTransport(Transport delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public HttpResponse execute(TransportRequest request) throws IOException {
+            long id = Thread.currentThread().getId();
+            entered = THREADS.getThreadAllocatedBytes(id);
+            try {
+                return delegate.execute(request);
+            } finally {
+                returned = THREADS.getThreadAllocatedBytes(id);
+            }
+        }
+
+        @Override
+        public int preconnect(URI uri, InetSocketAddress target, int connections, int timeout) throws IOException {
+            return delegate.preconnect(uri, target, connections, timeout);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
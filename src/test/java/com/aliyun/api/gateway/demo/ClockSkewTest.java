@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+
+/**
+ * ClockSkew估计测试
+ */
+public class ClockSkewTest {
+    @Test
+    public void singleSampleNotApplied() {
+        ClockSkew skew = new ClockSkew();
+        skew.update(30000);
+        skew.update(30000);
+        assertEquals(0, skew.getSkewMillis());
+        skew.update(30000);
+        assertEquals(30000, skew.getSkewMillis());
+    }
+
+    @Test
+    public void inconsistentSamplesRestartCandidate() {
+        ClockSkew skew = new ClockSkew();
+        skew.update(30000);
+        skew.update(30000);
+        skew.update(-90000);
+        skew.update(30000);
+        assertEquals(0, skew.getSkewMillis());
+        skew.update(30500);
+        skew.update(29500);
+        assertEquals(30000, skew.getSkewMillis());
+    }
+
+    @Test
+    public void outlierIgnoredAfterApplied() {
+        ClockSkew skew = new ClockSkew();
+        for (int i = 0; i < ClockSkew.MIN_SAMPLES; i++) {
+            skew.update(10000);
+        }
+        skew.update(200000);
+        assertEquals(10000, skew.getSkewMillis());
+        skew.update(11000);
+        assertEquals(10200, skew.getSkewMillis());
+    }
+
+    @Test
+    public void consistentShiftReplacesSkew() {
+        ClockSkew skew = new ClockSkew();
+        for (int i = 0; i < ClockSkew.MIN_SAMPLES; i++) {
+            skew.update(10000);
+        }
+        for (int i = 0; i < ClockSkew.MIN_SAMPLES; i++) {
+            skew.update(-20000);
+        }
+        assertEquals(-20000, skew.getSkewMillis());
+    }
+
+    @Test
+    public void clampedToMaxSkew() {
+        ClockSkew skew = new ClockSkew();
+        for (int i = 0; i < ClockSkew.MIN_SAMPLES; i++) {
+            skew.update(3600 * 1000);
+        }
+        assertEquals(ClockSkew.DEFAULT_MAX_SKEW, skew.getSkewMillis());
+        assertTrue(ClockSkew.DEFAULT_MAX_SKEW < 15 * 60 * 1000);
+    }
+
+    @Test
+    public void sampleFromDateHeader() {
+        ClockSkew skew = new ClockSkew();
+        long now = System.currentTimeMillis();
+        long gateway = now + 120000;
+        for (int i = 0; i < ClockSkew.MIN_SAMPLES; i++) {
+            long sent = now + i * ClockSkew.SAMPLE_INTERVAL;
+            assertTrue(skew.sample(response(gateway + i * ClockSkew.SAMPLE_INTERVAL), sent, sent + 20));
+        }
+        assertTrue(Math.abs(skew.getSkewMillis() - 120000) <= 1000);
+        assertEquals(ClockSkew.MIN_SAMPLES, skew.getSamples());
+    }
+
+    @Test
+    public void slowOrFrequentSamplesRejected() {
+        ClockSkew skew = new ClockSkew();
+        long now = System.currentTimeMillis();
+        assertFalse(skew.sample(response(now), now, now + ClockSkew.MAX_SAMPLE_RTT + 1));
+        assertTrue(skew.sample(response(now), now, now + 10));
+        assertFalse(skew.sample(response(now), now + 20, now + 30));
+    }
+
+    @Test
+    public void parseDate() {
+        long[] times = { 0, 784111777000L, 951782400000L, 4102444799000L, System.currentTimeMillis() / 1000 * 1000 };
+        for (long t : times) {
+            assertEquals(t, ClockSkew.parseDate(DateUtils.formatDate(new Date(t))));
+        }
+        assertEquals(784111777000L, ClockSkew.parseDate("Sun Nov  6 08:49:37 1994"));
+        assertEquals(-1, ClockSkew.parseDate("yesterday"));
+    }
+
+    private static BasicHttpResponse response(long date) {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+        response.setHeader(HttpHeader.HTTP_HEADER_DATE, DateUtils.formatDate(new Date(date)));
+        return response;
+    }
+}
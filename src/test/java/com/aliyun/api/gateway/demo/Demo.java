@@ -18,6 +18,7 @@
  */
 package com.aliyun.api.gateway.demo;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.HashMap;
@@ -112,8 +113,8 @@ public class Demo {
         //（可选）响应内容序列化格式,默认application/json,目前仅支持application/json
         headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
 
-        Request request = new Request(Method.POST_FORM, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setFormBody(bodyParam);
+        Request request = Request.newBuilder(Method.POST_FORM, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setFormBody(bodyParam).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -140,8 +141,8 @@ public class Demo {
         //（POST/PUT请求必选）请求Body内容格式
         headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
 
-        Request request = new Request(Method.POST_STRING, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setStringBody(body);
+        Request request = Request.newBuilder(Method.POST_STRING, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setStringBody(body).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -168,8 +169,36 @@ public class Demo {
         //（POST/PUT请求必选）请求Body内容格式
         headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
 
-        Request request = new Request(Method.POST_BYTES, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setBytesBody(bytesBody);
+        Request request = Request.newBuilder(Method.POST_BYTES, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setBytesBody(bytesBody).build();
+
+        //调用服务端
+        HttpResponse response = client.execute(request);
+        print(response);
+    }
+
+    /**
+     * HTTP POST 文件，流式发送，不将文件读入内存
+     *
+     * @throws Exception
+     */
+    @Test
+    public void postFile() throws Exception {
+        //请求URL
+        URL url = new URL("http://host:port/demo/post/bytes");
+        //Body文件
+        File fileBody = new File("/path/to/file");
+
+        Map<String, String> headers = new HashMap<String, String>();
+        //（可选）响应内容序列化格式,默认application/json,目前仅支持application/json
+        headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
+        //（POST/PUT请求必选）请求Body内容格式
+        headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_STREAM);
+        //（可选）开启后Client在发送前流式读取一遍文件计算Content-MD5
+
+        Request request = Request.newBuilder(Method.POST_BYTES, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setFileBody(fileBody).setComputeContentMD5(true)
+                .build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -193,8 +222,8 @@ public class Demo {
         //（可选）响应内容序列化格式,默认application/json,目前仅支持application/json
         headers.put(HttpHeader.HTTP_HEADER_ACCEPT, "application/json");
 
-        Request request = new Request(Method.PUT_FORM, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setFormBody(bodyParam);
+        Request request = Request.newBuilder(Method.PUT_FORM, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setFormBody(bodyParam).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -221,8 +250,8 @@ public class Demo {
         //（POST/PUT请求必选）请求Body内容格式
         headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
 
-        Request request = new Request(Method.PUT_STRING, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setStringBody(body);
+        Request request = Request.newBuilder(Method.PUT_STRING, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setStringBody(body).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
@@ -249,8 +278,8 @@ public class Demo {
         //（POST/PUT请求必选）请求Body内容格式
         headers.put(HttpHeader.HTTP_HEADER_CONTENT_TYPE, ContentType.CONTENT_TYPE_TEXT);
 
-        Request request = new Request(Method.PUT_BYTES, url, headers, CUSTOM_HEADERS_TO_SIGN_PREFIX);
-        request.setBytesBody(bytesBody);
+        Request request = Request.newBuilder(Method.PUT_BYTES, url).setHeaders(headers)
+                .setSignHeaderPrefixes(CUSTOM_HEADERS_TO_SIGN_PREFIX).setBytesBody(bytesBody).build();
 
         //调用服务端
         HttpResponse response = client.execute(request);
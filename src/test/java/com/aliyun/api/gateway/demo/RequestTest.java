@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.enums.Method;
+
+/**
+ * Request构建器测试
+ */
+public class RequestTest {
+    @Test(expected = IllegalStateException.class)
+    public void rejectsMultipleBodies() throws Exception {
+        Request.newBuilder(Method.POST_STRING, new URL("http://gateway.test/path")).setStringBody("{}")
+                .setBytesBody(new byte[1]).build();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsAddedBodyOnDerivedRequest() throws Exception {
+        Request request = Request.newBuilder(Method.POST_STRING, new URL("http://gateway.test/path"))
+                .setStringBody("{}").build();
+        request.toBuilder().setByteBufferBody(ByteBuffer.allocate(1)).build();
+    }
+
+    @Test
+    public void replacesBodyOnDerivedRequest() throws Exception {
+        Map<String, String> form = new HashMap<String, String>();
+        form.put("a", "1");
+        Request request = Request.newBuilder(Method.POST_FORM, new URL("http://gateway.test/path?x=1"))
+                .setFormBody(form).build();
+        Request derived = request.toBuilder().setFormBody(null).setStringBody("{}").build();
+        assertNull(derived.getFormBody());
+        assertEquals("{}", derived.getStringBody());
+        assertEquals("/path?x=1", derived.getPathAndQuery());
+        assertEquals("1", request.getFormBody().get("a"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void formBodyIsCopied() throws Exception {
+        Map<String, String> form = new HashMap<String, String>();
+        form.put("a", "1");
+        Request request = Request.newBuilder(Method.POST_FORM, new URL("http://gateway.test/path")).setFormBody(form)
+                .build();
+        form.put("a", "2");
+        assertEquals("1", request.getFormBody().get("a"));
+        request.getFormBody().put("b", "2");
+    }
+
+    @Test
+    public void byteBufferBodyIsIndependentView() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 });
+        buffer.position(1);
+        Request request = Request.newBuilder(Method.POST_BYTES, new URL("http://gateway.test/path"))
+                .setByteBufferBody(buffer).build();
+        buffer.position(4);
+        assertEquals(3, request.getByteBufferBody().remaining());
+    }
+}
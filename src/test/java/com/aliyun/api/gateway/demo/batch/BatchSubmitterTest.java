@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * BatchSubmitter合批、linger及关闭时的条目完成测试
+ */
+public class BatchSubmitterTest {
+    private HttpServer server;
+    private Client client;
+    private Request template;
+    /** 服务端收到的批次Body */
+    private final ConcurrentLinkedQueue<String> received = new ConcurrentLinkedQueue<String>();
+
+    @Before
+    public void setUp() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                try (InputStream in = exchange.getRequestBody()) {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = in.read(buffer)) >= 0) {
+                        body.write(buffer, 0, n);
+                    }
+                }
+                received.add(new String(body.toByteArray(), StandardCharsets.UTF_8));
+                byte[] response = "accepted".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, response.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(response);
+                }
+            }
+        });
+        server.start();
+        client = new Client("key", "secret", false);
+        template = Request.newBuilder(Method.POST_STRING,
+                new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/events")).build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void itemsBatchedIntoArrays() throws Exception {
+        BatchSubmitter submitter = new BatchSubmitter(client, template);
+        submitter.setMaxItems(10);
+        submitter.setLingerMillis(1000);
+        List<Future<BatchResult>> futures = new ArrayList<Future<BatchResult>>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(submitter.submit("{\"n\":" + i + "}"));
+        }
+        //前两批按条目数立即发送，剩余5条等到flush
+        for (int i = 0; i < 20; i++) {
+            BatchResult result = futures.get(i).get(5, TimeUnit.SECONDS);
+            assertEquals(i % 10, result.getIndex());
+            assertEquals(10, result.getBatchSize());
+            assertTrue(result.isSuccess());
+            assertEquals("accepted", result.getBody());
+        }
+        submitter.flush();
+        assertEquals(5, futures.get(24).get(5, TimeUnit.SECONDS).getBatchSize());
+        submitter.close();
+
+        List<String> bodies = new ArrayList<String>(received);
+        Collections.sort(bodies);
+        assertEquals(3, bodies.size());
+        StringBuilder expected = new StringBuilder("[");
+        for (int i = 20; i < 25; i++) {
+            expected.append(i > 20 ? "," : "").append("{\"n\":").append(i).append('}');
+        }
+        assertTrue(bodies.contains(expected.append(']').toString()));
+        assertEquals(3, submitter.getBatches());
+        assertEquals(25, submitter.getItems());
+    }
+
+    @Test
+    public void maxBytesSplitsBatches() throws Exception {
+        BatchSubmitter submitter = new BatchSubmitter(client, template);
+        submitter.setMaxBytes(20);
+        submitter.setLingerMillis(1000);
+        List<Future<BatchResult>> futures = new ArrayList<Future<BatchResult>>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(submitter.submit("\"0123456789\""));
+        }
+        submitter.close();
+        for (Future<BatchResult> future : futures) {
+            assertEquals(1, future.get(5, TimeUnit.SECONDS).getBatchSize());
+        }
+        assertEquals(4, received.size());
+    }
+
+    @Test
+    public void lingerSendsPartialBatch() throws Exception {
+        BatchSubmitter submitter = new BatchSubmitter(client, template);
+        submitter.setLingerMillis(20);
+        long start = System.nanoTime();
+        BatchResult result = submitter.submit("1").get(5, TimeUnit.SECONDS);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 20);
+        assertEquals(1, result.getBatchSize());
+        assertEquals("[1]", received.peek());
+        submitter.close();
+    }
+
+    @Test
+    public void closeCompletesEveryAcceptedItem() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            final BatchSubmitter submitter = new BatchSubmitter(client, template, 1000, 2);
+            submitter.setLingerMillis(1);
+            final ConcurrentLinkedQueue<Future<BatchResult>> futures = new ConcurrentLinkedQueue<Future<BatchResult>>();
+            final AtomicInteger rejected = new AtomicInteger();
+            final CountDownLatch started = new CountDownLatch(4);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        started.countDown();
+                        try {
+                            while (true) {
+                                futures.add(submitter.submit("0"));
+                            }
+                        } catch (IllegalStateException e) {
+                            rejected.incrementAndGet();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            started.await();
+            Thread.sleep(5);
+            submitter.close();
+            for (Thread thread : threads) {
+                thread.join(5000);
+            }
+            assertEquals(4, rejected.get());
+            for (Future<BatchResult> future : futures) {
+                try {
+                    future.get(5, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                } catch (TimeoutException e) {
+                    fail("future of an accepted item never completed");
+                }
+            }
+            assertEquals(0, submitter.getQueued());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonStringTemplate() throws Exception {
+        new BatchSubmitter(client, Request.newBuilder(Method.GET, new URL("http://127.0.0.1/")).build());
+    }
+}
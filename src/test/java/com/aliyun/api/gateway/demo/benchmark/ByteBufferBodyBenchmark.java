@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+
+import com.aliyun.api.gateway.demo.transport.ByteArrayBody;
+import com.aliyun.api.gateway.demo.transport.ByteBufferBody;
+import com.aliyun.api.gateway.demo.transport.DirectBufferAllocator;
+import com.aliyun.api.gateway.demo.util.MessageDigestUtil;
+
+/**
+ * 直接内存Body的基准<br>
+ * 对比调用方将直接内存中的payload复制为byte[]再构造Body并计算Content-MD5，与直接构造{@link ByteBufferBody}
+ * 并在原缓冲区上计算Content-MD5的单次耗时及内存分配；payload由{@link DirectBufferAllocator}分配。
+ * <p>
+ * 运行方式：{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.aliyun.api.gateway.demo.benchmark.ByteBufferBodyBenchmark}
+ */
+public class ByteBufferBodyBenchmark {
+    private static final int[] SIZES = { 1024, 64 * 1024, 1024 * 1024 };
+    private static final long BYTES_PER_SIZE = 512L * 1024 * 1024;
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    public static void main(String[] args) {
+        DirectBufferAllocator allocator = new DirectBufferAllocator();
+        System.out.printf("%10s %14s %14s %14s %14s%n", "size", "copy(us)", "copy(B)", "direct(us)", "direct(B)");
+        for (int size : SIZES) {
+            try (DirectBufferAllocator.PooledBuffer pooled = allocator.allocate(size)) {
+                ByteBuffer payload = pooled.buffer();
+                for (int i = 0; i < size; i++) {
+                    payload.put((byte) i);
+                }
+                payload.flip();
+                int iterations = (int) Math.max(10, BYTES_PER_SIZE / size);
+                // 预热
+                run(payload, false, iterations);
+                run(payload, true, iterations);
+                long[] copy = run(payload, false, iterations);
+                long[] direct = run(payload, true, iterations);
+                System.out.printf("%10d %14.2f %14d %14.2f %14d%n", size, copy[0] / 1000.0 / iterations,
+                        copy[1] / iterations, direct[0] / 1000.0 / iterations, direct[1] / iterations);
+            }
+        }
+        System.out.println(allocator);
+    }
+
+    private static long[] run(ByteBuffer payload, boolean direct, int iterations) {
+        long id = Thread.currentThread().getId();
+        long allocated = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (direct) {
+                ByteBufferBody body = new ByteBufferBody(payload, null);
+                sink += MessageDigestUtil.base64AndMD5(body.getBuffer()).length() + body.getContentLength();
+            } else {
+                byte[] bytes = new byte[payload.remaining()];
+                payload.duplicate().get(bytes);
+                ByteArrayBody body = new ByteArrayBody(bytes, null);
+                sink += MessageDigestUtil.base64AndMD5(bytes).length() + body.getContentLength();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = THREADS.getThreadAllocatedBytes(id) - allocated;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return new long[] { elapsed, allocated };
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.util.Random;
+
+import com.aliyun.api.gateway.demo.util.GzipUtil;
+import com.aliyun.api.gateway.demo.util.GzipUtil.CompressedBody;
+import com.aliyun.api.gateway.demo.util.MessageDigestUtil;
+
+/**
+ * 请求Body压缩的CPU与带宽权衡基准<br>
+ * 对不同大小的JSON样例Body，分别统计“仅MD5”与“GZIP+MD5”的单次耗时、压缩率，
+ * 以及在给定带宽下节省的传输时间，用于选择{@link com.aliyun.api.gateway.demo.Client#setCompression(boolean, int)}的阈值。
+ * <p>
+ * 运行方式：{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.aliyun.api.gateway.demo.benchmark.CompressionBenchmark}，
+ * 可通过第一个参数指定带宽（Mbps，默认100）。
+ */
+public class CompressionBenchmark {
+    private static final int[] SIZES = { 256, 1024, 4 * 1024, 16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024,
+            4 * 1024 * 1024 };
+
+    public static void main(String[] args) {
+        double mbps = args.length > 0 ? Double.parseDouble(args[0]) : 100;
+        double bytesPerMicro = mbps * 1000000 / 8 / 1000000;
+        System.out.printf("bandwidth=%.0fMbps%n", mbps);
+        System.out.printf("%10s %10s %7s %12s %12s %12s %10s%n", "size", "gzipped", "ratio", "md5(us)", "gzip+md5(us)",
+                "saved-tx(us)", "net(us)");
+        for (int size : SIZES) {
+            String body = sampleJson(size);
+            byte[] bytes = body.getBytes();
+            int iterations = Math.max(5, (int) (64L * 1024 * 1024 / size));
+            iterations = Math.min(iterations, 20000);
+            // 预热
+            run(bytes, iterations / 4 + 1);
+            long md5Nanos = md5(bytes, iterations);
+            long gzipNanos = run(bytes, iterations);
+            CompressedBody compressed = GzipUtil.gzip(bytes);
+            double md5Micros = md5Nanos / 1000.0 / iterations;
+            double gzipMicros = gzipNanos / 1000.0 / iterations;
+            double savedTx = (bytes.length - compressed.getLength()) / bytesPerMicro;
+            System.out.printf("%10d %10d %6.1fx %12.1f %12.1f %12.1f %10.1f%n", bytes.length, compressed.getLength(),
+                    (double) bytes.length / compressed.getLength(), md5Micros, gzipMicros, savedTx,
+                    savedTx - (gzipMicros - md5Micros));
+        }
+    }
+
+    private static long md5(byte[] bytes, int iterations) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += MessageDigestUtil.base64AndMD5(bytes).length();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return elapsed;
+    }
+
+    private static long run(byte[] bytes, int iterations) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += GzipUtil.gzip(bytes).getLength();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return elapsed;
+    }
+
+    /** 生成接近真实业务的JSON数组，字段名重复、取值有一定随机性 */
+    static String sampleJson(int size) {
+        Random random = new Random(size);
+        StringBuilder sb = new StringBuilder(size + 128);
+        sb.append('[');
+        int id = 0;
+        while (sb.length() < size - 1) {
+            if (id > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"id\":").append(id++).append(",\"userId\":\"u").append(random.nextInt(100000))
+                    .append("\",\"event\":\"").append(random.nextBoolean() ? "click" : "view")
+                    .append("\",\"amount\":").append(random.nextInt(10000) / 100.0).append(",\"ts\":")
+                    .append(1466000000000L + random.nextInt(1000000)).append('}');
+        }
+        sb.setLength(Math.max(size - 1, 1));
+        sb.append(']');
+        return sb.toString();
+    }
+}
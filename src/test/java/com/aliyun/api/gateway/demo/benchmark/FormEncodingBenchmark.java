@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.util.FormEncoder;
+import com.aliyun.api.gateway.demo.util.FormEncoder.FormBody;
+import com.aliyun.api.gateway.demo.util.SignUtil;
+
+/**
+ * 表单Body编码与签名的基准<br>
+ * 对比原先“TreeMap构建待签名串 + NameValuePair列表 + URLEncodedUtils编码”的三次遍历，
+ * 与{@link FormEncoder}单次遍历的单次耗时及内存分配。
+ * <p>
+ * 运行方式：{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.aliyun.api.gateway.demo.benchmark.FormEncodingBenchmark}
+ */
+public class FormEncodingBenchmark {
+    private static final int[] PARAMS = { 4, 16, 64 };
+    private static final int ITERATIONS = 200000;
+    private static final String SECRET = "secret";
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    public static void main(String[] args) {
+        System.out.printf("%8s %14s %14s %14s %14s%n", "params", "old(ns)", "old(B)", "single(ns)", "single(B)");
+        for (int params : PARAMS) {
+            Map<String, String> form = new LinkedHashMap<String, String>();
+            for (int i = 0; i < params; i++) {
+                form.put("param" + i, "value " + i + " 中文&=");
+            }
+            // 预热
+            run(form, false, ITERATIONS);
+            run(form, true, ITERATIONS);
+            long[] old = run(form, false, ITERATIONS);
+            long[] single = run(form, true, ITERATIONS);
+            System.out.printf("%8d %14d %14d %14d %14d%n", params, old[0] / ITERATIONS, old[1] / ITERATIONS,
+                    single[0] / ITERATIONS, single[1] / ITERATIONS);
+        }
+    }
+
+    private static long[] run(Map<String, String> form, boolean single, int iterations) {
+        Map<String, String> headers = new HashMap<String, String>();
+        long id = Thread.currentThread().getId();
+        long allocated = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (single) {
+                FormBody body = FormEncoder.encode("/api/test", form);
+                sink += SignUtil.signResource("POST", headers, body.getSignResource(), SECRET, null).length();
+                sink += (int) body.getContentLength();
+                body.release();
+            } else {
+                List<NameValuePair> pairs = new ArrayList<NameValuePair>();
+                for (Map.Entry<String, String> e : form.entrySet()) {
+                    pairs.add(new BasicNameValuePair(e.getKey(), e.getValue()));
+                }
+                sink += URLEncodedUtils.format(pairs, Constants.ENCODING).getBytes(Constants.ENCODING).length;
+                sink += SignUtil.sign("POST", headers, "/api/test", form, SECRET, null).length();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = THREADS.getThreadAllocatedBytes(id) - allocated;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return new long[] { elapsed, allocated };
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.aliyun.api.gateway.demo.ratelimit.RateLimiter;
+
+/**
+ * 客户端限流器的并发基准<br>
+ * 多个线程对同一APP、API并发调用{@link RateLimiter#tryAcquire(String, String)}，
+ * 输出每次调用的耗时以及实际放行速率与配置速率的对比，用于确认限流器在高并发下不会成为热点且速率准确。
+ * <p>
+ * 运行方式：{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.aliyun.api.gateway.demo.benchmark.RateLimiterBenchmark}
+ */
+public class RateLimiterBenchmark {
+    private static final int[] THREADS = { 1, 4, 16 };
+    private static final double RATE = 50000;
+    private static final int BURST = 100;
+    private static final long DURATION_MILLIS = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.printf("%8s %14s %14s %14s%n", "threads", "ns/call", "granted/s", "configured/s");
+        for (int threads : THREADS) {
+            // 预热
+            run(threads);
+            long[] result = run(threads);
+            System.out.printf("%8d %14d %14d %14d%n", threads,
+                    TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS) * threads / result[0],
+                    result[1] * 1000 / DURATION_MILLIS, (long) RATE);
+        }
+    }
+
+    /**
+     * @return 调用次数及放行次数
+     */
+    private static long[] run(int threads) throws InterruptedException {
+        final RateLimiter limiter = new RateLimiter();
+        limiter.setLimit("/api/test", RATE, BURST);
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong granted = new AtomicLong();
+        final long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MILLIS);
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long localCalls = 0;
+                    long localGranted = 0;
+                    while (System.nanoTime() - end < 0) {
+                        localCalls++;
+                        if (limiter.tryAcquire("appKey", "/api/test")) {
+                            localGranted++;
+                        }
+                    }
+                    calls.addAndGet(localCalls);
+                    granted.addAndGet(localGranted);
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+        return new long[] { calls.get(), granted.get() };
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+
+import com.aliyun.api.gateway.demo.transport.CompressionStats;
+import com.aliyun.api.gateway.demo.transport.ResponseDecoder;
+
+/**
+ * 响应解压基准<br>
+ * 对不同大小的gzip压缩JSON响应，对比每次新建{@link GZIPInputStream}与{@link ResponseDecoder}（复用Inflater及缓冲区）
+ * 读完整个Body的单次耗时及分配的字节数，读取使用同一个8KB缓冲区。
+ * <p>
+ * 运行方式：{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.aliyun.api.gateway.demo.benchmark.ResponseDecompressionBenchmark}
+ */
+public class ResponseDecompressionBenchmark {
+    private static final int[] SIZES = { 1024, 4 * 1024, 16 * 1024, 64 * 1024, 256 * 1024, 1024 * 1024 };
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    public static void main(String[] args) throws IOException {
+        byte[] sink = new byte[8 * 1024];
+        CompressionStats stats = new CompressionStats();
+        System.out.printf("%10s %10s %14s %14s %14s %14s%n", "size", "gzipped", "jdk(us)", "pooled(us)",
+                "jdk(B/op)", "pooled(B/op)");
+        for (int size : SIZES) {
+            byte[] gzipped = gzip(CompressionBenchmark.sampleJson(size).getBytes("UTF-8"));
+            int iterations = Math.min(20000, Math.max(50, (int) (32L * 1024 * 1024 / size)));
+            // 预热
+            run(gzipped, iterations / 4 + 1, false, stats, sink);
+            run(gzipped, iterations / 4 + 1, true, stats, sink);
+            long[] jdk = run(gzipped, iterations, false, stats, sink);
+            long[] pooled = run(gzipped, iterations, true, stats, sink);
+            System.out.printf("%10d %10d %14.1f %14.1f %14d %14d%n", size, gzipped.length,
+                    jdk[0] / 1000.0 / iterations, pooled[0] / 1000.0 / iterations, jdk[1] / iterations,
+                    pooled[1] / iterations);
+        }
+        System.out.println(stats);
+    }
+
+    private static long[] run(byte[] gzipped, int iterations, boolean pooled, CompressionStats stats, byte[] sink)
+            throws IOException {
+        long id = Thread.currentThread().getId();
+        long allocated = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            InputStream in;
+            if (pooled) {
+                BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+                response.setHeader("Content-Encoding", "gzip");
+                response.setEntity(new ByteArrayEntity(gzipped));
+                ResponseDecoder.decode(response, stats);
+                in = response.getEntity().getContent();
+            } else {
+                in = new GZIPInputStream(new ByteArrayInputStream(gzipped));
+            }
+            try {
+                while (in.read(sink) != -1) {
+                    //drain
+                }
+            } finally {
+                in.close();
+            }
+        }
+        return new long[] { System.nanoTime() - start, THREADS.getThreadAllocatedBytes(id) - allocated };
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
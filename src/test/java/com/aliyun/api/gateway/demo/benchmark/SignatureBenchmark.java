@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.security.Provider;
+import java.security.Security;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.HmacUtils;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.enums.SignatureMethod;
+import com.aliyun.api.gateway.demo.util.HmacSigner;
+
+/**
+ * 签名算法及JCA Provider的基准<br>
+ * 对比原先每次签名都通过HmacUtils查找Provider、初始化密钥，与{@link HmacSigner}按线程复用Mac的单次耗时，
+ * 并列出本机各Provider的耗时及{@link HmacSigner#fastestProvider(SignatureMethod)}的选择结果。
+ * <p>
+ * 运行方式：{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.aliyun.api.gateway.demo.benchmark.SignatureBenchmark}
+ */
+public class SignatureBenchmark {
+    private static final int ITERATIONS = 200000;
+    private static final String SECRET = "secret";
+
+    public static void main(String[] args) {
+        StringBuilder sb = new StringBuilder("POST\napplication/json\n\napplication/x-www-form-urlencoded\n\n");
+        sb.append("X-Ca-Key:app_key\nX-Ca-Nonce:1f1a2b4c-6d3e-4f50-8a9b-0c1d2e3f4a5b\nX-Ca-Timestamp:1500000000000\n");
+        sb.append("/demo/post/form?FormParamKey=FormParamValue&qk1=qv1&qkn=qvn");
+        final String stringToSign = sb.toString();
+
+        System.out.printf("%-12s %-24s %12s%n", "method", "signer", "ns/op");
+        // 预热
+        runHmacUtils(stringToSign, ITERATIONS);
+        System.out.printf("%-12s %-24s %12d%n", "HmacSHA256", "HmacUtils per call",
+                runHmacUtils(stringToSign, ITERATIONS) / ITERATIONS);
+        for (SignatureMethod method : SignatureMethod.values()) {
+            HmacSigner signer = new HmacSigner(method, SECRET);
+            run(signer, stringToSign, ITERATIONS);
+            System.out.printf("%-12s %-24s %12d%n", method.getAlgorithm(), "default",
+                    run(signer, stringToSign, ITERATIONS) / ITERATIONS);
+            Provider[] providers = Security.getProviders("Mac." + method.getAlgorithm());
+            for (Provider provider : providers == null ? new Provider[0] : providers) {
+                signer = new HmacSigner(method, SECRET, provider);
+                run(signer, stringToSign, ITERATIONS);
+                System.out.printf("%-12s %-24s %12d%n", method.getAlgorithm(), provider.getName(),
+                        run(signer, stringToSign, ITERATIONS) / ITERATIONS);
+            }
+            System.out.printf("%-12s %-24s %12s%n", method.getAlgorithm(), "fastest",
+                    HmacSigner.fastestProvider(method).getName());
+        }
+    }
+
+    private static long runHmacUtils(String stringToSign, int iterations) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += new String(Base64.encodeBase64(HmacUtils.hmacSha256(SECRET, stringToSign)), Constants.ENCODING)
+                    .length();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return elapsed;
+    }
+
+    private static long run(HmacSigner signer, String stringToSign, int iterations) {
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += signer.sign(stringToSign).length();
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.util.MessageDigestUtil;
+import com.aliyun.api.gateway.demo.util.Utf8Encoder;
+import com.aliyun.api.gateway.demo.util.Utf8Encoder.EncodedBody;
+
+/**
+ * 字符串Body编码的基准<br>
+ * 对比原先调用方计算Content-MD5时编码一次、构造Body时再编码一次，与{@link Utf8Encoder}编码一次到池化缓冲区
+ * 并在同一份字节上计算Content-MD5的单次耗时及内存分配。
+ * <p>
+ * 运行方式：{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.aliyun.api.gateway.demo.benchmark.StringBodyBenchmark}
+ */
+public class StringBodyBenchmark {
+    private static final int[] SIZES = { 1024, 1024 * 1024, 10 * 1024 * 1024 };
+    private static final long BYTES_PER_SIZE = 512L * 1024 * 1024;
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    public static void main(String[] args) {
+        System.out.printf("%10s %14s %14s %14s %14s%n", "size", "twice(us)", "twice(B)", "once(us)", "once(B)");
+        for (int size : SIZES) {
+            String body = json(size);
+            int iterations = (int) Math.max(10, BYTES_PER_SIZE / size);
+            // 预热
+            run(body, false, iterations);
+            run(body, true, iterations);
+            long[] twice = run(body, false, iterations);
+            long[] once = run(body, true, iterations);
+            System.out.printf("%10d %14.1f %14d %14.1f %14d%n", size, twice[0] / 1000.0 / iterations,
+                    twice[1] / iterations, once[0] / 1000.0 / iterations, once[1] / iterations);
+        }
+    }
+
+    /** 近似指定长度的JSON数组，含少量中文 */
+    private static String json(int size) {
+        StringBuilder sb = new StringBuilder(size + 64).append('[');
+        for (int i = 0; sb.length() < size; i++) {
+            sb.append("{\"id\":").append(i).append(",\"name\":\"商品").append(i).append("\",\"price\":")
+                    .append(i * 7 % 1000).append(".99},");
+        }
+        sb.setCharAt(sb.length() - 1, ']');
+        return sb.toString();
+    }
+
+    private static long[] run(String body, boolean once, int iterations) {
+        long id = Thread.currentThread().getId();
+        long allocated = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            if (once) {
+                EncodedBody encoded = Utf8Encoder.encode(body, null, true);
+                sink += encoded.getContentMD5().length() + (int) encoded.getContentLength();
+                encoded.release();
+            } else {
+                sink += MessageDigestUtil.base64AndMD5(body).length();
+                sink += body.getBytes(Constants.ENCODING).length;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = THREADS.getThreadAllocatedBytes(id) - allocated;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return new long[] { elapsed, allocated };
+    }
+}
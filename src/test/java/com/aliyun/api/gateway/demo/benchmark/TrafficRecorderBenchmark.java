@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.replay.TrafficRecorder;
+
+/**
+ * 流量录制的热路径开销基准<br>
+ * 统计{@link TrafficRecorder#record}单次调用的耗时及内存分配，请求为带少量Header的GET与1KB字符串Body的POST。
+ * <p>
+ * 运行方式：{@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.aliyun.api.gateway.demo.benchmark.TrafficRecorderBenchmark}
+ */
+public class TrafficRecorderBenchmark {
+    private static final int ITERATIONS = 500000;
+    private static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+            .getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        File directory = Files.createTempDirectory("traffic").toFile();
+        StringBuilder body = new StringBuilder();
+        while (body.length() < 1024) {
+            body.append("{\"key\":\"value\"},");
+        }
+        Request get = Request.newBuilder(Method.GET, new URL("http://api.example.com/demo/get?q=1"))
+                .setHeader("Accept", "application/json").setHeader("CustomHeader", "demo").build();
+        Request post = Request.newBuilder(Method.POST_STRING, new URL("http://api.example.com/demo/post"))
+                .setHeader("Content-Type", "application/json").setStringBody(body.toString()).build();
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, TrafficRecorder.DEFAULT_SEGMENT_SIZE, true,
+                TrafficRecorder.DEFAULT_MAX_BODY_BYTES)) {
+            System.out.printf("%12s %12s %12s%n", "request", "ns/record", "B/record");
+            for (Request request : new Request[] { get, post }) {
+                // 预热
+                run(recorder, request);
+                long[] result = run(recorder, request);
+                System.out.printf("%12s %12d %12d%n", request.getMethod(), result[0] / ITERATIONS,
+                        result[1] / ITERATIONS);
+            }
+            System.out.println("recorded=" + recorder.getRecorded() + ", dropped=" + recorder.getDropped());
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    private static long[] run(TrafficRecorder recorder, Request request) {
+        long id = Thread.currentThread().getId();
+        long allocated = THREADS.getThreadAllocatedBytes(id);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            recorder.record(request, System.currentTimeMillis(), TimeUnit.MILLISECONDS.toNanos(5), 200, 128, null);
+        }
+        return new long[] { System.nanoTime() - start, THREADS.getThreadAllocatedBytes(id) - allocated };
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.transport.ApacheHttpTransport;
+import com.aliyun.api.gateway.demo.transport.Transport;
+import com.aliyun.api.gateway.demo.transport.Transports;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Transport基准：比较Apache HttpClient（HTTP/1.1，每个并发请求一个连接）、JDK HttpClient（HTTP/2多路复用）
+ * 与NIO传输层（http地址时，含流水线模式）<br>
+ * 参数：[url] [并发数，默认64] [请求总数，默认20000]。
+ * <p>
+ * 未指定url时会启动JDK自带的本地HTTP/1.1桩服务，此时HTTP/2 Transport会协商降级为HTTP/1.1，只能用于验证功能。
+ * 运行时建议将{@code org.apache.http.wire}日志级别调高，避免DEBUG日志影响结果。
+ * 对比多路复用效果时请先启动本地h2桩服务（如{@code nghttpd}、{@code h2o}，返回固定小响应即可），再将其地址作为url传入。
+ */
+public class TransportBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        HttpServer stub = null;
+        ExecutorService stubExecutor = Executors.newFixedThreadPool(16);
+        String url;
+        if (args.length > 0) {
+            url = args[0];
+        } else {
+            stub = startStub(stubExecutor);
+            url = "http://127.0.0.1:" + stub.getAddress().getPort() + "/demo/get?qk1=qv1";
+        }
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int requests = args.length > 2 ? Integer.parseInt(args[2]) : 20000;
+        boolean testEnv = url.startsWith("https");
+        try {
+            run("apache/http1.1", new ApacheHttpTransport(testEnv, concurrency, concurrency), url, concurrency,
+                    requests);
+            run("jdk/http2", Transports.http2(testEnv), url, concurrency, requests);
+            if (!testEnv) {
+                run("nio/http1.1", Transports.nio(concurrency, 1), url, concurrency, requests);
+                run("nio/pipelined", Transports.nio(Math.max(concurrency / 8, 1), 8), url, concurrency, requests);
+            }
+        } finally {
+            if (stub != null) {
+                stub.stop(0);
+            }
+            stubExecutor.shutdownNow();
+        }
+    }
+
+    private static void run(String name, Transport transport, String url, int concurrency, int requests)
+            throws Exception {
+        final URL target = new URL(url);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        try (final Client client = new Client("app_key", "app_secret", false, transport)) {
+            //预热
+            execute(client, target, executor, concurrency, Math.max(requests / 10, concurrency));
+            long start = System.nanoTime();
+            long[] latencies = execute(client, target, executor, concurrency, requests);
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies);
+            System.out.printf("%-16s %8.0f req/s  p50=%6.0fus  p99=%7.0fus  max=%8.0fus%n", name,
+                    requests * 1e9 / elapsed, latencies[latencies.length / 2] / 1e3,
+                    latencies[(int) (latencies.length * 0.99)] / 1e3, latencies[latencies.length - 1] / 1e3);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long[] execute(final Client client, final URL target, ExecutorService executor, int concurrency,
+            final int requests) throws Exception {
+        final long[] latencies = new long[requests];
+        final AtomicInteger next = new AtomicInteger();
+        Future<?>[] futures = new Future<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            futures[i] = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    int index;
+                    while ((index = next.getAndIncrement()) < requests) {
+                        long start = System.nanoTime();
+                        HttpResponse response = client.execute(new Request(Method.GET, target));
+                        EntityUtils.consume(response.getEntity());
+                        latencies[index] = System.nanoTime() - start;
+                    }
+                    return null;
+                }
+            });
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        return latencies;
+    }
+
+    private static HttpServer startStub(ExecutorService executor) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "{\"ok\":true}".getBytes();
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * BulkRunner从模拟崩溃留下的断点续跑的测试
+ */
+public class BulkRunnerTest {
+    private static final int LINES = 100;
+
+    private HttpServer server;
+    /** 服务端收到的请求，n -> 次数 */
+    private final Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+    private Path dir;
+    private File input;
+    private File output;
+    private File checkpoint;
+    /** 每行在输入文件中的字节偏移 */
+    private final List<Long> offsets = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String query = exchange.getRequestURI().getQuery();
+                AtomicInteger count = received.get(query);
+                if (count == null) {
+                    received.putIfAbsent(query, new AtomicInteger());
+                    count = received.get(query);
+                }
+                count.incrementAndGet();
+                try (InputStream in = exchange.getRequestBody()) {
+                    while (in.read() >= 0) {
+                        //leave empty
+                    }
+                }
+                byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+
+        dir = Files.createTempDirectory("bulk-test");
+        input = dir.resolve("in.jsonl").toFile();
+        output = dir.resolve("out.jsonl").toFile();
+        checkpoint = dir.resolve("out.jsonl.checkpoint").toFile();
+        StringBuilder sb = new StringBuilder();
+        long offset = 0;
+        for (int i = 0; i < LINES; i++) {
+            offsets.add(offset);
+            String line = isBlank(i) ? "  " : "{\"id\":\"" + i + "\",\"method\":\"GET\",\"path\":\"/items?n=" + i + "\"}";
+            sb.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+            offset += line.length() + (i % 2 == 0 ? 1 : 2);
+        }
+        Files.write(input.toPath(), sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        for (Path file : Files.newDirectoryStream(dir)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void resumeAfterCrash() throws Exception {
+        //模拟崩溃前的运行：读到第60行，第3、40行仍在执行，其余已写出结果并保存断点
+        String inputPath = input.getAbsolutePath();
+        ResultJournal journal = new ResultJournal(inputPath, output.toPath(), 0, 0, 0);
+        for (int i = 0; i < 60; i++) {
+            if (!isBlank(i)) {
+                journal.submitted(i, offsets.get(i));
+            }
+            journal.advance(i + 1, i + 1 < LINES ? offsets.get(i + 1) : 0);
+        }
+        for (int i = 0; i < 60; i++) {
+            if (!isBlank(i) && i != 3 && i != 40) {
+                journal.complete(i, "{\"line\":" + (i + 1) + ",\"status\":200}");
+            }
+        }
+        journal.checkpoint(checkpoint.toPath());
+        //断点之后写出但未记入断点的结果，续跑时应被截断后重新执行
+        journal.complete(3, "{\"line\":4,\"status\":200}");
+        journal.close();
+
+        BulkReport report;
+        try (Client client = new Client("key", "secret", false)) {
+            BulkRunner runner = new BulkRunner(client, new URL("http://127.0.0.1:" + server.getAddress().getPort()));
+            runner.setConcurrency(4);
+            report = runner.run(input, output, checkpoint);
+        }
+        //续跑只发送第3、40行及第60行之后的非空行
+        Set<String> expectedSent = new HashSet<>();
+        expectedSent.add("n=3");
+        expectedSent.add("n=40");
+        for (int i = 60; i < LINES; i++) {
+            if (!isBlank(i)) {
+                expectedSent.add("n=" + i);
+            }
+        }
+        assertEquals(expectedSent, received.keySet());
+        for (AtomicInteger count : received.values()) {
+            assertEquals(1, count.get());
+        }
+        assertEquals(expectedSent.size(), report.getSent());
+        assertEquals(expectedSent.size(), report.getSucceeded());
+        //第4至59行中除空行及第40行外均已完成，空行不计入
+        assertEquals(49, report.getResumed());
+        assertOneResultPerLine();
+
+        //全部完成后再次运行不发送任何请求
+        received.clear();
+        try (Client client = new Client("key", "secret", false)) {
+            BulkRunner runner = new BulkRunner(client, new URL("http://127.0.0.1:" + server.getAddress().getPort()));
+            report = runner.run(input, output, checkpoint);
+        }
+        assertTrue(received.isEmpty());
+        assertEquals(0, report.getSent());
+        assertOneResultPerLine();
+    }
+
+    @Test
+    public void invalidLinesReported() throws Exception {
+        Files.write(input.toPath(), ("{\"method\":\"GET\",\"path\":\"/items?n=0\"}\n{not json}\n"
+                + "{\"method\":\"NOPE\",\"path\":\"/x\"}\n{\"method\":\"GET\",\"path\":\"/x\",\"body\":\"b\"}\n")
+                .getBytes(StandardCharsets.UTF_8));
+        BulkReport report;
+        try (Client client = new Client("key", "secret", false)) {
+            report = new BulkRunner(client, new URL("http://127.0.0.1:" + server.getAddress().getPort())).run(input,
+                    output, checkpoint);
+        }
+        assertEquals(1, report.getSent());
+        assertEquals(3, report.getInvalid());
+        assertEquals(4, Files.readAllLines(output.toPath(), StandardCharsets.UTF_8).size());
+    }
+
+    private void assertOneResultPerLine() throws IOException {
+        Set<Long> lines = new HashSet<>();
+        for (String result : Files.readAllLines(output.toPath(), StandardCharsets.UTF_8)) {
+            Long line = (Long) ((Map<?, ?>) Json.parse(result)).get("line");
+            assertTrue("duplicate result for line " + line, lines.add(line));
+        }
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < LINES; i++) {
+            if (!isBlank(i)) {
+                expected.add((long) i + 1);
+            }
+        }
+        assertEquals(expected, lines);
+    }
+
+    private static boolean isBlank(int line) {
+        return line % 10 == 9;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 断点的保存、加载及ResultJournal生成的已完成区间测试
+ */
+public class CheckpointTest {
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("checkpoint-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path file : Files.newDirectoryStream(dir)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void doneStoredAsRanges() throws IOException {
+        Path checkpoint = dir.resolve("out.checkpoint");
+        try (ResultJournal journal = new ResultJournal("in", dir.resolve("out"), 0, 0, 0)) {
+            for (long line = 0; line < 1000; line++) {
+                journal.submitted(line, line * 10);
+            }
+            journal.advance(1000, 10000);
+            for (long line = 0; line < 1000; line++) {
+                if (line != 0 && line != 500 && line != 501) {
+                    journal.complete(line, "{\"line\":" + (line + 1) + "}");
+                }
+            }
+            journal.checkpoint(checkpoint);
+        }
+        Checkpoint loaded = Checkpoint.load(checkpoint);
+        assertEquals(0, loaded.index);
+        assertEquals(0, loaded.offset);
+        assertEquals(Files.size(dir.resolve("out")), loaded.outputLength);
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        expected.put(1L, 499L);
+        expected.put(502L, 999L);
+        assertEquals(expected, loaded.done);
+        assertFalse(loaded.isDone(0));
+        assertTrue(loaded.isDone(1));
+        assertTrue(loaded.isDone(499));
+        assertFalse(loaded.isDone(500));
+        assertFalse(loaded.isDone(501));
+        assertTrue(loaded.isDone(999));
+        assertFalse(loaded.isDone(1000));
+    }
+
+    @Test
+    public void hungLineKeepsCheckpointSmall() throws IOException {
+        Path checkpoint = dir.resolve("out.checkpoint");
+        try (ResultJournal journal = new ResultJournal("in", dir.resolve("out"), 0, 0, 0)) {
+            journal.submitted(0, 0);
+            for (long line = 1; line <= 100000; line++) {
+                journal.submitted(line, line * 10);
+                journal.advance(line + 1, (line + 1) * 10);
+                journal.complete(line, "{}");
+            }
+            journal.checkpoint(checkpoint);
+        }
+        assertTrue(Files.size(checkpoint) < 512);
+        Checkpoint loaded = Checkpoint.load(checkpoint);
+        assertEquals(1, loaded.done.size());
+        assertTrue(loaded.isDone(100000));
+    }
+
+    @Test
+    public void noPendingLines() throws IOException {
+        Path checkpoint = dir.resolve("out.checkpoint");
+        try (ResultJournal journal = new ResultJournal("in", dir.resolve("out"), 0, 0, 0)) {
+            journal.submitted(0, 0);
+            journal.advance(3, 30);
+            journal.complete(0, "{}");
+            journal.checkpoint(checkpoint);
+        }
+        Checkpoint loaded = Checkpoint.load(checkpoint);
+        assertEquals(3, loaded.index);
+        assertEquals(30, loaded.offset);
+        assertTrue(loaded.done.isEmpty());
+        assertTrue(loaded.isDone(2));
+        assertFalse(loaded.isDone(3));
+    }
+
+    @Test
+    public void loadsSingleLineEntries() throws IOException {
+        Path checkpoint = dir.resolve("out.checkpoint");
+        Files.write(checkpoint, "input=in\nindex=2\noffset=20\noutputLength=0\ndone=4,6-8\n"
+                .getBytes(StandardCharsets.ISO_8859_1));
+        Checkpoint loaded = Checkpoint.load(checkpoint);
+        assertTrue(loaded.isDone(4));
+        assertFalse(loaded.isDone(5));
+        assertTrue(loaded.isDone(7));
+        assertFalse(loaded.isDone(9));
+    }
+
+    @Test(expected = IOException.class)
+    public void outputShorterThanCheckpoint() throws IOException {
+        new ResultJournal("in", dir.resolve("out"), 0, 0, 100).close();
+    }
+}
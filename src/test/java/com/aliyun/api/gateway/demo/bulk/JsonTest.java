@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Json解析及转义测试
+ */
+public class JsonTest {
+    @Test
+    public void parseValues() {
+        Map<?, ?> map = (Map<?, ?>) Json.parse(" {\"s\":\"a\\\"b\\\\c\\n\\u4e2d\",\"i\":-12,\"d\":1.5e2,\"t\":true,"
+                + "\"f\":false,\"n\":null,\"a\":[1,\"x\",[]],\"o\":{}} ");
+        assertEquals("a\"b\\c\n中", map.get("s"));
+        assertEquals(-12L, map.get("i"));
+        assertEquals(150.0, map.get("d"));
+        assertEquals(true, map.get("t"));
+        assertEquals(false, map.get("f"));
+        assertNull(map.get("n"));
+        assertEquals(Arrays.asList(1L, "x", Arrays.asList()), map.get("a"));
+        assertEquals(0, ((Map<?, ?>) map.get("o")).size());
+    }
+
+    @Test
+    public void quoteRoundTrip() {
+        String value = "tab\tquote\"slash\\ctrl\u0001中文😀";
+        StringBuilder sb = Json.quote(new StringBuilder(), value);
+        assertEquals(value, Json.parse(sb.toString()));
+        assertEquals("null", Json.quote(new StringBuilder(), null).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void trailingCharacters() {
+        Json.parse("{} x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unterminatedString() {
+        Json.parse("{\"a\":\"b}");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingValue() {
+        Json.parse("{\"a\":}");
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.endpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URL;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 地址解析、power-of-two-choices选择及失败摘除的测试，只使用字面IP，不依赖DNS
+ */
+public class EndpointGroupTest {
+    private EndpointGroup group;
+
+    @Before
+    public void setUp() throws Exception {
+        group = new EndpointGroup(new URL("http://api.example.com:8080"), "127.0.0.1", "127.0.0.2:9090");
+        group.setRefreshInterval(0);
+        group.setEjection(2, 60 * 1000);
+    }
+
+    @After
+    public void tearDown() {
+        group.close();
+    }
+
+    @Test
+    public void resolveTargets() throws Exception {
+        EndpointGroup targets = new EndpointGroup(new URL("https://api.example.com"), "127.0.0.1",
+                "127.0.0.2:9090", "https://127.0.0.3:9443", "http://127.0.0.4");
+        assertNull(targets.select());
+        targets.refresh();
+        List<Endpoint> endpoints = targets.getEndpoints();
+        assertEquals(4, endpoints.size());
+        assertEquals(443, endpoints.get(0).getAddress().getPort());
+        assertEquals(9090, endpoints.get(1).getAddress().getPort());
+        assertEquals(9443, endpoints.get(2).getAddress().getPort());
+        assertEquals(443, endpoints.get(3).getAddress().getPort());
+        assertEquals("api.example.com", targets.getHost());
+        assertEquals(443, targets.getPort());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void emptyTargets() throws Exception {
+        new EndpointGroup(new URL("http://api.example.com"), new String[0]);
+    }
+
+    @Test
+    public void refreshKeepsStats() throws Exception {
+        group.start();
+        Endpoint first = group.getEndpoints().get(0);
+        group.complete(first, group.start(first), true);
+        group.refresh();
+        assertSame(first, group.getEndpoints().get(0));
+        assertTrue(first.getLatencyMillis() >= 0);
+    }
+
+    @Test
+    public void preferLessOutstanding() throws Exception {
+        group.start();
+        Endpoint busy = group.getEndpoints().get(0);
+        Endpoint idle = group.getEndpoints().get(1);
+        for (int i = 0; i < 5; i++) {
+            group.start(busy);
+        }
+        for (int i = 0; i < 100; i++) {
+            assertSame(idle, group.select());
+        }
+        assertEquals(5, busy.getOutstanding());
+    }
+
+    @Test
+    public void preferLowerLatency() throws Exception {
+        group.start();
+        Endpoint slow = group.getEndpoints().get(0);
+        Endpoint fast = group.getEndpoints().get(1);
+        long start = group.start(slow);
+        Thread.sleep(20);
+        group.complete(slow, start, true);
+        group.complete(fast, group.start(fast), true);
+        for (int i = 0; i < 100; i++) {
+            assertSame(fast, group.select());
+        }
+    }
+
+    @Test
+    public void ejectAfterConsecutiveFailures() throws Exception {
+        group.start();
+        Endpoint failing = group.getEndpoints().get(0);
+        Endpoint healthy = group.getEndpoints().get(1);
+        group.complete(failing, group.start(failing), false);
+        assertFalse(failing.isEjected());
+        group.complete(failing, group.start(failing), false);
+        assertTrue(failing.isEjected());
+        for (int i = 0; i < 100; i++) {
+            assertSame(healthy, group.select());
+        }
+        //全部被摘除时仍在所有地址中选择
+        group.complete(healthy, group.start(healthy), false);
+        group.complete(healthy, group.start(healthy), false);
+        assertNotNull(group.select());
+        //成功后恢复
+        group.complete(failing, group.start(failing), true);
+        assertFalse(failing.isEjected());
+    }
+}
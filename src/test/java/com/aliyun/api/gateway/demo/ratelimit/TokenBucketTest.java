@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.ratelimit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+
+/**
+ * GCRA令牌桶及按APP、API的限流器测试，速率取得足够低以免依赖执行耗时
+ */
+public class TokenBucketTest {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void burstThenWait() {
+        TokenBucket bucket = new TokenBucket(0.1, 3);
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+        //预约下一个令牌，约10秒后到达
+        long wait = bucket.reserve(Long.MAX_VALUE);
+        assertTrue(wait > 9 * NANOS_PER_SECOND && wait <= 10 * NANOS_PER_SECOND);
+        //再下一个令牌排在其后
+        wait = bucket.reserve(Long.MAX_VALUE);
+        assertTrue(wait > 19 * NANOS_PER_SECOND && wait <= 20 * NANOS_PER_SECOND);
+    }
+
+    @Test
+    public void timeoutDoesNotReserve() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(0.1, 1);
+        assertTrue(bucket.tryAcquire(0, TimeUnit.SECONDS));
+        assertFalse(bucket.tryAcquire(1, TimeUnit.SECONDS));
+        assertFalse(bucket.tryAcquire(1, TimeUnit.SECONDS));
+        long wait = bucket.reserve(Long.MAX_VALUE);
+        assertTrue(wait > 9 * NANOS_PER_SECOND && wait <= 10 * NANOS_PER_SECOND);
+    }
+
+    @Test
+    public void concurrentAcquireNeverExceedsBurst() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(0.001, 100);
+        final AtomicInteger granted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 1000; j++) {
+                        if (bucket.tryAcquire()) {
+                            granted.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(100, granted.get());
+    }
+
+    @Test
+    public void throttledHalvesRateAndDrainsTokens() {
+        TokenBucket bucket = new TokenBucket(0.1, 5);
+        bucket.throttled();
+        assertEquals(0.05, bucket.getCurrentRate(), 0.001);
+        //同一调整间隔内的限流错误不再降速
+        bucket.throttled();
+        assertEquals(0.05, bucket.getCurrentRate(), 0.001);
+        assertEquals(0.1, bucket.getPermitsPerSecond(), 0);
+        //累积的令牌已清空，只剩当前一个
+        assertTrue(bucket.tryAcquire());
+        assertFalse(bucket.tryAcquire());
+    }
+
+    @Test
+    public void acquireAsync() throws Exception {
+        TokenBucket bucket = new TokenBucket(0.1, 1);
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        bucket.acquireAsync(task).get(5, TimeUnit.SECONDS);
+        assertEquals(1, runs.get());
+        //第二个令牌约10秒后才到达，取消后任务不会执行
+        assertTrue(bucket.acquireAsync(task).cancel(false));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void limiterPerAppAndPath() {
+        RateLimiter limiter = new RateLimiter();
+        assertNull(limiter.getBucket("app", "/a"));
+        assertTrue(limiter.tryAcquire("app", "/a"));
+
+        limiter.setLimit("/a", 0.1, 1);
+        limiter.setDefaultLimit(0.1, 2);
+        TokenBucket bucket = limiter.getBucket("app", "/a");
+        assertSame(bucket, limiter.getBucket("app", "/a"));
+        assertEquals(1, bucket.getBurst());
+        assertEquals(2, limiter.getBucket("app", "/b").getBurst());
+
+        assertTrue(limiter.tryAcquire("app", "/a"));
+        assertFalse(limiter.tryAcquire("app", "/a"));
+        //不同APP各自计数
+        assertTrue(limiter.tryAcquire("other", "/a"));
+    }
+
+    @Test
+    public void reconfigureKeepsOtherBuckets() {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setLimit("/a", 0.1, 1);
+        limiter.setLimit("/b", 0.1, 1);
+        limiter.setDefaultLimit(0.1, 2);
+        TokenBucket a = limiter.getBucket("app", "/a");
+        TokenBucket b = limiter.getBucket("app", "/b");
+        TokenBucket c = limiter.getBucket("app", "/c");
+        limiter.throttled("app", "/a");
+        assertTrue(limiter.tryAcquire("app", "/b"));
+
+        //修改/b的配置只重建/b的令牌桶，/a的降速状态保留
+        limiter.setLimit("/b", 0.1, 3);
+        assertSame(a, limiter.getBucket("app", "/a"));
+        assertEquals(0.05, a.getCurrentRate(), 0.001);
+        assertSame(c, limiter.getBucket("app", "/c"));
+        assertEquals(3, limiter.getBucket("app", "/b").getBurst());
+
+        //修改默认配置只重建未单独配置的API的令牌桶
+        limiter.setDefaultLimit(0.1, 4);
+        assertSame(a, limiter.getBucket("app", "/a"));
+        assertEquals(4, limiter.getBucket("app", "/c").getBurst());
+
+        limiter.removeLimit("/b");
+        assertSame(a, limiter.getBucket("app", "/a"));
+        assertEquals(4, limiter.getBucket("app", "/b").getBurst());
+    }
+
+    @Test
+    public void isThrottled() {
+        BasicHttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 403, "Forbidden");
+        assertFalse(RateLimiter.isThrottled(response));
+        response.setHeader(SystemHeader.X_CA_ERROR_MESSAGE, "Throttled by APP Flow Control");
+        assertTrue(RateLimiter.isThrottled(response));
+        response.setStatusCode(429);
+        assertTrue(RateLimiter.isThrottled(response));
+        response.setStatusCode(500);
+        assertFalse(RateLimiter.isThrottled(response));
+    }
+}
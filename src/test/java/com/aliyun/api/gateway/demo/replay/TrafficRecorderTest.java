@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.replay;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.enums.Method;
+
+/**
+ * 录制记录编解码及分段日志读写的测试
+ */
+public class TrafficRecorderTest {
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("traffic-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path file : Files.newDirectoryStream(dir)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        Request request = Request.newBuilder(Method.POST_STRING, new URL("http://api.example.com/path?q=1"))
+                .setTimeout(3000)
+                .setDeadline(5000)
+                .setCompressBody(false)
+                .setHeader("X-Ca-Stage", "RELEASE")
+                .setHeader("X-Custom", "值")
+                .setSignHeaderPrefixes("X-Custom")
+                .setStringBody("{\"name\":\"阿里云😀\"}")
+                .build();
+        RecordedExchange exchange = RecordCodec.decode(RecordCodec.encode(request, true, 1024, 1234L, 5000000L,
+                200, 42L, null));
+        assertEquals(1234L, exchange.getStartMillis());
+        assertEquals(5.0, exchange.getDurationMillis(), 0.001);
+        assertEquals(200, exchange.getStatus());
+        assertEquals(42L, exchange.getResponseLength());
+        assertNull(exchange.getError());
+        assertFalse(exchange.isBodyOmitted());
+        Request decoded = exchange.getRequest();
+        assertEquals(Method.POST_STRING, decoded.getMethod());
+        assertEquals(request.getUri(), decoded.getUri());
+        assertEquals(3000, decoded.getTimeout());
+        assertEquals(5000, decoded.getDeadline());
+        assertEquals(Boolean.FALSE, decoded.getCompressBody());
+        assertEquals(request.getHeaders().toMap(), decoded.getHeaders().toMap());
+        assertArrayEquals(new String[] { "X-Custom" }, decoded.getSignHeaderPrefixes());
+        assertEquals(request.getStringBody(), decoded.getStringBody());
+    }
+
+    @Test
+    public void bodies() throws IOException {
+        URL url = new URL("http://api.example.com/path");
+        Map<String, String> form = new LinkedHashMap<String, String>();
+        form.put("b", "2");
+        form.put("a", null);
+        Request formRequest = Request.newBuilder(Method.POST_FORM, url).setFormBody(form).build();
+        assertEquals(form, decode(formRequest, true).getRequest().getFormBody());
+
+        byte[] bytes = new byte[] { 0, 1, 2, (byte) 0xff };
+        Request bytesRequest = Request.newBuilder(Method.POST_BYTES, url).setBytesBody(bytes).build();
+        assertArrayEquals(bytes, decode(bytesRequest, true).getRequest().getBytesBody());
+
+        //ByteBuffer Body按字节数组回放，且录制不影响请求本身
+        Request bufferRequest = Request.newBuilder(Method.POST_BYTES, url)
+                .setByteBufferBody(ByteBuffer.wrap(bytes, 1, 2)).build();
+        assertArrayEquals(new byte[] { 1, 2 }, decode(bufferRequest, true).getRequest().getBytesBody());
+        assertEquals(2, bufferRequest.getByteBufferBody().remaining());
+
+        //超过大小限制或未开启Body录制时只标记省略
+        assertTrue(decode(Request.newBuilder(Method.POST_BYTES, url).setBytesBody(new byte[8]).build(), true)
+                .isBodyOmitted());
+        assertTrue(decode(formRequest, false).isBodyOmitted());
+        form.put("c", "3");
+        RecordedExchange largeForm = decode(Request.newBuilder(Method.POST_FORM, url).setFormBody(form).build(), true);
+        assertTrue(largeForm.isBodyOmitted());
+        assertEquals(url.toString(), largeForm.getRequest().getUri().toString());
+        assertNull(decode(formRequest, false).getRequest().getFormBody());
+    }
+
+    @Test
+    public void error() throws IOException {
+        Request request = Request.newBuilder(Method.GET, new URL("http://api.example.com/path")).build();
+        RecordedExchange exchange = RecordCodec.decode(RecordCodec.encode(request, true, 4, 0L, 0L, 0, -1L,
+                new SocketTimeoutException("Read timed out")));
+        assertEquals("java.net.SocketTimeoutException: Read timed out", exchange.getError());
+        assertEquals(0, exchange.getStatus());
+        assertEquals(-1L, exchange.getResponseLength());
+    }
+
+    @Test
+    public void recordAcrossSegments() throws IOException {
+        File directory = dir.toFile();
+        URL url = new URL("http://api.example.com/path");
+        int count = 200;
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, 4096, true, 1024)) {
+            for (int i = 0; i < count; i++) {
+                Request request = Request.newBuilder(Method.POST_STRING, url).setStringBody("body-" + i).build();
+                recorder.record(request, i, 0L, 200, 0L, null);
+            }
+            assertEquals(count, recorder.getRecorded());
+            assertEquals(0, recorder.getDropped());
+        }
+        assertTrue(TrafficLogReader.segments(directory).size() > 1);
+        //已有分段不被覆盖，新分段接在其后
+        try (TrafficRecorder recorder = new TrafficRecorder(directory, 4096, true, 1024)) {
+            recorder.record(Request.newBuilder(Method.POST_STRING, url).setStringBody("last").build(), count, 0L,
+                    200, 0L, null);
+        }
+        try (TrafficLogReader reader = new TrafficLogReader(directory)) {
+            for (int i = 0; i < count; i++) {
+                RecordedExchange exchange = reader.next();
+                assertEquals(i, exchange.getStartMillis());
+                assertEquals("body-" + i, exchange.getRequest().getStringBody());
+            }
+            assertEquals("last", reader.next().getRequest().getStringBody());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void dropOversizedRecord() throws IOException {
+        Request large = Request.newBuilder(Method.POST_STRING, new URL("http://api.example.com/path"))
+                .setStringBody(new String(new byte[1000], StandardCharsets.US_ASCII)).build();
+        try (TrafficRecorder recorder = new TrafficRecorder(dir.toFile(), 1024, true, 4096)) {
+            recorder.record(large, 0L, 0L, 200, 0L, null);
+            assertEquals(0, recorder.getRecorded());
+            assertEquals(1, recorder.getDropped());
+        }
+        try (TrafficLogReader reader = new TrafficLogReader(dir.toFile())) {
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    public void bodiesNotRecordedByDefault() throws IOException {
+        Request request = Request.newBuilder(Method.POST_STRING, new URL("http://api.example.com/path"))
+                .setStringBody("secret").build();
+        try (TrafficRecorder recorder = new TrafficRecorder(dir.toFile())) {
+            recorder.record(request, 0L, 0L, 200, 0L, null);
+        }
+        try (TrafficLogReader reader = new TrafficLogReader(dir.toFile())) {
+            RecordedExchange exchange = reader.next();
+            assertTrue(exchange.isBodyOmitted());
+            assertNull(exchange.getRequest().getStringBody());
+        }
+    }
+
+    private static RecordedExchange decode(Request request, boolean recordBodies) throws IOException {
+        return RecordCodec.decode(RecordCodec.encode(request, recordBodies, 4, 0L, 0L, 200, 0L, null));
+    }
+}
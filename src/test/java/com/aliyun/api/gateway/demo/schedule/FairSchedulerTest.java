@@ -0,0 +1,266 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.enums.Priority;
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+import com.aliyun.api.gateway.demo.transport.Deadline;
+import com.aliyun.api.gateway.demo.transport.RequestTimeoutException;
+import com.aliyun.api.gateway.demo.transport.ResponseBodyStore;
+import com.aliyun.api.gateway.demo.transport.ResponseBodyStore.StoredBody;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 严格优先级、租户赤字轮转及排队上限、超时的测试<br>
+ * 并发数为1，先占住唯一的许可，按确定的顺序排队后再归还，记录各请求获得许可的顺序。
+ */
+public class FairSchedulerTest {
+    private FairScheduler scheduler;
+    private FairScheduler.Permit holder;
+    private final List<String> granted = new ArrayList<String>();
+    private final List<Thread> threads = new ArrayList<Thread>();
+
+    @Before
+    public void setUp() throws IOException {
+        scheduler = new FairScheduler(1, 8);
+        holder = scheduler.acquire(null, null, null);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        for (Thread thread : threads) {
+            thread.interrupt();
+            thread.join(5000);
+        }
+    }
+
+    @Test
+    public void roundRobinTenants() throws Exception {
+        enqueue(Priority.NORMAL, "a", 4);
+        enqueue(Priority.NORMAL, "b", 2);
+        assertEquals(Arrays.asList("a", "b", "a", "b", "a", "a"), drain());
+    }
+
+    @Test
+    public void weightedTenants() throws Exception {
+        scheduler.setWeight("a", 2);
+        enqueue(Priority.NORMAL, "a", 4);
+        enqueue(Priority.NORMAL, "b", 4);
+        assertEquals(Arrays.asList("a", "a", "b", "a", "a", "b", "b", "b"), drain());
+    }
+
+    @Test
+    public void strictPriority() throws Exception {
+        enqueue(Priority.BULK, "bulk", 2);
+        enqueue(Priority.NORMAL, "normal", 1);
+        enqueue(Priority.INTERACTIVE, "interactive", 1);
+        assertEquals(Arrays.asList("interactive", "normal", "bulk", "bulk"), drain());
+        assertEquals(2, scheduler.getStats(Priority.BULK).getDispatched());
+    }
+
+    @Test
+    public void queueFull() throws Exception {
+        scheduler = new FairScheduler(1, 1);
+        holder = scheduler.acquire(null, null, null);
+        enqueue(Priority.NORMAL, "a", 1);
+        try {
+            scheduler.acquire(Priority.NORMAL, "b", null);
+            fail("queue should be full");
+        } catch (QueueFullException e) {
+            assertEquals(Priority.NORMAL, e.getPriority());
+        }
+        assertEquals(1, scheduler.getStats(Priority.NORMAL).getRejected());
+        //其他优先级的队列不受影响
+        enqueue(Priority.BULK, "b", 1);
+        assertEquals(Arrays.asList("a", "b"), drain());
+    }
+
+    @Test
+    public void queueTimeout() throws Exception {
+        try {
+            scheduler.acquire(Priority.NORMAL, "a", Deadline.after(50));
+            fail("queued request should time out");
+        } catch (RequestTimeoutException e) {
+            assertEquals(TimeoutPhase.QUEUE, e.getPhase());
+        }
+        assertEquals(0, scheduler.getQueued(Priority.NORMAL));
+        assertEquals(1, scheduler.getStats(Priority.NORMAL).getTimedOut());
+        holder.release();
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    public void interruptWhileQueued() throws Exception {
+        final List<Throwable> errors = new ArrayList<Throwable>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    scheduler.acquire(Priority.NORMAL, "a", null);
+                } catch (IOException e) {
+                    errors.add(e);
+                }
+            }
+        });
+        thread.start();
+        awaitQueued(Priority.NORMAL, 1);
+        thread.interrupt();
+        thread.join(5000);
+        assertEquals(1, errors.size());
+        assertEquals(InterruptedIOException.class, errors.get(0).getClass());
+        assertEquals(0, scheduler.getQueued(Priority.NORMAL));
+    }
+
+    @Test
+    public void releaseOnConsumed() throws IOException {
+        holder.release();
+        //重复归还无副作用
+        holder.release();
+        assertEquals(0, scheduler.getInFlight());
+
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new InputStreamEntity(new ByteArrayInputStream(new byte[10])));
+        scheduler.acquire(null, null, null).releaseOnConsumed(response);
+        assertEquals(1, scheduler.getInFlight());
+        InputStream in = response.getEntity().getContent();
+        assertEquals(10, in.read(new byte[20]));
+        assertEquals(1, scheduler.getInFlight());
+        assertEquals(-1, in.read(new byte[20]));
+        assertEquals(0, scheduler.getInFlight());
+        in.close();
+        assertEquals(0, scheduler.getInFlight());
+
+        //非流式Body立即归还
+        response.setEntity(new StringEntity("body"));
+        scheduler.acquire(null, null, null).releaseOnConsumed(response);
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    public void storedResponseReleasesImmediately() throws Exception {
+        holder.release();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = "stored".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        server.start();
+        ResponseBodyStore store = new ResponseBodyStore();
+        try (Client client = new Client("key", "secret", false)) {
+            client.setScheduler(scheduler);
+            client.setResponseBodyStore(store);
+            HttpResponse response = client.execute(new Request(Method.GET,
+                    new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/stored")));
+            //Body已读入存储，许可不必等调用方读取Body
+            assertEquals(0, scheduler.getInFlight());
+            StoredBody body = (StoredBody) response.getEntity();
+            assertEquals("stored", EntityUtils.toString(body));
+            assertEquals(0, store.getMemoryBytes());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * 逐个排队，每个请求入队后才开始下一个，使入队顺序确定
+     */
+    private void enqueue(final Priority priority, final String tenant, int count) throws InterruptedException {
+        for (int i = 0; i < count; i++) {
+            int queued = scheduler.getQueued(priority);
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        FairScheduler.Permit permit = scheduler.acquire(priority, tenant, null);
+                        synchronized (granted) {
+                            granted.add(tenant);
+                        }
+                        permit.release();
+                    } catch (IOException e) {
+                        //interrupted by tearDown
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+            awaitQueued(priority, queued + 1);
+        }
+    }
+
+    private void awaitQueued(Priority priority, int queued) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (scheduler.getQueued(priority) < queued) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("request was not queued");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * 归还占住的许可，等待所有排队请求依次获得许可
+     */
+    private List<String> drain() throws InterruptedException {
+        holder.release();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(0, scheduler.getInFlight());
+        synchronized (granted) {
+            return new ArrayList<String>(granted);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.enums.TimeoutPhase;
+
+/**
+ * 截止时间的计算，及传输层在服务端不响应时按截止时间失败的测试
+ */
+public class DeadlineTest {
+    private ServerSocket server;
+    private final List<Socket> sockets = new ArrayList<Socket>();
+
+    @Before
+    public void setUp() throws IOException {
+        //接受连接并读取请求，但从不响应；/drip只返回响应头，Body每100ms发送一个字节
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        synchronized (sockets) {
+                            sockets.add(socket);
+                        }
+                        Thread reader = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                try (InputStream in = socket.getInputStream()) {
+                                    if (readRequestLine(in).startsWith("GET /drip ")) {
+                                        drip(socket);
+                                    }
+                                    while (in.read() >= 0) {
+                                        //leave empty
+                                    }
+                                } catch (IOException | InterruptedException e) {
+                                    //leave empty
+                                }
+                            }
+                        });
+                        reader.setDaemon(true);
+                        reader.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        synchronized (sockets) {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    @Test
+    public void clamp() throws InterruptedException {
+        Deadline deadline = Deadline.after(1000);
+        assertEquals(1000, deadline.getBudgetMillis());
+        assertEquals(100, deadline.clamp(100));
+        assertTrue(deadline.clamp(5000) <= 1000);
+        assertTrue(deadline.clamp(0) <= 1000 && deadline.clamp(0) > 900);
+        assertFalse(deadline.isExpired());
+
+        Deadline expired = Deadline.after(1);
+        Thread.sleep(5);
+        assertTrue(expired.isExpired());
+        assertEquals(0, expired.remainingMillis());
+        //已过期时仍返回1，0对Socket表示不超时
+        assertEquals(1, expired.clamp(100));
+        assertTrue(expired.elapsedMillis() >= 5);
+    }
+
+    @Test
+    public void apacheFailsAtDeadline() throws IOException {
+        Transport transport = Transports.apache(false);
+        try {
+            verifyResponseTimeout(transport);
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void nioFailsAtDeadline() throws IOException {
+        Transport transport = Transports.nio(2, 1);
+        try {
+            verifyResponseTimeout(transport);
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void apacheFailsAtDeadlineWhileReadingBody() throws IOException {
+        Transport transport = Transports.apache(false);
+        try {
+            TransportRequest request = new TransportRequest("GET",
+                    URI.create("http://127.0.0.1:" + server.getLocalPort() + "/drip"));
+            request.setTimeout(5000);
+            request.setDeadline(Deadline.after(300));
+            long start = System.nanoTime();
+            HttpResponse response = transport.execute(request);
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            try {
+                //每次读取都远小于读超时，只有截止时间能中止
+                EntityUtils.toByteArray(response.getEntity());
+                fail("slow body should time out");
+            } catch (RequestTimeoutException e) {
+                assertEquals(TimeoutPhase.RESPONSE, e.getPhase());
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            assertTrue("elapsed " + elapsedMillis + "ms", elapsedMillis >= 250 && elapsedMillis < 2000);
+        } finally {
+            transport.close();
+        }
+    }
+
+    private static String readRequestLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) >= 0 && b != '\n') {
+            line.append((char) b);
+        }
+        return line.toString();
+    }
+
+    private static void drip(Socket socket) throws IOException, InterruptedException {
+        OutputStream out = socket.getOutputStream();
+        out.write("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        for (int i = 0; i < 100; i++) {
+            out.write('x');
+            out.flush();
+            Thread.sleep(100);
+        }
+    }
+
+    private void verifyResponseTimeout(Transport transport) throws IOException {
+        TransportRequest request = new TransportRequest("GET",
+                URI.create("http://127.0.0.1:" + server.getLocalPort() + "/slow"));
+        request.setTimeout(5000);
+        request.setDeadline(Deadline.after(200));
+        long start = System.nanoTime();
+        try {
+            transport.execute(request);
+            fail("request without response should time out");
+        } catch (RequestTimeoutException e) {
+            assertEquals(TimeoutPhase.RESPONSE, e.getPhase());
+        }
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("elapsed " + elapsedMillis + "ms", elapsedMillis >= 150 && elapsedMillis < 2000);
+    }
+}
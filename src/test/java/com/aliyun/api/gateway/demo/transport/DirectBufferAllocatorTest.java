@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.transport.DirectBufferAllocator.PooledBuffer;
+
+/**
+ * 直接内存缓冲池的分级复用、保留上限及泄漏检测测试
+ */
+public class DirectBufferAllocatorTest {
+
+    @Test
+    public void sizeClasses() {
+        DirectBufferAllocator allocator = new DirectBufferAllocator(1000, 5000, 1 << 20);
+        PooledBuffer small = allocator.allocate(10);
+        assertEquals(1024, small.buffer().capacity());
+        assertEquals(10, small.buffer().limit());
+        assertEquals(0, small.buffer().position());
+        assertTrue(small.buffer().isDirect());
+        PooledBuffer medium = allocator.allocate(1025);
+        assertEquals(2048, medium.buffer().capacity());
+        PooledBuffer large = allocator.allocate(8193);
+        assertEquals(8193, large.buffer().capacity());
+        assertEquals(3, allocator.getOutstanding());
+        small.release();
+        medium.release();
+        large.release();
+        assertEquals(0, allocator.getOutstanding());
+        //超过最大级别的缓冲区不保留
+        assertEquals(1024 + 2048, allocator.getRetainedBytes());
+    }
+
+    @Test
+    public void reuseAfterRelease() {
+        DirectBufferAllocator allocator = new DirectBufferAllocator(1024, 4096, 1 << 20);
+        PooledBuffer first = allocator.allocate(100);
+        ByteBuffer buffer = first.buffer();
+        buffer.position(50);
+        first.release();
+        //重复归还不会把同一缓冲区放入池中两次
+        first.release();
+        PooledBuffer second = allocator.allocate(200);
+        PooledBuffer third = allocator.allocate(200);
+        assertSame(buffer, second.buffer());
+        assertNotSame(buffer, third.buffer());
+        assertEquals(0, second.buffer().position());
+        assertEquals(200, second.buffer().limit());
+        assertEquals(3, allocator.getAllocations());
+        assertEquals(1, allocator.getPoolHits());
+        second.close();
+        third.close();
+    }
+
+    @Test
+    public void maxRetainedBytes() {
+        DirectBufferAllocator allocator = new DirectBufferAllocator(1024, 4096, 2048);
+        PooledBuffer a = allocator.allocate(1024);
+        PooledBuffer b = allocator.allocate(1024);
+        PooledBuffer c = allocator.allocate(1024);
+        a.release();
+        b.release();
+        c.release();
+        assertEquals(2048, allocator.getRetainedBytes());
+        allocator.allocate(1024).release();
+        assertEquals(2048, allocator.getRetainedBytes());
+    }
+
+    @Test
+    public void detectLeaks() throws InterruptedException {
+        DirectBufferAllocator allocator = new DirectBufferAllocator(1024, 4096, 1 << 20);
+        allocator.setLeakTraceEnabled(true);
+        allocator.allocate(100);
+        allocator.allocate(100).release();
+        for (int i = 0; i < 50 && allocator.getLeaks() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertEquals(1, allocator.getLeaks());
+        assertEquals(0, allocator.getOutstanding());
+        //泄漏的缓冲区可能仍被引用，不回收到池中
+        assertEquals(1024, allocator.getRetainedBytes());
+    }
+
+    @Test
+    public void byteBufferBody() throws IOException {
+        DirectBufferAllocator allocator = new DirectBufferAllocator();
+        try (PooledBuffer pooled = allocator.allocate(20000)) {
+            ByteBuffer buffer = pooled.buffer();
+            byte[] expected = new byte[20000];
+            for (int i = 0; i < expected.length; i++) {
+                expected[i] = (byte) i;
+            }
+            buffer.put(expected).flip();
+            ByteBufferBody body = new ByteBufferBody(buffer, null);
+            assertEquals(20000, body.getContentLength());
+            for (int i = 0; i < 2; i++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                body.writeTo(out);
+                assertArrayEquals(expected, out.toByteArray());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidSizeClasses() {
+        new DirectBufferAllocator(4096, 1024, 0);
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.HttpHeader;
+
+/**
+ * gzip/zlib/裸deflate响应流式解压及校验的测试
+ */
+public class InflatingInputStreamTest {
+    private static final byte[] DATA = data();
+
+    @Test
+    public void gzip() throws IOException {
+        CompressionStats stats = new CompressionStats();
+        byte[] compressed = gzip(DATA);
+        assertArrayEquals(DATA, readAll(new InflatingInputStream(new ByteArrayInputStream(compressed), true, stats)));
+        assertEquals(1, stats.getResponses());
+        assertEquals(compressed.length, stats.getCompressedBytes());
+        assertEquals(DATA.length, stats.getDecompressedBytes());
+    }
+
+    @Test
+    public void gzipOneByteAtATime() throws IOException {
+        InputStream in = new InflatingInputStream(new TricklingInputStream(gzip(DATA)), true, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0) {
+            out.write(b);
+        }
+        in.close();
+        assertArrayEquals(DATA, out.toByteArray());
+    }
+
+    @Test
+    public void gzipOptionalHeaderFields() throws IOException {
+        byte[] deflated = deflate(DATA, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        //FHCRC|FEXTRA|FNAME|FCOMMENT
+        out.write(new byte[] { 0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, 3 });
+        out.write(new byte[] { 3, 0, 'a', 'b', 'c' });
+        out.write("name.txt\0comment\0".getBytes("US-ASCII"));
+        out.write(new byte[] { 0, 0 });
+        out.write(deflated);
+        CRC32 crc = new CRC32();
+        crc.update(DATA);
+        writeIntLE(out, (int) crc.getValue());
+        writeIntLE(out, DATA.length);
+        assertArrayEquals(DATA, readAll(new InflatingInputStream(new ByteArrayInputStream(out.toByteArray()), true,
+                null)));
+    }
+
+    @Test
+    public void zlibAndRawDeflate() throws IOException {
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(zlib)) {
+            out.write(DATA);
+        }
+        assertArrayEquals(DATA, readAll(new InflatingInputStream(new ByteArrayInputStream(zlib.toByteArray()),
+                false, null)));
+        assertArrayEquals(DATA, readAll(new InflatingInputStream(new ByteArrayInputStream(deflate(DATA, true)),
+                false, null)));
+    }
+
+    @Test
+    public void pooledResourcesAreReset() throws IOException {
+        //上一个流读到一半即关闭，归还的Inflater不应影响下一个流
+        InputStream partial = new InflatingInputStream(new ByteArrayInputStream(gzip(DATA)), true, null);
+        assertEquals(100, partial.read(new byte[100]));
+        partial.close();
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(DATA, readAll(new InflatingInputStream(new ByteArrayInputStream(gzip(DATA)), true,
+                    null)));
+        }
+    }
+
+    @Test
+    public void corruptCrc() throws IOException {
+        byte[] compressed = gzip(DATA);
+        compressed[compressed.length - 8] ^= 1;
+        try {
+            readAll(new InflatingInputStream(new ByteArrayInputStream(compressed), true, null));
+            fail("corrupt trailer should be rejected");
+        } catch (ZipException e) {
+            assertTrue(e.getMessage().contains("CRC"));
+        }
+    }
+
+    @Test
+    public void notGzip() throws IOException {
+        try {
+            readAll(new InflatingInputStream(new ByteArrayInputStream(DATA), true, null));
+            fail("plain data should be rejected");
+        } catch (ZipException e) {
+            assertEquals("Not in GZIP format", e.getMessage());
+        }
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncated() throws IOException {
+        byte[] compressed = gzip(DATA);
+        readAll(new InflatingInputStream(new ByteArrayInputStream(Arrays.copyOf(compressed, compressed.length / 2)),
+                true, null));
+    }
+
+    @Test
+    public void decodeResponse() throws IOException {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        byte[] compressed = gzip(DATA);
+        response.setEntity(new ByteArrayEntity(compressed));
+        response.setHeader(HttpHeader.HTTP_HEADER_CONTENT_ENCODING, "gzip");
+        response.setHeader(HttpHeader.HTTP_HEADER_CONTENT_LENGTH, String.valueOf(compressed.length));
+        assertTrue(ResponseDecoder.decode(response, null));
+        assertNull(response.getFirstHeader(HttpHeader.HTTP_HEADER_CONTENT_ENCODING));
+        assertNull(response.getFirstHeader(HttpHeader.HTTP_HEADER_CONTENT_LENGTH));
+        assertEquals(-1, response.getEntity().getContentLength());
+        assertArrayEquals(DATA, EntityUtils.toByteArray(response.getEntity()));
+
+        //其他编码保持不变
+        HttpResponse br = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        br.setEntity(new ByteArrayEntity(compressed));
+        br.setHeader(HttpHeader.HTTP_HEADER_CONTENT_ENCODING, "br");
+        assertFalse(ResponseDecoder.decode(br, null));
+    }
+
+    private static byte[] data() {
+        //一半随机一半重复，压缩后仍大于解压缓冲区
+        byte[] data = new byte[64 * 1024];
+        new Random(1).nextBytes(data);
+        for (int i = data.length / 2; i < data.length; i++) {
+            data[i] = (byte) ('a' + i % 26);
+        }
+        return data;
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean nowrap) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap);
+        try (DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater)) {
+            deflate.write(data);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >> 8);
+        out.write(value >> 16);
+        out.write(value >> 24);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1000];
+            int n;
+            while ((n = input.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /** 每次最多返回一个字节，模拟网络分片 */
+    private static class TricklingInputStream extends ByteArrayInputStream {
+        TricklingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, 1));
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.Client;
+import com.aliyun.api.gateway.demo.Request;
+import com.aliyun.api.gateway.demo.enums.Method;
+import com.aliyun.api.gateway.demo.util.Utf8Encoder;
+
+/**
+ * JdkHttp2Transport与原始Socket上的h2c服务端的交互测试，运行环境低于JDK 11时跳过
+ */
+public class JdkHttp2TransportTest {
+    private static final int BODY_SIZE = 1024 * 1024;
+    private static final int FRAME_DATA = 0x0;
+    private static final int FRAME_HEADERS = 0x1;
+    private static final int FRAME_RST_STREAM = 0x3;
+    private static final int FRAME_SETTINGS = 0x4;
+    private static final int FRAME_WINDOW_UPDATE = 0x8;
+    private static final int FLAG_END_STREAM = 0x1;
+    private static final int FLAG_ACK = 0x1;
+    private static final int FLAG_END_HEADERS = 0x4;
+    /** HPACK静态表中的":status: 200" */
+    private static final byte[] STATUS_200 = { (byte) 0x88 };
+
+    private ServerSocket server;
+    private Client client;
+    /** 客户端已在响应返回后复用过池化缓冲区 */
+    private final CountDownLatch reused = new CountDownLatch(1);
+    /** 服务端读到的请求Body，客户端超时重置stream时只有一部分 */
+    private final AtomicReference<byte[]> received = new AtomicReference<byte[]>();
+    private final CountDownLatch bodyRead = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws IOException {
+        Transport transport;
+        try {
+            transport = Transports.http2(true);
+        } catch (UnsupportedOperationException e) {
+            Assume.assumeNoException(e);
+            return;
+        }
+        client = new Client("appKey", "appSecret", true, transport);
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try (Socket socket = server.accept()) {
+                    serve(socket);
+                } catch (IOException | InterruptedException e) {
+                    bodyRead.countDown();
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (client != null) {
+            client.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void earlyResponseDoesNotCorruptPooledBody() throws Exception {
+        //首个请求经h2c升级为HTTP/2，之后的请求复用该连接
+        URL warmUp = new URL("http://127.0.0.1:" + server.getLocalPort() + "/warmup");
+        EntityUtils.consume(client.execute(new Request(Method.GET, warmUp)).getEntity());
+
+        char[] chars = new char[BODY_SIZE];
+        Arrays.fill(chars, 'a');
+        URL url = new URL("http://127.0.0.1:" + server.getLocalPort() + "/upload");
+        Request request = Request.newBuilder(Method.POST_STRING, url).setStringBody(new String(chars))
+                .setDeadline(1000).build();
+        //服务端在读完Body之前已响应，超出流控窗口的Body在execute返回后才发送；
+        //HttpClient等Body发完才返回响应时（如JDK 17），则在截止时间到达时抛出超时
+        try {
+            HttpResponse response = client.execute(request);
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            EntityUtils.consume(response.getEntity());
+        } catch (RequestTimeoutException e) {
+            //leave empty
+        }
+
+        //execute返回后请求的缓冲区已归还，同样大小的编码会取到同一块缓冲区并覆盖其内容
+        Arrays.fill(chars, 'b');
+        Utf8Encoder.encode(new String(chars), null, false).release();
+        reused.countDown();
+
+        assertTrue(bodyRead.await(10, TimeUnit.SECONDS));
+        byte[] body = received.get();
+        assertTrue(body.length > 0);
+        for (byte b : body) {
+            assertEquals('a', b);
+        }
+    }
+
+    /**
+     * 只实现本测试所需的h2c服务端：升级连接，对每个请求立即返回200，POST请求的Body等客户端复用缓冲区后再放开流控读取
+     */
+    private void serve(Socket socket) throws IOException, InterruptedException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        readHead(in);
+        out.write("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n"
+                .getBytes(StandardCharsets.ISO_8859_1));
+        writeFrame(out, FRAME_SETTINGS, 0, 0, new byte[0]);
+        //升级请求的响应在stream 1上
+        writeFrame(out, FRAME_HEADERS, FLAG_END_STREAM | FLAG_END_HEADERS, 1, STATUS_200);
+        in.readFully(new byte[24]);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int uploadStream = -1;
+        while (true) {
+            int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int stream = in.readInt() & 0x7FFFFFFF;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            if (type == FRAME_SETTINGS && (flags & FLAG_ACK) == 0) {
+                writeFrame(out, FRAME_SETTINGS, FLAG_ACK, 0, new byte[0]);
+            } else if (type == FRAME_HEADERS && stream != 1) {
+                uploadStream = stream;
+                writeFrame(out, FRAME_HEADERS, FLAG_END_STREAM | FLAG_END_HEADERS, stream, STATUS_200);
+                reused.await(5, TimeUnit.SECONDS);
+                byte[] increment = ByteBuffer.allocate(4).putInt(BODY_SIZE).array();
+                writeFrame(out, FRAME_WINDOW_UPDATE, 0, 0, increment);
+                writeFrame(out, FRAME_WINDOW_UPDATE, 0, stream, increment);
+            } else if (type == FRAME_DATA && stream == uploadStream) {
+                body.write(payload);
+                if ((flags & FLAG_END_STREAM) != 0) {
+                    break;
+                }
+            } else if (type == FRAME_RST_STREAM && stream == uploadStream) {
+                break;
+            }
+        }
+        received.set(body.toByteArray());
+        bodyRead.countDown();
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int stream, byte[] payload)
+            throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(9 + payload.length);
+        frame.put((byte) (payload.length >>> 16)).putShort((short) payload.length);
+        frame.put((byte) type).put((byte) flags).putInt(stream).put(payload);
+        out.write(frame.array());
+        out.flush();
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            head.write(b);
+            matched = b == (matched % 2 == 0 ? '\r' : '\n') ? matched + 1 : (b == '\r' ? 1 : 0);
+            if (matched == 4) {
+                return new String(head.toByteArray(), StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.enums.PoolAdjustReason;
+
+/**
+ * 连接池自动调整的测试，直接写入{@link PoolStats}模拟各周期的负载，并手动触发调整
+ */
+public class PoolControllerTest {
+    private ApacheHttpTransport transport;
+    private PoolingHttpClientConnectionManager connectionManager;
+    private PoolStats stats;
+    private PoolController controller;
+
+    @Before
+    public void setUp() {
+        transport = new ApacheHttpTransport(false, 10, 4);
+        connectionManager = transport.getConnectionManager();
+        stats = transport.getPoolStats();
+        controller = new PoolController(transport, 2, 8, 4, 20);
+        controller.setInterval(TimeUnit.HOURS.toMillis(1));
+        controller.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        controller.close();
+        transport.close();
+    }
+
+    @Test
+    public void growOnPoolWait() {
+        acquire(10, TimeUnit.MILLISECONDS.toNanos(5), true);
+        PoolAdjustment adjustment = controller.adjust();
+        assertEquals(PoolAdjustReason.POOL_WAIT, adjustment.getReason());
+        assertEquals(4, adjustment.getPreviousMaxPerRoute());
+        assertEquals(6, adjustment.getMaxPerRoute());
+        assertEquals(5.0, adjustment.getAverageWaitMillis(), 0.001);
+        assertEquals(6, connectionManager.getDefaultMaxPerRoute());
+
+        //不超过上限
+        acquire(10, TimeUnit.MILLISECONDS.toNanos(5), true);
+        controller.adjust();
+        assertEquals(8, connectionManager.getDefaultMaxPerRoute());
+        acquire(10, TimeUnit.MILLISECONDS.toNanos(5), true);
+        assertNull(controller.adjust());
+        assertEquals(8, connectionManager.getDefaultMaxPerRoute());
+        assertEquals(2, controller.getAdjustments());
+        assertEquals(2, controller.getRecentAdjustments().size());
+    }
+
+    @Test
+    public void growTotalOnChurn() {
+        //总连接数用满，且每次取得连接都新建连接
+        acquire(10, 0, false);
+        for (int i = 0; i < 10; i++) {
+            stats.recordOpen();
+            stats.recordRelease();
+        }
+        PoolAdjustment adjustment = controller.adjust();
+        assertEquals(PoolAdjustReason.CHURN, adjustment.getReason());
+        assertEquals(4, adjustment.getMaxPerRoute());
+        assertEquals(15, adjustment.getMaxTotal());
+        assertEquals(15, connectionManager.getMaxTotal());
+    }
+
+    @Test
+    public void shrinkAfterIdlePeriods() {
+        for (int i = 1; i < PoolController.SHRINK_AFTER_PERIODS; i++) {
+            assertNull(controller.adjust());
+        }
+        PoolAdjustment adjustment = controller.adjust();
+        assertEquals(PoolAdjustReason.IDLE, adjustment.getReason());
+        assertEquals(3, adjustment.getMaxPerRoute());
+        assertEquals(4, adjustment.getMaxTotal());
+
+        //中间出现一次繁忙的周期，重新计数
+        assertNull(controller.adjust());
+        acquire(2, 0, true);
+        assertNull(controller.adjust());
+        assertNull(controller.adjust());
+        assertNull(controller.adjust());
+        adjustment = controller.adjust();
+        assertEquals(PoolAdjustReason.IDLE, adjustment.getReason());
+        //不低于下限
+        assertEquals(2, adjustment.getMaxPerRoute());
+        assertEquals(4, adjustment.getMaxTotal());
+    }
+
+    @Test
+    public void clampOnStart() throws IOException {
+        ApacheHttpTransport wide = new ApacheHttpTransport(false, 100, 50);
+        PoolController clamped = new PoolController(wide, 2, 8, 4, 20);
+        try {
+            clamped.start();
+            assertEquals(8, wide.getConnectionManager().getDefaultMaxPerRoute());
+            assertEquals(20, wide.getConnectionManager().getMaxTotal());
+        } finally {
+            clamped.close();
+            wide.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidBounds() {
+        new PoolController(transport, 4, 2, 4, 20);
+    }
+
+    private void acquire(int count, long waitNanos, boolean release) {
+        for (int i = 0; i < count; i++) {
+            stats.recordAcquire(waitNanos);
+        }
+        if (release) {
+            for (int i = 0; i < count; i++) {
+                stats.recordRelease();
+            }
+        }
+    }
+}
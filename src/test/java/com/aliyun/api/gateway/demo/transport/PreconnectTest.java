@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * 预建立的连接应被指定相同目标地址的请求复用
+ */
+public class PreconnectTest {
+    private ServerSocket server;
+    private final AtomicInteger accepted = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        accepted.incrementAndGet();
+                        Thread handler = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        });
+                        handler.setDaemon(true);
+                        handler.start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void apacheReusesPreconnectedTarget() throws Exception {
+        Transport transport = Transports.apache(false);
+        try {
+            verifyReuse(transport);
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void nioReusesPreconnectedTarget() throws Exception {
+        Transport transport = Transports.nio(2, 1);
+        try {
+            verifyReuse(transport);
+        } finally {
+            transport.close();
+        }
+    }
+
+    private void verifyReuse(Transport transport) throws IOException, InterruptedException {
+        //URI中的host为逻辑域名，实际连接由target指定，与地址分组选择地址后的请求相同
+        URI uri = URI.create("http://gateway.test:" + server.getLocalPort() + "/ping");
+        InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        assertEquals(2, transport.preconnect(uri, target, 2, 1000));
+        //客户端连接建立时服务端的accept可能尚未返回
+        for (int i = 0; i < 100 && accepted.get() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, accepted.get());
+        for (int i = 0; i < 4; i++) {
+            TransportRequest request = new TransportRequest("GET", uri);
+            request.setTimeout(1000);
+            request.setTarget(target);
+            HttpResponse response = transport.execute(request);
+            assertEquals("pong", EntityUtils.toString(response.getEntity()));
+        }
+        assertEquals(2, accepted.get());
+    }
+
+    private static void serve(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            while (readHead(in)) {
+                out.write("HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\npong".getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+            }
+        } catch (IOException e) {
+            //leave empty
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //leave empty
+            }
+        }
+    }
+
+    private static boolean readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            head.write(b);
+            matched = b == (matched % 2 == 0 ? '\r' : '\n') ? matched + 1 : (b == '\r' ? 1 : 0);
+            if (matched == 4) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.transport.ResponseBodyStore.StoredBody;
+
+/**
+ * 响应Body内存缓存、溢出到临时文件及释放的测试
+ */
+public class ResponseBodyStoreTest {
+    private static final int CHUNK = ResponseBodyStore.CHUNK_SIZE;
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("body-store-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (Path file : Files.newDirectoryStream(dir)) {
+            Files.delete(file);
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void inMemory() throws IOException {
+        ResponseBodyStore store = new ResponseBodyStore(1 << 20, 4 * CHUNK, dir);
+        byte[] data = data(3 * CHUNK + 10);
+        HttpResponse response = response(data, true);
+        StoredBody body = store.store(response);
+        assertFalse(body.isSpilled());
+        assertNull(body.getFile());
+        assertEquals(data.length, body.getContentLength());
+        assertEquals(4 * CHUNK, store.getMemoryBytes());
+        assertArrayEquals(data, EntityUtils.toByteArray(response.getEntity()));
+        //读完关闭后释放
+        assertEquals(0, store.getMemoryBytes());
+        assertEquals(4 * CHUNK, store.getPeakMemoryBytes());
+        try {
+            body.getContent();
+            fail("released body should not be readable");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        assertEquals(1, store.getBodies());
+        assertEquals(0, store.getSpilledBodies());
+    }
+
+    @Test
+    public void spillWhenExceedingThreshold() throws IOException {
+        ResponseBodyStore store = new ResponseBodyStore(1 << 20, 2 * CHUNK, dir);
+        byte[] data = data(5 * CHUNK + 1);
+        //长度未知，读到超过阈值时才溢出
+        HttpResponse response = response(data, false);
+        StoredBody body = store.store(response);
+        assertTrue(body.isSpilled());
+        assertTrue(Files.exists(body.getFile()));
+        assertEquals(data.length, Files.size(body.getFile()));
+        assertEquals(0, store.getMemoryBytes());
+        assertArrayEquals(data, EntityUtils.toByteArray(response.getEntity()));
+        assertFalse(Files.exists(body.getFile()));
+        assertEquals(1, store.getSpilledBodies());
+        assertEquals(data.length, store.getSpilledBytes());
+    }
+
+    @Test
+    public void spillImmediatelyWhenContentLengthExceedsThreshold() throws IOException {
+        ResponseBodyStore store = new ResponseBodyStore(1 << 20, CHUNK, dir);
+        byte[] data = data(CHUNK + 1);
+        StoredBody body = store.store(response(data, true));
+        assertTrue(body.isSpilled());
+        assertEquals(0, store.getPeakMemoryBytes());
+        ByteBuffer mapped = body.asByteBuffer();
+        byte[] bytes = new byte[mapped.remaining()];
+        mapped.get(bytes);
+        assertArrayEquals(data, bytes);
+        body.release();
+        body.release();
+        assertEquals(0, count(dir));
+    }
+
+    @Test
+    public void spillWhenMemoryExhausted() throws IOException {
+        ResponseBodyStore store = new ResponseBodyStore(2 * CHUNK, 1 << 20, dir);
+        byte[] data = data(2 * CHUNK - 1);
+        StoredBody first = store.store(response(data, true));
+        assertFalse(first.isSpilled());
+        assertEquals(2 * CHUNK, store.getMemoryBytes());
+        //内存配额已用完，后续响应直接写入磁盘而不等待
+        StoredBody second = store.store(response(data, true));
+        assertTrue(second.isSpilled());
+        ByteBuffer buffer = first.asByteBuffer();
+        assertTrue(buffer.isReadOnly());
+        assertEquals(data.length, buffer.remaining());
+        first.release();
+        second.release();
+        assertEquals(0, store.getMemoryBytes());
+        //归还的内存块被复用
+        StoredBody third = store.store(response(data, true));
+        assertFalse(third.isSpilled());
+        third.release();
+    }
+
+    @Test
+    public void releaseOnFailure() throws IOException {
+        ResponseBodyStore store = new ResponseBodyStore(1 << 20, 2 * CHUNK, dir);
+        InputStream failing = new SequenceInputStream(new ByteArrayInputStream(data(3 * CHUNK)), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("connection reset");
+            }
+        });
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(new InputStreamEntity(failing));
+        try {
+            store.store(response);
+            fail("read failure should propagate");
+        } catch (IOException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+        assertEquals(0, store.getMemoryBytes());
+        assertEquals(0, count(dir));
+        assertEquals(0, store.getBodies());
+    }
+
+    @Test
+    public void emptyBody() throws IOException {
+        ResponseBodyStore store = new ResponseBodyStore();
+        HttpResponse response = response(new byte[0], true);
+        StoredBody body = store.store(response);
+        assertEquals(0, body.getContentLength());
+        assertArrayEquals(new byte[0], EntityUtils.toByteArray(response.getEntity()));
+        assertNull(store.store(new BasicHttpResponse(HttpVersion.HTTP_1_1, 204, "No Content")));
+    }
+
+    private static HttpResponse response(byte[] data, boolean knownLength) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        response.setEntity(knownLength ? new ByteArrayEntity(data)
+                : new InputStreamEntity(new ByteArrayInputStream(data)));
+        return response;
+    }
+
+    private static byte[] data(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static int count(Path dir) throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 文件及输入流Body经两种HTTP/1.1传输层流式发送的测试，服务端返回收到的传输方式、长度及MD5
+ */
+public class StreamingBodyTest {
+    private static final byte[] DATA = data();
+    private static final String DATA_MD5 = Base64.encodeBase64String(DigestUtils.md5(DATA));
+
+    private HttpServer server;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                try (InputStream in = exchange.getRequestBody()) {
+                    byte[] buffer = new byte[8192];
+                    int n;
+                    while ((n = in.read(buffer)) >= 0) {
+                        body.write(buffer, 0, n);
+                    }
+                }
+                String transfer = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+                String result = (transfer != null ? transfer : "length=" + exchange.getRequestHeaders()
+                        .getFirst("Content-Length")) + " " + Base64.encodeBase64String(DigestUtils.md5(body
+                        .toByteArray()));
+                byte[] response = result.getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, response.length);
+                exchange.getResponseBody().write(response);
+                exchange.close();
+            }
+        });
+        server.start();
+        file = Files.createTempFile("streaming-body", ".bin");
+        Files.write(file, DATA);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.stop(0);
+        Files.delete(file);
+    }
+
+    @Test
+    public void apache() throws IOException {
+        Transport transport = Transports.apache(false);
+        try {
+            verify(transport);
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void nio() throws IOException {
+        Transport transport = Transports.nio(2, 1);
+        try {
+            verify(transport);
+        } finally {
+            transport.close();
+        }
+    }
+
+    @Test
+    public void sendOnce() throws IOException {
+        InputStreamBody body = new InputStreamBody(new ByteArrayInputStream(DATA), DATA.length, null, DATA_MD5);
+        body.writeTo(new ByteArrayOutputStream());
+        try {
+            body.writeTo(new ByteArrayOutputStream());
+            fail("stream body should only be sent once");
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void verifyBeforeLastChunk() {
+        //长度已知时，MD5不一致在写出最后一段数据之前即报错
+        InputStreamBody body = new InputStreamBody(new ByteArrayInputStream(DATA), DATA.length, null, "wrong");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            body.writeTo(out);
+            fail("MD5 mismatch should abort the body");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Content-MD5 mismatch"));
+        }
+        assertTrue(out.size() < DATA.length);
+    }
+
+    private void verify(Transport transport) throws IOException {
+        assertEquals("length=" + DATA.length + " " + DATA_MD5, send(transport, new FileBody(file, null)));
+        assertEquals("length=" + DATA.length + " " + DATA_MD5, send(transport,
+                new InputStreamBody(new ByteArrayInputStream(DATA), DATA.length, null, DATA_MD5)));
+        assertEquals("chunked " + DATA_MD5, send(transport,
+                new InputStreamBody(new ByteArrayInputStream(DATA), -1, null, DATA_MD5)));
+        //实际长度小于声明的长度
+        try {
+            send(transport, new InputStreamBody(new ByteArrayInputStream(DATA, 0, 100), DATA.length, null, null));
+            fail("short body should be rejected");
+        } catch (IOException e) {
+            //expected
+        }
+        //中止的请求不影响后续请求
+        assertEquals("length=" + DATA.length + " " + DATA_MD5, send(transport, new FileBody(file, null)));
+    }
+
+    private String send(Transport transport, RequestBody body) throws IOException {
+        TransportRequest request = new TransportRequest("POST",
+                URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/upload"));
+        request.setTimeout(5000);
+        request.setBody(body);
+        HttpResponse response = transport.execute(request);
+        return EntityUtils.toString(response.getEntity());
+    }
+
+    private static byte[] data() {
+        byte[] data = new byte[300 * 1024 + 7];
+        new Random(7).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import javax.net.ssl.SSLContext;
+
+import org.junit.Test;
+
+/**
+ * TLS协议过滤、共享SSLContext及握手统计的测试
+ */
+public class TlsConfigTest {
+
+    @Test
+    public void supportedProtocols() throws Exception {
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, null, null);
+        TlsConfig config = new TlsConfig(new String[] { "TLSv1.9", "TLSv1.2" }, null);
+        assertArrayEquals(new String[] { "TLSv1.2" }, config.getSupportedProtocols(sslContext));
+        config.setProtocols(new String[] { "TLSv1.9" });
+        assertNull(config.getSupportedProtocols(sslContext));
+        config.setProtocols(null);
+        assertNull(config.getSupportedProtocols(sslContext));
+    }
+
+    @Test
+    public void sharedContext() throws Exception {
+        TlsConfig config = new TlsConfig();
+        config.setSessionCacheSize(17);
+        config.setSessionTimeout(600);
+        SSLContext shared = SSLContextFactory.getShared(false, config);
+        assertSame(shared, SSLContextFactory.getShared(false, config));
+        assertEquals(17, shared.getClientSessionContext().getSessionCacheSize());
+        assertEquals(600, shared.getClientSessionContext().getSessionTimeout());
+        //信任策略不同的Client不共享
+        assertNotSame(shared, SSLContextFactory.getShared(true, config));
+        TlsConfig other = new TlsConfig();
+        other.setSessionCacheSize(18);
+        other.setSessionTimeout(600);
+        assertNotSame(shared, SSLContextFactory.getShared(false, other));
+    }
+
+    @Test
+    public void handshakeStats() {
+        TlsStats stats = new TlsStats();
+        stats.record(4000000, false);
+        stats.record(1000000, true);
+        stats.record(1000000, true);
+        stats.recordFailure();
+        assertEquals(3, stats.getHandshakes());
+        assertEquals(2, stats.getResumed());
+        assertEquals(1, stats.getFullHandshakes());
+        assertEquals(1, stats.getFailures());
+        assertEquals(6.0, stats.getTotalMillis(), 0.001);
+        assertEquals(4.0, stats.getAverageFullMillis(), 0.001);
+        assertEquals(1.0, stats.getAverageResumedMillis(), 0.001);
+        assertEquals(4.0, stats.getMaxMillis(), 0.001);
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.transport.ByteArrayBody;
+import com.aliyun.api.gateway.demo.transport.TransportRequest;
+
+/**
+ * NioHttpTransport与原始Socket服务端的交互测试
+ */
+public class NioHttpTransportTest {
+    private ServerSocket server;
+    private Thread acceptor;
+    private NioHttpTransport transport;
+    /** 服务端观察到提前响应的连接被客户端关闭 */
+    private final CountDownLatch earlyResponseClosed = new CountDownLatch(1);
+    /** 服务端收到不响应的请求 */
+    private final CountDownLatch hangReceived = new CountDownLatch(1);
+    /** 服务端观察到不响应的请求所在的连接被客户端关闭 */
+    private final CountDownLatch hangClosed = new CountDownLatch(1);
+    /** 服务端收到响应后即重置连接的请求 */
+    private final CountDownLatch resetReceived = new CountDownLatch(1);
+    /** 另一个请求已在同一路由上排队 */
+    private final CountDownLatch pingQueued = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws IOException {
+        //接收缓冲区较小，服务端不读取时大的请求Body一定无法完整写出
+        server = new ServerSocket();
+        server.setReceiveBufferSize(64 * 1024);
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50);
+        acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!server.isClosed()) {
+                    try {
+                        final Socket socket = server.accept();
+                        new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                serve(socket);
+                            }
+                        }).start();
+                    } catch (IOException e) {
+                        return;
+                    }
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        transport = new NioHttpTransport(2, 1);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        transport.close();
+        server.close();
+    }
+
+    @Test
+    public void earlyResponseClosesConnection() throws Exception {
+        //请求Body远大于套接字缓冲区，服务端不读Body直接返回413，请求缓冲区此时仍在写队列中
+        TransportRequest post = new TransportRequest("POST", uri("/upload"));
+        post.setBody(new ByteArrayBody(new byte[16 * 1024 * 1024], "application/octet-stream"));
+        post.setTimeout(1000);
+        HttpResponse rejected = transport.execute(post);
+        assertEquals(413, rejected.getStatusLine().getStatusCode());
+        assertTrue(earlyResponseClosed.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < 3; i++) {
+            TransportRequest get = new TransportRequest("GET", uri("/ping"));
+            get.setTimeout(1000);
+            HttpResponse response = transport.execute(get);
+            assertEquals(200, response.getStatusLine().getStatusCode());
+            assertEquals("pong", EntityUtils.toString(response.getEntity()));
+        }
+    }
+
+    @Test
+    public void interruptedRequestClosesConnection() throws Exception {
+        final AtomicReference<IOException> error = new AtomicReference<IOException>();
+        Thread caller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TransportRequest get = new TransportRequest("GET", uri("/hang"));
+                get.setTimeout(1000);
+                try {
+                    transport.execute(get);
+                } catch (IOException e) {
+                    error.set(e);
+                }
+            }
+        });
+        caller.start();
+        assertTrue(hangReceived.await(5, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(5000);
+        assertTrue(error.get() instanceof InterruptedIOException);
+        //不再有人等待的请求不能留在连接上
+        assertTrue(hangClosed.await(5, TimeUnit.SECONDS));
+
+        TransportRequest get = new TransportRequest("GET", uri("/ping"));
+        get.setTimeout(1000);
+        assertEquals("pong", EntityUtils.toString(transport.execute(get).getEntity()));
+    }
+
+    @Test
+    public void resetAfterResponseWithQueuedRequest() throws Exception {
+        //每个路由只有一个连接，第二个请求在第一个请求完成后才分派到同一连接上，写出时连接已被重置
+        final NioHttpTransport single = new NioHttpTransport(1, 1);
+        try {
+            final AtomicReference<Object> first = new AtomicReference<Object>();
+            final AtomicReference<Object> queued = new AtomicReference<Object>();
+            Thread resetCaller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    first.set(get(single, "/reset"));
+                }
+            });
+            Thread pingCaller = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    queued.set(get(single, "/ping"));
+                }
+            });
+            resetCaller.start();
+            assertTrue(resetReceived.await(5, TimeUnit.SECONDS));
+            pingCaller.start();
+            //等第二个请求进入路由的等待队列
+            Thread.sleep(200);
+            pingQueued.countDown();
+            resetCaller.join(5000);
+            pingCaller.join(5000);
+            assertEquals("ok", first.get());
+            //重置的连接上尚未收到响应的幂等请求在新连接上重发
+            assertEquals("pong", queued.get());
+
+            //读缓冲区没有在归还后被继续使用，之后的请求及响应不受影响
+            for (int i = 0; i < 20; i++) {
+                assertEquals("pong", get(single, "/ping?i=" + i));
+            }
+        } finally {
+            single.close();
+        }
+    }
+
+    /** @return 响应Body，出错时返回异常 */
+    private Object get(NioHttpTransport transport, String path) {
+        TransportRequest get = new TransportRequest("GET", uri(path));
+        get.setTimeout(1000);
+        try {
+            return EntityUtils.toString(transport.execute(get).getEntity());
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://127.0.0.1:" + server.getLocalPort() + path);
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = socket.getInputStream();
+            OutputStream out = socket.getOutputStream();
+            while (true) {
+                String head = readHead(in);
+                if (head == null) {
+                    return;
+                }
+                if (head.startsWith("POST")) {
+                    out.write("HTTP/1.1 413 Payload Too Large\r\nContent-Length: 0\r\n\r\n"
+                            .getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                    //客户端必须关闭连接，否则剩余Body会被当作下一个请求
+                    byte[] discard = new byte[64 * 1024];
+                    while (in.read(discard) >= 0) {
+                        //leave empty
+                    }
+                    earlyResponseClosed.countDown();
+                    return;
+                }
+                if (head.startsWith("GET /hang ")) {
+                    hangReceived.countDown();
+                    while (in.read() >= 0) {
+                        //leave empty
+                    }
+                    hangClosed.countDown();
+                    return;
+                }
+                if (head.startsWith("GET /reset ")) {
+                    resetReceived.countDown();
+                    pingQueued.await(5, TimeUnit.SECONDS);
+                    out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok".getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                    socket.setSoLinger(true, 0);
+                    return;
+                }
+                if (!head.startsWith("GET /ping")) {
+                    return;
+                }
+                out.write("HTTP/1.1 200 OK\r\nContent-Length: 4\r\n\r\npong".getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            earlyResponseClosed.countDown();
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                //leave empty
+            }
+        }
+    }
+
+    private static String readHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        int matched = 0;
+        int b;
+        while ((b = in.read()) >= 0) {
+            head.write(b);
+            matched = b == (matched % 2 == 0 ? '\r' : '\n') ? matched + 1 : (b == '\r' ? 1 : 0);
+            if (matched == 4) {
+                return new String(head.toByteArray(), StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+}
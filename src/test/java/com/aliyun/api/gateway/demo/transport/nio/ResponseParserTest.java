@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.transport.nio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ResponseParser状态机测试
+ */
+public class ResponseParserTest {
+    private ResponseParser parser;
+
+    @Before
+    public void setUp() {
+        parser = new ResponseParser();
+        parser.reset(false);
+    }
+
+    @Test
+    public void contentLength() throws IOException {
+        assertTrue(parser.parse(buffer("HTTP/1.1 200 OK\r\nContent-Length: 5\r\n\r\nhello")));
+        HttpResponse response = parser.getResponse();
+        assertEquals(200, response.getStatusLine().getStatusCode());
+        assertEquals("hello", EntityUtils.toString(response.getEntity()));
+        assertTrue(parser.isKeepAlive());
+    }
+
+    @Test
+    public void chunked() throws IOException {
+        assertTrue(parser.parse(buffer("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "5\r\nhello\r\n7;ext=1\r\n, world\r\n0\r\n\r\n")));
+        assertEquals("hello, world", EntityUtils.toString(parser.getResponse().getEntity()));
+    }
+
+    @Test
+    public void chunkedWithTrailers() throws IOException {
+        ByteBuffer in = buffer("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "3\r\nabc\r\n0\r\nX-Checksum: 900150983cd24fb0\r\nX-Count: 3\r\n\r\n");
+        assertTrue(parser.parse(in));
+        assertFalse(in.hasRemaining());
+        HttpResponse response = parser.getResponse();
+        assertEquals("abc", EntityUtils.toString(response.getEntity()));
+        assertEquals("900150983cd24fb0", response.getFirstHeader("X-Checksum").getValue());
+        assertEquals("3", response.getFirstHeader("X-Count").getValue());
+    }
+
+    @Test
+    public void byteByByte() throws IOException {
+        byte[] bytes = ("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"
+                + "4\r\ndata\r\n0\r\nX-Trailer: 1\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        for (int i = 0; i < bytes.length - 1; i++) {
+            assertFalse(parser.parse(ByteBuffer.wrap(bytes, i, 1)));
+        }
+        assertTrue(parser.parse(ByteBuffer.wrap(bytes, bytes.length - 1, 1)));
+        HttpResponse response = parser.getResponse();
+        assertEquals("data", EntityUtils.toString(response.getEntity()));
+        assertEquals("1", response.getFirstHeader("X-Trailer").getValue());
+    }
+
+    @Test
+    public void pipelined() throws IOException {
+        ByteBuffer in = buffer("HTTP/1.1 200 OK\r\nContent-Length: 3\r\n\r\none"
+                + "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n3\r\ntwo\r\n0\r\nX-T: 1\r\n\r\n"
+                + "HTTP/1.1 204 No Content\r\n\r\n"
+                + "HTTP/1.1 404 Not Found\r\nContent-Length: 5\r\nConnection: close\r\n\r\nthree");
+        String[] bodies = { "one", "two", "", "three" };
+        int[] statuses = { 200, 200, 204, 404 };
+        for (int i = 0; i < bodies.length; i++) {
+            parser.reset(false);
+            assertTrue(parser.parse(in));
+            HttpResponse response = parser.getResponse();
+            assertEquals(statuses[i], response.getStatusLine().getStatusCode());
+            assertEquals(bodies[i], EntityUtils.toString(response.getEntity()));
+        }
+        assertFalse(in.hasRemaining());
+        assertFalse(parser.isKeepAlive());
+    }
+
+    @Test
+    public void headResponseHasNoBody() throws IOException {
+        parser.reset(true);
+        ByteBuffer in = buffer("HTTP/1.1 200 OK\r\nContent-Length: 100\r\n\r\nHTTP/1.1");
+        assertTrue(parser.parse(in));
+        assertEquals(8, in.remaining());
+    }
+
+    @Test
+    public void informationalResponseSkipped() throws IOException {
+        assertTrue(parser.parse(buffer("HTTP/1.1 100 Continue\r\n\r\nHTTP/1.1 201 Created\r\nContent-Length: 0\r\n\r\n")));
+        assertEquals(201, parser.getResponse().getStatusLine().getStatusCode());
+    }
+
+    @Test
+    public void bodyUntilClose() throws IOException {
+        assertFalse(parser.parse(buffer("HTTP/1.0 200 OK\r\n\r\npart1")));
+        assertFalse(parser.parse(buffer("part2")));
+        assertTrue(parser.finishOnEof());
+        assertEquals("part1part2", EntityUtils.toString(parser.getResponse().getEntity()));
+        assertFalse(parser.isKeepAlive());
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void missingChunkTerminator() throws IOException {
+        parser.parse(buffer("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabcX\r\n0\r\n\r\n"));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void contentLengthTooLarge() throws IOException {
+        parser = new ResponseParser(1024);
+        parser.reset(false);
+        parser.parse(buffer("HTTP/1.1 200 OK\r\nContent-Length: 9223372036854775807\r\n\r\n"));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void chunksTooLarge() throws IOException {
+        parser = new ResponseParser(1024);
+        parser.reset(false);
+        parser.parse(buffer("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"));
+        for (int i = 0; i < 16; i++) {
+            parser.parse(buffer("80\r\n" + new String(new char[128]).replace('\0', 'a') + "\r\n"));
+        }
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void bodyUntilCloseTooLarge() throws IOException {
+        parser = new ResponseParser(1024);
+        parser.reset(false);
+        parser.parse(buffer("HTTP/1.0 200 OK\r\n\r\n"));
+        parser.parse(ByteBuffer.allocate(1025));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void negativeChunkSize() throws IOException {
+        parser.parse(buffer("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n-1\r\n"));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void invalidStatusLine() throws IOException {
+        parser.parse(buffer("SSH-2.0-OpenSSH\r\n"));
+    }
+
+    private static ByteBuffer buffer(String s) {
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.util.FormEncoder.FormBody;
+
+/**
+ * 表单编码结果与URLEncodedUtils及SignUtil的一致性测试
+ */
+public class FormEncoderTest {
+    private static final String SECRET = "secret";
+
+    @Test
+    public void asciiAndReserved() {
+        Map<String, String> form = new LinkedHashMap<String, String>();
+        form.put("b", "x y+z");
+        form.put("a", "1&2=3");
+        form.put("c", "-_.*~!'()%/?#");
+        form.put("empty", "");
+        verify("/path", form);
+    }
+
+    @Test
+    public void unicode() {
+        Map<String, String> form = new LinkedHashMap<String, String>();
+        form.put("名称", "阿里云 API网关");
+        form.put("latin", "café");
+        form.put("emoji", "😀");
+        form.put("lone", "a\ud800b");
+        verify("/path", form);
+    }
+
+    @Test
+    public void nullValue() {
+        Map<String, String> form = new LinkedHashMap<String, String>();
+        form.put("k", null);
+        form.put("v", "1");
+        FormBody body = FormEncoder.encode("/path", form);
+        try {
+            assertEquals("k&v=1", bodyString(body));
+            assertEquals(signResource("/path", form), body.getSignResource());
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    public void queryParamsOnlySigned() {
+        Map<String, String> form = new LinkedHashMap<String, String>();
+        form.put("b", "2");
+        form.put("q", "form");
+        FormBody body = FormEncoder.encode("/path?q=query&a=1&flag", form);
+        try {
+            assertEquals("b=2&q=form", bodyString(body));
+            assertEquals("/path?a=1&b=2&flag&q=form", body.getSignResource());
+            assertEquals(signResource("/path?q=query&a=1&flag", form), body.getSignResource());
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    public void emptyForm() {
+        FormBody body = FormEncoder.encode("/path", new HashMap<String, String>());
+        try {
+            assertEquals(0, body.getContentLength());
+            assertEquals("/path", body.getSignResource());
+        } finally {
+            body.release();
+        }
+    }
+
+    @Test
+    public void largeBody() {
+        Map<String, String> form = new LinkedHashMap<String, String>();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            value.append((char) ('a' + i % 26)).append(i % 7 == 0 ? "中 " : "");
+        }
+        form.put("data", value.toString());
+        form.put("more", value.reverse().toString());
+        verify("/upload", form);
+    }
+
+    @Test
+    public void bufferReusedAfterRelease() {
+        Map<String, String> form = new HashMap<String, String>();
+        form.put("a", "1");
+        FormBody first = FormEncoder.encode("/path", form);
+        //未归还时另分配缓冲区
+        FormBody second = FormEncoder.encode("/path", form);
+        assertNotSame(first.getBytes(), second.getBytes());
+        second.release();
+        byte[] buffer = first.getBytes();
+        first.release();
+        first.release();
+        FormBody third = FormEncoder.encode("/path", form);
+        try {
+            assertSame(buffer, third.getBytes());
+            assertEquals("a=1", bodyString(third));
+        } finally {
+            third.release();
+        }
+    }
+
+    private static void verify(String pathAndQuery, Map<String, String> form) {
+        List<NameValuePair> pairs = new ArrayList<NameValuePair>();
+        for (Map.Entry<String, String> e : new TreeMap<String, String>(form).entrySet()) {
+            pairs.add(new BasicNameValuePair(e.getKey(), e.getValue()));
+        }
+        FormBody body = FormEncoder.encode(pathAndQuery, form);
+        try {
+            assertEquals(URLEncodedUtils.format(pairs, StandardCharsets.UTF_8), bodyString(body));
+            assertEquals(signResource(pathAndQuery, form), body.getSignResource());
+        } finally {
+            body.release();
+        }
+    }
+
+    private static String bodyString(FormBody body) {
+        return new String(body.getBytes(), body.getOffset(), (int) body.getContentLength(), StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * 通过签名结果比较SignUtil构建的待签名Path+Query+FormParams
+     */
+    private static String signResource(String pathAndQuery, Map<String, String> form) {
+        String expected = SignUtil.sign("POST", new HashMap<String, String>(), pathAndQuery,
+                new HashMap<String, String>(form), SECRET, null);
+        FormBody body = FormEncoder.encode(pathAndQuery, form);
+        try {
+            String actual = SignUtil.signResource("POST", new HashMap<String, String>(), body.getSignResource(),
+                    SECRET, null);
+            assertEquals(expected, actual);
+            return body.getSignResource();
+        } finally {
+            body.release();
+        }
+    }
+}
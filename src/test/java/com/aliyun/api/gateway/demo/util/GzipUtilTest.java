@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.util.GzipUtil.CompressedBody;
+
+/**
+ * GzipUtil压缩结果及Content-MD5测试
+ */
+public class GzipUtilTest {
+    @Test
+    public void stringRoundTrip() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("{\"key\":\"值").append(i).append("\"},");
+        }
+        String str = sb.toString();
+        CompressedBody body = GzipUtil.gzip(str);
+        byte[] compressed = Arrays.copyOf(body.getBytes(), body.getLength());
+        assertEquals(str, new String(gunzip(compressed), Constants.ENCODING));
+        assertEquals(MessageDigestUtil.base64AndMD5(compressed), body.getContentMD5());
+    }
+
+    @Test
+    public void bytesRoundTrip() throws IOException {
+        byte[] bytes = new byte[100000];
+        new Random(1).nextBytes(bytes);
+        CompressedBody body = GzipUtil.gzip(bytes);
+        byte[] compressed = Arrays.copyOf(body.getBytes(), body.getLength());
+        assertArrayEquals(bytes, gunzip(compressed));
+        assertEquals(MessageDigestUtil.base64AndMD5(compressed), body.getContentMD5());
+    }
+
+    @Test
+    public void emptyInput() throws IOException {
+        CompressedBody body = GzipUtil.gzip("");
+        assertEquals(0, gunzip(Arrays.copyOf(body.getBytes(), body.getLength())).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullString() {
+        GzipUtil.gzip((String) null);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+}
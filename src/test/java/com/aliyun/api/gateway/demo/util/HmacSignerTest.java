@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.HmacUtils;
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.constant.SystemHeader;
+import com.aliyun.api.gateway.demo.enums.SignatureMethod;
+
+/**
+ * HmacSigner与SignUtil签名结果测试
+ */
+public class HmacSignerTest {
+    private static final String SECRET = "app-secret";
+    private static final String STRING_TO_SIGN = "GET\napplication/json\n\n\n\nX-Ca-Key:app-key\n/path?a=1&b=2";
+
+    @Test
+    public void matchesCommonsCodec() {
+        HmacSigner signer = new HmacSigner(SignatureMethod.HMAC_SHA256, SECRET);
+        String expected = new String(Base64.encodeBase64(HmacUtils.hmacSha256(SECRET, STRING_TO_SIGN)),
+                Constants.ENCODING);
+        assertEquals(expected, signer.sign(STRING_TO_SIGN));
+        //同一线程重复使用缓存的Mac
+        assertEquals(expected, signer.sign(STRING_TO_SIGN));
+    }
+
+    @Test
+    public void hmacSha1() {
+        HmacSigner signer = new HmacSigner(SignatureMethod.HMAC_SHA1, SECRET);
+        String expected = new String(Base64.encodeBase64(HmacUtils.hmacSha1(SECRET, STRING_TO_SIGN)),
+                Constants.ENCODING);
+        assertEquals(expected, signer.sign(STRING_TO_SIGN));
+    }
+
+    @Test
+    public void legacySignResourceMatchesSigner() {
+        Map<String, String> legacyHeaders = headers();
+        Map<String, String> signerHeaders = headers();
+        signerHeaders.put(SystemHeader.X_CA_SIGNATURE_METHOD, SignatureMethod.HMAC_SHA256.getAlgorithm());
+        legacyHeaders.put(SystemHeader.X_CA_SIGNATURE_METHOD, SignatureMethod.HMAC_SHA256.getAlgorithm());
+        String legacy = SignUtil.signResource("POST", legacyHeaders, "/path?a=1", SECRET, null);
+        String signed = SignUtil.signResource("POST", signerHeaders, "/path?a=1",
+                new HmacSigner(SignatureMethod.HMAC_SHA256, SECRET), null);
+        assertEquals(signed, legacy);
+    }
+
+    private static Map<String, String> headers() {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("Accept", "application/json");
+        headers.put(SystemHeader.X_CA_KEY, "app-key");
+        headers.put(SystemHeader.X_CA_TIMESTAMP, "1500000000000");
+        return headers;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.aliyun.api.gateway.demo.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.aliyun.api.gateway.demo.constant.Constants;
+import com.aliyun.api.gateway.demo.util.Utf8Encoder.EncodedBody;
+
+/**
+ * Utf8Encoder与JDK编码结果一致性测试
+ */
+public class Utf8EncoderTest {
+    private static final String[] SAMPLES = { "", " ", "hello", "中文body", "é߿ࠀ￿",
+            "emoji 😀 end", "lone \ud83d high", "lone \ude00 low", "trailing \ud83d" };
+
+    @Test
+    public void matchesJdkEncoding() {
+        for (String sample : SAMPLES) {
+            byte[] expected = sample.getBytes(Constants.ENCODING);
+            assertEquals(sample, expected.length, Utf8Encoder.encodedLength(sample));
+            EncodedBody body = Utf8Encoder.encode(sample, "text/plain", true);
+            assertEquals(sample, expected.length, body.getContentLength());
+            assertArrayEquals(sample, expected,
+                    Arrays.copyOfRange(body.getBytes(), body.getOffset(), body.getOffset() + expected.length));
+            assertEquals(sample, MessageDigestUtil.base64AndMD5(expected), body.getContentMD5());
+            body.release();
+        }
+    }
+
+    @Test
+    public void pooledBufferReused() {
+        char[] chars = new char[5000];
+        Arrays.fill(chars, 'a');
+        String large = new String(chars);
+        EncodedBody first = Utf8Encoder.encode(large, null, false);
+        assertNull(first.getContentMD5());
+        byte[] buffer = first.getBytes();
+        first.release();
+        first.release();
+        EncodedBody second = Utf8Encoder.encode(large.replace('a', 'b'), null, false);
+        assertEquals(5000, second.getContentLength());
+        assertEquals('b', second.getBytes()[4999]);
+        second.release();
+        //同一大小级别的缓冲区被复用
+        assertEquals(buffer.length, second.getBytes().length);
+    }
+}